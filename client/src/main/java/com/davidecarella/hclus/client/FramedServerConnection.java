@@ -0,0 +1,307 @@
+package com.davidecarella.hclus.client;
+
+import com.davidecarella.hclus.client.exceptions.ServerException;
+import com.davidecarella.hclus.client.protocol.Features;
+import com.davidecarella.hclus.client.protocol.Frame;
+import com.davidecarella.hclus.client.protocol.FrameCodec;
+import com.davidecarella.hclus.client.protocol.FrameCompression;
+import com.davidecarella.hclus.client.protocol.FrameType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * <p>Connessione con il server che usa il protocollo binario definito nel package
+ * {@link com.davidecarella.hclus.client.protocol}.
+ *
+ * <p>Appena stabilita la connessione vengono negoziate le {@link Features funzionalità} opzionali: se il server accetta
+ * {@link Features#STREAMING} i dendrogrammi vengono ricevuti e consegnati un pezzo alla volta, se accetta
+ * {@link Features#DEFLATE} i frame di risposta più grandi vengono ricevuti compressi. Un server che non
+ * conosce la negoziazione risponde con un errore, nel qual caso non viene usata alcuna funzionalità opzionale.
+ *
+ * <p>Il mining (anche quello che estende un dendrogramma) viene richiesto come job: il client invia il job, segue il
+ * suo avanzamento fino al termine e infine ne chiede il risultato. Se la connessione si interrompe, il server annulla
+ * il job.
+ *
+ * <p>Se il server accetta {@link Features#ASYNC_SAVE} i salvataggi vengono eseguiti in background: la richiesta ritorna
+ * appena il server la accetta e l'esito viene atteso solo con {@link FramedServerConnection#awaitSaves(Consumer)}.
+ */
+public class FramedServerConnection implements ServerConnection {
+    /**
+     * I nomi degli stati di un job, indicizzati per codice.
+     */
+    private static final String[] JOB_STATES = { "in attesa", "in esecuzione", "completato", "fallito", "annullato" };
+
+    /**
+     * Il socket della connessione.
+     */
+    private final Socket socket;
+
+    /**
+     * Stream di input del socket.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Stream di output del socket.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Le {@link Features funzionalità} accettate dal server.
+     */
+    private final int features;
+
+    /**
+     * I nomi con cui caricare i dendrogrammi dei salvataggi di cui non si conosce ancora l'esito, indicizzati per
+     * identificativo.
+     */
+    private final Map<Long, String> pendingSaves = new LinkedHashMap<>();
+
+    /**
+     * Costruisce la connessione sul socket {@code socket}, specificato come parametro.
+     *
+     * @param socket il socket connesso al server
+     * @throws IOException se non si riescono a creare gli stream di IO del socket o a negoziare le funzionalità
+     */
+    public FramedServerConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.features = this.negotiateFeatures(Features.SUPPORTED);
+    }
+
+    @Override
+    public void loadData(String tableName) throws IOException, ServerException {
+        this.request(Frame.builder(FrameType.LOAD_DATA).putString(tableName).build());
+    }
+
+    @Override
+    public void loadDendrogram(String fileName, Consumer<String> output) throws IOException, ServerException {
+        this.request(Frame.builder(FrameType.LOAD_DENDROGRAM).putString(fileName).build());
+        this.receiveDendrogram(output);
+    }
+
+    @Override
+    public void mine(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException {
+        this.runJob(Frame.builder(FrameType.SUBMIT_JOB).putInt(depth).putInt(distanceType).build(), progress, output);
+    }
+
+    @Override
+    public void extend(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException {
+        this.runJob(Frame.builder(FrameType.EXTEND_JOB).putInt(depth).putInt(distanceType).build(), progress, output);
+    }
+
+    @Override
+    public void cut(int criterion, double value, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(Frame.builder(FrameType.CUT_DENDROGRAM).putInt(criterion).putDouble(value).build(), this.out);
+        this.receiveDendrogram(output);
+    }
+
+    @Override
+    public void fetchLevels(int fromLevel, int toLevel, int fromCluster, int toCluster, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(Frame.builder(FrameType.FETCH_LEVELS).putInt(fromLevel).putInt(toLevel).putInt(fromCluster).putInt(toCluster).build(), this.out);
+        this.receiveDendrogram(output);
+    }
+
+    @Override
+    public void fetchCluster(int level, int index, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(Frame.builder(FrameType.FETCH_CLUSTER).putInt(level).putInt(index).build(), this.out);
+        var reader = this.receive(FrameType.CLUSTER).reader();
+        int size = reader.getInt();
+        output.accept(String.format("level%d cluster%d: %d esempi, centroide %s\n", level, index, size, reader.getString()));
+    }
+
+    @Override
+    public int fetchClusterMembers(int level, int index, int offset, int limit, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(Frame.builder(FrameType.FETCH_CLUSTER_MEMBERS).putInt(level).putInt(index).putInt(offset).putInt(limit).build(), this.out);
+        var reader = this.receive(FrameType.CLUSTER_MEMBERS).reader();
+        int size = reader.getInt();
+        reader.getInt();
+        output.accept(reader.getString());
+        return size;
+    }
+
+    @Override
+    public void fetchLevelSummaries(int fromLevel, int toLevel, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(Frame.builder(FrameType.FETCH_LEVEL_SUMMARIES).putInt(fromLevel).putInt(toLevel).build(), this.out);
+        var reader = this.receive(FrameType.LEVEL_SUMMARIES).reader();
+        int count = reader.getInt();
+        for (int i = 0; i < count; ++i) {
+            int level = reader.getInt();
+            int clusters = reader.getInt();
+            int smallest = reader.getInt();
+            int largest = reader.getInt();
+            int singletons = reader.getInt();
+            double height = reader.getDouble();
+            output.accept(String.format("level%d: %d cluster (da %d a %d esempi, %d con un solo esempio), distanza %s\n", level, clusters, smallest, largest, singletons, height));
+        }
+    }
+
+    /**
+     * Invia la richiesta {@code submit} che crea un job di mining, consegna a {@code progress} le descrizioni del suo
+     * avanzamento fino al termine e infine la rappresentazione testuale del dendrogramma creato a {@code output} (tutti
+     * specificati come parametro).
+     *
+     * @param submit la richiesta che crea il job
+     * @param progress la destinazione delle descrizioni dell'avanzamento del mining
+     * @param output la destinazione della rappresentazione testuale del dendrogramma
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    private void runJob(Frame submit, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException {
+        FrameCodec.write(submit, this.out);
+        long jobId = this.receive(FrameType.JOB_SUBMITTED).reader().getLong();
+
+        FrameCodec.write(Frame.builder(FrameType.SUBSCRIBE_JOB).putLong(jobId).build(), this.out);
+        while (true) {
+            var reader = this.receive(FrameType.JOB_PROGRESS).reader();
+            reader.getLong();
+            int state = reader.getInt();
+            int levelsDone = reader.getInt();
+            int totalLevels = reader.getInt();
+            long elapsedMillis = reader.getLong();
+            long etaMillis = reader.getLong();
+            reader.getString();
+
+            if (state >= 2) {
+                break;
+            }
+
+            progress.accept(String.format("Job %d %s: %d/%d livelli, %.1f s trascorsi, %s",
+                jobId,
+                state >= 0 && state < JOB_STATES.length ? JOB_STATES[state] : "sconosciuto",
+                levelsDone,
+                totalLevels,
+                elapsedMillis / 1000.0,
+                etaMillis < 0 ? "tempo rimanente non ancora stimabile" : String.format("circa %.1f s rimanenti", etaMillis / 1000.0)
+            ));
+        }
+
+        this.request(Frame.builder(FrameType.FETCH_JOB_RESULT).putLong(jobId).build());
+        this.receiveDendrogram(output);
+    }
+
+    @Override
+    public void saveDendrogram(String fileName) throws IOException, ServerException {
+        var request = Frame.builder(FrameType.SAVE_DENDROGRAM).putString(fileName).build();
+        if ((this.features & Features.ASYNC_SAVE) == 0) {
+            this.request(request);
+            return;
+        }
+
+        FrameCodec.write(request, this.out);
+        var reader = this.receive(FrameType.SAVE_SUBMITTED).reader();
+        this.pendingSaves.put(reader.getLong(), reader.getString());
+    }
+
+    @Override
+    public void awaitSaves(Consumer<String> output) throws IOException {
+        for (var save : this.pendingSaves.entrySet()) {
+            FrameCodec.write(Frame.builder(FrameType.AWAIT_SAVE).putLong(save.getKey()).build(), this.out);
+            try {
+                var reader = this.receive(FrameType.SAVE_COMPLETED).reader();
+                reader.getLong();
+                var error = reader.getString();
+                output.accept(error.isEmpty() ? String.format("Dendrogramma salvato in %s", save.getValue()) : error);
+            } catch (ServerException exception) {
+                output.accept(exception.getMessage());
+            }
+        }
+
+        this.pendingSaves.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    /**
+     * Chiede al server le funzionalità {@code requested}, specificate come parametro.
+     *
+     * @param requested le funzionalità richieste
+     * @return le funzionalità accettate dal server
+     * @throws IOException in caso di errori di comunicazione con il server
+     */
+    private int negotiateFeatures(int requested) throws IOException {
+        FrameCodec.write(Frame.builder(FrameType.HELLO).putInt(requested).build(), this.out);
+        try {
+            return this.receive(FrameType.HELLO).reader().getInt() & requested;
+        } catch (ServerException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Riceve la rappresentazione testuale di un dendrogramma e la consegna a {@code output}, specificato come
+     * parametro, un pezzo alla volta se è stata negoziata {@link Features#STREAMING}.
+     *
+     * @param output la destinazione della rappresentazione testuale del dendrogramma
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    private void receiveDendrogram(Consumer<String> output) throws IOException, ServerException {
+        if ((this.features & Features.STREAMING) == 0) {
+            output.accept(this.receive(FrameType.DENDROGRAM).reader().getString());
+            return;
+        }
+
+        while (true) {
+            var frame = this.receive(FrameType.DENDROGRAM_CHUNK, FrameType.DENDROGRAM_END);
+            if (frame.getType() == FrameType.DENDROGRAM_END) {
+                return;
+            }
+
+            output.accept(frame.reader().getString());
+        }
+    }
+
+    /**
+     * Invia la richiesta {@code request}, specificata come parametro, e ne attende la risposta {@link FrameType#OK}.
+     *
+     * @param request il frame di richiesta
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    private void request(Frame request) throws IOException, ServerException {
+        FrameCodec.write(request, this.out);
+        this.receive(FrameType.OK);
+    }
+
+    /**
+     * Attende dal server un frame di uno dei tipi {@code expectedTypes}, specificati come parametro.
+     *
+     * @param expectedTypes i tipi di frame attesi
+     * @return il frame ricevuto
+     * @throws IOException in caso di errori di comunicazione con il server o se il frame non è di un tipo atteso
+     * @throws ServerException se il server risponde con un errore
+     */
+    private Frame receive(FrameType... expectedTypes) throws IOException, ServerException {
+        var frame = FrameCodec.read(this.in);
+        if (frame == null) {
+            throw new EOFException("Il server ha chiuso la connessione!");
+        }
+
+        frame = FrameCompression.decompress(frame);
+        if (frame.getType() == FrameType.ERROR) {
+            throw new ServerException(frame.reader().getString());
+        }
+        for (var expectedType : expectedTypes) {
+            if (frame.getType() == expectedType) {
+                return frame;
+            }
+        }
+
+        throw new ProtocolException(String.format("Risposta inattesa dal server: %s!", frame.getType()));
+    }
+}
@@ -0,0 +1,150 @@
+package com.davidecarella.hclus.client;
+
+import com.davidecarella.hclus.client.exceptions.ServerException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * <p>Connessione con il server che usa il vecchio protocollo, basato sulla serializzazione Java di {@link Integer} e
+ * {@link String}.
+ *
+ * <p>Viene mantenuta solo per poter comunicare con i server che non supportano ancora il protocollo binario. Nel
+ * vecchio protocollo il percorso del file dove salvare il dendrogramma fa parte della richiesta di mining e il server
+ * non invia alcuna risposta, perciò {@link LegacyServerConnection#saveDendrogram(String)} va chiamato subito dopo
+ * {@link LegacyServerConnection#mine(int, int, Consumer, Consumer)} e non segnala eventuali errori. Il dendrogramma
+ * viene sempre ricevuto in un unico pezzo, l'avanzamento del mining non viene comunicato e non è possibile estendere
+ * un dendrogramma.
+ */
+public class LegacyServerConnection implements ServerConnection {
+    /**
+     * Il socket della connessione.
+     */
+    private final Socket socket;
+
+    /**
+     * Stream di output del socket.
+     */
+    private final ObjectOutputStream out;
+
+    /**
+     * Stream di input del socket.
+     */
+    private final ObjectInputStream in;
+
+    /**
+     * Costruisce la connessione sul socket {@code socket}, specificato come parametro.
+     *
+     * @param socket il socket connesso al server
+     * @throws IOException se non si riescono a creare gli stream di IO del socket
+     */
+    public LegacyServerConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new ObjectOutputStream(socket.getOutputStream());
+        this.in = new ObjectInputStream(socket.getInputStream());
+    }
+
+    @Override
+    public void loadData(String tableName) throws IOException, ServerException {
+        this.out.writeObject(0);
+        this.out.writeObject(tableName);
+        this.receiveOk();
+    }
+
+    @Override
+    public void loadDendrogram(String fileName, Consumer<String> output) throws IOException, ServerException {
+        this.out.writeObject(2);
+        this.out.writeObject(fileName);
+        this.receiveOk();
+        output.accept(this.receiveString());
+    }
+
+    @Override
+    public void mine(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException {
+        this.out.writeObject(1);
+        this.out.writeObject(depth);
+        this.out.writeObject(distanceType);
+        this.receiveOk();
+        output.accept(this.receiveString());
+    }
+
+    @Override
+    public void extend(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di estendere un dendrogramma!");
+    }
+
+    @Override
+    public void cut(int criterion, double value, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di tagliare un dendrogramma!");
+    }
+
+    @Override
+    public void fetchLevels(int fromLevel, int toLevel, int fromCluster, int toCluster, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di sfogliare un dendrogramma!");
+    }
+
+    @Override
+    public void fetchCluster(int level, int index, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di sfogliare un dendrogramma!");
+    }
+
+    @Override
+    public int fetchClusterMembers(int level, int index, int offset, int limit, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di sfogliare un dendrogramma!");
+    }
+
+    @Override
+    public void fetchLevelSummaries(int fromLevel, int toLevel, Consumer<String> output) throws ServerException {
+        throw new ServerException("Il vecchio protocollo non permette di sfogliare un dendrogramma!");
+    }
+
+    @Override
+    public void saveDendrogram(String fileName) throws IOException {
+        this.out.writeObject(fileName);
+    }
+
+    @Override
+    public void awaitSaves(Consumer<String> output) {
+        // Il vecchio protocollo non comunica l'esito dei salvataggi
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    /**
+     * Attende dal server la risposta {@code "OK"}.
+     *
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    private void receiveOk() throws IOException, ServerException {
+        var response = this.receiveString();
+        if (!response.equals("OK")) {
+            throw new ServerException(response);
+        }
+    }
+
+    /**
+     * Attende dal server una stringa.
+     *
+     * @return la stringa ricevuta
+     * @throws IOException in caso di errori di comunicazione con il server o se non viene ricevuta una stringa
+     */
+    private String receiveString() throws IOException {
+        try {
+            if (this.in.readObject() instanceof String string) {
+                return string;
+            }
+        } catch (ClassNotFoundException exception) {
+            throw new ProtocolException(exception.getMessage());
+        }
+
+        throw new ProtocolException("Risposta inattesa dal server!");
+    }
+}
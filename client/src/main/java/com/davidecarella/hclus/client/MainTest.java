@@ -1,8 +1,8 @@
 package com.davidecarella.hclus.client;
 
+import com.davidecarella.hclus.client.exceptions.ServerException;
+
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 
@@ -13,37 +13,45 @@ import java.net.Socket;
  * linea di comando, manderà una richiesta di caricamento dei dati e in seguito farà scegliere all'utente se caricare
  * un dendrogramma da file o crearne uno nuova da una tabella del database. Nel primo caso viene inviato il nome del
  * file da cui si vuole caricare il dendrogramma (scritto da tastiera dall'utente) e il server risponde con una stringa
- * che rappresenta il dendrogramma. Nel secondo caso, invece, vengono inviate al server profondità e tipo di distanza
- * (scritte da tastiera dall'utente) e il server creerà il dendrogramma e ne invierà la rappresentazione testuale.
- * Infine il client esce.
+ * che rappresenta il dendrogramma, che l'utente può poi estendere a una profondità maggiore. Nel secondo caso, invece,
+ * vengono inviate al server profondità e tipo di distanza (scritte da tastiera dall'utente) e il server creerà il
+ * dendrogramma e ne invierà la rappresentazione testuale. Infine il client esce.
+ *
+ * <p>Di default il client comunica con il server usando il protocollo binario; passando {@code legacy} come terzo
+ * argomento da linea di comando viene invece usato il vecchio protocollo basato sulla serializzazione Java.
  */
 public class MainTest {
     /**
-     * Stream di output del socket.
+     * Il numero di cluster per livello richiesti quando si sfogliano i livelli del dendrogramma.
+     */
+    private static final int CLUSTERS_PER_PAGE = 20;
+
+    /**
+     * Il numero di esempi richiesti per ogni pagina degli esempi di un cluster.
      */
-    private ObjectOutputStream out;
+    private static final int MEMBERS_PER_PAGE = 20;
 
     /**
-     * Stream di input del socket.
+     * La connessione con il server.
      */
-    private ObjectInputStream in;
+    private final ServerConnection connection;
 
     /**
-     * Costruisce la classe connettendosi al server con indirizzo {@code ip} e porta {@code port} (specificate come
-     * parametro).
+     * Costruisce la classe connettendosi al server con indirizzo {@code ip} e porta {@code port} usando il vecchio
+     * protocollo se {@code legacy} è {@code true} (tutti specificati come parametro).
      *
      * @param ip l'indirizzo IP del server
      * @param port la porta del server
+     * @param legacy indica se usare il vecchio protocollo
      * @throws IOException se non si riescono a creare gli stream di IO del socket
      */
-    public MainTest(String ip, int port) throws IOException {
+    public MainTest(String ip, int port, boolean legacy) throws IOException {
         InetAddress addr = InetAddress.getByName(ip);
         System.out.println("addr = " + addr);
         Socket socket = new Socket(addr, port);
         System.out.println(socket);
 
-        out = new ObjectOutputStream(socket.getOutputStream());
-        in = new ObjectInputStream(socket.getInputStream());
+        connection = legacy ? new LegacyServerConnection(socket) : new FramedServerConnection(socket);
     }
 
     /**
@@ -69,22 +77,18 @@ public class MainTest {
     /**
      * Manda al server la richiesta del caricamento dei dati.
      *
-     * @throws IOException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli stream di IO
-     * @throws ClassNotFoundException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli
-     *                                stream di IO
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
      */
-    private void loadDataOnServer() throws IOException, ClassNotFoundException {
+    private void loadDataOnServer() throws IOException {
         boolean flag = false;
         do {
             System.out.println("Nome tabella:");
             String tableName = Keyboard.readString();
-            out.writeObject(0);
-            out.writeObject(tableName);
-            String risposta = (String) (in.readObject());
-            if (risposta.equals("OK")) {
+            try {
+                connection.loadData(tableName);
                 flag = true;
-            } else {
-                System.out.println(risposta);
+            } catch (ServerException e) {
+                System.out.println(e.getMessage());
             }
         } while (!flag);
     }
@@ -92,51 +96,182 @@ public class MainTest {
     /**
      * Manda al server la richiesta del caricamento di un dendrogramma dal file.
      *
-     * @throws IOException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli stream di IO
-     * @throws ClassNotFoundException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli
-     *                                stream di IO
+     * @return {@code true} se il dendrogramma è stato caricato, {@code false} altrimenti
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
      */
-    private void loadDendrogramFromFileOnServer() throws IOException, ClassNotFoundException {
+    private boolean loadDendrogramFromFileOnServer() throws IOException {
         System.out.println("Inserire il nome dell'archivio (comprensivo di estensione):");
+        System.out.println("(per un dendrogramma salvato nell'archivio del server: store:<chiave>)");
         String fileName = Keyboard.readString();
 
-        out.writeObject(2);
-        out.writeObject(fileName);
-        String risposta = (String) (in.readObject());
-        if (risposta.equals("OK")) {
-            System.out.println(in.readObject()); // stampo il dendrogramma che il server mi sta inviando
-        } else {
-            System.out.println(risposta); // stampo il messaggio di errore
+        try {
+            connection.loadDendrogram(fileName, System.out::print); // stampo il dendrogramma man mano che il server lo invia
+            System.out.println();
+            return true;
+        } catch (ServerException e) {
+            System.out.println(e.getMessage()); // stampo il messaggio di errore
+            return false;
         }
     }
 
+    /**
+     * Manda al server la richiesta di estendere il dendrogramma caricato a una profondità maggiore, se l'utente lo
+     * desidera.
+     *
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
+     */
+    private void extendDendrogramOnServer() throws IOException {
+        System.out.println("Introdurre la nuova profondità per estendere il dendrogramma (0 per terminare)");
+        int depth = Keyboard.readInt();
+        if (depth <= 0) {
+            return;
+        }
+
+        int dType = readDistanceType();
+        try {
+            connection.extend(depth, dType, System.out::println, System.out::print); // stampo il dendrogramma man mano che il server lo invia
+            System.out.println();
+        } catch (ServerException e) {
+            System.out.println(e.getMessage()); // stampo il messaggio di errore
+            return;
+        }
+
+        saveDendrogramOnServer();
+    }
+
     /**
      * Manda al server la richiesta della creazione di un nuovo dendrogramma a partire da una tabella nel database.
      *
-     * @throws IOException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli stream di IO
-     * @throws ClassNotFoundException se si dovessero verificare errori durante la ricezione/invio di oggetti dagli
-     *                                stream di IO
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
      */
-    private void mineDendrogramOnServer() throws IOException, ClassNotFoundException {
-        out.writeObject(1);
+    private void mineDendrogramOnServer() throws IOException {
         System.out.println("Introdurre la profondit  del dendrogramma");
         int depth = Keyboard.readInt();
-        out.writeObject(depth);
+        int dType = readDistanceType();
+
+        try {
+            connection.mine(depth, dType, System.out::println, System.out::print); // stampo il dendrogramma man mano che il server lo invia
+            System.out.println();
+        } catch (ServerException e) {
+            System.out.println(e.getMessage()); // stampo il messaggio di errore
+            return;
+        }
+
+        saveDendrogramOnServer();
+    }
+
+    /**
+     * Manda al server le richieste di taglio dell'ultimo dendrogramma, finché l'utente non sceglie di terminare.
+     *
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
+     */
+    private void cutDendrogramOnServer() throws IOException {
+        while (true) {
+            System.out.println("Tagliare il dendrogramma per distanza massima (1), numero di cluster (2) o dimensione massima dei cluster (3)? (0 per terminare)");
+            int criterion = Keyboard.readInt();
+            if (criterion <= 0) {
+                return;
+            }
+            if (criterion > 3) {
+                continue;
+            }
+
+            System.out.println(criterion == 1 ? "Introdurre la distanza massima:" : criterion == 2 ? "Introdurre il numero di cluster:" : "Introdurre la dimensione massima dei cluster:");
+            double value = Keyboard.readDouble();
+            try {
+                connection.cut(criterion, value, System.out::print);
+            } catch (ServerException e) {
+                System.out.println(e.getMessage()); // stampo il messaggio di errore
+            }
+        }
+    }
+
+    /**
+     * Permette all'utente di sfogliare l'ultimo dendrogramma sul server un pezzo alla volta, senza riceverlo per intero:
+     * un intervallo di livelli, un cluster, gli esempi di un cluster pagina per pagina o i riassunti di un intervallo
+     * di livelli, finché l'utente non sceglie di terminare.
+     *
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
+     */
+    private void browseDendrogramOnServer() throws IOException {
+        while (true) {
+            System.out.println("Sfogliare il dendrogramma: livelli (1), cluster (2), esempi di un cluster (3) o riassunto dei livelli (4)? (0 per terminare)");
+            int choice = Keyboard.readInt();
+            if (choice <= 0) {
+                return;
+            }
+            if (choice > 4) {
+                continue;
+            }
+
+            try {
+                if (choice == 1 || choice == 4) {
+                    System.out.println("Introdurre il primo livello:");
+                    int fromLevel = Keyboard.readInt();
+                    System.out.println("Introdurre l'ultimo livello:");
+                    int toLevel = Keyboard.readInt() + 1;
+                    if (choice == 1) {
+                        System.out.println("Introdurre il primo cluster:");
+                        int fromCluster = Keyboard.readInt();
+                        connection.fetchLevels(fromLevel, toLevel, fromCluster, fromCluster + CLUSTERS_PER_PAGE, System.out::print);
+                    } else {
+                        connection.fetchLevelSummaries(fromLevel, toLevel, System.out::print);
+                    }
+                    continue;
+                }
+
+                System.out.println("Introdurre il livello:");
+                int level = Keyboard.readInt();
+                System.out.println("Introdurre il cluster:");
+                int index = Keyboard.readInt();
+                if (choice == 2) {
+                    connection.fetchCluster(level, index, System.out::print);
+                    continue;
+                }
+
+                int offset = 0;
+                int size;
+                do {
+                    size = connection.fetchClusterMembers(level, index, offset, MEMBERS_PER_PAGE, System.out::print);
+                    offset += MEMBERS_PER_PAGE;
+                    if (offset < size) {
+                        System.out.printf("Mostrati %d esempi su %d, mostrare i successivi? (1 per continuare)%n", offset, size);
+                    }
+                } while (offset < size && Keyboard.readInt() == 1);
+            } catch (ServerException e) {
+                System.out.println(e.getMessage()); // stampo il messaggio di errore
+            }
+        }
+    }
+
+    /**
+     * Chiede all'utente il tipo di distanza da usare per il mining, finché non ne viene inserito uno valido.
+     *
+     * @return il tipo di distanza scelto
+     */
+    private static int readDistanceType() {
         int dType = -1;
         do {
             System.out.println("Distanza: single-link (1), average-link (2):");
             dType = Keyboard.readInt();
         } while (dType <= 0 || dType > 2);
-        out.writeObject(dType);
-
-        String risposta = (String) (in.readObject());
-        if (risposta.equals("OK")) {
-            System.out.println(in.readObject()); // stampo il dendrogramma che il server mi sta inviando
-            System.out.println("Inserire il nome dell'archivio (comprensivo di estensione):");
-            String fileName = Keyboard.readString();
-            out.writeObject(fileName);
-        } else {
-            System.out.println(risposta); // stampo il messaggio di errore
+
+        return dType;
+    }
+
+    /**
+     * Manda al server la richiesta di salvare l'ultimo dendrogramma nel file il cui nome viene scritto da tastiera.
+     *
+     * @throws IOException se si dovessero verificare errori durante la comunicazione con il server
+     */
+    private void saveDendrogramOnServer() throws IOException {
+        System.out.println("Inserire il nome dell'archivio (comprensivo di estensione):");
+        System.out.println("(store: per salvarlo nell'archivio del server)");
+        String fileName = Keyboard.readString();
+        try {
+            connection.saveDendrogram(fileName);
+        } catch (ServerException e) {
+            System.out.println(e.getMessage()); // stampo il messaggio di errore
         }
     }
 
@@ -148,18 +283,25 @@ public class MainTest {
     public static void main(String[] args) {
         String ip = args[0];
         int port = Integer.parseInt(args[1]);
+        boolean legacy = args.length > 2 && args[2].equals("legacy");
         MainTest main = null;
         try {
-            main = new MainTest(ip, port);
+            main = new MainTest(ip, port, legacy);
 
             main.loadDataOnServer();
             int scelta = main.menu();
             if (scelta == 1) {
-                main.loadDendrogramFromFileOnServer();
+                if (main.loadDendrogramFromFileOnServer()) {
+                    main.extendDendrogramOnServer();
+                }
             } else {
                 main.mineDendrogramOnServer();
             }
-        } catch (IOException | ClassNotFoundException e) {
+            main.cutDendrogramOnServer();
+            main.browseDendrogramOnServer();
+            main.connection.awaitSaves(System.out::println);
+            main.connection.close();
+        } catch (IOException e) {
             System.out.println(e);
         }
     }
@@ -0,0 +1,162 @@
+package com.davidecarella.hclus.client;
+
+import com.davidecarella.hclus.client.exceptions.ServerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * <p>Interfaccia che rappresenta la connessione con il server, indipendentemente dal protocollo usato.
+ *
+ * <p>Ogni metodo invia una richiesta e ne attende la risposta: se il server risponde con un errore viene lanciata una
+ * {@link ServerException} con il messaggio ricevuto. La rappresentazione testuale dei dendrogrammi viene consegnata a
+ * un {@link Consumer}, eventualmente in più pezzi man mano che arriva dal server: concatenando i pezzi si ottiene la
+ * rappresentazione completa.
+ *
+ * @see FramedServerConnection
+ * @see LegacyServerConnection
+ */
+public interface ServerConnection extends Closeable {
+    /**
+     * Chiede al server di caricare i dati dalla tabella con nome {@code tableName}, specificato come parametro.
+     *
+     * @param tableName il nome della tabella
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    void loadData(String tableName) throws IOException, ServerException;
+
+    /**
+     * Chiede al server di caricare il dendrogramma contenuto nel file {@code fileName} e consegna la sua
+     * rappresentazione testuale a {@code output}, entrambi specificati come parametro.
+     *
+     * @param fileName il percorso del file
+     * @param output la destinazione della rappresentazione testuale del dendrogramma
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    void loadDendrogram(String fileName, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server di creare un dendrogramma di profondità {@code depth} usando la distanza di tipo
+     * {@code distanceType} ({@code 1} single-link, {@code 2} average-link) e consegna la sua rappresentazione testuale
+     * a {@code output}. Se il server lo permette, durante il mining vengono consegnate a {@code progress} delle
+     * descrizioni del suo avanzamento (tutti specificati come parametro).
+     *
+     * @param depth la profondità del dendrogramma
+     * @param distanceType il tipo di distanza
+     * @param progress la destinazione delle descrizioni dell'avanzamento del mining
+     * @param output la destinazione della rappresentazione testuale del dendrogramma
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    void mine(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server di estendere l'ultimo dendrogramma creato o caricato fino alla profondità {@code depth} usando
+     * la distanza di tipo {@code distanceType}, riprendendo il mining dal suo ultimo livello, e consegna la
+     * rappresentazione testuale del dendrogramma esteso a {@code output}. Come per
+     * {@link ServerConnection#mine(int, int, Consumer, Consumer)}, l'avanzamento del mining viene consegnato a
+     * {@code progress} (tutti specificati come parametro).
+     * @param depth la nuova profondità del dendrogramma
+     * @param distanceType il tipo di distanza
+     * @param progress la destinazione delle descrizioni dell'avanzamento del mining
+     * @param output la destinazione della rappresentazione testuale del dendrogramma
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di estendere i dendrogrammi
+     */
+    void extend(int depth, int distanceType, Consumer<String> progress, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server di tagliare l'ultimo dendrogramma creato o caricato secondo il criterio {@code criterion} con
+     * valore {@code value} e consegna la rappresentazione testuale del livello scelto a {@code output} (tutti
+     * specificati come parametro). I criteri sono {@code 1} (distanza massima fra i cluster uniti), {@code 2} (numero
+     * di cluster) e {@code 3} (numero massimo di esempi in un cluster).
+     *
+     * @param criterion il criterio del taglio
+     * @param value il valore del criterio
+     * @param output la destinazione della rappresentazione testuale del livello scelto
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di tagliare i dendrogrammi
+     */
+    void cut(int criterion, double value, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server i livelli dell'ultimo dendrogramma creato o caricato compresi fra {@code fromLevel} (incluso) e
+     * {@code toLevel} (escluso), limitati ai cluster con indice compreso fra {@code fromCluster} (incluso) e
+     * {@code toCluster} (escluso), e ne consegna la rappresentazione testuale a {@code output} (tutti specificati come
+     * parametro).
+     *
+     * @param fromLevel il primo livello
+     * @param toLevel il livello successivo all'ultimo
+     * @param fromCluster l'indice del primo cluster di ogni livello
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster di ogni livello
+     * @param output la destinazione della rappresentazione testuale dei livelli
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di sfogliare i dendrogrammi
+     */
+    void fetchLevels(int fromLevel, int toLevel, int fromCluster, int toCluster, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server il cluster con indice {@code index} del livello {@code level} dell'ultimo dendrogramma creato o
+     * caricato e ne consegna una descrizione, con il numero di esempi e il centroide, a {@code output} (tutti
+     * specificati come parametro).
+     *
+     * @param level il livello del dendrogramma
+     * @param index l'indice del cluster nel livello
+     * @param output la destinazione della descrizione del cluster
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di sfogliare i dendrogrammi
+     */
+    void fetchCluster(int level, int index, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server al più {@code limit} esempi, a partire da quello in posizione {@code offset}, del cluster con
+     * indice {@code index} del livello {@code level} dell'ultimo dendrogramma creato o caricato e li consegna a
+     * {@code output} (tutti specificati come parametro), un esempio per riga.
+     *
+     * @param level il livello del dendrogramma
+     * @param index l'indice del cluster nel livello
+     * @param offset la posizione del primo esempio
+     * @param limit il numero massimo di esempi
+     * @param output la destinazione degli esempi
+     * @return il numero di esempi del cluster
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di sfogliare i dendrogrammi
+     */
+    int fetchClusterMembers(int level, int index, int offset, int limit, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server i riassunti dei livelli dell'ultimo dendrogramma creato o caricato compresi fra
+     * {@code fromLevel} (incluso) e {@code toLevel} (escluso) e li consegna a {@code output} (tutti specificati come
+     * parametro), un livello per riga.
+     *
+     * @param fromLevel il primo livello
+     * @param toLevel il livello successivo all'ultimo
+     * @param output la destinazione dei riassunti
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore o non permette di sfogliare i dendrogrammi
+     */
+    void fetchLevelSummaries(int fromLevel, int toLevel, Consumer<String> output) throws IOException, ServerException;
+
+    /**
+     * Chiede al server di salvare l'ultimo dendrogramma creato nel file {@code fileName}, specificato come parametro.
+     * Se il server lo permette, il metodo ritorna appena il salvataggio viene accettato e il suo esito si ottiene con
+     * {@link ServerConnection#awaitSaves(Consumer)}.
+     *
+     * @param fileName il percorso del file
+     * @throws IOException in caso di errori di comunicazione con il server
+     * @throws ServerException se il server risponde con un errore
+     */
+    void saveDendrogram(String fileName) throws IOException, ServerException;
+
+    /**
+     * Attende il termine dei salvataggi richiesti e non ancora terminati, consegnando a {@code output}, specificato
+     * come parametro, una descrizione dell'esito di ognuno.
+     *
+     * @param output la destinazione delle descrizioni degli esiti dei salvataggi
+     * @throws IOException in caso di errori di comunicazione con il server
+     */
+    void awaitSaves(Consumer<String> output) throws IOException;
+}
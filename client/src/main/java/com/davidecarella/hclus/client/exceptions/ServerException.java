@@ -0,0 +1,15 @@
+package com.davidecarella.hclus.client.exceptions;
+
+/**
+ * Eccezione lanciata quando il server risponde a una richiesta con un messaggio d'errore.
+ */
+public class ServerException extends Exception {
+    /**
+     * Costruisce l'eccezione con il messaggio d'errore inviato dal server, {@code message} specificato come parametro.
+     *
+     * @param message il messaggio d'errore inviato dal server
+     */
+    public ServerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,123 @@
+package com.davidecarella.hclus.client.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+/**
+ * <p>Classe di utilità per leggere e scrivere i {@link Frame frame} sulla connessione con il server.
+ *
+ * <p>Ogni frame viene trasmesso come:
+ * <ul>
+ *     <li>la lunghezza in byte di ciò che segue ({@code int}, big-endian);</li>
+ *     <li>la versione del protocollo (1 byte);</li>
+ *     <li>il codice del {@link FrameType tipo} (1 byte);</li>
+ *     <li>il payload.</li>
+ * </ul>
+ *
+ * <p>Un frame con una versione diversa da {@link FrameCodec#VERSION} viene rifiutato: in questo modo un client e un
+ * server incompatibili se ne accorgono al primo messaggio invece di interpretare male il payload.
+ *
+ * <p>Deve rimanere allineata all'omonima classe del server.
+ */
+public final class FrameCodec {
+    /**
+     * La versione del protocollo implementata da questa classe.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * La dimensione massima di un frame (escluso il campo della lunghezza).
+     */
+    public static final int MAX_FRAME_LENGTH = 64 << 20;
+
+    /**
+     * La dimensione dell'intestazione di un frame (lunghezza, versione e tipo).
+     */
+    public static final int HEADER_SIZE = Integer.BYTES + 2;
+
+    /**
+     * NOTA: Viene aggiunto solo per evitare il warning durante la generazione del JavaDoc.
+     */
+    private FrameCodec() {}
+
+    /**
+     * Scrive il frame {@code frame} su {@code outputStream}, entrambi specificati come parametro, e svuota lo stream.
+     *
+     * @param frame il frame da scrivere
+     * @param outputStream lo stream su cui scrivere il frame
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    public static void write(Frame frame, DataOutputStream outputStream) throws IOException {
+        var payload = frame.getPayload();
+        outputStream.writeInt(HEADER_SIZE - Integer.BYTES + payload.length);
+        outputStream.writeByte(VERSION);
+        outputStream.writeByte(frame.getType().getCode());
+        outputStream.write(payload);
+        outputStream.flush();
+    }
+
+    /**
+     * Legge un frame da {@code inputStream}, specificato come parametro, bloccandosi finché non è stato ricevuto per
+     * intero.
+     *
+     * @param inputStream lo stream da cui leggere il frame
+     * @return il frame letto, {@code null} se lo stream è terminato prima dell'inizio di un frame
+     * @throws ProtocolException se il frame ha una lunghezza, una versione o un tipo non validi
+     * @throws IOException in caso di errori durante la lettura o se lo stream termina a metà di un frame
+     */
+    public static Frame read(DataInputStream inputStream) throws IOException {
+        int length;
+        try {
+            length = checkLength(inputStream.readInt());
+        } catch (EOFException exception) {
+            return null;
+        }
+
+        byte version = inputStream.readByte();
+        byte code = inputStream.readByte();
+        var payload = new byte[length - (HEADER_SIZE - Integer.BYTES)];
+        inputStream.readFully(payload);
+
+        return new Frame(checkType(version, code), payload);
+    }
+
+    /**
+     * Controlla che la lunghezza di un frame, {@code length} specificata come parametro, sia valida.
+     *
+     * @param length la lunghezza del frame
+     * @return la lunghezza del frame
+     * @throws ProtocolException se la lunghezza non è valida
+     */
+    private static int checkLength(int length) throws ProtocolException {
+        if (length < HEADER_SIZE - Integer.BYTES || length > MAX_FRAME_LENGTH) {
+            throw new ProtocolException("Lunghezza del frame non valida!");
+        }
+
+        return length;
+    }
+
+    /**
+     * Controlla la versione {@code version} e restituisce il tipo con codice {@code code}, entrambi specificati come
+     * parametro.
+     *
+     * @param version la versione del protocollo del frame
+     * @param code il codice del tipo del frame
+     * @return il tipo del frame
+     * @throws ProtocolException se la versione non è supportata o il tipo non esiste
+     */
+    private static FrameType checkType(byte version, byte code) throws ProtocolException {
+        if (version != VERSION) {
+            throw new ProtocolException(String.format("Versione del protocollo non supportata: %d (attesa %d)!", version, VERSION));
+        }
+
+        var type = FrameType.fromCode(code);
+        if (type == null) {
+            throw new ProtocolException("Tipo del frame non valido!");
+        }
+
+        return type;
+    }
+}
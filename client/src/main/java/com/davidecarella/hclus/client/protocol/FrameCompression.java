@@ -0,0 +1,78 @@
+package com.davidecarella.hclus.client.protocol;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>Classe di utilità per decomprimere i {@link Frame frame} compressi dal server con l'algoritmo deflate.
+ *
+ * <p>Un frame compresso è un frame di tipo {@link FrameType#COMPRESSED} il cui payload contiene il codice del tipo del
+ * frame originale (1 byte), la lunghezza del payload originale ({@code int}) e il payload originale compresso.
+ * Ogni frame viene compresso indipendentemente dagli altri, perciò può essere decompresso da solo.
+ *
+ * <p>Deve rimanere allineata all'omonima classe del server.
+ */
+public final class FrameCompression {
+    /**
+     * La dimensione dell'intestazione del payload di un frame compresso (tipo e lunghezza originali).
+     */
+    private static final int HEADER_SIZE = 1 + Integer.BYTES;
+
+    /**
+     * NOTA: Viene aggiunto solo per evitare il warning durante la generazione del JavaDoc.
+     */
+    private FrameCompression() {}
+
+    /**
+     * Decomprime il frame {@code frame}, specificato come parametro.
+     *
+     * @param frame il frame da decomprimere
+     * @return il frame originale, oppure {@code frame} stesso se non è un frame compresso
+     * @throws ProtocolException se il frame compresso non è valido
+     */
+    public static Frame decompress(Frame frame) throws ProtocolException {
+        if (frame.getType() != FrameType.COMPRESSED) {
+            return frame;
+        }
+
+        var compressed = frame.getPayload();
+        if (compressed.length < HEADER_SIZE) {
+            throw new ProtocolException("Il frame compresso è troncato!");
+        }
+
+        var header = ByteBuffer.wrap(compressed, 0, HEADER_SIZE);
+        var type = FrameType.fromCode(header.get());
+        int length = header.getInt();
+        if (type == null || type == FrameType.COMPRESSED || length < 0 || length > FrameCodec.MAX_FRAME_LENGTH) {
+            throw new ProtocolException("Il frame compresso non è valido!");
+        }
+
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+
+            var payload = new byte[length];
+            int size = 0;
+            while (size < length && !inflater.finished()) {
+                int inflated = inflater.inflate(payload, size, length - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                size += inflated;
+            }
+
+            if (size != length || !inflater.finished()) {
+                throw new ProtocolException("Il frame compresso non è valido!");
+            }
+
+            return new Frame(type, payload);
+        } catch (DataFormatException exception) {
+            throw new ProtocolException("Il frame compresso non è valido!");
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.davidecarella.hclus.client.protocol;
+
+/**
+ * <p>Enumerazione dei tipi di {@link Frame frame} scambiati fra client e server.
+ *
+ * <p>I frame di richiesta vengono inviati dal client, quelli di risposta dal server. Per ogni tipo viene indicato il
+ * contenuto del payload.
+ *
+ * <p>Deve rimanere allineata all'omonima enumerazione del server.
+ */
+public enum FrameType {
+    /**
+     * Richiesta di caricamento dei dati: nome della tabella (stringa).
+     */
+    LOAD_DATA(0x01),
+
+    /**
+     * Richiesta di mining: profondità del dendrogramma ({@code int}) e tipo di distanza ({@code int}).
+     */
+    MINE(0x02),
+
+    /**
+     * Richiesta di salvataggio dell'ultimo dendrogramma: percorso del file (stringa).
+     */
+    SAVE_DENDROGRAM(0x03),
+
+    /**
+     * Richiesta di caricamento di un dendrogramma da file: percorso del file (stringa).
+     */
+    LOAD_DENDROGRAM(0x04),
+
+    /**
+     * Negoziazione delle funzionalità opzionali della connessione: insieme di {@link Features funzionalità}
+     * ({@code int}). Il client invia le funzionalità che desidera, il server risponde con lo stesso tipo di frame e le
+     * funzionalità accettate.
+     */
+    HELLO(0x05),
+
+    /**
+     * Richiesta di invio di un job di mining: profondità del dendrogramma ({@code int}) e tipo di distanza
+     * ({@code int}). Il server risponde con {@link FrameType#JOB_SUBMITTED}.
+     */
+    SUBMIT_JOB(0x06),
+
+    /**
+     * Richiesta dello stato di avanzamento di un job: identificativo del job ({@code long}). Il server risponde con
+     * {@link FrameType#JOB_PROGRESS}.
+     */
+    JOB_STATUS(0x07),
+
+    /**
+     * Richiesta di iscrizione all'avanzamento di un job: identificativo del job ({@code long}). Il server risponde con
+     * un frame {@link FrameType#JOB_PROGRESS} a ogni aggiornamento, fino a quando il job non termina.
+     */
+    SUBSCRIBE_JOB(0x08),
+
+    /**
+     * Richiesta di annullamento di un job: identificativo del job ({@code long}). Il server risponde con
+     * {@link FrameType#OK}.
+     */
+    CANCEL_JOB(0x09),
+
+    /**
+     * Richiesta del risultato di un job terminato, che diventa il dendrogramma corrente: identificativo del job
+     * ({@code long}). Il server risponde come per {@link FrameType#MINE}.
+     */
+    FETCH_JOB_RESULT(0x0A),
+
+    /**
+     * Richiesta di invio di un job di mining che estende il dendrogramma corrente, riprendendo dal suo ultimo livello:
+     * nuova profondità del dendrogramma ({@code int}) e tipo di distanza ({@code int}). Il server risponde con
+     * {@link FrameType#JOB_SUBMITTED}.
+     */
+    EXTEND_JOB(0x0B),
+
+    /**
+     * Richiesta di attesa del termine di un salvataggio: identificativo del salvataggio ({@code long}). Il server
+     * risponde con {@link FrameType#SAVE_COMPLETED} quando il salvataggio termina.
+     */
+    AWAIT_SAVE(0x0C),
+
+    /**
+     * Richiesta di taglio del dendrogramma corrente: criterio ({@code int}: {@code 1} per distanza massima fra i
+     * cluster uniti, {@code 2} per numero di cluster, {@code 3} per numero massimo di esempi in un cluster) e valore
+     * ({@code double}, troncato a intero per i criteri {@code 2} e {@code 3}). Il server risponde con un frame
+     * {@link FrameType#DENDROGRAM} che contiene la rappresentazione testuale del livello scelto o, se è stata negoziata
+     * {@link Features#STREAMING}, con i suoi pezzi in frame {@link FrameType#DENDROGRAM_CHUNK} seguiti da
+     * {@link FrameType#DENDROGRAM_END}.
+     */
+    CUT_DENDROGRAM(0x0D),
+
+    /**
+     * Richiesta di una pagina della rappresentazione testuale del dendrogramma corrente: primo livello ({@code int}),
+     * livello successivo all'ultimo ({@code int}), indice del primo cluster di ogni livello ({@code int}) e indice
+     * successivo a quello dell'ultimo ({@code int}). Il server risponde con un frame {@link FrameType#DENDROGRAM} che
+     * contiene i livelli richiesti, con i loro indici originali, o, se è stata negoziata {@link Features#STREAMING},
+     * con i suoi pezzi in frame {@link FrameType#DENDROGRAM_CHUNK} seguiti da {@link FrameType#DENDROGRAM_END}.
+     */
+    FETCH_LEVELS(0x0E),
+
+    /**
+     * Richiesta di un cluster del dendrogramma corrente: livello ({@code int}) e indice del cluster nel livello
+     * ({@code int}). Il server risponde con {@link FrameType#CLUSTER}.
+     */
+    FETCH_CLUSTER(0x0F),
+
+    /**
+     * Richiesta di una pagina degli esempi di un cluster del dendrogramma corrente: livello ({@code int}), indice del
+     * cluster nel livello ({@code int}), posizione del primo esempio ({@code int}) e numero massimo di esempi
+     * ({@code int}). Il server risponde con {@link FrameType#CLUSTER_MEMBERS}.
+     */
+    FETCH_CLUSTER_MEMBERS(0x10),
+
+    /**
+     * Richiesta dei riassunti di alcuni livelli del dendrogramma corrente: primo livello ({@code int}) e livello
+     * successivo all'ultimo ({@code int}). Il server risponde con {@link FrameType#LEVEL_SUMMARIES}.
+     */
+    FETCH_LEVEL_SUMMARIES(0x11),
+
+    /**
+     * Risposta che indica il successo della richiesta: payload vuoto.
+     */
+    OK(0x40),
+
+    /**
+     * Risposta che indica il fallimento della richiesta: messaggio d'errore (stringa).
+     */
+    ERROR(0x41),
+
+    /**
+     * Risposta che contiene la rappresentazione testuale di un dendrogramma (stringa).
+     */
+    DENDROGRAM(0x42),
+
+    /**
+     * Risposta che contiene un pezzo della rappresentazione testuale di un dendrogramma (stringa), usata al posto di
+     * {@link FrameType#DENDROGRAM} se è stata negoziata {@link Features#STREAMING}.
+     */
+    DENDROGRAM_CHUNK(0x43),
+
+    /**
+     * Risposta che indica la fine dei pezzi di un dendrogramma: payload vuoto.
+     */
+    DENDROGRAM_END(0x44),
+
+    /**
+     * Risposta che indica l'accettazione di un job di mining: identificativo del job ({@code long}).
+     */
+    JOB_SUBMITTED(0x45),
+
+    /**
+     * Risposta che contiene lo stato di avanzamento di un job: identificativo del job ({@code long}), codice dello stato
+     * ({@code int}: {@code 0} in attesa, {@code 1} in esecuzione, {@code 2} completato, {@code 3} fallito, {@code 4}
+     * annullato), livelli completati ({@code int}),
+     * livelli totali ({@code int}), millisecondi trascorsi ({@code long}), millisecondi stimati al completamento
+     * ({@code long}, {@code -1} se non stimabili) e messaggio d'errore (stringa, vuota se non c'è errore).
+     */
+    JOB_PROGRESS(0x46),
+
+    /**
+     * Risposta che indica l'accettazione di un salvataggio, usata al posto di {@link FrameType#OK} se è stata
+     * negoziata {@link Features#ASYNC_SAVE}: identificativo del salvataggio ({@code long}) e nome con cui il
+     * dendrogramma salvato può essere caricato (stringa), diverso da quello richiesto per i salvataggi nell'archivio
+     * del server.
+     */
+    SAVE_SUBMITTED(0x47),
+
+    /**
+     * Risposta che indica il termine di un salvataggio: identificativo del salvataggio ({@code long}) e messaggio
+     * d'errore (stringa, vuota se il salvataggio è riuscito).
+     */
+    SAVE_COMPLETED(0x48),
+
+    /**
+     * Risposta a {@link FrameType#FETCH_CLUSTER}: numero di esempi del cluster ({@code int}) e rappresentazione testuale
+     * del suo centroide (stringa).
+     */
+    CLUSTER(0x49),
+
+    /**
+     * Risposta a {@link FrameType#FETCH_CLUSTER_MEMBERS}: numero di esempi del cluster ({@code int}), posizione del
+     * primo esempio della pagina ({@code int}) ed esempi della pagina (stringa, un esempio per riga con il suo indice).
+     */
+    CLUSTER_MEMBERS(0x4A),
+
+    /**
+     * Risposta a {@link FrameType#FETCH_LEVEL_SUMMARIES}: numero di livelli ({@code int}) e, per ognuno, il livello, il
+     * numero di cluster, la dimensione del cluster più piccolo e di quello più grande, il numero di cluster con un
+     * solo esempio ({@code int}) e l'altezza dell'unione che porta al livello ({@code double}).
+     */
+    LEVEL_SUMMARIES(0x4B),
+
+    /**
+     * Frame di risposta compresso, usato se è stata negoziata {@link Features#DEFLATE}: il payload contiene il frame
+     * originale compresso (vedere {@link FrameCompression}).
+     */
+    COMPRESSED(0x50);
+
+
+    /**
+     * Il codice del tipo, ovvero il byte che lo identifica sulla connessione.
+     */
+    private final byte code;
+
+    /**
+     * Costruisce il tipo con codice {@code code}, specificato come parametro.
+     *
+     * @param code il codice del tipo
+     */
+    FrameType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * Restituisce il codice del tipo.
+     *
+     * @return il codice del tipo
+     */
+    public byte getCode() {
+        return this.code;
+    }
+
+    /**
+     * Restituisce il tipo con codice {@code code}, specificato come parametro.
+     *
+     * @param code il codice del tipo
+     * @return il tipo con codice {@code code}, {@code null} se non esiste
+     */
+    public static FrameType fromCode(byte code) {
+        for (var type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,961 @@
+package com.davidecarella.hclus.server;
+
+import com.davidecarella.hclus.server.cache.DataCache;
+import com.davidecarella.hclus.server.clustering.ChunkSink;
+import com.davidecarella.hclus.server.clustering.Cluster;
+import com.davidecarella.hclus.server.clustering.DendrogramCut;
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.clustering.LevelSummary;
+import com.davidecarella.hclus.server.data.CsvDataSource;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.data.DataSnapshot;
+import com.davidecarella.hclus.server.data.DataSource;
+import com.davidecarella.hclus.server.data.FileDataSource;
+import com.davidecarella.hclus.server.data.SnapshotDataSource;
+import com.davidecarella.hclus.server.database.DatabaseDataSource;
+import com.davidecarella.hclus.server.distance.AverageLinkDistance;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.distance.SingleLinkDistance;
+import com.davidecarella.hclus.server.exceptions.IncompatibleDataException;
+import com.davidecarella.hclus.server.exceptions.InvalidCutException;
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+import com.davidecarella.hclus.server.jobs.JobManager;
+import com.davidecarella.hclus.server.jobs.JobState;
+import com.davidecarella.hclus.server.jobs.MiningJob;
+import com.davidecarella.hclus.server.store.DendrogramStore;
+import com.davidecarella.hclus.server.store.DendrogramWriter;
+import com.davidecarella.hclus.server.store.SaveTask;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Classe che contiene lo stato della sessione di un client (i dati caricati e l'ultimo dendrogramma ottenuto) e
+ * implementa le operazioni che il client può richiedere, indipendentemente da come le richieste vengono ricevute.
+ *
+ * <p>I dati vengono ottenuti dalla {@link DataCache cache} del server, perciò le sessioni che caricano la stessa
+ * tabella (o lo stesso file, finché non viene modificato) condividono la stessa istanza di {@link Data}.
+ *
+ * <p>I dendrogrammi possono essere salvati, oltre che in un file scelto dal client, nell'{@link DendrogramStore archivio}
+ * del server indicando come nome del file {@value DendrogramStore#PREFIX}: il dendrogramma può poi essere caricato
+ * indicando il nome restituito dal salvataggio, ovvero la sua chiave preceduta da {@value DendrogramStore#PREFIX}. Solo
+ * i dendrogrammi di cui la sessione conosce l'origine (creati dal mining sui dati caricati o caricati dall'archivio)
+ * possono essere salvati nell'archivio.
+ *
+ * <p>Gli errori che devono essere comunicati al client vengono segnalati con una {@link RequestException}, il cui
+ * messaggio è quello da inviare al client.
+ *
+ * @see ServerOneClient
+ * @see com.davidecarella.hclus.server.nio.NioServer
+ */
+public class ClientSession {
+    /**
+     * Il prefisso che indica che il nome della tabella inviato dal client è in realtà il percorso di un file locale.
+     */
+    private static final String FILE_PREFIX = "file:";
+
+    /**
+     * Il numero massimo di livelli che si possono richiedere con {@link ClientSession#fetchLevels(int, int, int, int)}.
+     */
+    private static final int MAX_LEVELS_PER_PAGE = 100;
+
+    /**
+     * Il numero massimo di cluster per livello che si possono richiedere con
+     * {@link ClientSession#fetchLevels(int, int, int, int)}.
+     */
+    private static final int MAX_CLUSTERS_PER_PAGE = 1000;
+
+    /**
+     * Il numero massimo di esempi che si possono richiedere con
+     * {@link ClientSession#fetchClusterMembers(Cluster, int, int)}.
+     */
+    private static final int MAX_MEMBERS_PER_PAGE = 1000;
+
+    /**
+     * Il numero massimo di livelli di cui si possono richiedere i riassunti con
+     * {@link ClientSession#fetchLevelSummaries(int, int)}.
+     */
+    private static final int MAX_SUMMARIES_PER_PAGE = 1000;
+
+    /**
+     * Il nome della sessione, usato nei messaggi di log.
+     */
+    private final String name;
+
+    /**
+     * Il client (tenant) a cui viene addebitato il tempo di calcolo dei job della sessione.
+     */
+    private final String tenant;
+
+    /**
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Il gestore dei job di mining del server.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * La cache dei dati del server.
+     */
+    private final DataCache dataCache;
+
+    /**
+     * Il gestore dei salvataggi dei dendrogrammi del server.
+     */
+    private final DendrogramWriter dendrogramWriter;
+
+    /**
+     * L'archivio dei dendrogrammi del server, {@code null} se non viene usato.
+     */
+    private final DendrogramStore dendrogramStore;
+
+    /**
+     * Il riferimento ai dati caricati nella cache, {@code null} se non sono ancora stati caricati.
+     */
+    private DataCache.Lease dataLease = null;
+
+    /**
+     * I dati eventualmente caricati dal client.
+     */
+    private Data data = null;
+
+    /**
+     * L'ultimo dendrogramma ottenuto (con il mining o da un file), {@code null} se non ce n'è ancora uno.
+     */
+    private HierarchicalClusterMiner miner = null;
+
+    /**
+     * L'impronta dei dati da cui è stato creato il dendrogramma corrente, {@code null} se non è nota.
+     */
+    private String minerFingerprint = null;
+
+    /**
+     * Il nome della distanza con cui è stato creato il dendrogramma corrente, {@code null} se non è noto.
+     */
+    private String minerLinkage = null;
+
+    /**
+     * L'ultimo cluster di cui sono stati richiesti gli esempi, {@code null} se non ce n'è nessuno.
+     */
+    private Cluster browsedCluster = null;
+
+    /**
+     * Gli esempi di {@link ClientSession#browsedCluster} in ordine di indice, così che le pagine successive non debbano
+     * scorrere di nuovo il cluster.
+     */
+    private int[] browsedMembers = null;
+
+    /**
+     * Costruisce la sessione con nome {@code name}, client {@code tenant} e risorse del server {@code context}, tutti
+     * specificati come parametro.
+     *
+     * @param name il nome della sessione, usato nei messaggi di log
+     * @param tenant il client a cui viene addebitato il tempo di calcolo dei job, di solito il suo indirizzo
+     * @param context le risorse del server
+     */
+    public ClientSession(String name, String tenant, ServerContext context) {
+        this.name = name;
+        this.tenant = tenant;
+        this.configuration = context.getConfiguration();
+        this.jobManager = context.getJobManager();
+        this.dataCache = context.getDataCache();
+        this.dendrogramWriter = context.getDendrogramWriter();
+        this.dendrogramStore = context.getDendrogramStore();
+    }
+
+    /**
+     * Restituisce il nome della sessione.
+     *
+     * @return il nome della sessione
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Restituisce l'archivio dei dendrogrammi del server.
+     *
+     * @return l'archivio dei dendrogrammi
+     * @throws RequestException se il server non usa l'archivio
+     */
+    private DendrogramStore requireStore() throws RequestException {
+        if (this.dendrogramStore == null) {
+            throw new RequestException("Il server non ha un archivio dei dendrogrammi!");
+        }
+
+        return this.dendrogramStore;
+    }
+
+    /**
+     * Restituisce i dati caricati.
+     *
+     * @return i dati caricati, {@code null} se non sono ancora stati caricati
+     */
+    public Data getData() {
+        return this.data;
+    }
+
+    /**
+     * Restituisce l'ultimo dendrogramma ottenuto.
+     *
+     * @return l'ultimo dendrogramma ottenuto, {@code null} se non ce n'è ancora uno
+     */
+    public HierarchicalClusterMiner getMiner() {
+        return this.miner;
+    }
+
+    /**
+     * Carica i dati indicati da {@code tableName}, specificato come parametro.
+     *
+     * @param tableName il nome della tabella o il percorso del file preceduto da {@value FILE_PREFIX}
+     * @throws RequestException se il nome non è valido o si verifica un errore durante il caricamento
+     * @see ClientSession#createDataSource(String)
+     */
+    public void loadData(String tableName) throws RequestException {
+        if (tableName == null) {
+            throw new RequestException("Nome della tabella non valido!");
+        }
+
+        try {
+            var source = this.createDataSource(tableName);
+            var key = this.dataKey(tableName, source);
+            var lease = key == null ? null : this.dataCache.acquire(key, source);
+            var data = lease == null ? source.load() : lease.getData();
+            if (this.dataLease != null) {
+                this.dataLease.close();
+            }
+
+            this.dataLease = lease;
+            this.data = data;
+            this.setMiner(null, null, null);
+        } catch (NoDataException exception) {
+            throw new RequestException(walkThrowable(exception));
+        }
+    }
+
+    /**
+     * <p>Crea un dendrogramma di profondità {@code depth} dai dati caricati usando la distanza indicata da
+     * {@code distanceType}, entrambi specificati come parametro. Il mining viene eseguito come job di mining, di cui si
+     * attende il termine, e il dendrogramma ottenuto diventa quello corrente della sessione.
+     *
+     * <p>I tipi di distanza sono:
+     * <ul>
+     *     <li>{@code 1}: single-link</li>
+     *     <li>{@code 2}: average-link</li>
+     * </ul>
+     *
+     * @param depth la profondità del dendrogramma
+     * @param distanceType il tipo di distanza
+     * @return il miner che contiene il dendrogramma creato
+     * @throws RequestException se i dati non sono stati caricati, i parametri non sono validi o il mining fallisce
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa del mining, nel qual caso il job
+     *                              viene annullato
+     * @see ClientSession#submitMining(int, int)
+     */
+    public HierarchicalClusterMiner mine(int depth, int distanceType) throws RequestException, InterruptedException {
+        var job = this.submitMining(depth, distanceType);
+
+        try {
+            job.awaitCompletion();
+        } catch (InterruptedException exception) {
+            this.jobManager.cancel(job);
+            throw exception;
+        } finally {
+            this.jobManager.forget(job);
+        }
+
+        return this.fetchJobResult(job);
+    }
+
+    /**
+     * Invia un job di mining che crea un dendrogramma di profondità {@code depth} dai dati caricati usando la distanza
+     * indicata da {@code distanceType}, entrambi specificati come parametro, senza attenderne il termine.
+     *
+     * @param depth la profondità del dendrogramma
+     * @param distanceType il tipo di distanza (vedere {@link ClientSession#mine(int, int)})
+     * @return il job inviato
+     * @throws RequestException se i dati non sono stati caricati, i parametri non sono validi, il mining richiede più
+     *                          memoria di quella a disposizione o ci sono troppi job in attesa
+     */
+    public MiningJob submitMining(int depth, int distanceType) throws RequestException {
+        var data = this.requireData();
+
+        if (depth <= 0) {
+            throw new RequestException("Profondità del dendrogramma non valida!");
+        }
+        if (depth > data.getNumberOfExamples()) {
+            throw new RequestException("La profondità del dendrogramma deve essere al massimo pari al numero di esempi nel dataset");
+        }
+
+        var job = this.jobManager.submit(this, this.tenant, data, depth, createDistance(distanceType));
+        this.log(String.format("Job %d inviato (profondità %d, %d livelli già calcolati, %s, %s)", job.getId(), depth, job.getCachedLevels(), job.getCost(), job.isShort() ? "breve" : "lungo"));
+        return job;
+    }
+
+    /**
+     * Invia un job di mining che estende il dendrogramma corrente fino alla profondità {@code depth} usando la distanza
+     * indicata da {@code distanceType}, entrambi specificati come parametro, senza attenderne il termine. Il mining
+     * riprende dall'ultimo livello del dendrogramma corrente, che deve essere stato creato dai dati caricati con la
+     * stessa distanza (ad esempio con una richiesta precedente o caricandolo da un file). Se la distanza con cui è stato
+     * creato il dendrogramma corrente è nota, la richiesta viene rifiutata quando non coincide con quella indicata.
+     *
+     * @param depth la profondità del dendrogramma esteso
+     * @param distanceType il tipo di distanza (vedere {@link ClientSession#mine(int, int)})
+     * @return il job inviato
+     * @throws RequestException se i dati non sono stati caricati, non c'è un dendrogramma corrente, i parametri non
+     *                          sono validi, la distanza è diversa da quella del dendrogramma corrente, il mining
+     *                          richiede più memoria di quella a disposizione o ci sono troppi job in attesa
+     */
+    public MiningJob submitExtension(int depth, int distanceType) throws RequestException {
+        var data = this.requireData();
+        var miner = this.requireMiner();
+
+        if (depth <= miner.getDendrogramDepth()) {
+            throw new RequestException("La nuova profondità deve essere maggiore di quella del dendrogramma corrente!");
+        }
+        if (depth > data.getNumberOfExamples()) {
+            throw new RequestException("La profondità del dendrogramma deve essere al massimo pari al numero di esempi nel dataset");
+        }
+
+        var distance = createDistance(distanceType);
+        if (this.minerLinkage != null && !this.minerLinkage.equals(DendrogramStore.linkage(distance))) {
+            throw new RequestException("Il dendrogramma corrente è stato creato con una distanza diversa da quella richiesta!");
+        }
+
+        var job = this.jobManager.submit(this, this.tenant, data, depth, distance, miner);
+        this.log(String.format("Job %d inviato (estensione alla profondità %d, %d livelli già calcolati, %s, %s)", job.getId(), depth, job.getCachedLevels(), job.getCost(), job.isShort() ? "breve" : "lungo"));
+        return job;
+    }
+
+    /**
+     * Restituisce il job della sessione con identificativo {@code id}, specificato come parametro.
+     *
+     * @param id l'identificativo del job
+     * @return il job con identificativo {@code id}
+     * @throws RequestException se la sessione non ha un job con identificativo {@code id}
+     */
+    public MiningJob getJob(long id) throws RequestException {
+        return this.jobManager.getJob(this, id);
+    }
+
+    /**
+     * Annulla il job della sessione con identificativo {@code id}, specificato come parametro.
+     *
+     * @param id l'identificativo del job
+     * @throws RequestException se la sessione non ha un job con identificativo {@code id}
+     */
+    public void cancelJob(long id) throws RequestException {
+        this.jobManager.cancel(this.getJob(id));
+        this.log(String.format("Job %d annullato", id));
+    }
+
+    /**
+     * Rende il dendrogramma creato dal job {@code job}, specificato come parametro, quello corrente della sessione.
+     *
+     * @param job il job di cui si vuole il risultato
+     * @return il miner che contiene il dendrogramma creato
+     * @throws RequestException se il job non è terminato con successo o i dati caricati sono cambiati dopo il suo invio
+     */
+    public HierarchicalClusterMiner fetchJobResult(MiningJob job) throws RequestException {
+        var progress = job.getProgress();
+        if (progress.getState() == JobState.FAILED || progress.getState() == JobState.CANCELLED) {
+            throw new RequestException(progress.getMessage());
+        }
+        if (progress.getState() != JobState.COMPLETED) {
+            throw new RequestException(String.format("Il job %d non è ancora terminato!", job.getId()));
+        }
+        if (job.getData() != this.data) {
+            throw new RequestException("I dati sono stati ricaricati dopo l'invio del job!");
+        }
+
+        if (job.isCacheable()) {
+            this.setMiner(job.getResult(), job.getData().getFingerprint(), DendrogramStore.linkage(job.getDistance()));
+        } else {
+            this.setMiner(job.getResult(), null, null);
+        }
+
+        return this.miner;
+    }
+
+    /**
+     * Chiude la sessione, annullando i job di mining che non sono ancora terminati e rilasciando i dati caricati. I
+     * salvataggi già richiesti vengono comunque completati.
+     */
+    public void close() {
+        this.jobManager.release(this);
+        this.dendrogramWriter.release(this);
+
+        if (this.dataLease != null) {
+            this.dataLease.close();
+        }
+    }
+
+    /**
+     * Richiede il salvataggio del dendrogramma corrente nel file con percorso {@code fileName}, specificato come
+     * parametro, senza attenderne il termine: il salvataggio viene eseguito in background dal
+     * {@link DendrogramWriter} del server e il suo esito viene registrato nel log della sessione. Se il percorso inizia
+     * con {@value DendrogramStore#PREFIX} il dendrogramma viene invece salvato nell'archivio (e il resto del percorso
+     * viene ignorato).
+     *
+     * @param fileName il percorso del file dove salvare il dendrogramma o {@value DendrogramStore#PREFIX}
+     * @return il salvataggio richiesto
+     * @throws RequestException se non c'è un dendrogramma corrente, il percorso non è valido, ci sono troppi
+     *                          salvataggi in attesa oppure il dendrogramma non può essere salvato nell'archivio
+     */
+    public SaveTask saveDendrogram(String fileName) throws RequestException {
+        if (this.miner == null) {
+            throw new RequestException("Non è stato ancora creato alcun dendrogramma!");
+        }
+        if (fileName == null) {
+            throw new RequestException("Percorso del file non valido!");
+        }
+
+        if (fileName.startsWith(DendrogramStore.PREFIX)) {
+            var store = this.requireStore();
+            if (this.minerFingerprint == null) {
+                throw new RequestException("Nell'archivio si possono salvare solo i dendrogrammi creati dai dati caricati!");
+            }
+
+            var linkage = this.minerLinkage == null ? DendrogramStore.UNKNOWN_LINKAGE : this.minerLinkage;
+            return store.save(this, this.miner, this.minerFingerprint, linkage, this::log);
+        }
+
+        var task = this.dendrogramWriter.submit(this, this.miner, fileName, this::log);
+        this.log(String.format("Salvataggio %d in %s richiesto", task.getId(), task.getLocation()));
+        return task;
+    }
+
+    /**
+     * Restituisce il salvataggio della sessione con identificativo {@code id}, specificato come parametro.
+     *
+     * @param id l'identificativo del salvataggio
+     * @return il salvataggio con identificativo {@code id}
+     * @throws RequestException se la sessione non ha un salvataggio con identificativo {@code id}
+     */
+    public SaveTask getSave(long id) throws RequestException {
+        return this.dendrogramWriter.getTask(this, id);
+    }
+
+    /**
+     * Dimentica il salvataggio {@code task}, specificato come parametro, di cui è già stato comunicato l'esito.
+     *
+     * @param task il salvataggio da dimenticare
+     */
+    public void forgetSave(SaveTask task) {
+        this.dendrogramWriter.forget(task);
+    }
+
+    /**
+     * Carica il dendrogramma contenuto nel file con percorso {@code fileName}, specificato come parametro, che diventa
+     * il dendrogramma corrente della sessione. Se il percorso inizia con {@value DendrogramStore#PREFIX} il
+     * dendrogramma viene invece cercato nell'archivio con la chiave che segue il prefisso. Se il file contiene la firma
+     * dei dati da cui è stato creato, verificata con quelli caricati, il dendrogramma può poi essere salvato
+     * nell'archivio, dove però non viene riusato per il mining perché la distanza non è nota.
+     *
+     * @param fileName il percorso del file da cui caricare il dendrogramma o la chiave preceduta da
+     *                 {@value DendrogramStore#PREFIX}
+     * @return il miner che contiene il dendrogramma caricato
+     * @throws RequestException se i dati non sono stati caricati, il file non esiste o non è valido, il dendrogramma
+     *                          non è nell'archivio oppure il dendrogramma non è compatibile con i dati caricati
+     */
+    public HierarchicalClusterMiner loadDendrogram(String fileName) throws RequestException {
+        var data = this.requireData();
+
+        if (fileName == null) {
+            throw new RequestException("Nome del file non valido!");
+        }
+        if (fileName.startsWith(DendrogramStore.PREFIX)) {
+            return this.loadStoredDendrogram(data, fileName.substring(DendrogramStore.PREFIX.length()));
+        }
+
+        HierarchicalClusterMiner miner;
+        try {
+            miner = HierarchicalClusterMiner.load(fileName);
+        } catch (FileNotFoundException exception) {
+            throw new RequestException("Il file inserito non esiste!");
+        } catch (IOException | ClassNotFoundException exception) {
+            throw new RequestException(String.format("Errore durante il caricamento del dendrogramma: %s!", exception.getMessage()));
+        }
+
+        try {
+            miner.checkCompatibility(data);
+        } catch (IncompatibleDataException exception) {
+            throw new RequestException(String.format("Il dendrogramma non è compatibile con i dati caricati: %s!", exception.getMessage()));
+        }
+
+        // Il formato binario non registra la distanza: è nota solo l'impronta dei dati, se il file la contiene ed è
+        // appena stata verificata
+        this.setMiner(miner, miner.getDataFingerprint(), null);
+        return miner;
+    }
+
+    /**
+     * Carica il dendrogramma dell'archivio con chiave {@code key}, che deve essere stato creato dai dati {@code data}
+     * (entrambi specificati come parametro), e lo rende il dendrogramma corrente della sessione.
+     *
+     * @param data i dati caricati
+     * @param key la chiave del dendrogramma o un suo prefisso
+     * @return il miner che contiene il dendrogramma caricato
+     * @throws RequestException se l'archivio non viene usato, il dendrogramma non è nell'archivio o non può essere
+     *                          aperto oppure non è stato creato dai dati caricati
+     */
+    private HierarchicalClusterMiner loadStoredDendrogram(Data data, String key) throws RequestException {
+        var store = this.requireStore();
+        var entry = store.find(key);
+        if (entry == null) {
+            throw new RequestException(String.format("Il dendrogramma %s%s non è presente nell'archivio!", DendrogramStore.PREFIX, key));
+        }
+        if (!entry.getFingerprint().equals(data.getFingerprint())) {
+            throw new RequestException("Il dendrogramma non è stato creato dai dati caricati!");
+        }
+
+        HierarchicalClusterMiner miner;
+        try {
+            miner = store.open(entry);
+        } catch (IOException exception) {
+            throw new RequestException(String.format("Errore durante il caricamento del dendrogramma: %s!", exception.getMessage()));
+        }
+
+        var linkage = entry.getLinkage().equals(DendrogramStore.UNKNOWN_LINKAGE) ? null : entry.getLinkage();
+        this.setMiner(miner, entry.getFingerprint(), linkage);
+        return miner;
+    }
+
+    /**
+     * Rende {@code miner}, creato dai dati con impronta {@code fingerprint} con la distanza di nome {@code linkage}
+     * (tutti specificati come parametro), il dendrogramma corrente della sessione.
+     *
+     * @param miner il miner con il dendrogramma, {@code null} se non ce n'è nessuno
+     * @param fingerprint l'impronta dei dati da cui è stato creato, {@code null} se non è nota
+     * @param linkage il nome della distanza con cui è stato creato, {@code null} se non è noto
+     */
+    private void setMiner(HierarchicalClusterMiner miner, String fingerprint, String linkage) {
+        this.miner = miner;
+        this.minerFingerprint = fingerprint;
+        this.minerLinkage = linkage;
+        this.browsedCluster = null;
+        this.browsedMembers = null;
+    }
+
+    /**
+     * Restituisce la rappresentazione testuale del dendrogramma corrente usando i dati caricati.
+     *
+     * @return la rappresentazione testuale del dendrogramma corrente
+     * @throws RequestException se non c'è un dendrogramma corrente o il file da cui è stato caricato è danneggiato
+     */
+    public String renderDendrogram() throws RequestException {
+        try {
+            return this.requireMiner().toString(this.requireData());
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Genera la rappresentazione testuale del dendrogramma corrente usando i dati caricati e la consegna a {@code sink}
+     * in pezzi di circa {@code chunkSize} caratteri, entrambi specificati come parametro, man mano che viene generata.
+     *
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws RequestException se non c'è un dendrogramma corrente o il file da cui è stato caricato è danneggiato
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     * @see HierarchicalClusterMiner#render(Data, int, ChunkSink)
+     */
+    public void renderDendrogram(int chunkSize, ChunkSink sink) throws RequestException, IOException {
+        try {
+            this.requireMiner().render(this.requireData(), chunkSize, sink);
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Taglia il dendrogramma corrente secondo il criterio {@code criterion} con valore {@code value}, entrambi
+     * specificati come parametro, e consegna a {@code sink} la rappresentazione testuale del livello scelto, usando i
+     * dati caricati, in pezzi di circa {@code chunkSize} caratteri man mano che viene generata. I criteri sono
+     * {@code 1} (distanza massima fra i cluster uniti), {@code 2} (numero di cluster) e {@code 3} (numero massimo di
+     * esempi in un cluster); per gli ultimi due il valore deve essere intero.
+     *
+     * @param criterion il criterio del taglio
+     * @param value il valore del criterio
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws RequestException se non c'è un dendrogramma corrente, se il criterio o il valore non sono validi o se il
+     *                          file da cui è stato caricato il dendrogramma è danneggiato
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     * @see HierarchicalClusterMiner#cutAtHeight(double)
+     */
+    public void cutDendrogram(int criterion, double value, int chunkSize, ChunkSink sink) throws RequestException, IOException {
+        var miner = this.requireMiner();
+        var data = this.requireData();
+        if (criterion != 1 && value != (int) value) {
+            throw new RequestException("Il numero di cluster e la dimensione massima devono essere interi!");
+        }
+
+        try {
+            DendrogramCut cut = switch (criterion) {
+                case 1 -> miner.cutAtHeight(value);
+                case 2 -> miner.cutIntoClusters((int) value);
+                case 3 -> miner.cutByMaxClusterSize((int) value);
+                default -> throw new RequestException("Criterio di taglio non valido!");
+            };
+
+            this.log(String.format("Dendrogramma tagliato al livello %d (%d cluster)", cut.getLevel(), cut.getNumberOfClusters()));
+            cut.render(data, chunkSize, sink);
+        } catch (InvalidCutException exception) {
+            throw new RequestException(String.format("Impossibile tagliare il dendrogramma: %s!", exception.getMessage()));
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Consegna a {@code sink} la rappresentazione testuale dei livelli del dendrogramma corrente compresi fra
+     * {@code fromLevel} (incluso) e {@code toLevel} (escluso) e, di ognuno, dei soli cluster con indice compreso fra
+     * {@code fromCluster} (incluso) e {@code toCluster} (escluso), usando i dati caricati, in pezzi di circa
+     * {@code chunkSize} caratteri man mano che viene generata (tutti specificati come parametro). Si possono richiedere
+     * al più {@value MAX_LEVELS_PER_PAGE} livelli e {@value MAX_CLUSTERS_PER_PAGE} cluster per livello alla volta.
+     *
+     * @param fromLevel il primo livello
+     * @param toLevel il livello successivo all'ultimo
+     * @param fromCluster l'indice del primo cluster di ogni livello
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster di ogni livello
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws RequestException se non c'è un dendrogramma corrente, se gli intervalli non sono validi o sono troppo
+     *                          ampi o se il file da cui è stato caricato il dendrogramma è danneggiato
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     * @see HierarchicalClusterMiner#render(Data, int, int, int, int, int, ChunkSink)
+     */
+    public void fetchLevels(int fromLevel, int toLevel, int fromCluster, int toCluster, int chunkSize, ChunkSink sink) throws RequestException, IOException {
+        var miner = this.requireMiner();
+        var data = this.requireData();
+        checkLevelRange(miner, fromLevel, toLevel, MAX_LEVELS_PER_PAGE);
+        if (fromCluster < 0 || toCluster <= fromCluster) {
+            throw new RequestException("Intervallo dei cluster non valido!");
+        }
+        if (toCluster - fromCluster > MAX_CLUSTERS_PER_PAGE) {
+            throw new RequestException(String.format("Si possono richiedere al più %d cluster per livello alla volta!", MAX_CLUSTERS_PER_PAGE));
+        }
+
+        try {
+            miner.render(data, fromLevel, toLevel, fromCluster, toCluster, chunkSize, sink);
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Restituisce il cluster con indice {@code index} del livello {@code level} del dendrogramma corrente, entrambi
+     * specificati come parametro.
+     *
+     * @param level il livello del dendrogramma
+     * @param index l'indice del cluster nel livello
+     * @return il cluster richiesto
+     * @throws RequestException se non c'è un dendrogramma corrente, se il livello o il cluster non esistono o se il
+     *                          file da cui è stato caricato il dendrogramma è danneggiato
+     */
+    public Cluster fetchCluster(int level, int index) throws RequestException {
+        var miner = this.requireMiner();
+        if (level < 0 || level >= miner.getDendrogramDepth()) {
+            throw new RequestException(String.format("Livello non valido: il dendrogramma ha %d livelli!", miner.getDendrogramDepth()));
+        }
+
+        try {
+            return miner.getCluster(level, index);
+        } catch (IndexOutOfBoundsException exception) {
+            throw new RequestException(String.format("Il livello %d non contiene il cluster %d!", level, index));
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Restituisce la rappresentazione testuale del centroide del cluster {@code cluster}, specificato come parametro,
+     * usando i dati caricati.
+     *
+     * @param cluster un cluster del dendrogramma corrente
+     * @return la rappresentazione testuale del centroide
+     * @throws RequestException se i dati non sono ancora stati caricati
+     * @see Cluster#centroid(Data)
+     */
+    public String describeCentroid(Cluster cluster) throws RequestException {
+        return cluster.centroid(this.requireData()).toString();
+    }
+
+    /**
+     * Restituisce una pagina degli esempi del cluster {@code cluster}: al più {@code limit} esempi, in ordine di indice,
+     * a partire da quello in posizione {@code offset} (tutti specificati come parametro). Ogni esempio occupa una riga
+     * con il suo indice e i suoi valori, come in {@link Data#toString()}. Gli esempi dell'ultimo cluster richiesto
+     * vengono mantenuti dalla sessione, perciò le pagine successive dello stesso cluster richiedono un tempo
+     * proporzionale solo alla loro dimensione.
+     *
+     * @param cluster un cluster del dendrogramma corrente
+     * @param offset la posizione del primo esempio della pagina
+     * @param limit il numero massimo di esempi della pagina, al più {@value MAX_MEMBERS_PER_PAGE}
+     * @return la rappresentazione testuale degli esempi della pagina
+     * @throws RequestException se i dati non sono ancora stati caricati o se la posizione o il numero di esempi non
+     *                          sono validi
+     */
+    public String fetchClusterMembers(Cluster cluster, int offset, int limit) throws RequestException {
+        var data = this.requireData();
+        if (offset < 0 || offset > cluster.getSize()) {
+            throw new RequestException(String.format("Posizione non valida: il cluster ha %d esempi!", cluster.getSize()));
+        }
+        if (limit <= 0 || limit > MAX_MEMBERS_PER_PAGE) {
+            throw new RequestException(String.format("Si possono richiedere da 1 a %d esempi alla volta!", MAX_MEMBERS_PER_PAGE));
+        }
+
+        if (this.browsedCluster != cluster) {
+            var members = new int[cluster.getSize()];
+            int position = 0;
+            for (int example : cluster) {
+                members[position++] = example;
+            }
+
+            this.browsedCluster = cluster;
+            this.browsedMembers = members;
+        }
+
+        var stringBuilder = new StringBuilder();
+        for (int i = offset; i < Math.min(cluster.getSize(), offset + limit); ++i) {
+            stringBuilder.append(this.browsedMembers[i]);
+            stringBuilder.append(':');
+            data.appendExample(this.browsedMembers[i], stringBuilder);
+            stringBuilder.append('\n');
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Restituisce i riassunti dei livelli del dendrogramma corrente compresi fra {@code fromLevel} (incluso) e
+     * {@code toLevel} (escluso), entrambi specificati come parametro. Si possono richiedere al più
+     * {@value MAX_SUMMARIES_PER_PAGE} livelli alla volta.
+     *
+     * @param fromLevel il primo livello
+     * @param toLevel il livello successivo all'ultimo
+     * @return i riassunti dei livelli, in ordine di livello
+     * @throws RequestException se non c'è un dendrogramma corrente, se l'intervallo non è valido o è troppo ampio o se
+     *                          il file da cui è stato caricato il dendrogramma è danneggiato
+     * @see HierarchicalClusterMiner#summarizeLevel(int)
+     */
+    public List<LevelSummary> fetchLevelSummaries(int fromLevel, int toLevel) throws RequestException {
+        var miner = this.requireMiner();
+        checkLevelRange(miner, fromLevel, toLevel, MAX_SUMMARIES_PER_PAGE);
+
+        var summaries = new ArrayList<LevelSummary>(toLevel - fromLevel);
+        try {
+            for (int level = fromLevel; level < toLevel; ++level) {
+                summaries.add(miner.summarizeLevel(level));
+            }
+        } catch (UncheckedIOException exception) {
+            throw new RequestException(String.format("Errore durante la lettura del dendrogramma: %s!", exception.getCause().getMessage()));
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Controlla che l'intervallo di livelli compreso fra {@code fromLevel} (incluso) e {@code toLevel} (escluso) sia
+     * contenuto nel dendrogramma di {@code miner} e non contenga più di {@code maxLevels} livelli (tutti specificati
+     * come parametro).
+     *
+     * @param miner il miner con il dendrogramma
+     * @param fromLevel il primo livello
+     * @param toLevel il livello successivo all'ultimo
+     * @param maxLevels il numero massimo di livelli dell'intervallo
+     * @throws RequestException se l'intervallo non è valido o è troppo ampio
+     */
+    private static void checkLevelRange(HierarchicalClusterMiner miner, int fromLevel, int toLevel, int maxLevels) throws RequestException {
+        if (fromLevel < 0 || toLevel <= fromLevel || toLevel > miner.getDendrogramDepth()) {
+            throw new RequestException(String.format("Intervallo dei livelli non valido: il dendrogramma ha %d livelli!", miner.getDendrogramDepth()));
+        }
+        if (toLevel - fromLevel > maxLevels) {
+            throw new RequestException(String.format("Si possono richiedere al più %d livelli alla volta!", maxLevels));
+        }
+    }
+
+    /**
+     * Restituisce il dendrogramma corrente, controllando che ci sia.
+     *
+     * @return il dendrogramma corrente
+     * @throws RequestException se non c'è un dendrogramma corrente
+     */
+    private HierarchicalClusterMiner requireMiner() throws RequestException {
+        if (this.miner == null) {
+            throw new RequestException("Non è stato ancora creato alcun dendrogramma!");
+        }
+
+        return this.miner;
+    }
+
+    /**
+     * Restituisce i dati caricati, controllando che lo siano.
+     *
+     * @return i dati caricati
+     * @throws RequestException se i dati non sono ancora stati caricati
+     */
+    private Data requireData() throws RequestException {
+        if (this.data == null) {
+            throw new RequestException("I dati non sono stati ancora caricati!");
+        }
+
+        return this.data;
+    }
+
+    /**
+     * <p>Crea la sorgente da cui caricare i dati indicati da {@code tableName}, specificato come parametro.
+     *
+     * <p>Se il nome inizia con {@value FILE_PREFIX} i dati vengono letti dal file locale (del server) che segue il
+     * prefisso, che deve trovarsi nella {@link ServerConfiguration#getDataDirectory() cartella dei dati}: un file
+     * {@code .csv} viene letto con {@link CsvDataSource}, qualsiasi altro file con {@link FileDataSource}. Altrimenti il nome è quello di una tabella del database; se è stata impostata la cartella
+     * degli snapshot la tabella viene letta dal database solo la prima volta, in seguito viene aperto lo snapshot.
+     *
+     * @param tableName il nome della tabella o il percorso del file preceduto da {@value FILE_PREFIX}
+     * @return la sorgente da cui caricare i dati
+     * @throws NoDataException se il nome indica un file ma il caricamento da file non è abilitato o il file non si
+     *                         trova nella cartella dei dati
+     */
+    private DataSource createDataSource(String tableName) throws NoDataException {
+        if (tableName.startsWith(FILE_PREFIX)) {
+            var path = this.resolveDataFile(tableName.substring(FILE_PREFIX.length()));
+            var fileName = path.toString();
+            return fileName.toLowerCase().endsWith(".csv") ? new CsvDataSource(fileName) : new FileDataSource(fileName);
+        }
+
+        var source = new DatabaseDataSource(tableName);
+        var snapshotDirectory = this.configuration.getSnapshotDirectory();
+        if (snapshotDirectory == null || !tableName.matches("\\w+")) {
+            return source;
+        }
+
+        var snapshotPath = Path.of(snapshotDirectory, tableName + ".hcls");
+        return new SnapshotDataSource(source, snapshotPath, DataSnapshot.Precision.DOUBLE, this.configuration.isSnapshotVerificationEnabled());
+    }
+
+    /**
+     * Restituisce la chiave con cui i dati indicati da {@code tableName}, letti da {@code source} (entrambi specificati
+     * come parametro), vengono memorizzati nella cache. La chiave di un file contiene anche la data dell'ultima modifica
+     * e la dimensione, quella di una tabella la {@link DataSource#getVersion() versione} del suo contenuto (il checksum
+     * della tabella), così che dati modificati vengano caricati di nuovo invece di essere serviti dalla cache; i dati
+     * della versione precedente non vengono più richiesti e vengono rimossi quando serve spazio. Per le tabelle la
+     * versione viene letta dal database a ogni caricamento, anche quando i dati sono nella cache; se il database non è
+     * in grado di indicarla i dati non vengono memorizzati nella cache.
+     *
+     * @param tableName il nome della tabella o il percorso del file preceduto da {@value FILE_PREFIX}
+     * @param source la sorgente da cui vengono letti i dati
+     * @return la chiave dei dati nella cache, {@code null} se i dati non devono essere memorizzati nella cache
+     * @throws NoDataException se non è possibile leggere la versione della tabella
+     */
+    private String dataKey(String tableName, DataSource source) throws NoDataException {
+        if (!tableName.startsWith(FILE_PREFIX)) {
+            var version = source.getVersion();
+            return version == null ? null : String.format("table:%s@%s", tableName, version);
+        }
+
+        var path = this.resolveDataFile(tableName.substring(FILE_PREFIX.length()));
+        try {
+            return String.format("%s%s@%d:%d", FILE_PREFIX, path, Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+        } catch (IOException exception) {
+            // Il file non esiste o non è leggibile: l'errore verrà segnalato dal caricamento
+            return FILE_PREFIX + path;
+        }
+    }
+
+    /**
+     * Restituisce il percorso del file {@code fileName}, specificato come parametro, richiesto da un client. Un
+     * percorso relativo viene risolto a partire dalla {@link ServerConfiguration#getDataDirectory() cartella dei dati};
+     * il percorso risultante, normalizzato, deve comunque trovarsi al suo interno, così che un client non possa leggere
+     * un file qualsiasi del server.
+     *
+     * @param fileName il percorso del file richiesto
+     * @return il percorso assoluto e normalizzato del file
+     * @throws NoDataException se il caricamento da file non è abilitato o il file non si trova nella cartella dei dati
+     */
+    private Path resolveDataFile(String fileName) throws NoDataException {
+        var dataDirectory = this.configuration.getDataDirectory();
+        if (dataDirectory == null) {
+            throw new NoDataException("Il caricamento dei dati da file non è abilitato sul server!");
+        }
+
+        try {
+            var directory = Path.of(dataDirectory).toAbsolutePath().normalize();
+            var path = directory.resolve(fileName).normalize();
+            if (!path.startsWith(directory)) {
+                throw new NoDataException("Il file richiesto non si trova nella cartella dei dati del server!");
+            }
+
+            return path;
+        } catch (InvalidPathException exception) {
+            throw new NoDataException("Percorso del file non valido!");
+        }
+    }
+
+    /**
+     * Crea l'oggetto per il calcolo della distanza indicato da {@code distanceType}, specificato come parametro.
+     *
+     * @param distanceType il tipo di distanza
+     * @return l'oggetto per il calcolo della distanza
+     * @throws RequestException se il tipo di distanza non è valido
+     */
+    private static ClusterDistance createDistance(int distanceType) throws RequestException {
+        return switch (distanceType) {
+            case 1 -> new SingleLinkDistance();
+            case 2 -> new AverageLinkDistance();
+            default -> throw new RequestException("Tipo di distanza non valida!");
+        };
+    }
+
+    /**
+     * Semplice metodo per fare logging di eventuali messaggi (errore/informazione) che possono occorrere durante il
+     * ciclo di vita della sessione.
+     *
+     * @param message il messaggio che si vuole stampare
+     */
+    public void log(String message) {
+        System.out.printf("[%s] %s%n", this.name, message);
+    }
+
+    /**
+     * Dato un errore/eccezione, {@code throwable}, specificato come parametro stampa il suo messaggio e se contiene
+     * degli altri errori/eccezioni che lo causano allora provvede a stampare anche loro.
+     *
+     * @param throwable l'errore/eccezione che si vuole stampare
+     * @return il messaggio dell'eccezione e gli eventuali messaggi delle eccezioni che contiene
+     */
+    private static String walkThrowable(Throwable throwable) {
+        if (throwable.getCause() == null) {
+            return String.format("%s%n", throwable.getMessage());
+        }
+
+        var stringBuilder = new StringBuilder();
+
+        var current = throwable;
+        int level = 0;
+
+        while (current != null) {
+            int spaceCount = Math.max(level - 1, 0);
+            stringBuilder.append(" ".repeat(spaceCount));
+            if (level != 0) {
+                stringBuilder.append('\\');
+            }
+            stringBuilder.append("- ").append(current.getMessage()).append(System.lineSeparator());
+
+            current = current.getCause();
+            ++level;
+        }
+
+        return stringBuilder.toString();
+    }
+}
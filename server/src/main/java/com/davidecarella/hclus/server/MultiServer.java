@@ -1,12 +1,25 @@
 package com.davidecarella.hclus.server;
 
+import com.davidecarella.hclus.server.nio.NioServer;
+
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.concurrent.Executors;
 
 /**
- * Il server vero e proprio che si occuperà di mettersi in ascolto su una porta specificata e creare un gestore per ogni
+ * <p>Il server vero e proprio che si occuperà di mettersi in ascolto su una porta specificata e creare un gestore per ogni
  * client.
  *
+ * <p>Ogni client viene gestito da un thread virtuale, in modo che i client inattivi (che passano la maggior parte del
+ * tempo bloccati sull'I/O) costino poco. Il numero di client gestiti contemporaneamente, compresi quelli del server
+ * non bloccante, è limitato da {@link ServerConfiguration#getMaxSessions()}. Il mining, invece, viene eseguito come
+ * job da un {@link com.davidecarella.hclus.server.jobs.JobManager} con un insieme limitato di thread di piattaforma,
+ * così da non occupare più processori di quanti ne siano stati configurati.
+ *
+ * <p>Se è stata configurata {@link ServerConfiguration#getNioPort()}, viene avviato anche un {@link NioServer} che
+ * condivide con questo server le risorse del {@link ServerContext}: il gestore dei job di mining e la cache dei
+ * dati.
+ *
  * @see ServerOneClient
  */
 public class MultiServer {
@@ -15,27 +28,78 @@ public class MultiServer {
      */
     private final int port;
 
+    /**
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
     /**
      * Costruisce il server mettendosi in ascolto sulla porta specificata, {@code port}, specificata come parametro.
      *
      * @param port la porta su cui si mette in ascolto il server
      */
     public MultiServer(int port) {
+        this(port, new ServerConfiguration());
+    }
+
+    /**
+     * Costruisce il server che si metterà in ascolto sulla porta {@code port} con la configurazione
+     * {@code configuration}, entrambe specificate come parametro.
+     *
+     * @param port la porta su cui si mette in ascolto il server
+     * @param configuration la configurazione del server
+     */
+    public MultiServer(int port, ServerConfiguration configuration) {
         this.port = port;
+        this.configuration = configuration;
     }
 
     /**
      * Metodo che mette in ascolto il server per connessioni da parte di altri client. Per ogni nuova connessione
-     * creerà un'istanza di {@link ServerOneClient} per gestire le sue richieste.
+     * creerà un'istanza di {@link ServerOneClient} per gestire le sue richieste e la eseguirà su un thread virtuale.
+     * Se è stato raggiunto il numero massimo di client gestiti contemporaneamente, dopo aver accettato una nuova
+     * connessione si attende che un client, di questo server o del {@link NioServer}, si disconnetta prima di gestirla
+     * e di accettarne altre.
+     * Se configurato, prima di mettersi in ascolto avvia anche il {@link NioServer}.
      */
     public void loop() {
-        try (var serverSocket = new ServerSocket(this.port)) {
+        var context = new ServerContext(this.configuration);
+        var sessionPermits = context.getSessionPermits();
+
+        NioServer nioServer = null;
+        if (this.configuration.getNioPort() != 0) {
+            try {
+                nioServer = new NioServer(this.configuration.getNioPort(), context);
+                nioServer.start();
+            } catch (IOException exception) {
+                System.out.println("Errore durante la creazione del socket per il server non bloccante!");
+            }
+        }
+
+        try (var serverSocket = new ServerSocket(this.port);
+             var sessionExecutor = Executors.newVirtualThreadPerTaskExecutor())
+        {
             System.out.printf("In ascolto sulla porta %d%n", this.port);
 
             while (true) {
                 try {
                     var clientSocket = serverSocket.accept();
-                    new ServerOneClient(clientSocket);
+                    try {
+                        sessionPermits.acquire();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        clientSocket.close();
+                        break;
+                    }
+
+                    var client = new ServerOneClient(clientSocket, context);
+                    sessionExecutor.execute(() -> {
+                        try {
+                            client.run();
+                        } finally {
+                            sessionPermits.release();
+                        }
+                    });
                 } catch (IOException exception) {
                     System.out.println("Errore durante l'attesa per una connessione di un client!");
                     break;
@@ -43,6 +107,12 @@ public class MultiServer {
             }
         } catch (IOException e) {
             System.out.println("Errore durante la creazione del socket per il server!");
+        } finally {
+            if (nioServer != null) {
+                nioServer.close();
+            }
+
+            context.shutdown();
         }
     }
 }
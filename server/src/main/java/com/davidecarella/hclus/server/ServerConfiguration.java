@@ -0,0 +1,503 @@
+package com.davidecarella.hclus.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Classe che contiene la configurazione del server.
+ *
+ * <p>Ogni parametro viene letto da una proprietà di sistema (impostabile con {@code -D<nome>=<valore>} all'avvio della
+ * JVM) e, se assente o non valida, assume un valore di default:
+ * <ul>
+ *     <li>{@code hclus.maxSessions}: il numero massimo di client gestiti contemporaneamente (default {@code 1024}),
+ *     le connessioni successive attendono che si liberi una sessione;</li>
+ *     <li>{@code hclus.computeThreads}: il numero di thread dedicati al mining (default il numero di processori);</li>
+ *     <li>{@code hclus.maxQueuedJobs}: il numero massimo di job di mining in attesa di un thread libero (default
+ *     {@code 64}), oltre il quale le nuove richieste di mining vengono rifiutate;</li>
+ *     <li>{@code hclus.miningMemory}: la memoria in MB a disposizione dei job di mining in esecuzione contemporaneamente
+ *     (default metà della memoria massima della JVM); i job che da soli la superano vengono rifiutati, gli altri
+ *     attendono che se ne liberi abbastanza;</li>
+ *     <li>{@code hclus.dataCacheMemory}: la memoria in MB occupata al più dai dati caricati dai client e condivisi fra
+ *     le sessioni (default un quarto della memoria massima della JVM), oltre la quale vengono rimossi i dati non più
+ *     usati;</li>
+ *     <li>{@code hclus.resultCacheMemory}: la memoria in MB occupata al più dai dendrogrammi creati dal mining e
+ *     mantenuti per le richieste successive sugli stessi dati (default un ottavo della memoria massima della JVM);</li>
+ *     <li>{@code hclus.distanceCacheMemory}: la memoria in MB, fuori dallo heap, occupata al più dalle matrici delle
+ *     distanze fra gli esempi condivise dai job di mining (default un quarto della memoria massima della JVM);</li>
+ *     <li>{@code hclus.shortJobOperations}: il numero stimato di operazioni sotto il quale un job di mining è
+ *     considerato breve e ha la precedenza sugli altri (default {@code 100000000});</li>
+ *     <li>{@code hclus.tenantWeights}: i pesi dei client nella ripartizione dei thread di mining, nella forma
+ *     {@code indirizzo=peso,indirizzo=peso} (default nessuno, ovvero tutti i client hanno peso {@code 1});</li>
+ *     <li>{@code hclus.dataDirectory}: la cartella da cui i client possono caricare i dati con il prefisso
+ *     {@code file:}, che non possono indicare file al di fuori di essa (default nessuna, ovvero i client possono
+ *     caricare solo le tabelle del database);</li>
+ *     <li>{@code hclus.snapshotDirectory}: la cartella dove memorizzare gli snapshot delle tabelle caricate (default
+ *     nessuna, ovvero gli snapshot non vengono usati);</li>
+ *     <li>{@code hclus.verifySnapshots}: indica se controllare il checksum di uno snapshot ogni volta che viene aperto,
+ *     oltre che subito dopo averlo scritto (default {@code false});</li>
+ *     <li>{@code hclus.nioPort}: la porta su cui mettere in ascolto il server non bloccante che usa il protocollo
+ *     binario (default nessuna, ovvero il server non bloccante non viene avviato);</li>
+ *     <li>{@code hclus.ioThreads}: il numero di thread di I/O del server non bloccante (default {@code 2});</li>
+ *     <li>{@code hclus.nioBufferMemory}: la memoria in MB occupata al più, nel complesso, dai buffer di lettura
+ *     ingranditi per ricevere i frame più grandi dalle connessioni del server non bloccante (default un sedicesimo della
+ *     memoria massima della JVM), oltre la quale le connessioni che ne richiedono altra vengono chiuse;</li>
+ *     <li>{@code hclus.legacyProtocol}: indica se il server bloccante accetta ancora i client che usano il vecchio
+ *     protocollo basato sulla serializzazione Java (default {@code true});</li>
+ *     <li>{@code hclus.compressionThreshold}: la dimensione minima in byte delle risposte compresse per i client che
+ *     hanno negoziato la compressione (default {@code 1024});</li>
+ *     <li>{@code hclus.maxQueuedSaves}: il numero massimo di salvataggi di dendrogrammi in attesa di essere scritti
+ *     (default {@code 16}), oltre il quale le nuove richieste di salvataggio vengono rifiutate;</li>
+ *     <li>{@code hclus.syncSaves}: indica se forzare la scrittura sul disco dei dendrogrammi salvati prima di
+ *     considerare il salvataggio terminato (default {@code false});</li>
+ *     <li>{@code hclus.storeDirectory}: la cartella dell'archivio dei dendrogrammi gestito dal server (default
+ *     nessuna, ovvero l'archivio non viene usato);</li>
+ *     <li>{@code hclus.storeQuota}: lo spazio in MB occupato al più dai dendrogrammi nell'archivio (default
+ *     {@code 1024}), oltre il quale vengono rimossi quelli usati meno di recente;</li>
+ *     <li>{@code hclus.checkpointDirectory}: la cartella dove i job di mining salvano periodicamente i livelli già
+ *     creati, così da poter riprendere dopo un riavvio del server (default nessuna, ovvero i checkpoint non vengono
+ *     salvati);</li>
+ *     <li>{@code hclus.checkpointInterval}: il numero minimo di secondi fra due checkpoint dello stesso job di mining
+ *     (default {@code 60}).</li>
+ * </ul>
+ */
+public class ServerConfiguration {
+    /**
+     * Il numero massimo di client gestiti contemporaneamente.
+     */
+    private final int maxSessions;
+
+    /**
+     * Il numero di thread dedicati al mining.
+     */
+    private final int computeThreads;
+
+    /**
+     * Il numero massimo di job di mining in attesa.
+     */
+    private final int maxQueuedJobs;
+
+    /**
+     * La memoria a disposizione dei job di mining in esecuzione, in byte.
+     */
+    private final long miningMemoryBudget;
+
+    /**
+     * La memoria occupata al più dai dati condivisi fra le sessioni, in byte.
+     */
+    private final long dataCacheMemory;
+
+    /**
+     * La memoria occupata al più dai dendrogrammi mantenuti per le richieste successive, in byte.
+     */
+    private final long resultCacheMemory;
+
+    /**
+     * La memoria occupata al più dalle matrici delle distanze condivise dai job di mining, in byte.
+     */
+    private final long distanceCacheMemory;
+
+    /**
+     * Il numero stimato di operazioni sotto il quale un job di mining è considerato breve.
+     */
+    private final long shortJobOperations;
+
+    /**
+     * I pesi dei client nella ripartizione dei thread di mining, indicizzati per indirizzo.
+     */
+    private final Map<String, Integer> tenantWeights;
+
+    /**
+     * La cartella da cui i client possono caricare i dati da file, {@code null} se non possono farlo.
+     */
+    private final String dataDirectory;
+
+    /**
+     * La cartella dove vengono memorizzati gli snapshot delle tabelle caricate, {@code null} se non vengono usati.
+     */
+    private final String snapshotDirectory;
+
+    /**
+     * Indica se controllare il checksum degli snapshot a ogni apertura.
+     */
+    private final boolean verifySnapshots;
+
+    /**
+     * La porta su cui si mette in ascolto il server non bloccante, {@code 0} se non viene avviato.
+     */
+    private final int nioPort;
+
+    /**
+     * Il numero di thread di I/O del server non bloccante.
+     */
+    private final int ioThreads;
+
+    /**
+     * La memoria occupata al più dai buffer di lettura ingranditi del server non bloccante, in byte.
+     */
+    private final long nioBufferMemory;
+
+    /**
+     * Indica se il server bloccante accetta i client che usano il vecchio protocollo.
+     */
+    private final boolean legacyProtocol;
+
+    /**
+     * La dimensione minima in byte delle risposte compresse.
+     */
+    private final int compressionThreshold;
+
+    /**
+     * Il numero massimo di salvataggi in attesa di essere scritti.
+     */
+    private final int maxQueuedSaves;
+
+    /**
+     * Indica se forzare la scrittura sul disco dei dendrogrammi salvati.
+     */
+    private final boolean syncSaves;
+
+    /**
+     * La cartella dell'archivio dei dendrogrammi.
+     */
+    private final String storeDirectory;
+
+    /**
+     * Lo spazio massimo occupato dall'archivio dei dendrogrammi, in byte.
+     */
+    private final long storeQuota;
+
+    /**
+     * La cartella dei checkpoint dei job di mining.
+     */
+    private final String checkpointDirectory;
+
+    /**
+     * Il tempo minimo fra due checkpoint dello stesso job di mining, in secondi.
+     */
+    private final int checkpointInterval;
+
+    /**
+     * Costruisce la configurazione leggendo i parametri dalle proprietà di sistema.
+     */
+    public ServerConfiguration() {
+        this.maxSessions = readPositiveInt("hclus.maxSessions", 1024);
+        this.computeThreads = readPositiveInt("hclus.computeThreads", Runtime.getRuntime().availableProcessors());
+        this.maxQueuedJobs = readPositiveInt("hclus.maxQueuedJobs", 64);
+        long defaultMiningMemory = Math.clamp(Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024), 1, Integer.MAX_VALUE);
+        this.miningMemoryBudget = (long) readPositiveInt("hclus.miningMemory", (int) defaultMiningMemory) * 1024 * 1024;
+        long defaultDataCacheMemory = Math.clamp(Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024), 1, Integer.MAX_VALUE);
+        this.dataCacheMemory = (long) readPositiveInt("hclus.dataCacheMemory", (int) defaultDataCacheMemory) * 1024 * 1024;
+        long defaultResultCacheMemory = Math.clamp(Runtime.getRuntime().maxMemory() / 8 / (1024 * 1024), 1, Integer.MAX_VALUE);
+        this.resultCacheMemory = (long) readPositiveInt("hclus.resultCacheMemory", (int) defaultResultCacheMemory) * 1024 * 1024;
+        long defaultDistanceCacheMemory = Math.clamp(Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024), 1, Integer.MAX_VALUE);
+        this.distanceCacheMemory = (long) readPositiveInt("hclus.distanceCacheMemory", (int) defaultDistanceCacheMemory) * 1024 * 1024;
+        this.shortJobOperations = readPositiveLong("hclus.shortJobOperations", 100_000_000L);
+        this.tenantWeights = readWeights("hclus.tenantWeights");
+        this.dataDirectory = System.getProperty("hclus.dataDirectory");
+        this.snapshotDirectory = System.getProperty("hclus.snapshotDirectory");
+        this.verifySnapshots = "true".equalsIgnoreCase(System.getProperty("hclus.verifySnapshots", "false").strip());
+        this.nioPort = readPositiveInt("hclus.nioPort", 0);
+        this.ioThreads = readPositiveInt("hclus.ioThreads", 2);
+        long defaultNioBufferMemory = Math.clamp(Runtime.getRuntime().maxMemory() / 16 / (1024 * 1024), 1, Integer.MAX_VALUE);
+        this.nioBufferMemory = (long) readPositiveInt("hclus.nioBufferMemory", (int) defaultNioBufferMemory) * 1024 * 1024;
+        this.legacyProtocol = !"false".equalsIgnoreCase(System.getProperty("hclus.legacyProtocol", "true").strip());
+        this.compressionThreshold = readPositiveInt("hclus.compressionThreshold", 1024);
+        this.maxQueuedSaves = readPositiveInt("hclus.maxQueuedSaves", 16);
+        this.syncSaves = "true".equalsIgnoreCase(System.getProperty("hclus.syncSaves", "false").strip());
+        this.storeDirectory = System.getProperty("hclus.storeDirectory");
+        this.storeQuota = (long) readPositiveInt("hclus.storeQuota", 1024) * 1024 * 1024;
+        this.checkpointDirectory = System.getProperty("hclus.checkpointDirectory");
+        this.checkpointInterval = readPositiveInt("hclus.checkpointInterval", 60);
+    }
+
+    /**
+     * Restituisce il numero massimo di client gestiti contemporaneamente.
+     *
+     * @return il numero massimo di client gestiti contemporaneamente
+     */
+    public int getMaxSessions() {
+        return this.maxSessions;
+    }
+
+    /**
+     * Restituisce il numero di thread dedicati al mining.
+     *
+     * @return il numero di thread dedicati al mining
+     */
+    public int getComputeThreads() {
+        return this.computeThreads;
+    }
+
+    /**
+     * Restituisce il numero massimo di job di mining in attesa di un thread libero.
+     *
+     * @return il numero massimo di job di mining in attesa
+     */
+    public int getMaxQueuedJobs() {
+        return this.maxQueuedJobs;
+    }
+
+    /**
+     * Restituisce la memoria a disposizione dei job di mining in esecuzione contemporaneamente.
+     *
+     * @return la memoria a disposizione dei job di mining, in byte
+     */
+    public long getMiningMemoryBudget() {
+        return this.miningMemoryBudget;
+    }
+
+    /**
+     * Restituisce la memoria occupata al più dai dati caricati dai client e condivisi fra le sessioni.
+     *
+     * @return la memoria occupata al più dai dati condivisi, in byte
+     */
+    public long getDataCacheMemory() {
+        return this.dataCacheMemory;
+    }
+
+    /**
+     * Restituisce la memoria occupata al più dai dendrogrammi creati dal mining e mantenuti per le richieste
+     * successive.
+     *
+     * @return la memoria occupata al più dai dendrogrammi mantenuti, in byte
+     */
+    public long getResultCacheMemory() {
+        return this.resultCacheMemory;
+    }
+
+    /**
+     * Restituisce la memoria, fuori dallo heap, occupata al più dalle matrici delle distanze condivise dai job di
+     * mining.
+     *
+     * @return la memoria occupata al più dalle matrici delle distanze, in byte
+     */
+    public long getDistanceCacheMemory() {
+        return this.distanceCacheMemory;
+    }
+
+    /**
+     * Restituisce il numero stimato di operazioni sotto il quale un job di mining è considerato breve.
+     *
+     * @return il numero stimato di operazioni di un job breve
+     */
+    public long getShortJobOperations() {
+        return this.shortJobOperations;
+    }
+
+    /**
+     * Restituisce il peso del client con indirizzo {@code tenant}, specificato come parametro, nella ripartizione dei
+     * thread di mining.
+     *
+     * @param tenant l'indirizzo del client
+     * @return il peso del client, {@code 1} se non è stato configurato
+     */
+    public int getTenantWeight(String tenant) {
+        return this.tenantWeights.getOrDefault(tenant, 1);
+    }
+
+    /**
+     * Restituisce la cartella da cui i client possono caricare i dati da file.
+     *
+     * @return la cartella dei dati, {@code null} se i client non possono caricare i dati da file
+     */
+    public String getDataDirectory() {
+        return this.dataDirectory;
+    }
+
+    /**
+     * Restituisce la cartella dove vengono memorizzati gli snapshot delle tabelle caricate.
+     *
+     * @return la cartella degli snapshot, {@code null} se gli snapshot non vengono usati
+     */
+    public String getSnapshotDirectory() {
+        return this.snapshotDirectory;
+    }
+
+    /**
+     * Restituisce {@code true} se il checksum degli snapshot viene controllato a ogni apertura, {@code false} se viene
+     * controllato solo subito dopo averli scritti.
+     *
+     * @return {@code true} se il checksum viene controllato a ogni apertura, {@code false} altrimenti
+     */
+    public boolean isSnapshotVerificationEnabled() {
+        return this.verifySnapshots;
+    }
+
+    /**
+     * Restituisce la porta su cui si mette in ascolto il server non bloccante.
+     *
+     * @return la porta del server non bloccante, {@code 0} se non deve essere avviato
+     */
+    public int getNioPort() {
+        return this.nioPort;
+    }
+
+    /**
+     * Restituisce il numero di thread di I/O del server non bloccante.
+     *
+     * @return il numero di thread di I/O del server non bloccante
+     */
+    public int getIoThreads() {
+        return this.ioThreads;
+    }
+
+    /**
+     * Restituisce la memoria occupata al più, nel complesso, dai buffer di lettura ingranditi del server non bloccante.
+     *
+     * @return la memoria occupata al più dai buffer di lettura ingranditi, in byte
+     */
+    public long getNioBufferMemory() {
+        return this.nioBufferMemory;
+    }
+
+    /**
+     * Restituisce {@code true} se il server bloccante accetta i client che usano il vecchio protocollo basato sulla
+     * serializzazione Java, {@code false} altrimenti.
+     *
+     * @return {@code true} se il vecchio protocollo è accettato, {@code false} altrimenti
+     */
+    public boolean isLegacyProtocolEnabled() {
+        return this.legacyProtocol;
+    }
+
+    /**
+     * Restituisce la dimensione minima in byte delle risposte compresse per i client che hanno negoziato la
+     * compressione.
+     *
+     * @return la dimensione minima in byte delle risposte compresse
+     */
+    public int getCompressionThreshold() {
+        return this.compressionThreshold;
+    }
+
+    /**
+     * Restituisce il numero massimo di salvataggi di dendrogrammi in attesa di essere scritti.
+     *
+     * @return il numero massimo di salvataggi in attesa
+     */
+    public int getMaxQueuedSaves() {
+        return this.maxQueuedSaves;
+    }
+
+    /**
+     * Restituisce {@code true} se la scrittura dei dendrogrammi salvati viene forzata sul disco prima di considerare il
+     * salvataggio terminato, {@code false} altrimenti.
+     *
+     * @return {@code true} se la scrittura viene forzata sul disco, {@code false} altrimenti
+     */
+    public boolean isSyncSavesEnabled() {
+        return this.syncSaves;
+    }
+
+    /**
+     * Restituisce la cartella dell'archivio dei dendrogrammi.
+     *
+     * @return la cartella dell'archivio, {@code null} se l'archivio non viene usato
+     */
+    public String getStoreDirectory() {
+        return this.storeDirectory;
+    }
+
+    /**
+     * Restituisce lo spazio massimo occupato dai dendrogrammi nell'archivio, in byte.
+     *
+     * @return lo spazio massimo occupato dall'archivio, in byte
+     */
+    public long getStoreQuota() {
+        return this.storeQuota;
+    }
+
+    /**
+     * Restituisce la cartella dei checkpoint dei job di mining.
+     *
+     * @return la cartella dei checkpoint, {@code null} se i checkpoint non vengono salvati
+     */
+    public String getCheckpointDirectory() {
+        return this.checkpointDirectory;
+    }
+
+    /**
+     * Restituisce il tempo minimo fra due checkpoint dello stesso job di mining, in secondi.
+     *
+     * @return il tempo minimo fra due checkpoint, in secondi
+     */
+    public int getCheckpointInterval() {
+        return this.checkpointInterval;
+    }
+
+    /**
+     * Legge la proprietà di sistema con nome {@code name} come intero positivo, restituendo {@code defaultValue} se è
+     * assente o non valida, entrambi specificati come parametro.
+     *
+     * @param name il nome della proprietà
+     * @param defaultValue il valore di default
+     * @return il valore della proprietà o {@code defaultValue}
+     */
+    private static int readPositiveInt(String name, int defaultValue) {
+        var value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int result = Integer.parseInt(value.strip());
+            return result > 0 ? result : defaultValue;
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Legge la proprietà di sistema con nome {@code name} come intero lungo positivo, restituendo
+     * {@code defaultValue} se è assente o non valida, entrambi specificati come parametro.
+     *
+     * @param name il nome della proprietà
+     * @param defaultValue il valore di default
+     * @return il valore della proprietà o {@code defaultValue}
+     */
+    private static long readPositiveLong(String name, long defaultValue) {
+        var value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            long result = Long.parseLong(value.strip());
+            return result > 0 ? result : defaultValue;
+        } catch (NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Legge la proprietà di sistema con nome {@code name}, specificato come parametro, come elenco di coppie
+     * {@code chiave=peso} separate da virgole, ignorando le coppie non valide.
+     *
+     * @param name il nome della proprietà
+     * @return i pesi letti, indicizzati per chiave
+     */
+    private static Map<String, Integer> readWeights(String name) {
+        var weights = new HashMap<String, Integer>();
+        var value = System.getProperty(name);
+        if (value == null) {
+            return weights;
+        }
+
+        for (var entry : value.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+
+            try {
+                int weight = Integer.parseInt(entry.substring(separator + 1).strip());
+                if (weight > 0) {
+                    weights.put(entry.substring(0, separator).strip(), weight);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return weights;
+    }
+}
@@ -0,0 +1,213 @@
+package com.davidecarella.hclus.server;
+
+import com.davidecarella.hclus.server.cache.DataCache;
+import com.davidecarella.hclus.server.cache.DistanceCache;
+import com.davidecarella.hclus.server.cache.ResultCache;
+import com.davidecarella.hclus.server.jobs.JobManager;
+import com.davidecarella.hclus.server.store.CheckpointStore;
+import com.davidecarella.hclus.server.store.DendrogramStore;
+import com.davidecarella.hclus.server.store.DendrogramWriter;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Classe che raccoglie la configurazione e le risorse condivise da tutte le sessioni del server, indipendentemente dal
+ * modo in cui i client sono connessi.
+ */
+public class ServerContext {
+    /**
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Il gestore dei job di mining.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * La cache dei dati caricati dai client.
+     */
+    private final DataCache dataCache;
+
+    /**
+     * I permessi per le sessioni, uno per ogni client gestito contemporaneamente dal server bloccante o da quello non
+     * bloccante.
+     */
+    private final Semaphore sessionPermits;
+
+    /**
+     * La cache dei dendrogrammi creati dal mining.
+     */
+    private final ResultCache resultCache;
+
+    /**
+     * La cache delle matrici delle distanze usate dal mining.
+     */
+    private final DistanceCache distanceCache;
+
+    /**
+     * Il gestore dei salvataggi dei dendrogrammi.
+     */
+    private final DendrogramWriter dendrogramWriter;
+
+    /**
+     * L'archivio dei dendrogrammi, {@code null} se non viene usato.
+     */
+    private final DendrogramStore dendrogramStore;
+
+    /**
+     * Costruisce le risorse del server a partire dalla configurazione {@code configuration}, specificata come
+     * parametro. Se l'archivio dei dendrogrammi o la cartella dei checkpoint non possono essere aperti il server
+     * funziona senza.
+     *
+     * @param configuration la configurazione del server
+     */
+    public ServerContext(ServerConfiguration configuration) {
+        this.configuration = configuration;
+        this.resultCache = new ResultCache(configuration.getResultCacheMemory());
+        this.distanceCache = new DistanceCache(configuration.getDistanceCacheMemory());
+        this.dendrogramWriter = new DendrogramWriter(configuration);
+        this.dendrogramStore = openStore(configuration, this.dendrogramWriter);
+        this.jobManager = new JobManager(configuration, this.resultCache, this.distanceCache, this.dendrogramStore, openCheckpoints(configuration));
+        this.dataCache = new DataCache(configuration.getDataCacheMemory());
+        this.sessionPermits = new Semaphore(configuration.getMaxSessions());
+    }
+
+    /**
+     * Restituisce la configurazione del server.
+     *
+     * @return la configurazione del server
+     */
+    public ServerConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Restituisce il gestore dei job di mining.
+     *
+     * @return il gestore dei job di mining
+     */
+    public JobManager getJobManager() {
+        return this.jobManager;
+    }
+
+    /**
+     * Restituisce i permessi per le sessioni, condivisi dal server bloccante e da quello non bloccante, così che il
+     * numero di client gestiti contemporaneamente non superi {@link ServerConfiguration#getMaxSessions()}.
+     *
+     * @return i permessi per le sessioni
+     */
+    public Semaphore getSessionPermits() {
+        return this.sessionPermits;
+    }
+
+    /**
+     * Restituisce la cache dei dati caricati dai client.
+     *
+     * @return la cache dei dati caricati dai client
+     */
+    public DataCache getDataCache() {
+        return this.dataCache;
+    }
+
+    /**
+     * Restituisce la cache dei dendrogrammi creati dal mining.
+     *
+     * @return la cache dei dendrogrammi creati dal mining
+     */
+    public ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Restituisce la cache delle matrici delle distanze usate dal mining.
+     *
+     * @return la cache delle matrici delle distanze usate dal mining
+     */
+    public DistanceCache getDistanceCache() {
+        return this.distanceCache;
+    }
+
+    /**
+     * Restituisce il gestore dei salvataggi dei dendrogrammi.
+     *
+     * @return il gestore dei salvataggi dei dendrogrammi
+     */
+    public DendrogramWriter getDendrogramWriter() {
+        return this.dendrogramWriter;
+    }
+
+    /**
+     * Restituisce l'archivio dei dendrogrammi.
+     *
+     * @return l'archivio dei dendrogrammi, {@code null} se non viene usato
+     */
+    public DendrogramStore getDendrogramStore() {
+        return this.dendrogramStore;
+    }
+
+    /**
+     * Rilascia le risorse del server, interrompendo i job di mining in corso e attendendo che i salvataggi già
+     * accettati vengano completati.
+     */
+    public void shutdown() {
+        this.jobManager.shutdown();
+        this.dendrogramWriter.shutdown();
+
+        if (this.dendrogramStore != null) {
+            try {
+                this.dendrogramStore.close();
+            } catch (IOException exception) {
+                System.out.println("Errore durante la scrittura del catalogo dell'archivio dei dendrogrammi!");
+            }
+        }
+    }
+
+    /**
+     * Apre l'archivio dei dendrogrammi indicato dalla configurazione {@code configuration}, che scrive i dendrogrammi
+     * con {@code writer} (entrambi specificati come parametro).
+     *
+     * @param configuration la configurazione del server
+     * @param writer il gestore dei salvataggi
+     * @return l'archivio dei dendrogrammi, {@code null} se non viene usato o non può essere aperto
+     */
+    private static DendrogramStore openStore(ServerConfiguration configuration, DendrogramWriter writer) {
+        var directory = configuration.getStoreDirectory();
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            return DendrogramStore.open(Path.of(directory), configuration.getStoreQuota(), writer, System.out::println);
+        } catch (IOException | InvalidPathException exception) {
+            System.out.println("Errore durante l'apertura dell'archivio dei dendrogrammi, l'archivio non verrà usato!");
+            return null;
+        }
+    }
+
+    /**
+     * Apre la cartella dei checkpoint dei job di mining indicata dalla configurazione {@code configuration},
+     * specificata come parametro.
+     *
+     * @param configuration la configurazione del server
+     * @return la gestione dei checkpoint, {@code null} se i checkpoint non vengono salvati o la cartella non può essere
+     *         aperta
+     */
+    private static CheckpointStore openCheckpoints(ServerConfiguration configuration) {
+        var directory = configuration.getCheckpointDirectory();
+        if (directory == null) {
+            return null;
+        }
+
+        try {
+            return CheckpointStore.open(Path.of(directory), configuration.getCheckpointInterval());
+        } catch (IOException | InvalidPathException exception) {
+            System.out.println("Errore durante l'apertura della cartella dei checkpoint, i checkpoint non verranno salvati!");
+            return null;
+        }
+    }
+}
@@ -1,57 +1,177 @@
 package com.davidecarella.hclus.server;
 
-import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
-import com.davidecarella.hclus.server.data.Data;
-import com.davidecarella.hclus.server.distance.AverageLinkDistance;
-import com.davidecarella.hclus.server.distance.ClusterDistance;
-import com.davidecarella.hclus.server.distance.SingleLinkDistance;
-import com.davidecarella.hclus.server.exceptions.InvalidDepthException;
-import com.davidecarella.hclus.server.exceptions.InvalidSizeException;
-import com.davidecarella.hclus.server.exceptions.NoDataException;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+import com.davidecarella.hclus.server.protocol.Frame;
+import com.davidecarella.hclus.server.protocol.FrameCodec;
+import com.davidecarella.hclus.server.protocol.FrameHandler;
+import com.davidecarella.hclus.server.protocol.FrameSink;
 
 import java.io.*;
+import java.net.ProtocolException;
 import java.net.Socket;
 import java.net.SocketException;
 
 /**
- * Classe che gestisce la connessione con un client.
+ * <p>Classe che gestisce la connessione con un client.
+ *
+ * <p>Il gestore viene eseguito da {@link MultiServer} su un thread virtuale, mentre il mining viene delegato a un
+ * {@link com.davidecarella.hclus.server.jobs.JobManager} condiviso da tutti i client. Alla disconnessione del client i suoi job di mining non ancora
+ * terminati vengono annullati.
+ *
+ * <p>Il protocollo usato dal client viene riconosciuto dai primi byte ricevuti: se coincidono con l'intestazione di uno
+ * stream della serializzazione Java ({@link ObjectStreamConstants#STREAM_MAGIC}) viene usato il vecchio protocollo
+ * (se abilitato con {@link ServerConfiguration#isLegacyProtocolEnabled()}), altrimenti il protocollo binario definito
+ * nel package {@link com.davidecarella.hclus.server.protocol}.
  */
-public class ServerOneClient extends Thread {
+public class ServerOneClient implements Runnable {
     /**
      * Il socket per la connessione con il client.
      */
     private final Socket clientSocket;
 
     /**
-     * I dati eventualmente caricati dal server.
+     * La sessione del client, che contiene i dati caricati e implementa le operazioni richieste.
      */
-    private Data data = null;
+    private final ClientSession session;
 
     /**
-     * Costruisce il gestore del client e lancia il thread associato a esso a partire da {@code clientSocket}, fornito
-     * come parametro.
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Costruisce il gestore del client a partire da {@code clientSocket} e dalle risorse del server, {@code context},
+     * entrambi forniti come parametro.
      *
      * @param clientSocket il socket la connessione con il client
+     * @param context le risorse del server
      */
-    public ServerOneClient(Socket clientSocket) {
-        super(String.format("HCLUS-Client(%s, %d)",
-            clientSocket.getInetAddress().getHostAddress(),
-            clientSocket.getPort()
-        ));
+    public ServerOneClient(Socket clientSocket, ServerContext context) {
+        var address = clientSocket.getInetAddress().getHostAddress();
+        var name = String.format("HCLUS-Client(%s, %d)", address, clientSocket.getPort());
 
         this.clientSocket = clientSocket;
-        this.start();
+        this.session = new ClientSession(name, address, context);
+        this.configuration = context.getConfiguration();
     }
 
     /**
-     * Metodo lanciato al lancio del thread che gestisce le richieste del client.
+     * Metodo che gestisce le richieste del client fino alla sua disconnessione.
      */
     @Override
     public void run() {
         log("Connesso");
 
-        try (var inputStream = new ObjectInputStream(this.clientSocket.getInputStream());
-             var outputStream = new ObjectOutputStream(this.clientSocket.getOutputStream()))
+        try {
+            var inputStream = new BufferedInputStream(this.clientSocket.getInputStream());
+            var outputStream = this.clientSocket.getOutputStream();
+
+            if (isLegacyStream(inputStream)) {
+                if (!this.configuration.isLegacyProtocolEnabled()) {
+                    log("Il client usa il vecchio protocollo, che è disabilitato!");
+                    return;
+                }
+
+                runLegacy(inputStream, outputStream);
+            } else {
+                runFramed(new DataInputStream(inputStream), new DataOutputStream(new BufferedOutputStream(outputStream)));
+            }
+        } catch (SocketException | EOFException ignored) {
+        } catch (IOException exception) {
+            log(String.format("Errore durante la lettura della richiesta: %s!", exception.getMessage()));
+        } finally {
+            this.session.close();
+            tryCloseSocket();
+        }
+    }
+
+    /**
+     * Restituisce {@code true} se lo stream {@code inputStream}, specificato come parametro, inizia con l'intestazione
+     * di uno stream della serializzazione Java, {@code false} altrimenti. I byte letti non vengono consumati.
+     *
+     * @param inputStream lo stream di input del socket
+     * @return {@code true} se il client usa il vecchio protocollo, {@code false} altrimenti
+     * @throws IOException in caso di errori durante la lettura
+     */
+    private static boolean isLegacyStream(BufferedInputStream inputStream) throws IOException {
+        inputStream.mark(Short.BYTES);
+        int high = inputStream.read();
+        int low = inputStream.read();
+        inputStream.reset();
+
+        return high >= 0 && low >= 0 && (short) ((high << 8) | low) == ObjectStreamConstants.STREAM_MAGIC;
+    }
+
+    /**
+     * Gestisce le richieste del client che usa il protocollo binario fino alla sua disconnessione.
+     *
+     * @param inputStream lo stream di input del socket
+     * @param outputStream lo stream di output del socket
+     * @throws IOException in caso di errori durante la lettura o la scrittura dei frame
+     */
+    private void runFramed(DataInputStream inputStream, DataOutputStream outputStream) throws IOException {
+        var handler = new FrameHandler(this.session, this.configuration);
+        FrameSink sink = frame -> {
+            // Gli aggiornamenti dei job a cui il client è iscritto vengono inviati da altri thread
+            synchronized (outputStream) {
+                FrameCodec.write(frame, outputStream);
+            }
+        };
+
+        try {
+            this.handleFrames(handler, inputStream, sink);
+        } finally {
+            handler.close();
+        }
+    }
+
+    /**
+     * Legge le richieste del client da {@code inputStream} e le gestisce con {@code handler}, inviando le risposte a
+     * {@code sink} (tutti specificati come parametro), fino alla sua disconnessione.
+     *
+     * @param handler il gestore delle richieste
+     * @param inputStream lo stream di input del socket
+     * @param sink la destinazione dei frame di risposta
+     * @throws IOException in caso di errori durante la lettura o la scrittura dei frame
+     */
+    private void handleFrames(FrameHandler handler, DataInputStream inputStream, FrameSink sink) throws IOException {
+        while (true) {
+            Frame request;
+            try {
+                request = FrameCodec.read(inputStream);
+            } catch (ProtocolException exception) {
+                log(String.format("Richiesta non valida: %s", exception.getMessage()));
+                sink.send(Frame.error(exception.getMessage()));
+                return;
+            }
+
+            if (request == null) {
+                return;
+            }
+
+            try {
+                handler.handle(request, sink);
+            } catch (ProtocolException exception) {
+                // Il payload della richiesta è malformato o troncato: il client riceve l'errore prima della chiusura
+                log(String.format("Richiesta non valida: %s", exception.getMessage()));
+                sink.send(Frame.error(exception.getMessage()));
+                return;
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gestisce le richieste del client che usa il vecchio protocollo fino alla sua disconnessione.
+     *
+     * @param input lo stream di input del socket
+     * @param output lo stream di output del socket
+     */
+    private void runLegacy(InputStream input, OutputStream output) {
+        try (var inputStream = new ObjectInputStream(input);
+             var outputStream = new ObjectOutputStream(output))
         {
             while (true) {
                 int requestType = -1;
@@ -88,8 +208,6 @@ public class ServerOneClient extends Thread {
             }
         } catch (IOException exception) {
             log("Errore durante la creazione/chiusura delle stream di I/O per il socket!");
-        } finally {
-            tryCloseSocket();
         }
     }
 
@@ -98,6 +216,7 @@ public class ServerOneClient extends Thread {
      *
      * @param inputStream lo stream di input del socket
      * @param outputStream lo stream di output del socket
+     * @see ClientSession#loadData(String)
      */
     private void loadDataRequest(ObjectInputStream inputStream, ObjectOutputStream outputStream) {
         String tableName = null;
@@ -116,10 +235,10 @@ public class ServerOneClient extends Thread {
 
         try {
             try {
-                this.data = new Data(tableName);
+                this.session.loadData(tableName);
                 outputStream.writeObject("OK");
-            } catch (NoDataException exception) {
-                outputStream.writeObject(walkThrowable(exception));
+            } catch (RequestException exception) {
+                outputStream.writeObject(exception.getMessage());
             }
         } catch (SocketException | EOFException ignored) {
         } catch (IOException exception) {
@@ -140,9 +259,10 @@ public class ServerOneClient extends Thread {
      *
      * @param inputStream lo stream di input del socket
      * @param outputStream lo stream di output del socket
+     * @see ClientSession#mine(int, int)
      */
     private void mineRequest(ObjectInputStream inputStream, ObjectOutputStream outputStream) {
-        if (this.data == null) {
+        if (this.session.getData() == null) {
             try {
                 outputStream.writeObject("I dati non sono stati ancora caricati!");
             } catch (SocketException | EOFException ignored) {
@@ -154,7 +274,7 @@ public class ServerOneClient extends Thread {
         }
 
         int depth = 0;
-        ClusterDistance distance = null;
+        int distanceType = 0;
         try {
             Object object;
 
@@ -172,16 +292,12 @@ public class ServerOneClient extends Thread {
             }
 
             object = inputStream.readObject();
-            if (!(object instanceof Integer distanceType) || distanceType < 1 || distanceType > 2) {
+            if (!(object instanceof Integer type) || type < 1 || type > 2) {
                 outputStream.writeObject("Tipo di distanza non valida!");
                 return;
             }
 
-            distance = switch (distanceType) {
-                case 1 -> new SingleLinkDistance();
-                case 2 -> new AverageLinkDistance();
-                default -> throw new IllegalStateException("Valore inaspettato: " + distanceType);
-            };
+            distanceType = type;
         } catch (SocketException | EOFException ignored) {
             return;
         } catch (IOException | ClassNotFoundException exception) {
@@ -189,13 +305,12 @@ public class ServerOneClient extends Thread {
             return;
         }
 
-        var miner = new HierarchicalClusterMiner(depth);
         try {
             try {
-                miner.mine(this.data, distance);
+                this.session.mine(depth, distanceType);
 
                 outputStream.writeObject("OK");
-                outputStream.writeObject(miner.toString(this.data));
+                outputStream.writeObject(this.session.renderDendrogram());
 
                 var object = inputStream.readObject();
                 if (!(object instanceof String fileName)) {
@@ -204,12 +319,16 @@ public class ServerOneClient extends Thread {
                 }
 
                 try {
-                    miner.salva(fileName);
-                } catch (IOException exception) {
-                    log(String.format("Errore durante il salvataggio del dendrogramma: %s!", exception.getMessage()));
+                    // Il client non attende una risposta: l'esito del salvataggio viene solo registrato nel log
+                    this.session.saveDendrogram(fileName);
+                } catch (RequestException exception) {
+                    this.session.log(exception.getMessage());
                 }
-            } catch (InvalidDepthException | InvalidSizeException exception) {
-                outputStream.writeObject(walkThrowable(exception));
+            } catch (RequestException exception) {
+                outputStream.writeObject(exception.getMessage());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                outputStream.writeObject("Il mining è stato interrotto!");
             }
         } catch (SocketException | EOFException ignored) {
         } catch (IOException | ClassNotFoundException exception) {
@@ -225,9 +344,10 @@ public class ServerOneClient extends Thread {
      *
      * @param inputStream lo stream di input del socket
      * @param outputStream lo stream di output del socket
+     * @see ClientSession#loadDendrogram(String)
      */
     private void loadDendrogramFromFileRequest(ObjectInputStream inputStream, ObjectOutputStream outputStream) {
-        if (this.data == null) {
+        if (this.session.getData() == null) {
             try {
                 outputStream.writeObject("I dati non sono stati ancora caricati!");
             } catch (SocketException | EOFException ignored) {
@@ -254,22 +374,14 @@ public class ServerOneClient extends Thread {
             return;
         }
 
-        HierarchicalClusterMiner miner = null;
         try {
             try {
-                miner = HierarchicalClusterMiner.load(fileName);
-
-                if (miner.getDendrogramDepth() > this.data.getNumberOfExamples()) {
-                    outputStream.writeObject("Profondità del dendrogramma non valida!");
-                    return;
-                }
+                this.session.loadDendrogram(fileName);
 
                 outputStream.writeObject("OK");
-                outputStream.writeObject(miner.toString(this.data));
-            } catch (FileNotFoundException exception) {
-                outputStream.writeObject("Il file inserito non esiste!");
-            } catch (IOException | ClassNotFoundException exception) {
-                outputStream.writeObject(String.format("Errore durante il caricamento del dendrogramma: %s!", exception.getMessage()));
+                outputStream.writeObject(this.session.renderDendrogram());
+            } catch (RequestException exception) {
+                outputStream.writeObject(exception.getMessage());
             }
         } catch (SocketException | EOFException ignored) {
         } catch (IOException exception) {
@@ -291,43 +403,11 @@ public class ServerOneClient extends Thread {
 
     /**
      * Semplice metodo per fare logging di eventuali messaggi (errore/informazione) che possono occorrere durante il
-     * ciclo di vita del thread.
+     * ciclo di vita del gestore.
      *
      * @param message il messaggio che si vuole stampare
      */
-    synchronized private void log(String message) {
-        System.out.printf("[%s] %s%n", this.getName(), message);
-    }
-
-    /**
-     * Dato un errore/eccezione, {@code throwable}, specificato come parametro stampa il suo messaggio e se contiene
-     * degli altri errori/eccezioni che lo causano allora provvede a stampare anche loro.
-     *
-     * @param throwable l'errore/eccezione che si vuole stampare
-     * @return il messaggio dell'eccezione e gli eventuali messaggi delle eccezioni che contiene
-     */
-    private static String walkThrowable(Throwable throwable) {
-        if (throwable.getCause() == null) {
-            return String.format("%s%n", throwable.getMessage());
-        }
-
-        var stringBuilder = new StringBuilder();
-
-        var current = throwable;
-        int level = 0;
-
-        while (current != null) {
-            int spaceCount = Math.max(level - 1, 0);
-            stringBuilder.append(" ".repeat(spaceCount));
-            if (level != 0) {
-                stringBuilder.append('\\');
-            }
-            stringBuilder.append("- ").append(current.getMessage()).append(System.lineSeparator());
-
-            current = current.getCause();
-            ++level;
-        }
-
-        return stringBuilder.toString();
+    private void log(String message) {
+        this.session.log(message);
     }
 }
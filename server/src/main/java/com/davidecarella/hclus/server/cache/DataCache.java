@@ -0,0 +1,273 @@
+package com.davidecarella.hclus.server.cache;
+
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.data.DataSource;
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>Classe che mantiene in memoria i {@link Data dati} caricati dai client, condivisi da tutte le sessioni del server:
+ * più client che caricano la stessa tabella ricevono la stessa istanza (immutabile) di {@link Data}, letta una sola
+ * volta.
+ *
+ * <p>Ogni dato è identificato da una chiave (ad esempio il nome della tabella) e viene caricato al più una volta anche
+ * se richiesto contemporaneamente da più client: il primo esegue il caricamento e gli altri ne attendono il risultato.
+ * Chi ottiene un dato riceve un {@link Lease riferimento} che deve chiudere quando non gli serve più; i dati ancora
+ * riferiti non vengono mai rimossi, mentre gli altri vengono rimossi, dal meno usato di recente, quando la memoria
+ * occupata da tutti i dati supera il limite specificato.
+ *
+ * <p><b>NOTA</b>: i dati nella cache non vengono aggiornati se cambia il contenuto della sorgente, perciò la chiave
+ * deve identificarne anche la versione (ad esempio la data di modifica di un file o la
+ * {@link DataSource#getVersion() versione} di una tabella): i dati modificati hanno una chiave diversa e vengono
+ * caricati di nuovo, mentre quelli della versione precedente vengono rimossi quando non sono più riferiti e serve
+ * spazio. I dati di una sorgente di cui non si conosce la versione non devono essere memorizzati nella cache.
+ */
+public class DataCache {
+    /**
+     * La memoria massima occupata dai dati, in byte.
+     */
+    private final long maxBytes;
+
+    /**
+     * I dati nella cache, indicizzati per chiave e ordinati dal meno al più usato di recente.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * La memoria occupata dai dati caricati, in byte.
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Costruisce la cache con una memoria massima di {@code maxBytes} byte, specificata come parametro.
+     *
+     * @param maxBytes la memoria massima occupata dai dati, in byte
+     */
+    public DataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce un riferimento ai dati con chiave {@code key}, caricandoli da {@code source} (entrambi specificati
+     * come parametro) se non sono nella cache. Se gli stessi dati sono già in caricamento, ne attende il termine.
+     *
+     * @param key la chiave dei dati
+     * @param source la sorgente da cui caricare i dati se non sono nella cache
+     * @return il riferimento ai dati, da chiudere quando non servono più
+     * @throws NoDataException se si verifica un errore durante il caricamento o l'attesa viene interrotta
+     */
+    public Lease acquire(String key, DataSource source) throws NoDataException {
+        Entry entry;
+        boolean loader = false;
+
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                this.entries.put(key, entry);
+                loader = true;
+            }
+
+            ++entry.references;
+        }
+
+        if (loader) {
+            this.load(entry, source);
+        }
+
+        try {
+            return new Lease(entry, entry.data.get());
+        } catch (ExecutionException exception) {
+            this.unreference(entry);
+            if (exception.getCause() instanceof NoDataException noDataException) {
+                throw noDataException;
+            }
+
+            throw new NoDataException("Errore durante il caricamento degli esempi!", exception.getCause());
+        } catch (InterruptedException exception) {
+            this.unreference(entry);
+            Thread.currentThread().interrupt();
+            throw new NoDataException("Il caricamento degli esempi è stato interrotto!");
+        }
+    }
+
+    /**
+     * Carica i dati di {@code entry} da {@code source}, entrambi specificati come parametro, e li rende disponibili a
+     * chi li sta attendendo. Se il caricamento fallisce i dati vengono rimossi dalla cache, così che una richiesta
+     * successiva possa riprovare.
+     *
+     * @param entry i dati da caricare
+     * @param source la sorgente da cui caricare i dati
+     */
+    private void load(Entry entry, DataSource source) {
+        Data data;
+        try {
+            data = source.load();
+            // L'impronta viene calcolata subito, una sola volta per tutte le sessioni, così che i controlli successivi
+            // (ad esempio sui dendrogrammi caricati da file) non debbano rileggere i dati
+            data.getFingerprint();
+        } catch (NoDataException | RuntimeException | Error exception) {
+            synchronized (this) {
+                this.entries.remove(entry.key, entry);
+            }
+
+            entry.data.completeExceptionally(exception);
+            return;
+        }
+
+        synchronized (this) {
+            entry.bytes = data.getSizeInBytes();
+            entry.loaded = true;
+            if (this.entries.get(entry.key) == entry) {
+                this.usedBytes += entry.bytes;
+                this.evict();
+            }
+        }
+
+        entry.data.complete(data);
+    }
+
+    /**
+     * Rilascia un riferimento a {@code entry}, specificato come parametro, rimuovendo i dati non più riferiti se la
+     * memoria occupata supera il limite.
+     *
+     * @param entry i dati a cui rilasciare il riferimento
+     */
+    private synchronized void unreference(Entry entry) {
+        --entry.references;
+        this.evict();
+    }
+
+    /**
+     * Rimuove i dati caricati e non più riferiti, dal meno usato di recente, finché la memoria occupata supera il
+     * limite. Deve essere chiamato tenendo il lock della cache.
+     */
+    private void evict() {
+        var iterator = this.entries.values().iterator();
+        while (this.usedBytes > this.maxBytes && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.loaded && entry.references == 0) {
+                iterator.remove();
+                this.usedBytes -= entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di dati nella cache.
+     *
+     * @return il numero di dati nella cache
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Restituisce la memoria occupata dai dati caricati, in byte.
+     *
+     * @return la memoria occupata dai dati caricati, in byte
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Classe che rappresenta dei dati nella cache.
+     */
+    private static final class Entry {
+        /**
+         * La chiave dei dati.
+         */
+        private final String key;
+
+        /**
+         * I dati, disponibili al termine del caricamento.
+         */
+        private final CompletableFuture<Data> data = new CompletableFuture<>();
+
+        /**
+         * Il numero di riferimenti ai dati non ancora chiusi.
+         */
+        private int references = 0;
+
+        /**
+         * Indica se i dati sono stati caricati con successo.
+         */
+        private boolean loaded = false;
+
+        /**
+         * La memoria occupata dai dati, in byte.
+         */
+        private long bytes = 0;
+
+        /**
+         * Costruisce i dati con chiave {@code key}, specificata come parametro, non ancora caricati.
+         *
+         * @param key la chiave dei dati
+         */
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Classe che rappresenta un riferimento a dei dati della cache: finché non viene chiuso, i dati non vengono
+     * rimossi dalla cache.
+     */
+    public final class Lease implements AutoCloseable {
+        /**
+         * I dati della cache a cui si riferisce.
+         */
+        private final Entry entry;
+
+        /**
+         * I dati.
+         */
+        private final Data data;
+
+        /**
+         * Indica se il riferimento è stato chiuso.
+         */
+        private boolean closed = false;
+
+        /**
+         * Costruisce il riferimento a {@code entry}, i cui dati sono {@code data}, entrambi specificati come
+         * parametro.
+         *
+         * @param entry i dati della cache a cui si riferisce
+         * @param data i dati
+         */
+        private Lease(Entry entry, Data data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        /**
+         * Restituisce i dati.
+         *
+         * @return i dati
+         */
+        public Data getData() {
+            return this.data;
+        }
+
+        /**
+         * Chiude il riferimento. Chiamarlo più volte non ha ulteriori effetti.
+         */
+        @Override
+        public void close() {
+            synchronized (DataCache.this) {
+                if (this.closed) {
+                    return;
+                }
+
+                this.closed = true;
+                DataCache.this.unreference(this.entry);
+            }
+        }
+    }
+}
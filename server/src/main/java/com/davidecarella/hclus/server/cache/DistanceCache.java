@@ -0,0 +1,285 @@
+package com.davidecarella.hclus.server.cache;
+
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.data.DistanceMatrix;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <p>Classe che mantiene le {@link DistanceMatrix matrici delle distanze} dei dati su cui viene eseguito il mining,
+ * condivise da tutti i job: i job sugli stessi dati, con qualsiasi distanza fra cluster, usano la stessa matrice,
+ * calcolata una sola volta.
+ *
+ * <p>Le matrici sono indicizzate per {@link Data#getFingerprint() impronta dei dati} e vengono calcolate al più una
+ * volta anche se richieste contemporaneamente da più job: il primo esegue il calcolo e gli altri ne attendono il
+ * risultato. Chi ottiene una matrice riceve un {@link Lease riferimento} che deve chiudere quando non gli serve più.
+ *
+ * <p>A differenza della {@link DataCache}, il limite di memoria non viene mai superato: per far posto a una nuova
+ * matrice vengono rimosse, dalla meno usata di recente, quelle non più riferite e, se non basta, la matrice non viene
+ * calcolata e il riferimento restituisce i dati originali, che calcolano le distanze ogni volta. Lo stesso accade se il
+ * calcolo fallisce per mancanza di memoria fuori dallo heap: la matrice è solo un'ottimizzazione e il mining procede
+ * comunque.
+ */
+public class DistanceCache {
+    /**
+     * La memoria massima occupata dalle matrici, in byte.
+     */
+    private final long maxBytes;
+
+    /**
+     * Le matrici nella cache, indicizzate per impronta dei dati e ordinate dalla meno alla più usata di recente.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * La memoria occupata o riservata dalle matrici, in byte.
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Costruisce la cache con una memoria massima di {@code maxBytes} byte, specificata come parametro.
+     *
+     * @param maxBytes la memoria massima occupata dalle matrici, in byte
+     */
+    public DistanceCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce un riferimento ai dati {@code data}, specificati come parametro, con la loro matrice delle distanze,
+     * calcolandola se non è nella cache. Se la stessa matrice è già in calcolo, ne attende il termine; se la matrice
+     * non può essere ottenuta il riferimento contiene i dati originali.
+     *
+     * @param data i dati di cui si vuole la matrice delle distanze
+     * @return il riferimento ai dati, da chiudere quando non servono più
+     */
+    public Lease acquire(Data data) {
+        var key = data.getFingerprint();
+        long bytes = DistanceMatrix.sizeInBytes(data.getNumberOfExamples());
+
+        Entry entry;
+        boolean loader = false;
+
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry == null) {
+                if (!this.makeRoom(bytes)) {
+                    return new Lease(null, data);
+                }
+
+                entry = new Entry(key, bytes);
+                this.entries.put(key, entry);
+                this.usedBytes += bytes;
+                loader = true;
+            }
+
+            ++entry.references;
+        }
+
+        if (loader) {
+            this.compute(entry, data);
+        }
+
+        try {
+            return new Lease(entry, data.withDistances(entry.matrix.get()));
+        } catch (ExecutionException exception) {
+            this.unreference(entry);
+            return new Lease(null, data);
+        } catch (InterruptedException exception) {
+            this.unreference(entry);
+            Thread.currentThread().interrupt();
+            return new Lease(null, data);
+        }
+    }
+
+    /**
+     * Calcola la matrice di {@code entry} dai dati {@code data}, entrambi specificati come parametro, e la rende
+     * disponibile a chi la sta attendendo. Se il calcolo fallisce la matrice viene rimossa dalla cache.
+     *
+     * @param entry la matrice da calcolare
+     * @param data i dati di cui calcolare le distanze
+     */
+    private void compute(Entry entry, Data data) {
+        DistanceMatrix matrix;
+        try {
+            matrix = new DistanceMatrix(data);
+        } catch (RuntimeException | OutOfMemoryError exception) {
+            synchronized (this) {
+                if (this.entries.remove(entry.key, entry)) {
+                    this.usedBytes -= entry.bytes;
+                }
+            }
+
+            entry.matrix.completeExceptionally(exception);
+            return;
+        }
+
+        synchronized (this) {
+            entry.loaded = true;
+        }
+
+        entry.matrix.complete(matrix);
+    }
+
+    /**
+     * Rimuove le matrici calcolate e non più riferite, dalla meno usata di recente, finché non ci sono almeno
+     * {@code bytes} byte liberi, specificati come parametro. Deve essere chiamato tenendo il lock della cache.
+     *
+     * @param bytes la memoria da liberare, in byte
+     * @return {@code true} se ora ci sono almeno {@code bytes} byte liberi, {@code false} altrimenti
+     */
+    private boolean makeRoom(long bytes) {
+        if (bytes > this.maxBytes) {
+            return false;
+        }
+
+        var iterator = this.entries.values().iterator();
+        while (this.usedBytes + bytes > this.maxBytes && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.loaded && entry.references == 0) {
+                iterator.remove();
+                this.usedBytes -= entry.bytes;
+            }
+        }
+
+        return this.usedBytes + bytes <= this.maxBytes;
+    }
+
+    /**
+     * Rilascia un riferimento a {@code entry}, specificato come parametro. La matrice rimane nella cache finché non
+     * serve spazio per un'altra.
+     *
+     * @param entry la matrice a cui rilasciare il riferimento
+     */
+    private synchronized void unreference(Entry entry) {
+        --entry.references;
+    }
+
+    /**
+     * Restituisce il numero di matrici nella cache.
+     *
+     * @return il numero di matrici nella cache
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Restituisce la memoria occupata o riservata dalle matrici, in byte.
+     *
+     * @return la memoria occupata o riservata dalle matrici, in byte
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Classe che rappresenta una matrice nella cache.
+     */
+    private static final class Entry {
+        /**
+         * L'impronta dei dati della matrice.
+         */
+        private final String key;
+
+        /**
+         * La memoria occupata dalla matrice, in byte.
+         */
+        private final long bytes;
+
+        /**
+         * La matrice, disponibile al termine del calcolo.
+         */
+        private final CompletableFuture<DistanceMatrix> matrix = new CompletableFuture<>();
+
+        /**
+         * Il numero di riferimenti alla matrice non ancora chiusi.
+         */
+        private int references = 0;
+
+        /**
+         * Indica se la matrice è stata calcolata con successo.
+         */
+        private boolean loaded = false;
+
+        /**
+         * Costruisce la matrice, non ancora calcolata, dei dati con impronta {@code key} che occupa {@code bytes} byte,
+         * entrambi specificati come parametro.
+         *
+         * @param key l'impronta dei dati
+         * @param bytes la memoria occupata dalla matrice, in byte
+         */
+        private Entry(String key, long bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Classe che rappresenta un riferimento a una matrice della cache: finché non viene chiuso, la matrice non viene
+     * rimossa dalla cache.
+     */
+    public final class Lease implements AutoCloseable {
+        /**
+         * La matrice della cache a cui si riferisce, {@code null} se la matrice non è stata ottenuta.
+         */
+        private final Entry entry;
+
+        /**
+         * I dati con la matrice delle distanze, o i dati originali se la matrice non è stata ottenuta.
+         */
+        private final Data data;
+
+        /**
+         * Indica se il riferimento è stato chiuso.
+         */
+        private boolean closed = false;
+
+        /**
+         * Costruisce il riferimento a {@code entry}, con i dati {@code data}, entrambi specificati come parametro.
+         *
+         * @param entry la matrice della cache a cui si riferisce, o {@code null}
+         * @param data i dati con la matrice delle distanze, o i dati originali
+         */
+        private Lease(Entry entry, Data data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        /**
+         * Restituisce i dati con la matrice delle distanze o, se non è stato possibile ottenerla, i dati originali.
+         *
+         * @return i dati da usare per il mining
+         */
+        public Data getData() {
+            return this.data;
+        }
+
+        /**
+         * Restituisce {@code true} se i dati hanno la matrice delle distanze, {@code false} altrimenti.
+         *
+         * @return {@code true} se i dati hanno la matrice delle distanze, {@code false} altrimenti
+         */
+        public boolean hasMatrix() {
+            return this.entry != null;
+        }
+
+        /**
+         * Chiude il riferimento. Chiamarlo più volte non ha ulteriori effetti.
+         */
+        @Override
+        public void close() {
+            synchronized (DistanceCache.this) {
+                if (this.closed || this.entry == null) {
+                    return;
+                }
+
+                this.closed = true;
+                DistanceCache.this.unreference(this.entry);
+            }
+        }
+    }
+}
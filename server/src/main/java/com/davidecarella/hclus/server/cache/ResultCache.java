@@ -0,0 +1,162 @@
+package com.davidecarella.hclus.server.cache;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Classe che mantiene in memoria i dendrogrammi creati dal mining, così che le richieste ripetute non debbano essere
+ * ricalcolate.
+ *
+ * <p>I dendrogrammi sono indicizzati per {@link Data#getFingerprint() impronta dei dati} e tipo di distanza. Per ogni
+ * coppia viene mantenuto solo il dendrogramma più profondo: i primi livelli di un dendrogramma non dipendono dalla
+ * sua profondità, perciò quello più profondo contiene già tutti quelli meno profondi (vedere
+ * {@link HierarchicalClusterMiner#truncate(int)}) ed è il punto di partenza migliore per crearne uno più profondo
+ * (vedere {@link HierarchicalClusterMiner#extend}).
+ *
+ * <p>Quando la memoria occupata dai dendrogrammi supera il limite specificato vengono rimossi, dal meno usato di
+ * recente, quelli in eccesso. I dendrogrammi restituiti non devono essere modificati.
+ */
+public class ResultCache {
+    /**
+     * La memoria massima occupata dai dendrogrammi, in byte.
+     */
+    private final long maxBytes;
+
+    /**
+     * I dendrogrammi nella cache, indicizzati per chiave e ordinati dal meno al più usato di recente.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * La memoria occupata dai dendrogrammi, in byte.
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Costruisce la cache con una memoria massima di {@code maxBytes} byte, specificata come parametro.
+     *
+     * @param maxBytes la memoria massima occupata dai dendrogrammi, in byte
+     */
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce il dendrogramma più profondo creato dai dati {@code data} con la distanza {@code distance}, entrambi
+     * specificati come parametro.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return il miner con il dendrogramma più profondo, {@code null} se non ce n'è nessuno
+     */
+    public HierarchicalClusterMiner lookup(Data data, ClusterDistance distance) {
+        var key = key(data, distance);
+
+        synchronized (this) {
+            var entry = this.entries.get(key);
+            return entry == null ? null : entry.miner;
+        }
+    }
+
+    /**
+     * Memorizza il dendrogramma di {@code miner}, creato dai dati {@code data} con la distanza {@code distance} e che
+     * occupa {@code bytes} byte (tutti specificati come parametro), se è più profondo di quello già presente.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param miner il miner con il dendrogramma
+     * @param bytes la memoria occupata dal dendrogramma, in byte
+     */
+    public void put(Data data, ClusterDistance distance, HierarchicalClusterMiner miner, long bytes) {
+        if (bytes > this.maxBytes) {
+            return;
+        }
+
+        var key = key(data, distance);
+        synchronized (this) {
+            this.store(key, miner, bytes);
+        }
+    }
+
+    /**
+     * Memorizza il dendrogramma di {@code miner} con chiave {@code key} e che occupa {@code bytes} byte (tutti
+     * specificati come parametro), se è più profondo di quello già presente, rimuovendo i dendrogrammi in eccesso.
+     * Deve essere chiamato tenendo il lock della cache.
+     *
+     * @param key la chiave del dendrogramma
+     * @param miner il miner con il dendrogramma
+     * @param bytes la memoria occupata dal dendrogramma, in byte
+     */
+    private void store(String key, HierarchicalClusterMiner miner, long bytes) {
+        var previous = this.entries.get(key);
+        if (previous != null) {
+            if (previous.miner.getDendrogramDepth() >= miner.getDendrogramDepth()) {
+                return;
+            }
+
+            this.usedBytes -= previous.bytes;
+        }
+
+        this.entries.put(key, new Entry(miner, bytes));
+        this.usedBytes += bytes;
+
+        var iterator = this.entries.values().iterator();
+        while (this.usedBytes > this.maxBytes && iterator.hasNext()) {
+            this.usedBytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Restituisce la memoria occupata dai dendrogrammi, in byte.
+     *
+     * @return la memoria occupata dai dendrogrammi, in byte
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Restituisce la chiave dei dendrogrammi creati dai dati {@code data} con la distanza {@code distance}, entrambi
+     * specificati come parametro. Non deve essere chiamato tenendo il lock della cache, perché la prima volta
+     * l'impronta dei dati richiede di leggerli tutti.
+     *
+     * @param data i dati
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return la chiave dei dendrogrammi
+     */
+    private static String key(Data data, ClusterDistance distance) {
+        return data.getFingerprint() + '/' + distance.getClass().getName();
+    }
+
+    /**
+     * Classe immutabile che rappresenta un dendrogramma nella cache.
+     */
+    private static final class Entry {
+        /**
+         * Il miner con il dendrogramma.
+         */
+        private final HierarchicalClusterMiner miner;
+
+        /**
+         * La memoria occupata dal dendrogramma, in byte.
+         */
+        private final long bytes;
+
+        /**
+         * Costruisce il dendrogramma nella cache a partire da {@code miner} e dalla memoria che occupa, {@code bytes},
+         * entrambi specificati come parametro.
+         *
+         * @param miner il miner con il dendrogramma
+         * @param bytes la memoria occupata dal dendrogramma, in byte
+         */
+        private Entry(HierarchicalClusterMiner miner, long bytes) {
+            this.miner = miner;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.IOException;
+
+/**
+ * Classe che adatta un {@link ChunkSink} all'interfaccia {@link Appendable}: i caratteri ricevuti vengono accumulati e
+ * consegnati alla destinazione in pezzi di almeno {@code chunkSize} caratteri, così che una rappresentazione testuale
+ * scritta su un {@link Appendable} possa essere inviata un pezzo alla volta.
+ */
+final class ChunkAppendable implements Appendable {
+    /**
+     * La destinazione dei pezzi.
+     */
+    private final ChunkSink sink;
+
+    /**
+     * Il numero di caratteri oltre il quale un pezzo viene consegnato.
+     */
+    private final int chunkSize;
+
+    /**
+     * Il pezzo in costruzione.
+     */
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Costruisce l'adattatore che consegna a {@code sink} pezzi di almeno {@code chunkSize} caratteri, entrambi
+     * specificati come parametro.
+     *
+     * @param sink la destinazione dei pezzi
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     */
+    ChunkAppendable(ChunkSink sink, int chunkSize) {
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        this.builder.append(csq);
+        this.flushIfFull();
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        this.builder.append(csq, start, end);
+        this.flushIfFull();
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        this.builder.append(c);
+        this.flushIfFull();
+        return this;
+    }
+
+    /**
+     * Consegna alla destinazione i caratteri accumulati, se ce ne sono.
+     *
+     * @throws IOException in caso di errori durante la consegna del pezzo
+     */
+    void flush() throws IOException {
+        if (!this.builder.isEmpty()) {
+            this.sink.accept(this.builder.toString());
+            this.builder.setLength(0);
+        }
+    }
+
+    /**
+     * Consegna alla destinazione i caratteri accumulati se raggiungono {@code chunkSize}.
+     *
+     * @throws IOException in caso di errori durante la consegna del pezzo
+     */
+    private void flushIfFull() throws IOException {
+        if (this.builder.length() >= this.chunkSize) {
+            this.flush();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.IOException;
+
+/**
+ * Interfaccia funzionale che rappresenta la destinazione dei pezzi della rappresentazione testuale di un dendrogramma,
+ * prodotti man mano che viene generata.
+ *
+ * @see HierarchicalClusterMiner#render(com.davidecarella.hclus.server.data.Data, int, ChunkSink)
+ */
+@FunctionalInterface
+public interface ChunkSink {
+    /**
+     * Riceve il pezzo {@code chunk}, specificato come parametro, della rappresentazione testuale.
+     *
+     * @param chunk il pezzo della rappresentazione testuale
+     * @throws IOException in caso di errori durante l'invio del pezzo
+     */
+    void accept(String chunk) throws IOException;
+}
@@ -1,7 +1,9 @@
 package com.davidecarella.hclus.server.clustering;
 
 import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.data.Example;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.Set;
@@ -15,6 +17,12 @@ import java.util.TreeSet;
  * più precisamente al loro indice.
  */
 public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
+    /**
+     * L'identificativo di versione per la serializzazione, fissato al valore calcolato dalla prima versione della
+     * classe in modo che i file salvati in precedenza rimangano leggibili.
+     */
+    private static final long serialVersionUID = 3471045984345598698L;
+
     /**
      * L'insieme degli esempi.
      */
@@ -72,6 +80,40 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
         return merged;
     }
 
+    /**
+     * Restituisce {@code true} se il cluster contiene gli stessi esempi di {@code other}, specificato come parametro,
+     * {@code false} altrimenti.
+     *
+     * @param other il cluster da confrontare
+     * @return {@code true} se i due cluster contengono gli stessi esempi, {@code false} altrimenti
+     */
+    boolean hasSameExamples(Cluster other) {
+        return this == other || this.clusteredData.equals(other.clusteredData);
+    }
+
+    /**
+     * Restituisce il centroide del cluster, ovvero l'esempio la cui ogni componente è la media di quelle degli esempi
+     * del cluster, usando {@code data}, specificato come parametro, per ricevere i valori degli esempi.
+     *
+     * @param data i dati che contengono gli esempi
+     * @return il centroide del cluster
+     */
+    public Example centroid(Data data) {
+        var sums = new double[data.getNumberOfAttributes()];
+        for (int example : this) {
+            for (int k = 0; k < sums.length; ++k) {
+                sums[k] += data.getValue(example, k);
+            }
+        }
+
+        var centroid = new Example();
+        for (double sum : sums) {
+            centroid.add(sum / this.getSize());
+        }
+
+        return centroid;
+    }
+
     /**
      * <p>Restituisce una rappresentazione testuale del cluster.
      *
@@ -104,15 +146,39 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
      */
     public String toString(Data data) {
         var stringBuilder = new StringBuilder();
+        this.appendTo(stringBuilder, data);
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Scrive su {@code out} la rappresentazione testuale del cluster, la stessa di {@link Cluster#toString(Data)},
+     * usando {@code data} per ricevere i valori degli esempi (entrambi specificati come parametro).
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    public void writeTo(Appendable out, Data data) throws IOException {
+        var buffer = new RenderBuffer(out);
+        this.appendTo(buffer.getBuilder(), data);
+        buffer.flush();
+    }
 
+    /**
+     * Aggiunge a {@code builder} la rappresentazione testuale del cluster, la stessa di {@link Cluster#toString(Data)},
+     * usando {@code data} per ricevere i valori degli esempi (entrambi specificati come parametro). I valori vengono
+     * formattati direttamente in {@code builder}, senza creare copie degli esempi.
+     *
+     * @param builder il buffer a cui aggiungere la rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     */
+    void appendTo(StringBuilder builder, Data data) {
         var iterator = this.iterator();
         while (iterator.hasNext()) {
-            stringBuilder.append('<');
-            stringBuilder.append(data.getExample(iterator.next()));
-            stringBuilder.append('>');
+            builder.append('<');
+            data.appendExample(iterator.next(), builder);
+            builder.append('>');
         }
-
-        return stringBuilder.toString();
     }
 
     @Override
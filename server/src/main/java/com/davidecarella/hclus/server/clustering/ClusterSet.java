@@ -6,12 +6,21 @@ import com.davidecarella.hclus.server.exceptions.ClusterSetFullException;
 import com.davidecarella.hclus.server.exceptions.ClusterSetTooSmallException;
 import com.davidecarella.hclus.server.exceptions.InvalidSizeException;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 
 /**
  * Classe che rappresenta un insieme di {@link Cluster cluster}.
  */
 class ClusterSet implements Serializable {
+    /**
+     * L'identificativo di versione per la serializzazione, fissato al valore calcolato dalla prima versione della
+     * classe in modo che i file salvati in precedenza rimangano leggibili.
+     */
+    private static final long serialVersionUID = 6379522264277276995L;
+
     /**
      * L'insieme dei cluster.
      */
@@ -21,6 +30,12 @@ class ClusterSet implements Serializable {
      */
     private int lastClusterIndex = 0;
 
+    /**
+     * L'unione che ha prodotto questo cluster set dal livello precedente, {@code null} per il primo livello o se non è
+     * nota (ad esempio nei dendrogrammi salvati dalle versioni precedenti).
+     */
+    private Merge merge = null;
+
     /**
      * Costruttore che inizializza un insieme di {@link Cluster cluster} con dimensione massima {@code maxSize},
      * specificata come parametro.
@@ -31,6 +46,49 @@ class ClusterSet implements Serializable {
         this.clusters = new Cluster[maxSize];
     }
 
+    /**
+     * Restituisce il cluster set del primo livello di un dendrogramma, con un {@link Cluster cluster} per ognuno dei
+     * {@code numberOfExamples} esempi, specificato come parametro, in ordine di indice.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @return il cluster set con un cluster per ogni esempio
+     */
+    static ClusterSet singletons(int numberOfExamples) {
+        var clusterSet = new ClusterSet(numberOfExamples);
+        for (int i = 0; i < numberOfExamples; ++i) {
+            var cluster = new Cluster();
+            cluster.addData(i);
+            clusterSet.clusters[clusterSet.lastClusterIndex++] = cluster;
+        }
+
+        return clusterSet;
+    }
+
+    /**
+     * Restituisce il cluster set con {@code size} cluster in cui l'esempio con indice {@code i} appartiene al cluster
+     * in posizione {@code membership[i]}, prodotto dal livello precedente con l'unione {@code merge} (tutti specificati
+     * come parametro).
+     *
+     * @param membership per ogni esempio, la posizione del cluster che lo contiene
+     * @param size il numero di cluster
+     * @param merge l'unione che ha prodotto il cluster set, {@code null} se non è nota
+     * @return il cluster set
+     */
+    static ClusterSet fromMembership(int[] membership, int size, Merge merge) {
+        var clusterSet = new ClusterSet(size);
+        for (int i = 0; i < size; ++i) {
+            clusterSet.clusters[i] = new Cluster();
+        }
+
+        for (int i = 0; i < membership.length; ++i) {
+            clusterSet.clusters[membership[i]].addData(i);
+        }
+
+        clusterSet.lastClusterIndex = size;
+        clusterSet.merge = merge;
+        return clusterSet;
+    }
+
     /**
      * Aggiunge il {@code cluster} specificato come parametro all'insieme.
      *
@@ -59,6 +117,15 @@ class ClusterSet implements Serializable {
         return this.clusters[index];
     }
 
+    /**
+     * Restituisce il numero di {@link Cluster cluster} contenuti nel cluster set.
+     *
+     * @return il numero di {@link Cluster cluster} contenuti
+     */
+    int getSize() {
+        return this.lastClusterIndex;
+    }
+
     /**
      * Restituisce un nuovo cluster set che contiene gli stessi cluster fatta eccezione per i due
      * {@link Cluster cluster} tra loro più vicini che verranno uniti in un unico {@link Cluster cluster}.
@@ -67,48 +134,107 @@ class ClusterSet implements Serializable {
      *
      * @param distanceCalculator l'oggetto per il calcolo della distanza tra due {@link Cluster cluster}
      * @param data i dati
+     * @param monitor il monitor che può annullare il mining, controllato prima di ogni riga delle coppie di cluster
      * @return un nuovo cluster set in cui vengono uniti i due {@link Cluster cluster} più vicini fra loro
      * @throws ClusterSetTooSmallException quando il cluster set ha meno di due {@link Cluster cluster}
      * @throws InvalidSizeException quando ci sono due esempi con lunghezze diverse
+     * @throws CancellationException quando il mining viene annullato tramite {@code monitor}
      */
-    ClusterSet mergeClosestClusters(ClusterDistance distanceCalculator, Data data) throws ClusterSetTooSmallException, InvalidSizeException {
+    ClusterSet mergeClosestClusters(ClusterDistance distanceCalculator, Data data, MiningMonitor monitor) throws ClusterSetTooSmallException, InvalidSizeException {
         if (this.lastClusterIndex < 2) {
             throw new ClusterSetTooSmallException("Ci devono essere almeno due cluster per poter effettuare l'unione");
         }
 
         // FIXME: We should check that there are at least two clusters
-        Cluster firstCluster = null;
-        Cluster secondCluster = null;
+        int firstCluster = -1;
+        int secondCluster = -1;
         var minDistance = Double.MAX_VALUE;
 
         for (int i = 0; i < this.lastClusterIndex; ++i) {
+            if (monitor.isCancelled()) {
+                throw new CancellationException("Il mining è stato annullato");
+            }
+
             for (int j = i + 1; j < this.lastClusterIndex; ++j) {
                 var distance = distanceCalculator.distance(this.clusters[i], this.clusters[j], data);
                 if (distance < minDistance) {
                     minDistance = distance;
-                    firstCluster = this.clusters[i];
-                    secondCluster = this.clusters[j];
+                    firstCluster = i;
+                    secondCluster = j;
                 }
             }
         }
 
-        assert firstCluster != null && secondCluster != null;
+        assert firstCluster >= 0 && secondCluster >= 0;
 
-        var merged = firstCluster.mergeCluster(secondCluster);
+        return this.apply(new Merge(firstCluster, secondCluster, minDistance));
+    }
+
+    /**
+     * Restituisce il cluster set del livello successivo ottenuto applicando l'unione {@code merge}, specificata come
+     * parametro: il cluster unito prende la posizione del primo, mentre il secondo viene rimosso.
+     *
+     * @param merge l'unione da applicare, con posizioni valide per questo cluster set
+     * @return il cluster set del livello successivo
+     */
+    ClusterSet apply(Merge merge) {
+        var merged = this.clusters[merge.getFirst()].mergeCluster(this.clusters[merge.getSecond()]);
         var newClusterSet = new ClusterSet(this.clusters.length - 1);
         for (int i = 0; i < this.lastClusterIndex; ++i) {
-            if (this.clusters[i] != firstCluster) {
-                if (this.clusters[i] != secondCluster) {
-                    newClusterSet.add(this.clusters[i]);
-                }
-            } else {
-                newClusterSet.add(merged);
+            if (i == merge.getFirst()) {
+                newClusterSet.clusters[newClusterSet.lastClusterIndex++] = merged;
+            } else if (i != merge.getSecond()) {
+                newClusterSet.clusters[newClusterSet.lastClusterIndex++] = this.clusters[i];
             }
         }
 
+        newClusterSet.merge = merge;
         return newClusterSet;
     }
 
+    /**
+     * Restituisce l'unione che porta da questo cluster set a {@code next}, specificato come parametro. Se non è stata
+     * registrata durante il mining viene ricavata confrontando i due cluster set, nel qual caso la sua altezza non è
+     * nota.
+     *
+     * @param next il cluster set del livello successivo
+     * @return l'unione che porta a {@code next}, {@code null} se {@code next} non si ottiene da questo cluster set
+     *         unendo due cluster
+     */
+    Merge mergeTo(ClusterSet next) {
+        if (next.merge != null) {
+            return next.merge;
+        }
+        if (next.lastClusterIndex != this.lastClusterIndex - 1) {
+            return null;
+        }
+
+        // I cluster prima del primo unito sono invariati, quelli fra i due uniti pure e quelli dopo il secondo scalano
+        int first = 0;
+        while (first < next.lastClusterIndex && this.clusters[first].hasSameExamples(next.clusters[first])) {
+            ++first;
+        }
+
+        int second = first + 1;
+        while (second < next.lastClusterIndex && this.clusters[second].hasSameExamples(next.clusters[second])) {
+            ++second;
+        }
+
+        if (first >= next.lastClusterIndex || second >= this.lastClusterIndex) {
+            return null;
+        }
+        if (!next.clusters[first].hasSameExamples(this.clusters[first].mergeCluster(this.clusters[second]))) {
+            return null;
+        }
+        for (int i = second; i < next.lastClusterIndex; ++i) {
+            if (!this.clusters[i + 1].hasSameExamples(next.clusters[i])) {
+                return null;
+            }
+        }
+
+        return new Merge(first, second, Double.NaN);
+    }
+
     /**
      * <p>Restituisce una rappresentazione testuale del cluster set.
      *
@@ -142,13 +268,100 @@ class ClusterSet implements Serializable {
         var stringBuilder = new StringBuilder();
 
         for (int i = 0; i < this.lastClusterIndex; ++i) {
-            stringBuilder.append("cluster");
-            stringBuilder.append(i);
-            stringBuilder.append(':');
-            stringBuilder.append(this.clusters[i].toString(data));
-            stringBuilder.append('\n');
+            this.appendCluster(i, stringBuilder, data);
         }
 
         return stringBuilder.toString();
     }
+
+    /**
+     * Scrive su {@code out} la rappresentazione testuale del cluster set, la stessa di {@link ClusterSet#toString(Data)},
+     * usando {@code data} per ricevere i valori degli esempi (entrambi specificati come parametro).
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    public void writeTo(Appendable out, Data data) throws IOException {
+        this.writeTo(out, data, 0, this.lastClusterIndex);
+    }
+
+    /**
+     * Scrive su {@code out} la rappresentazione testuale dei soli cluster con indice compreso fra {@code fromCluster}
+     * (incluso) e {@code toCluster} (escluso), nello stesso formato di {@link ClusterSet#toString(Data)} e con i loro
+     * indici originali, usando {@code data} per ricevere i valori degli esempi (tutti specificati come parametro).
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @param fromCluster l'indice del primo cluster da scrivere
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster da scrivere
+     * @throws IOException in caso di errori durante la scrittura
+     * @throws IndexOutOfBoundsException se l'intervallo dei cluster non è contenuto nel cluster set
+     */
+    public void writeTo(Appendable out, Data data, int fromCluster, int toCluster) throws IOException {
+        Objects.checkFromToIndex(fromCluster, toCluster, this.lastClusterIndex);
+
+        var buffer = new RenderBuffer(out);
+        this.appendTo(buffer, data, fromCluster, toCluster);
+        buffer.flush();
+    }
+
+    /**
+     * Aggiunge a {@code buffer} la rappresentazione testuale dei cluster con indice compreso fra {@code fromCluster}
+     * (incluso) e {@code toCluster} (escluso), usando {@code data} per ricevere i valori degli esempi (tutti
+     * specificati come parametro). Il buffer viene svuotato sulla sua destinazione solo alla fine di un cluster.
+     *
+     * @param buffer il buffer a cui aggiungere la rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @param fromCluster l'indice del primo cluster da scrivere
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster da scrivere, al più la dimensione del cluster
+     *                  set
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    void appendTo(RenderBuffer buffer, Data data, int fromCluster, int toCluster) throws IOException {
+        for (int i = fromCluster; i < toCluster; ++i) {
+            this.appendCluster(i, buffer.getBuilder(), data);
+            buffer.flushIfFull();
+        }
+    }
+
+    /**
+     * Aggiunge a {@code builder} la rappresentazione testuale del cluster set, ottenuta come in
+     * {@link ClusterSet#toString(Data)}, consegnandone il contenuto a {@code sink} ogni volta che supera
+     * {@code chunkSize} caratteri (tutti specificati come parametro). Il contenuto viene consegnato solo alla fine di
+     * un cluster, perciò ogni pezzo contiene cluster interi.
+     *
+     * @param data i dati che contengono gli esempi
+     * @param chunkSize il numero di caratteri oltre il quale il contenuto di {@code builder} viene consegnato
+     * @param builder il buffer in cui viene costruita la rappresentazione testuale
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     */
+    void render(Data data, int chunkSize, StringBuilder builder, ChunkSink sink) throws IOException {
+        for (int i = 0; i < this.lastClusterIndex; ++i) {
+            this.appendCluster(i, builder, data);
+
+            if (builder.length() >= chunkSize) {
+                sink.accept(builder.toString());
+                builder.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Aggiunge a {@code builder} la riga del cluster con indice {@code index}, nel formato di
+     * {@link ClusterSet#toString(Data)}, usando {@code data} per ricevere i valori degli esempi (tutti specificati come
+     * parametro).
+     *
+     * @param index l'indice del cluster
+     * @param builder il buffer a cui aggiungere la riga
+     * @param data i dati che contengono gli esempi
+     */
+    private void appendCluster(int index, StringBuilder builder, Data data) {
+        builder.append("cluster");
+        builder.append(index);
+        builder.append(':');
+        this.clusters[index].appendTo(builder, data);
+        builder.append('\n');
+    }
 }
@@ -0,0 +1,106 @@
+package com.davidecarella.hclus.server.clustering;
+
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.exceptions.IncompatibleDataException;
+
+import java.io.Serializable;
+
+/**
+ * <p>Classe immutabile che identifica i dati da cui è stato creato un dendrogramma: il numero di esempi, il numero di
+ * attributi e l'{@link Data#getFingerprint() impronta} dei valori.
+ *
+ * <p>La firma viene salvata insieme al dendrogramma, perciò quando un dendrogramma viene caricato si può controllare in
+ * tempo costante se è stato creato dai dati caricati, senza rileggerli né confrontarli con altro: l'impronta dei dati
+ * viene infatti calcolata una sola volta, quando vengono caricati.
+ */
+final class DataSignature implements Serializable {
+    /**
+     * L'identificativo di versione per la serializzazione.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Il numero di esempi.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * Il numero di attributi.
+     */
+    private final int numberOfAttributes;
+
+    /**
+     * L'impronta dei valori, in esadecimale.
+     */
+    private final String fingerprint;
+
+    /**
+     * Costruisce la firma dei dati con {@code numberOfExamples} esempi, {@code numberOfAttributes} attributi e impronta
+     * {@code fingerprint}, tutti specificati come parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @param numberOfAttributes il numero di attributi
+     * @param fingerprint l'impronta dei valori, in esadecimale
+     */
+    DataSignature(int numberOfExamples, int numberOfAttributes, String fingerprint) {
+        this.numberOfExamples = numberOfExamples;
+        this.numberOfAttributes = numberOfAttributes;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Restituisce la firma dei dati {@code data}, specificati come parametro.
+     *
+     * @param data i dati
+     * @return la firma dei dati
+     */
+    static DataSignature of(Data data) {
+        return new DataSignature(data.getNumberOfExamples(), data.getNumberOfAttributes(), data.getFingerprint());
+    }
+
+    /**
+     * Restituisce il numero di esempi.
+     *
+     * @return il numero di esempi
+     */
+    int getNumberOfExamples() {
+        return this.numberOfExamples;
+    }
+
+    /**
+     * Restituisce il numero di attributi.
+     *
+     * @return il numero di attributi
+     */
+    int getNumberOfAttributes() {
+        return this.numberOfAttributes;
+    }
+
+    /**
+     * Restituisce l'impronta dei valori.
+     *
+     * @return l'impronta dei valori, in esadecimale
+     */
+    String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Controlla che i dati {@code data}, specificati come parametro, siano quelli identificati da questa firma.
+     *
+     * @param data i dati da controllare
+     * @throws IncompatibleDataException se i dati hanno un numero di esempi o di attributi diverso oppure valori
+     *                                   diversi
+     */
+    void check(Data data) throws IncompatibleDataException {
+        if (data.getNumberOfExamples() != this.numberOfExamples) {
+            throw new IncompatibleDataException(String.format("il dendrogramma è stato creato da dati con %d esempi, quelli caricati ne hanno %d", this.numberOfExamples, data.getNumberOfExamples()));
+        }
+        if (data.getNumberOfAttributes() != this.numberOfAttributes) {
+            throw new IncompatibleDataException(String.format("il dendrogramma è stato creato da dati con %d attributi, quelli caricati ne hanno %d", this.numberOfAttributes, data.getNumberOfAttributes()));
+        }
+        if (!data.getFingerprint().equals(this.fingerprint)) {
+            throw new IncompatibleDataException("il dendrogramma è stato creato da dati con valori diversi da quelli caricati");
+        }
+    }
+}
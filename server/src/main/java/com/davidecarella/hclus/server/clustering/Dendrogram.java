@@ -1,19 +1,66 @@
 package com.davidecarella.hclus.server.clustering;
 
 import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.exceptions.InvalidCutException;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Objects;
 
 /**
- * Classe che rappresenta un dendrogramma, ovvero un albero che rappresenta la composizione dei
+ * <p>Classe che rappresenta un dendrogramma, ovvero un albero che rappresenta la composizione dei
  * {@link ClusterSet cluster set}.
+ *
+ * <p>I livelli di un dendrogramma caricato da file non vengono costruiti all'apertura ma letti dal
+ * {@link MappedDendrogram file mappato in memoria} quando servono. Per non occupare memoria viene tenuto solo l'ultimo
+ * livello letto, da cui si ottiene il successivo applicando una sola unione: leggere i livelli in ordine richiede
+ * quindi un tempo proporzionale alla dimensione di ognuno.
+ *
+ * <p>Il dendrogramma può essere tagliato, ovvero se ne può scegliere il livello che soddisfa un criterio (distanza
+ * massima fra i cluster uniti, numero di cluster o dimensione massima dei cluster), senza ripetere il mining: le
+ * altezze delle unioni vengono lette una sola volta e il livello viene cercato fra di esse con una ricerca binaria.
  */
 class Dendrogram implements Serializable {
     /**
-     * La lista di ogni livello dell'albero.
+     * L'identificativo di versione per la serializzazione, fissato al valore calcolato dalla prima versione della
+     * classe in modo che i file salvati in precedenza rimangano leggibili.
+     */
+    private static final long serialVersionUID = 2819116049138725095L;
+
+    /**
+     * La lista di ogni livello dell'albero. Se tutti i livelli vengono letti da {@link Dendrogram#source} è vuota, così
+     * che aprire un dendrogramma da file richieda un tempo costante.
      */
     private ClusterSet[] tree;
 
+    /**
+     * La profondità del dendrogramma, usata solo se i livelli vengono letti da {@link Dendrogram#source}.
+     */
+    private transient int depth = 0;
+
+    /**
+     * Il file da cui leggere i livelli non presenti in {@link Dendrogram#tree}, {@code null} se sono tutti presenti.
+     */
+    private transient MappedDendrogram source = null;
+
+    /**
+     * L'ultimo livello letto da {@link Dendrogram#source}, {@code null} se non ne è ancora stato letto alcuno.
+     */
+    private transient ClusterSet lastReadClusterSet = null;
+
+    /**
+     * Il numero dell'ultimo livello letto da {@link Dendrogram#source}.
+     */
+    private transient int lastReadLevel = -1;
+
+    /**
+     * Per ogni livello a partire dal primo, l'altezza massima fra quelle delle unioni che portano fino a quel livello,
+     * {@code null} se non è ancora stata calcolata.
+     */
+    private transient double[] cutHeights = null;
+
     /**
      * Costruttore che inizializza un dendrogramma con profondità {@code depth}, specificata come parametro.
      *
@@ -23,6 +70,36 @@ class Dendrogram implements Serializable {
         this.tree = new ClusterSet[depth];
     }
 
+    /**
+     * Costruttore che inizializza un dendrogramma con profondità {@code depth} i cui primi livelli (al più
+     * {@code depth}) sono quelli di {@code prefix}, entrambi specificati come parametro. I {@link ClusterSet cluster set}
+     * non vengono copiati ma condivisi con {@code prefix}: una volta creati non vengono più modificati.
+     *
+     * @param prefix il dendrogramma da cui prendere i primi livelli
+     * @param depth la profondità del dendrogramma
+     */
+    Dendrogram(Dendrogram prefix, int depth) {
+        this.source = prefix.source;
+        this.depth = depth;
+
+        // Se tutti i livelli vengono letti dal file non serve memorizzarne alcuno
+        boolean readOnly = this.source != null && prefix.tree.length == 0 && depth <= prefix.getDepth();
+        this.tree = new ClusterSet[readOnly ? 0 : depth];
+        System.arraycopy(prefix.tree, 0, this.tree, 0, Math.min(this.tree.length, prefix.tree.length));
+    }
+
+    /**
+     * Costruttore che inizializza un dendrogramma i cui livelli vengono letti da {@code source}, specificato come
+     * parametro, quando servono.
+     *
+     * @param source il file mappato in memoria che contiene il dendrogramma
+     */
+    Dendrogram(MappedDendrogram source) {
+        this.tree = new ClusterSet[0];
+        this.source = source;
+        this.depth = source.getDepth();
+    }
+
     /**
      * Inserisce {@code clusterSet} nel livello {@code level} dell'albero, entrambi specificati come parametro.
      *
@@ -40,7 +117,62 @@ class Dendrogram implements Serializable {
      * @return il {@link ClusterSet cluster set} al livello {@code level}
      */
     ClusterSet getClusterSet(int level) {
-        return this.tree[level];
+        var clusterSet = this.getStoredClusterSet(level);
+        if (clusterSet != null || this.source == null) {
+            return clusterSet;
+        }
+
+        return this.readClusterSet(level);
+    }
+
+    /**
+     * Legge il {@link ClusterSet cluster set} del livello {@code level}, specificato come parametro, da
+     * {@link Dendrogram#source}: se è il successivo dell'ultimo letto viene ottenuto applicando una sola unione,
+     * altrimenti viene ricostruito dal file.
+     *
+     * @param level il livello del {@link ClusterSet cluster set} che si vuole ottenere
+     * @return il {@link ClusterSet cluster set} al livello {@code level}
+     */
+    private synchronized ClusterSet readClusterSet(int level) {
+        if (this.lastReadClusterSet == null || level != this.lastReadLevel) {
+            if (this.lastReadClusterSet != null && level == this.lastReadLevel + 1) {
+                this.lastReadClusterSet = this.lastReadClusterSet.apply(this.source.getMerge(level));
+            } else {
+                this.lastReadClusterSet = this.source.getClusterSet(level);
+            }
+
+            this.lastReadLevel = level;
+        }
+
+        return this.lastReadClusterSet;
+    }
+
+    /**
+     * Restituisce l'unione che porta dal livello {@code level} - 1 al livello {@code level}, specificato come
+     * parametro. Se il livello viene letto da file, l'unione viene letta direttamente senza costruire i livelli.
+     *
+     * @param level il livello, a partire da {@code 1}
+     * @return l'unione che porta al livello {@code level}, {@code null} se il livello non si ottiene dal precedente
+     *         unendo due cluster
+     */
+    Merge getMerge(int level) {
+        var clusterSet = this.getStoredClusterSet(level);
+        if (clusterSet == null && this.source != null) {
+            return this.source.getMerge(level);
+        }
+
+        return this.getClusterSet(level - 1).mergeTo(clusterSet);
+    }
+
+    /**
+     * Restituisce il {@link ClusterSet cluster set} del livello {@code level}, specificato come parametro, se è
+     * memorizzato in {@link Dendrogram#tree}.
+     *
+     * @param level il livello del {@link ClusterSet cluster set} che si vuole ottenere
+     * @return il {@link ClusterSet cluster set} al livello {@code level}, {@code null} se non è memorizzato
+     */
+    private ClusterSet getStoredClusterSet(int level) {
+        return level < this.tree.length ? this.tree[level] : null;
     }
 
     /**
@@ -49,7 +181,161 @@ class Dendrogram implements Serializable {
      * @return la profondità del dendrogramma
      */
     int getDepth() {
-        return this.tree.length;
+        return this.source != null ? this.depth : this.tree.length;
+    }
+
+    /**
+     * Restituisce il numero di esempi da cui è stato creato il dendrogramma.
+     *
+     * @return il numero di esempi
+     */
+    int getNumberOfExamples() {
+        return this.source != null ? this.source.getNumberOfExamples() : this.tree[0].getSize();
+    }
+
+    /**
+     * Restituisce il livello più profondo in cui tutte le unioni hanno altezza al più {@code threshold}, specificata
+     * come parametro, ovvero in cui sono uniti tutti i cluster a distanza al più {@code threshold}. Con le distanze
+     * single-link e average-link le altezze delle unioni non diminuiscono mai da un livello al successivo; in generale
+     * viene considerata, per ogni livello, l'altezza massima delle unioni che lo precedono.
+     *
+     * @param threshold la distanza massima fra i cluster uniti
+     * @return il livello cercato
+     * @throws InvalidCutException se {@code threshold} non è un numero, se le altezze delle unioni non sono note o se il
+     *                             dendrogramma non è abbastanza profondo per sapere quali unioni la superano
+     */
+    int levelAtHeight(double threshold) throws InvalidCutException {
+        if (Double.isNaN(threshold)) {
+            throw new InvalidCutException("la distanza massima non è un numero");
+        }
+
+        var heights = this.getCutHeights();
+        int low = 0;
+        int high = heights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (heights[middle] <= threshold) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        if (low == heights.length) {
+            this.requireComplete(String.format("per sapere quali cluster hanno distanza al più %s", threshold));
+        }
+
+        return low;
+    }
+
+    /**
+     * Restituisce il livello che contiene {@code clusters}, specificato come parametro, cluster.
+     *
+     * @param clusters il numero di cluster
+     * @return il livello cercato
+     * @throws InvalidCutException se il numero di cluster non è compreso fra {@code 1} e il numero di esempi o se il
+     *                             dendrogramma non è abbastanza profondo
+     */
+    int levelWithClusters(int clusters) throws InvalidCutException {
+        int numberOfExamples = this.getNumberOfExamples();
+        if (clusters < 1 || clusters > numberOfExamples) {
+            throw new InvalidCutException(String.format("il numero di cluster deve essere compreso fra 1 e %d", numberOfExamples));
+        }
+
+        int level = numberOfExamples - clusters;
+        if (level >= this.getDepth()) {
+            throw new InvalidCutException(String.format("il dendrogramma non è abbastanza profondo per ottenere %d cluster, ne ha almeno %d", clusters, numberOfExamples - this.getDepth() + 1));
+        }
+
+        return level;
+    }
+
+    /**
+     * Restituisce il livello più profondo in cui nessun cluster contiene più di {@code maxSize}, specificato come
+     * parametro, esempi. Poiché i cluster crescono da un livello al successivo, le unioni vengono applicate in ordine
+     * con una {@link MergeReplay} fino alla prima che produce un cluster troppo grande.
+     *
+     * @param maxSize il numero massimo di esempi in un cluster
+     * @return il livello cercato
+     * @throws InvalidCutException se {@code maxSize} non è positivo o se il dendrogramma non è abbastanza profondo per
+     *                             sapere quale unione produce un cluster troppo grande
+     */
+    int levelWithMaxClusterSize(int maxSize) throws InvalidCutException {
+        if (maxSize < 1) {
+            throw new InvalidCutException("la dimensione massima dei cluster deve essere positiva");
+        }
+
+        var replay = new MergeReplay(this.getNumberOfExamples());
+        for (int level = 1; level < this.getDepth(); ++level) {
+            var merge = this.getMerge(level);
+            if (replay.mergedSize(merge) > maxSize) {
+                return level - 1;
+            }
+
+            replay.apply(merge);
+        }
+
+        this.requireComplete(String.format("per sapere quali cluster superano %d esempi", maxSize));
+        return this.getDepth() - 1;
+    }
+
+    /**
+     * Restituisce, per ogni livello a partire dal primo, l'altezza massima fra quelle delle unioni che portano fino a
+     * quel livello, calcolandola la prima volta.
+     *
+     * @return le altezze massime delle unioni, in ordine di livello a partire dal livello {@code 1}
+     * @throws InvalidCutException se l'altezza di un'unione non è nota, ad esempio perché il dendrogramma è stato
+     *                             caricato da un file salvato dalle versioni precedenti
+     */
+    private synchronized double[] getCutHeights() throws InvalidCutException {
+        if (this.cutHeights == null) {
+            var heights = new double[this.getDepth() - 1];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int level = 1; level < this.getDepth(); ++level) {
+                var merge = this.getMerge(level);
+                if (merge == null || Double.isNaN(merge.getHeight())) {
+                    throw new InvalidCutException("le distanze delle unioni del dendrogramma non sono note");
+                }
+
+                max = Math.max(max, merge.getHeight());
+                heights[level - 1] = max;
+            }
+
+            this.cutHeights = heights;
+        }
+
+        return this.cutHeights;
+    }
+
+    /**
+     * Controlla che il dendrogramma sia completo, ovvero che il suo ultimo livello contenga un solo cluster, altrimenti
+     * lancia un'eccezione che indica che serve un dendrogramma più profondo {@code reason}, specificato come parametro.
+     *
+     * @param reason il motivo per cui serve un dendrogramma più profondo
+     * @throws InvalidCutException se il dendrogramma non è completo
+     */
+    private void requireComplete(String reason) throws InvalidCutException {
+        if (this.getDepth() < this.getNumberOfExamples()) {
+            throw new InvalidCutException(String.format("il dendrogramma non è abbastanza profondo %s: estenderlo", reason));
+        }
+    }
+
+    /**
+     * Serializza il dendrogramma scrivendo tutti i livelli, compresi quelli che verrebbero letti da
+     * {@link Dendrogram#source}, senza tenerli in memoria nel dendrogramma.
+     *
+     * @param out lo stream su cui serializzare il dendrogramma
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        var tree = new ClusterSet[this.getDepth()];
+        for (int i = 0; i < tree.length; ++i) {
+            tree[i] = this.getClusterSet(i);
+        }
+
+        var fields = out.putFields();
+        fields.put("tree", tree);
+        out.writeFields();
     }
 
     /**
@@ -63,11 +349,11 @@ class Dendrogram implements Serializable {
     public String toString() {
         var stringBuilder = new StringBuilder();
 
-        for (int i = 0; i < this.tree.length; ++i) {
+        for (int i = 0; i < this.getDepth(); ++i) {
             stringBuilder.append("level");
             stringBuilder.append(i);
             stringBuilder.append(":\n");
-            stringBuilder.append(this.tree[i].toString());
+            stringBuilder.append(this.getClusterSet(i).toString());
             stringBuilder.append('\n');
         }
 
@@ -83,15 +369,92 @@ class Dendrogram implements Serializable {
      */
     public String toString(Data data) {
         var stringBuilder = new StringBuilder();
+        try {
+            this.writeTo(stringBuilder, data);
+        } catch (IOException exception) {
+            // Uno StringBuilder non lancia mai IOException
+            throw new UncheckedIOException(exception);
+        }
+
+        return stringBuilder.toString();
+    }
 
-        for (int i = 0; i < this.tree.length; ++i) {
+    /**
+     * Scrive su {@code out} la rappresentazione testuale del dendrogramma, la stessa di
+     * {@link Dendrogram#toString(Data)}, usando {@code data} per ricevere i valori degli esempi (entrambi specificati
+     * come parametro).
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    void writeTo(Appendable out, Data data) throws IOException {
+        this.writeTo(out, data, 0, this.getDepth(), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Scrive su {@code out} la rappresentazione testuale dei livelli compresi fra {@code fromLevel} (incluso) e
+     * {@code toLevel} (escluso) e, di ognuno, dei soli cluster con indice compreso fra {@code fromCluster} (incluso) e
+     * {@code toCluster} (escluso), usando {@code data} per ricevere i valori degli esempi (tutti specificati come
+     * parametro). Il formato è quello di {@link Dendrogram#toString(Data)}, con gli indici originali dei livelli e dei
+     * cluster; i livelli con meno di {@code toCluster} cluster vengono scritti fino all'ultimo cluster. I livelli
+     * vengono letti in ordine, perciò anche quelli di un dendrogramma mappato da un file richiedono un tempo
+     * proporzionale alla loro dimensione.
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @param fromLevel il primo livello da scrivere
+     * @param toLevel il livello successivo all'ultimo da scrivere
+     * @param fromCluster l'indice del primo cluster da scrivere per ogni livello
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster da scrivere per ogni livello
+     * @throws IOException in caso di errori durante la scrittura
+     * @throws IndexOutOfBoundsException se l'intervallo dei livelli non è contenuto nel dendrogramma o quello dei cluster
+     *                                   non è valido
+     */
+    void writeTo(Appendable out, Data data, int fromLevel, int toLevel, int fromCluster, int toCluster) throws IOException {
+        Objects.checkFromToIndex(fromLevel, toLevel, this.getDepth());
+        if (fromCluster < 0 || fromCluster > toCluster) {
+            throw new IndexOutOfBoundsException(String.format("Intervallo dei cluster [%d, %d) non valido", fromCluster, toCluster));
+        }
+
+        var buffer = new RenderBuffer(out);
+        var builder = buffer.getBuilder();
+        for (int i = fromLevel; i < toLevel; ++i) {
+            var clusterSet = this.getClusterSet(i);
+            builder.append("level");
+            builder.append(i);
+            builder.append(":\n");
+            clusterSet.appendTo(buffer, data, Math.min(fromCluster, clusterSet.getSize()), Math.min(toCluster, clusterSet.getSize()));
+            builder.append('\n');
+            buffer.flushIfFull();
+        }
+
+        buffer.flush();
+    }
+
+    /**
+     * Genera la stessa rappresentazione testuale di {@link Dendrogram#toString(Data)} consegnandola a {@code sink} un
+     * pezzo alla volta, senza mai costruirla per intero. Ogni livello termina un pezzo e i pezzi di un livello vengono
+     * spezzati, fra un cluster e l'altro, quando superano {@code chunkSize} caratteri (tutti specificati come
+     * parametro).
+     *
+     * @param data i dati che contengono gli esempi
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     */
+    void render(Data data, int chunkSize, ChunkSink sink) throws IOException {
+        var stringBuilder = new StringBuilder();
+
+        for (int i = 0; i < this.getDepth(); ++i) {
             stringBuilder.append("level");
             stringBuilder.append(i);
             stringBuilder.append(":\n");
-            stringBuilder.append(this.tree[i].toString(data));
+            this.getClusterSet(i).render(data, chunkSize, stringBuilder, sink);
             stringBuilder.append('\n');
-        }
 
-        return stringBuilder.toString();
+            sink.accept(stringBuilder.toString());
+            stringBuilder.setLength(0);
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.davidecarella.hclus.server.clustering;
+
+import com.davidecarella.hclus.server.data.Data;
+
+import java.io.IOException;
+
+/**
+ * Classe immutabile che rappresenta il taglio di un dendrogramma, ovvero il livello scelto secondo un criterio
+ * (distanza massima, numero di cluster o dimensione massima dei cluster) insieme ai suoi cluster.
+ *
+ * @see HierarchicalClusterMiner#cutAtHeight(double)
+ * @see HierarchicalClusterMiner#cutIntoClusters(int)
+ * @see HierarchicalClusterMiner#cutByMaxClusterSize(int)
+ */
+public final class DendrogramCut {
+    /**
+     * Il livello del dendrogramma scelto dal taglio.
+     */
+    private final int level;
+
+    /**
+     * L'altezza dell'ultima unione che porta al livello, {@code 0} per il primo livello.
+     */
+    private final double height;
+
+    /**
+     * I cluster del livello.
+     */
+    private final ClusterSet clusterSet;
+
+    /**
+     * Costruisce il taglio al livello {@code level}, a cui porta un'unione di altezza {@code height}, che contiene i
+     * cluster di {@code clusterSet} (tutti specificati come parametro).
+     *
+     * @param level il livello del dendrogramma
+     * @param height l'altezza dell'ultima unione che porta al livello
+     * @param clusterSet i cluster del livello
+     */
+    DendrogramCut(int level, double height, ClusterSet clusterSet) {
+        this.level = level;
+        this.height = height;
+        this.clusterSet = clusterSet;
+    }
+
+    /**
+     * Restituisce il livello del dendrogramma scelto dal taglio.
+     *
+     * @return il livello del dendrogramma
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Restituisce l'altezza dell'ultima unione che porta al livello, ovvero la distanza fra gli ultimi due cluster
+     * uniti.
+     *
+     * @return l'altezza dell'ultima unione, {@code 0} per il primo livello e {@link Double#NaN} se non è nota
+     */
+    public double getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Restituisce il numero di cluster del livello.
+     *
+     * @return il numero di cluster
+     */
+    public int getNumberOfClusters() {
+        return this.clusterSet.getSize();
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale del taglio usando {@code data}, specificato come parametro, per
+     * ricevere i valori degli esempi: il livello, il numero di cluster e l'altezza dell'ultima unione, seguiti dai
+     * cluster nello stesso formato di {@link HierarchicalClusterMiner#toString(Data)}.
+     *
+     * @param data i dati che contengono gli esempi
+     * @return una rappresentazione testuale del taglio
+     */
+    public String toString(Data data) {
+        return String.format("level%d (%d cluster, distanza %s):\n", this.level, this.getNumberOfClusters(), this.height)
+            + this.clusterSet.toString(data);
+    }
+
+    /**
+     * Genera la stessa rappresentazione testuale di {@link DendrogramCut#toString(Data)} consegnandola a {@code sink} un
+     * pezzo alla volta, spezzata fra un cluster e l'altro quando supera {@code chunkSize} caratteri (tutti specificati
+     * come parametro), senza mai costruirla per intero.
+     *
+     * @param data i dati che contengono gli esempi
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     */
+    public void render(Data data, int chunkSize, ChunkSink sink) throws IOException {
+        var stringBuilder = new StringBuilder();
+        stringBuilder.append(String.format("level%d (%d cluster, distanza %s):\n", this.level, this.getNumberOfClusters(), this.height));
+        this.clusterSet.render(data, chunkSize, stringBuilder, sink);
+
+        if (!stringBuilder.isEmpty()) {
+            sink.accept(stringBuilder.toString());
+        }
+    }
+}
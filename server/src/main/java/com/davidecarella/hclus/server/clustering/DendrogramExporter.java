@@ -0,0 +1,258 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * <p>Classe che esporta i {@link Dendrogram dendrogrammi} nei {@link ExportFormat formati standard}.
+ *
+ * <p>Entrambi i formati descrivono le unioni invece dei cluster di ogni livello, perciò il risultato ha dimensione
+ * lineare nel numero di esempi. Le unioni vengono lette una alla volta e applicate a una {@link MergeReplay}, che
+ * traduce le posizioni dei cluster uniti nei loro rappresentanti: la memoria usata è quindi lineare nel numero di
+ * esempi, anche per i dendrogrammi mappati da un file. Il testo viene scritto man mano attraverso un buffer di
+ * {@value BUFFER_SIZE} caratteri.
+ *
+ * <p>Se il dendrogramma non è completo vengono esportate solo le unioni presenti: la matrice di linkage ha meno di
+ * {@code n - 1} righe e il file Newick contiene un albero per ogni cluster dell'ultimo livello.
+ */
+final class DendrogramExporter {
+    /**
+     * La dimensione del buffer usato per scrivere il testo, in caratteri.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Il simbolo che, nella pila della visita dell'albero, indica di scrivere il separatore fra due figli.
+     */
+    private static final int SEPARATOR = Integer.MIN_VALUE;
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private DendrogramExporter() {
+    }
+
+    /**
+     * Esporta il dendrogramma {@code dendrogram} nel formato {@code format} nel file con percorso {@code path},
+     * sovrascrivendolo se esiste, e se {@code sync} è {@code true} forza la scrittura del file sul disco (tutti
+     * specificati come parametro). Come per il {@link DendrogramFormat formato binario}, il dendrogramma viene scritto
+     * in un file temporaneo nella stessa cartella che poi sostituisce {@code path}.
+     *
+     * @param dendrogram il dendrogramma da esportare
+     * @param format il formato in cui esportare il dendrogramma
+     * @param path il percorso del file
+     * @param sync indica se forzare la scrittura sul disco
+     * @throws IOException in caso di errori durante la scrittura o se il dendrogramma non può essere esportato nel
+     *                     formato {@code format}
+     */
+    static void write(Dendrogram dendrogram, ExportFormat format, Path path, boolean sync) throws IOException {
+        var temporaryPath = path.toAbsolutePath().getParent().resolve(String.format("%s.%s.tmp", path.getFileName(), UUID.randomUUID()));
+        try {
+            try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+                write(dendrogram, format, Channels.newOutputStream(channel));
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException | AccessDeniedException exception) {
+            // Il file temporaneo non è quello indicato dall'utente: l'errore viene riferito a quest'ultimo
+            throw new IOException(String.format("impossibile scrivere il file %s", path), exception);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Esporta il dendrogramma {@code dendrogram} nel formato {@code format} scrivendolo su {@code out} (tutti
+     * specificati come parametro). Lo stream non viene chiuso.
+     *
+     * @param dendrogram il dendrogramma da esportare
+     * @param format il formato in cui esportare il dendrogramma
+     * @param out lo stream su cui scrivere il dendrogramma
+     * @throws IOException in caso di errori durante la scrittura o se il dendrogramma non può essere esportato nel
+     *                     formato {@code format}
+     */
+    static void write(Dendrogram dendrogram, ExportFormat format, OutputStream out) throws IOException {
+        if (!DendrogramFormat.isSingletons(dendrogram.getClusterSet(0))) {
+            throw new IOException("Il primo livello del dendrogramma non contiene un cluster per ogni esempio");
+        }
+
+        var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), BUFFER_SIZE);
+        switch (format) {
+            case LINKAGE_MATRIX -> writeLinkageMatrix(dendrogram, writer);
+            case NEWICK -> writeNewick(dendrogram, writer);
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Scrive su {@code writer} la matrice di linkage del dendrogramma {@code dendrogram} (entrambi specificati come
+     * parametro), una riga per unione con i quattro valori separati da uno spazio.
+     *
+     * @param dendrogram il dendrogramma da esportare
+     * @param writer la destinazione del testo
+     * @throws IOException in caso di errori durante la scrittura o se le unioni o le loro distanze non sono note
+     */
+    private static void writeLinkageMatrix(Dendrogram dendrogram, Writer writer) throws IOException {
+        int numberOfExamples = dendrogram.getNumberOfExamples();
+        var replay = new MergeReplay(numberOfExamples);
+        var ids = identity(numberOfExamples);
+
+        for (int level = 1; level < dendrogram.getDepth(); ++level) {
+            var merge = getMerge(dendrogram, level);
+            if (Double.isNaN(merge.getHeight())) {
+                throw new IOException("Le distanze delle unioni del dendrogramma non sono note, impossibile creare la matrice di linkage");
+            }
+
+            int first = replay.findRepresentative(merge.getFirst());
+            int second = replay.findRepresentative(merge.getSecond());
+            writer.write(String.format("%d %d %s %d\n", Math.min(ids[first], ids[second]), Math.max(ids[first], ids[second]), merge.getHeight(), replay.mergedSize(merge)));
+
+            ids[first] = numberOfExamples + level - 1;
+            replay.apply(merge);
+        }
+    }
+
+    /**
+     * Scrive su {@code writer} il dendrogramma {@code dendrogram} (entrambi specificati come parametro) nel formato
+     * Newick. L'albero viene prima ricostruito con due array di figli, poi visitato in profondità con una pila
+     * esplicita, così che un dendrogramma molto sbilanciato non esaurisca lo stack. Se le distanze delle unioni non
+     * sono note i nodi vengono scritti senza lunghezza.
+     *
+     * @param dendrogram il dendrogramma da esportare
+     * @param writer la destinazione del testo
+     * @throws IOException in caso di errori durante la scrittura o se le unioni non sono note
+     */
+    private static void writeNewick(Dendrogram dendrogram, Writer writer) throws IOException {
+        int numberOfExamples = dendrogram.getNumberOfExamples();
+        int numberOfMerges = dendrogram.getDepth() - 1;
+        var replay = new MergeReplay(numberOfExamples);
+        var ids = identity(numberOfExamples);
+
+        // I nodi sono identificati come nella matrice di linkage: prima gli esempi, poi i cluster creati dalle unioni
+        var children = new int[2 * numberOfMerges];
+        var parents = new int[numberOfExamples + numberOfMerges];
+        var heights = new double[numberOfExamples + numberOfMerges];
+        boolean withLengths = true;
+        Arrays.fill(parents, -1);
+        for (int level = 1; level <= numberOfMerges; ++level) {
+            var merge = getMerge(dendrogram, level);
+            int node = numberOfExamples + level - 1;
+            int first = replay.findRepresentative(merge.getFirst());
+            int second = replay.findRepresentative(merge.getSecond());
+
+            children[2 * (level - 1)] = ids[first];
+            children[2 * (level - 1) + 1] = ids[second];
+            parents[ids[first]] = node;
+            parents[ids[second]] = node;
+            heights[node] = merge.getHeight();
+            withLengths &= !Double.isNaN(merge.getHeight());
+
+            ids[first] = node;
+            replay.apply(merge);
+        }
+
+        // Ogni nodo interno visitato viene sostituito da quattro simboli, perciò la pila non supera questa dimensione
+        var stack = new int[3 * numberOfMerges + 1];
+        for (int example = 0; example < numberOfExamples; ++example) {
+            if (!replay.isRepresentative(example)) {
+                continue;
+            }
+
+            int top = 0;
+            stack[top++] = ids[example];
+            while (top > 0) {
+                int symbol = stack[--top];
+                if (symbol == SEPARATOR) {
+                    writer.write(',');
+                } else if (symbol < 0) {
+                    // Il complemento di un nodo interno indica di chiuderlo dopo averne visitato i figli
+                    writer.write(')');
+                    writeLength(writer, ~symbol, parents, heights, withLengths);
+                } else if (symbol < numberOfExamples) {
+                    writer.write(Integer.toString(symbol));
+                    writeLength(writer, symbol, parents, heights, withLengths);
+                } else {
+                    int merge = symbol - numberOfExamples;
+                    writer.write('(');
+                    stack[top++] = ~symbol;
+                    stack[top++] = children[2 * merge + 1];
+                    stack[top++] = SEPARATOR;
+                    stack[top++] = children[2 * merge];
+                }
+            }
+
+            writer.write(";\n");
+        }
+    }
+
+    /**
+     * Scrive su {@code writer} la lunghezza del nodo {@code node}, ovvero la differenza fra l'altezza del padre e la
+     * sua, usando i padri {@code parents} e le altezze {@code heights} dei nodi, se {@code withLengths} è {@code true}
+     * e il nodo non è una radice (tutti specificati come parametro).
+     *
+     * @param writer la destinazione del testo
+     * @param node il nodo
+     * @param parents per ogni nodo, il padre o {@code -1} se è una radice
+     * @param heights per ogni nodo, l'altezza dell'unione che lo ha creato ({@code 0} per gli esempi)
+     * @param withLengths indica se scrivere le lunghezze
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private static void writeLength(Writer writer, int node, int[] parents, double[] heights, boolean withLengths) throws IOException {
+        if (withLengths && parents[node] >= 0) {
+            writer.write(':');
+            writer.write(Double.toString(heights[parents[node]] - heights[node]));
+        }
+    }
+
+    /**
+     * Restituisce l'unione che porta al livello {@code level} del dendrogramma {@code dendrogram}, entrambi specificati
+     * come parametro.
+     *
+     * @param dendrogram il dendrogramma
+     * @param level il livello, a partire da {@code 1}
+     * @return l'unione che porta al livello {@code level}
+     * @throws IOException se il livello non si ottiene dal precedente unendo due cluster
+     */
+    private static Merge getMerge(Dendrogram dendrogram, int level) throws IOException {
+        var merge = dendrogram.getMerge(level);
+        if (merge == null) {
+            throw new IOException(String.format("Il livello %d del dendrogramma non si ottiene dal precedente unendo due cluster", level));
+        }
+
+        return merge;
+    }
+
+    /**
+     * Restituisce un array in cui ognuno dei {@code size}, specificato come parametro, elementi contiene il proprio
+     * indice.
+     *
+     * @param size la dimensione dell'array
+     * @return l'array degli indici
+     */
+    private static int[] identity(int size) {
+        var array = new int[size];
+        for (int i = 0; i < size; ++i) {
+            array[i] = i;
+        }
+
+        return array;
+    }
+}
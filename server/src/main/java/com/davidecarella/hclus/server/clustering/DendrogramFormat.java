@@ -0,0 +1,387 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>Classe che legge e scrive i {@link Dendrogram dendrogrammi} nel formato binario dei file HCLUS, molto più compatto
+ * e veloce da leggere e scrivere della serializzazione Java, che memorizza ogni livello per intero.
+ *
+ * <p>Poiché il primo livello contiene un cluster per ogni esempio e ogni livello successivo si ottiene dal precedente
+ * con un'unica {@link Merge unione}, il file contiene solo le unioni. Tutti i valori sono in big-endian:
+ * <ul>
+ *     <li>il numero magico {@code "HCLD"} ({@code int});</li>
+ *     <li>la versione del formato ({@code short}), attualmente {@value FORMAT_VERSION};</li>
+ *     <li>un campo riservato ({@code short}), sempre {@code 0};</li>
+ *     <li>il numero di esempi ({@code int});</li>
+ *     <li>la profondità del dendrogramma ({@code int});</li>
+ *     <li>la {@link DataSignature firma} dei dati da cui è stato creato il dendrogramma: il numero di attributi
+ *     ({@code int}) e i 32 byte dell'impronta dei valori, oppure {@code 0} e 32 byte nulli se non è nota (solo dalla
+ *     versione 2 del formato);</li>
+ *     <li>per ogni livello dopo il primo, le posizioni dei due cluster uniti nel livello precedente ({@code int} e
+ *     {@code int}, la prima minore della seconda) e la loro distanza ({@code double}, {@code NaN} se non è nota);</li>
+ *     <li>il CRC-32C di tutti i byte precedenti ({@code int}).</li>
+ * </ul>
+ *
+ * <p>I file vengono scritti con un {@link FileChannel} attraverso un buffer di {@value BUFFER_SIZE} byte, perciò la
+ * memoria usata non dipende dalla dimensione del dendrogramma, e vengono letti mappandoli in memoria con un
+ * {@link MappedDendrogram}. Il CRC-32C permette di controllare l'integrità di un file senza interpretarlo: non viene
+ * controllato all'apertura, che deve richiedere un tempo costante, ma da {@link DendrogramFormat#verify(Path)}, che
+ * legge il file per intero. I file della versione 1, senza la firma dei dati, possono ancora essere letti.
+ */
+final class DendrogramFormat {
+    /**
+     * Il numero magico all'inizio dei file, ovvero i caratteri {@code "HCLD"}.
+     */
+    static final int MAGIC = 0x48434C44;
+
+    /**
+     * La versione del formato scritta nei file.
+     */
+    private static final short FORMAT_VERSION = 2;
+
+    /**
+     * La dimensione in byte dell'intestazione dei file della versione 1, che è anche la parte comune a tutte le
+     * versioni.
+     */
+    private static final int V1_HEADER_BYTES = 2 * Integer.BYTES + 2 * Short.BYTES + Integer.BYTES;
+
+    /**
+     * La dimensione in byte dell'impronta dei valori nella firma dei dati.
+     */
+    private static final int FINGERPRINT_BYTES = 32;
+
+    /**
+     * La dimensione in byte dell'intestazione del file.
+     */
+    private static final int HEADER_BYTES = V1_HEADER_BYTES + Integer.BYTES + FINGERPRINT_BYTES;
+
+    /**
+     * La dimensione in byte di un'unione nel file.
+     */
+    static final int MERGE_BYTES = 2 * Integer.BYTES + Double.BYTES;
+
+    /**
+     * La dimensione in byte del buffer usato per leggere e scrivere i file.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private DendrogramFormat() {}
+
+    /**
+     * Restituisce la dimensione in byte del file che contiene un dendrogramma di profondità {@code depth}, specificata
+     * come parametro.
+     *
+     * @param depth la profondità del dendrogramma
+     * @return la dimensione del file in byte
+     */
+    static long fileSize(int depth) {
+        return fileSize(HEADER_BYTES, depth);
+    }
+
+    /**
+     * Restituisce la dimensione in byte del file che contiene un dendrogramma di profondità {@code depth} con
+     * un'intestazione di {@code headerBytes} byte, entrambi specificati come parametro.
+     *
+     * @param headerBytes la dimensione dell'intestazione in byte
+     * @param depth la profondità del dendrogramma
+     * @return la dimensione del file in byte
+     */
+    private static long fileSize(int headerBytes, int depth) {
+        return headerBytes + (long) (depth - 1) * MERGE_BYTES + Integer.BYTES;
+    }
+
+    /**
+     * Restituisce {@code true} se il file con percorso {@code path}, specificato come parametro, inizia con il numero
+     * magico del formato binario, {@code false} altrimenti (ad esempio se contiene un miner serializzato).
+     *
+     * @param path il percorso del file
+     * @return {@code true} se il file è nel formato binario, {@code false} altrimenti
+     * @throws IOException in caso di errori durante l'apertura o la lettura del file
+     */
+    static boolean isBinary(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(Integer.BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Continua a leggere finché non ha letto il numero magico o il file è finito
+            }
+
+            return !buffer.hasRemaining() && buffer.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Scrive il dendrogramma {@code dendrogram}, creato dai dati con firma {@code signature}, nel file con percorso
+     * {@code path}, sovrascrivendolo se esiste, e se {@code sync} è {@code true} forza la scrittura del file e della
+     * cartella che lo contiene sul disco (tutti specificati come parametro). Il dendrogramma viene scritto in un file temporaneo nella stessa cartella che poi
+     * sostituisce {@code path}: in questo modo chi legge il file vede sempre il contenuto precedente o quello nuovo per
+     * intero e si può sovrascrivere anche il file da cui il dendrogramma è mappato, che non viene modificato mentre lo
+     * si legge.
+     *
+     * @param dendrogram il dendrogramma da scrivere
+     * @param signature la firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota
+     * @param path il percorso del file
+     * @param sync indica se forzare la scrittura sul disco
+     * @throws IOException in caso di errori durante la scrittura o se i livelli del dendrogramma non si ottengono l'uno
+     *                     dall'altro unendo due cluster
+     */
+    static void write(Dendrogram dendrogram, DataSignature signature, Path path, boolean sync) throws IOException {
+        if (!isSingletons(dendrogram.getClusterSet(0))) {
+            throw new IOException("Il primo livello del dendrogramma non contiene un cluster per ogni esempio");
+        }
+
+        var directory = path.toAbsolutePath().getParent();
+        var temporaryPath = directory.resolve(String.format("%s.%s.tmp", path.getFileName(), UUID.randomUUID()));
+        try {
+            writeTo(dendrogram, signature, temporaryPath, sync);
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException | AccessDeniedException exception) {
+            // Il file temporaneo non è quello indicato dall'utente: l'errore viene riferito a quest'ultimo
+            throw new IOException(String.format("impossibile scrivere il file %s", path), exception);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+
+        if (sync) {
+            // Rende persistente anche la sostituzione del file, che è una modifica della cartella
+            try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ignored) {
+                // Non tutti i sistemi operativi permettono di aprire una cartella
+            }
+        }
+    }
+
+    /**
+     * Scrive il dendrogramma {@code dendrogram}, il cui primo livello contiene un cluster per ogni esempio e creato dai
+     * dati con firma {@code signature}, nel file con percorso {@code path}, forzandone la scrittura sul disco se
+     * {@code sync} è {@code true} (tutti specificati come parametro).
+     *
+     * @param dendrogram il dendrogramma da scrivere
+     * @param signature la firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota
+     * @param path il percorso del file
+     * @param sync indica se forzare la scrittura sul disco
+     * @throws IOException in caso di errori durante la scrittura o se i livelli del dendrogramma non si ottengono l'uno
+     *                     dall'altro unendo due cluster
+     */
+    private static void writeTo(Dendrogram dendrogram, DataSignature signature, Path path, boolean sync) throws IOException {
+        int numberOfExamples = dendrogram.getClusterSet(0).getSize();
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            var checksum = new CRC32C();
+
+            buffer.putInt(MAGIC);
+            buffer.putShort(FORMAT_VERSION);
+            buffer.putShort((short) 0);
+            buffer.putInt(numberOfExamples);
+            buffer.putInt(dendrogram.getDepth());
+            if (signature != null) {
+                buffer.putInt(signature.getNumberOfAttributes());
+                buffer.put(HexFormat.of().parseHex(signature.getFingerprint()));
+            } else {
+                buffer.putInt(0);
+                buffer.put(new byte[FINGERPRINT_BYTES]);
+            }
+
+            for (int level = 1; level < dendrogram.getDepth(); ++level) {
+                var merge = dendrogram.getMerge(level);
+                if (merge == null) {
+                    throw new IOException(String.format("Il livello %d del dendrogramma non si ottiene dal precedente unendo due cluster", level));
+                }
+
+                if (buffer.remaining() < MERGE_BYTES) {
+                    flush(channel, buffer, checksum);
+                }
+
+                buffer.putInt(merge.getFirst());
+                buffer.putInt(merge.getSecond());
+                buffer.putDouble(merge.getHeight());
+            }
+
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer, checksum);
+            }
+
+            // Il checksum non comprende sé stesso: i byte ancora nel buffer vengono aggiunti prima di scriverlo
+            checksum.update(buffer.duplicate().flip());
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            if (sync) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Apre il dendrogramma contenuto nel file con percorso {@code path}, specificato come parametro, mappandolo in
+     * memoria: vengono lette solo l'intestazione e la dimensione del file, mentre i livelli vengono letti quando
+     * servono.
+     *
+     * @param path il percorso del file
+     * @return il dendrogramma mappato in memoria
+     * @throws IOException in caso di errori durante la lettura o la mappatura, se il file non è nel formato binario, ha
+     *                     una versione non supportata o non ha la dimensione indicata dall'intestazione
+     */
+    static MappedDendrogram map(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, buffer.limit(V1_HEADER_BYTES));
+
+            buffer.flip();
+            if (buffer.getInt() != MAGIC) {
+                throw new StreamCorruptedException("Il file non contiene un dendrogramma");
+            }
+
+            short version = buffer.getShort();
+            if (version != 1 && version != FORMAT_VERSION) {
+                throw new StreamCorruptedException(String.format("Versione del formato del dendrogramma non supportata: %d", version));
+            }
+
+            buffer.getShort();
+            int numberOfExamples = buffer.getInt();
+            int depth = buffer.getInt();
+
+            int headerBytes = V1_HEADER_BYTES;
+            DataSignature signature = null;
+            if (version >= 2) {
+                headerBytes = HEADER_BYTES;
+                readFully(channel, buffer.limit(HEADER_BYTES));
+                buffer.position(V1_HEADER_BYTES);
+
+                int numberOfAttributes = buffer.getInt();
+                var fingerprint = new byte[FINGERPRINT_BYTES];
+                buffer.get(fingerprint);
+                if (numberOfAttributes > 0) {
+                    signature = new DataSignature(numberOfExamples, numberOfAttributes, HexFormat.of().formatHex(fingerprint));
+                }
+            }
+
+            long mergesSize = (long) (depth - 1) * MERGE_BYTES;
+            if (numberOfExamples <= 0 || depth <= 0 || depth > numberOfExamples || channel.size() != fileSize(headerBytes, depth)) {
+                throw new StreamCorruptedException("Il file del dendrogramma è danneggiato: dimensioni non valide");
+            }
+
+            // La mappatura rimane valida anche dopo la chiusura del canale
+            long segmentSize = (long) MERGE_BYTES << MappedDendrogram.SEGMENT_SHIFT;
+            var segments = new MappedByteBuffer[(int) ((mergesSize + segmentSize - 1) / segmentSize)];
+            for (int s = 0; s < segments.length; ++s) {
+                long offset = s * segmentSize;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, headerBytes + offset, Math.min(segmentSize, mergesSize - offset));
+            }
+
+            return new MappedDendrogram(numberOfExamples, depth, signature, segments);
+        }
+    }
+
+    /**
+     * Controlla che il CRC-32C alla fine del file con percorso {@code path}, specificato come parametro, corrisponda ai
+     * byte che lo precedono. Il file viene letto per intero attraverso un buffer di {@value BUFFER_SIZE} byte, perciò
+     * il controllo richiede un tempo lineare nella sua dimensione e una memoria costante.
+     *
+     * @param path il percorso del file
+     * @throws IOException in caso di errori durante la lettura o se il checksum non corrisponde
+     */
+    static void verify(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long remaining = channel.size() - Integer.BYTES;
+            if (remaining < V1_HEADER_BYTES) {
+                throw new StreamCorruptedException("Il file del dendrogramma è danneggiato: il file è troncato");
+            }
+
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            var checksum = new CRC32C();
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, remaining));
+                readFully(channel, buffer);
+                remaining -= buffer.position();
+                checksum.update(buffer.flip());
+            }
+
+            buffer.clear().limit(Integer.BYTES);
+            readFully(channel, buffer);
+            if (buffer.flip().getInt() != (int) checksum.getValue()) {
+                throw new StreamCorruptedException("Il file del dendrogramma è danneggiato: il checksum non corrisponde");
+            }
+        }
+    }
+
+    /**
+     * Restituisce {@code true} se {@code clusterSet}, specificato come parametro, contiene un cluster per ogni esempio
+     * in ordine di indice, {@code false} altrimenti.
+     *
+     * @param clusterSet il cluster set da controllare
+     * @return {@code true} se il cluster set è un primo livello valido, {@code false} altrimenti
+     */
+    static boolean isSingletons(ClusterSet clusterSet) {
+        for (int i = 0; i < clusterSet.getSize(); ++i) {
+            var cluster = clusterSet.get(i);
+            if (cluster.getSize() != 1 || cluster.iterator().next() != i) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Aggiunge al checksum {@code checksum} i byte scritti in {@code buffer} e li scrive su {@code channel} (tutti
+     * specificati come parametro), lasciando il buffer vuoto e pronto per nuove scritture.
+     *
+     * @param channel il canale su cui scrivere
+     * @param buffer il buffer con i byte da scrivere
+     * @param checksum il checksum da aggiornare
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Legge da {@code channel} i byte che mancano per riempire {@code buffer}, entrambi specificati come parametro.
+     *
+     * @param channel il canale da cui leggere
+     * @param buffer il buffer da riempire
+     * @throws IOException in caso di errori durante la lettura o se il file finisce prima di riempire il buffer
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Il file del dendrogramma è danneggiato: il file è troncato");
+            }
+        }
+    }
+
+    /**
+     * Scrive su {@code channel} tutti i byte rimanenti di {@code buffer}, entrambi specificati come parametro.
+     *
+     * @param channel il canale su cui scrivere
+     * @param buffer il buffer con i byte da scrivere
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
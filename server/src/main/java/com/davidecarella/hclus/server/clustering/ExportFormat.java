@@ -0,0 +1,63 @@
+package com.davidecarella.hclus.server.clustering;
+
+/**
+ * Enumerazione dei formati standard in cui si può esportare un dendrogramma per usarlo con altri strumenti, ognuno
+ * riconosciuto dall'estensione del file.
+ *
+ * @see HierarchicalClusterMiner#export(ExportFormat, java.io.OutputStream)
+ */
+public enum ExportFormat {
+    /**
+     * La matrice di linkage usata da SciPy: una riga per ogni unione con gli identificativi dei due cluster uniti, la
+     * loro distanza e la dimensione del cluster unito. Gli esempi hanno come identificativo il proprio indice, mentre il
+     * cluster creato dall'unione in riga {@code i} (a partire da {@code 0}) ha identificativo {@code n + i}, dove
+     * {@code n} è il numero di esempi.
+     */
+    LINKAGE_MATRIX(".linkage"),
+
+    /**
+     * Il formato Newick: un albero per riga, terminato da {@code ;}, le cui foglie sono gli indici degli esempi e in cui
+     * ogni nodo ha come lunghezza la differenza fra l'altezza dell'unione che lo contiene e la propria.
+     */
+    NEWICK(".nwk");
+
+    /**
+     * L'estensione dei file nel formato.
+     */
+    private final String extension;
+
+    /**
+     * Costruisce il formato con estensione {@code extension}, specificata come parametro.
+     *
+     * @param extension l'estensione dei file nel formato
+     */
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Restituisce l'estensione dei file nel formato.
+     *
+     * @return l'estensione dei file nel formato
+     */
+    public String getExtension() {
+        return this.extension;
+    }
+
+    /**
+     * Restituisce il formato riconosciuto dall'estensione del file con nome {@code fileName}, specificato come
+     * parametro.
+     *
+     * @param fileName il nome del file
+     * @return il formato del file, {@code null} se l'estensione non è quella di nessun formato
+     */
+    public static ExportFormat forFileName(String fileName) {
+        for (var format : values()) {
+            if (fileName.endsWith(format.extension)) {
+                return format;
+            }
+        }
+
+        return null;
+    }
+}
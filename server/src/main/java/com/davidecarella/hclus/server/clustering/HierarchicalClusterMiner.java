@@ -3,21 +3,40 @@ package com.davidecarella.hclus.server.clustering;
 import com.davidecarella.hclus.server.data.Data;
 import com.davidecarella.hclus.server.distance.ClusterDistance;
 import com.davidecarella.hclus.server.exceptions.ClusterSetTooSmallException;
+import com.davidecarella.hclus.server.exceptions.IncompatibleDataException;
+import com.davidecarella.hclus.server.exceptions.InvalidCutException;
 import com.davidecarella.hclus.server.exceptions.InvalidDepthException;
 import com.davidecarella.hclus.server.exceptions.InvalidSizeException;
 
 import java.io.*;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
 
 /**
  * Classe che si occupa di effettuare l'operazione di "mining", ovvero di creare il dendrogramma a partire dai dati
  * forniti
  */
 public class HierarchicalClusterMiner implements Serializable {
+    /**
+     * L'identificativo di versione per la serializzazione, fissato al valore calcolato dalla prima versione della
+     * classe in modo che i file salvati in precedenza rimangano leggibili.
+     */
+    private static final long serialVersionUID = -7007781961111002861L;
+
     /**
      * Il dendogramma.
      */
     private Dendrogram dendrogram;
 
+    /**
+     * La firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota (ad esempio per i miner
+     * salvati dalle versioni precedenti).
+     */
+    private DataSignature signature;
+
     /**
      * Costruttore che inizializza il miner con un dendrogramma di profondità {@code depth}, specificata come parametro.
      *
@@ -27,6 +46,18 @@ public class HierarchicalClusterMiner implements Serializable {
         this.dendrogram = new Dendrogram(depth);
     }
 
+    /**
+     * Costruttore che inizializza il miner con il dendrogramma {@code dendrogram}, creato dai dati con firma
+     * {@code signature}, entrambi specificati come parametro.
+     *
+     * @param dendrogram il dendrogramma
+     * @param signature la firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota
+     */
+    private HierarchicalClusterMiner(Dendrogram dendrogram, DataSignature signature) {
+        this.dendrogram = dendrogram;
+        this.signature = signature;
+    }
+
     /**
      * Restituisce la profondità del dendrogramma memorizzato.
      *
@@ -34,6 +65,52 @@ public class HierarchicalClusterMiner implements Serializable {
      */
     public int getDendrogramDepth() { return this.dendrogram.getDepth(); }
 
+    /**
+     * Restituisce la dimensione in byte del file su cui viene salvato il miner con
+     * {@link HierarchicalClusterMiner#salva(String)}.
+     *
+     * @return la dimensione del file in byte
+     */
+    public long getFileSize() {
+        return DendrogramFormat.fileSize(this.dendrogram.getDepth());
+    }
+
+    /**
+     * Restituisce l'{@link Data#getFingerprint() impronta} dei dati da cui è stato creato il dendrogramma.
+     *
+     * @return l'impronta dei dati, {@code null} se non è nota
+     */
+    public String getDataFingerprint() {
+        return this.signature == null ? null : this.signature.getFingerprint();
+    }
+
+    /**
+     * <p>Controlla che il dendrogramma sia stato creato dai dati {@code data}, specificati come parametro.
+     *
+     * <p>Se il miner conosce la firma dei dati da cui è stato creato (perché è stato creato dal mining o caricato da un
+     * file che la contiene) il controllo confronta numero di esempi, numero di attributi e impronta dei valori, e
+     * richiede un tempo costante una volta calcolata l'impronta di {@code data}. Altrimenti si può controllare solo che
+     * il dendrogramma abbia tanti esempi quanti {@code data} e non sia più profondo.
+     *
+     * @param data i dati con cui si vuole usare il dendrogramma
+     * @throws IncompatibleDataException se il dendrogramma non è stato creato da {@code data}
+     */
+    public void checkCompatibility(Data data) throws IncompatibleDataException {
+        if (this.signature != null) {
+            this.signature.check(data);
+            return;
+        }
+
+        if (this.dendrogram.getDepth() > data.getNumberOfExamples()) {
+            throw new IncompatibleDataException("il dendrogramma è più profondo del numero di esempi dei dati caricati");
+        }
+
+        int numberOfExamples = this.dendrogram.getClusterSet(0).getSize();
+        if (numberOfExamples != data.getNumberOfExamples()) {
+            throw new IncompatibleDataException(String.format("il dendrogramma è stato creato da dati con %d esempi, quelli caricati ne hanno %d", numberOfExamples, data.getNumberOfExamples()));
+        }
+    }
+
     /**
      * Crea il dendrogramma utilizzando i dati forniti da {@code data} e l'oggetto per calcolare la distanza
      * {@code distanceCalculator}, entrambi forniti come parametro.
@@ -44,40 +121,248 @@ public class HierarchicalClusterMiner implements Serializable {
      * @throws InvalidSizeException quando ci sono due esempi con lunghezze diverse
      */
     public void mine(Data data, ClusterDistance distanceCalculator) throws InvalidDepthException, InvalidSizeException {
+        this.mine(data, distanceCalculator, MiningMonitor.NONE);
+    }
+
+    /**
+     * Crea il dendrogramma utilizzando i dati forniti da {@code data} e l'oggetto per calcolare la distanza
+     * {@code distanceCalculator}, notificando l'avanzamento a {@code monitor} (tutti forniti come parametro).
+     *
+     * @param data i dati
+     * @param distanceCalculator l'oggetto per calcolare la distanza
+     * @param monitor il monitor che segue l'avanzamento e può annullare il mining
+     * @throws InvalidDepthException quando la profondità del dendrogramma supera il numero di esempi in {@code data}
+     * @throws InvalidSizeException quando ci sono due esempi con lunghezze diverse
+     * @throws CancellationException quando il mining viene annullato tramite {@code monitor}
+     */
+    public void mine(Data data, ClusterDistance distanceCalculator, MiningMonitor monitor) throws InvalidDepthException, InvalidSizeException {
         if (this.dendrogram.getDepth() <= 0 || this.dendrogram.getDepth() > data.getNumberOfExamples()) {
             throw new InvalidDepthException("La profondità del dendrogramma deve essere al massimo pari al numero di esempi nel dataset");
         }
 
-        var firstLevel = new ClusterSet(data.getNumberOfExamples());
-        for (int i = 0; i < data.getNumberOfExamples(); i++) {
-            var cluster = new Cluster();
-            cluster.addData(i);
-            firstLevel.add(cluster);
+        this.signature = DataSignature.of(data);
+        this.dendrogram.setClusterSet(ClusterSet.singletons(data.getNumberOfExamples()), 0);
+        monitor.levelCompleted(1);
+
+        this.mineLevels(1, data, distanceCalculator, monitor);
+    }
+
+    /**
+     * <p>Restituisce un nuovo miner con un dendrogramma di profondità {@code depth} i cui primi livelli sono quelli di
+     * questo miner, creando i livelli mancanti a partire dall'ultimo con i dati {@code data} e l'oggetto per calcolare
+     * la distanza {@code distanceCalculator}, e notificando l'avanzamento a {@code monitor} (tutti forniti come
+     * parametro).
+     *
+     * <p>Poiché ogni livello dipende solo dal precedente, il risultato è identico a quello di {@link
+     * HierarchicalClusterMiner#mine(Data, ClusterDistance, MiningMonitor)} con profondità {@code depth}, purché questo
+     * miner sia stato creato con gli stessi dati e la stessa distanza. I livelli già presenti sono condivisi fra i due
+     * miner, non copiati.
+     *
+     * @param depth la profondità del nuovo dendrogramma
+     * @param data i dati
+     * @param distanceCalculator l'oggetto per calcolare la distanza
+     * @param monitor il monitor che segue l'avanzamento e può annullare il mining
+     * @return il miner con il dendrogramma esteso
+     * @throws InvalidDepthException quando {@code depth} è minore della profondità di questo dendrogramma o supera il
+     *                               numero di esempi in {@code data}, oppure quando questo dendrogramma non è stato
+     *                               creato da dati con lo stesso numero di esempi di {@code data}
+     * @throws InvalidSizeException quando ci sono due esempi con lunghezze diverse
+     * @throws CancellationException quando il mining viene annullato tramite {@code monitor}
+     */
+    public HierarchicalClusterMiner extend(int depth, Data data, ClusterDistance distanceCalculator, MiningMonitor monitor) throws InvalidDepthException, InvalidSizeException {
+        if (depth < this.dendrogram.getDepth() || depth > data.getNumberOfExamples()) {
+            throw new InvalidDepthException("La profondità del dendrogramma esteso deve essere compresa fra quella attuale e il numero di esempi nel dataset");
+        }
+
+        // Ogni livello ha un cluster in meno del precedente, a partire da un cluster per ogni esempio
+        int lastLevel = this.dendrogram.getDepth() - 1;
+        if (this.dendrogram.getClusterSet(lastLevel).getSize() != data.getNumberOfExamples() - lastLevel) {
+            throw new InvalidDepthException("Il dendrogramma non è stato creato da dati con lo stesso numero di esempi del dataset");
+        }
+
+        var extended = new HierarchicalClusterMiner(new Dendrogram(this.dendrogram, depth), DataSignature.of(data));
+        monitor.levelCompleted(this.dendrogram.getDepth());
+        extended.mineLevels(this.dendrogram.getDepth(), data, distanceCalculator, monitor);
+        return extended;
+    }
+
+    /**
+     * Restituisce un miner con i soli primi {@code depth} livelli, specificati come parametro, del dendrogramma di
+     * questo miner, che vengono condivisi e non copiati.
+     *
+     * @param depth la profondità del dendrogramma restituito
+     * @return questo miner se {@code depth} è pari alla sua profondità, altrimenti un nuovo miner con i primi
+     *         {@code depth} livelli
+     * @throws InvalidDepthException quando {@code depth} non è compresa fra {@code 1} e la profondità del dendrogramma
+     */
+    public HierarchicalClusterMiner truncate(int depth) throws InvalidDepthException {
+        if (depth <= 0 || depth > this.dendrogram.getDepth()) {
+            throw new InvalidDepthException("La profondità del dendrogramma troncato deve essere al massimo pari a quella attuale");
+        }
+
+        if (depth == this.dendrogram.getDepth()) {
+            return this;
+        }
+
+        return new HierarchicalClusterMiner(new Dendrogram(this.dendrogram, depth), this.signature);
+    }
+
+    /**
+     * Taglia il dendrogramma al livello più profondo in cui tutti i cluster uniti hanno distanza al più
+     * {@code threshold}, specificata come parametro, senza ripetere il mining.
+     *
+     * @param threshold la distanza massima fra i cluster uniti
+     * @return il taglio del dendrogramma
+     * @throws InvalidCutException se {@code threshold} non è un numero, se le distanze delle unioni non sono note o se
+     *                             il dendrogramma non è abbastanza profondo
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public DendrogramCut cutAtHeight(double threshold) throws InvalidCutException {
+        return this.cut(this.dendrogram.levelAtHeight(threshold));
+    }
+
+    /**
+     * Taglia il dendrogramma al livello che contiene {@code clusters}, specificato come parametro, cluster, senza
+     * ripetere il mining.
+     *
+     * @param clusters il numero di cluster
+     * @return il taglio del dendrogramma
+     * @throws InvalidCutException se il numero di cluster non è compreso fra {@code 1} e il numero di esempi o se il
+     *                             dendrogramma non è abbastanza profondo
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public DendrogramCut cutIntoClusters(int clusters) throws InvalidCutException {
+        return this.cut(this.dendrogram.levelWithClusters(clusters));
+    }
+
+    /**
+     * Taglia il dendrogramma al livello più profondo in cui nessun cluster contiene più di {@code maxSize},
+     * specificato come parametro, esempi, senza ripetere il mining.
+     *
+     * @param maxSize il numero massimo di esempi in un cluster
+     * @return il taglio del dendrogramma
+     * @throws InvalidCutException se {@code maxSize} non è positivo o se il dendrogramma non è abbastanza profondo
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public DendrogramCut cutByMaxClusterSize(int maxSize) throws InvalidCutException {
+        return this.cut(this.dendrogram.levelWithMaxClusterSize(maxSize));
+    }
+
+    /**
+     * Restituisce il cluster con indice {@code index} del livello {@code level} del dendrogramma, entrambi specificati
+     * come parametro.
+     *
+     * @param level il livello del dendrogramma
+     * @param index l'indice del cluster nel livello
+     * @return il cluster cercato
+     * @throws IndexOutOfBoundsException se il livello non è nel dendrogramma o il cluster non è nel livello
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public Cluster getCluster(int level, int index) {
+        Objects.checkIndex(level, this.dendrogram.getDepth());
+        var clusterSet = this.dendrogram.getClusterSet(level);
+        Objects.checkIndex(index, clusterSet.getSize());
+        return clusterSet.get(index);
+    }
+
+    /**
+     * Restituisce il riassunto del livello {@code level}, specificato come parametro, del dendrogramma.
+     *
+     * @param level il livello del dendrogramma
+     * @return il riassunto del livello
+     * @throws IndexOutOfBoundsException se il livello non è nel dendrogramma
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public LevelSummary summarizeLevel(int level) {
+        Objects.checkIndex(level, this.dendrogram.getDepth());
+        var clusterSet = this.dendrogram.getClusterSet(level);
+        int smallest = Integer.MAX_VALUE;
+        int largest = 0;
+        int singletons = 0;
+        for (int i = 0; i < clusterSet.getSize(); ++i) {
+            int size = clusterSet.get(i).getSize();
+            smallest = Math.min(smallest, size);
+            largest = Math.max(largest, size);
+            if (size == 1) {
+                ++singletons;
+            }
+        }
+
+        return new LevelSummary(level, clusterSet.getSize(), smallest, largest, singletons, this.heightOf(level));
+    }
+
+    /**
+     * Restituisce il taglio del dendrogramma al livello {@code level}, specificato come parametro.
+     *
+     * @param level il livello del dendrogramma
+     * @return il taglio del dendrogramma
+     */
+    private DendrogramCut cut(int level) {
+        return new DendrogramCut(level, this.heightOf(level), this.dendrogram.getClusterSet(level));
+    }
+
+    /**
+     * Restituisce l'altezza dell'unione che porta al livello {@code level}, specificato come parametro.
+     *
+     * @param level il livello del dendrogramma
+     * @return l'altezza dell'unione, {@code 0} per il primo livello e {@link Double#NaN} se non è nota
+     */
+    private double heightOf(int level) {
+        if (level == 0) {
+            return 0;
         }
 
-        this.dendrogram.setClusterSet(firstLevel, 0);
+        var merge = this.dendrogram.getMerge(level);
+        return merge == null ? Double.NaN : merge.getHeight();
+    }
 
-        for (int level = 1; level < this.dendrogram.getDepth(); ++level) {
+    /**
+     * Crea i livelli del dendrogramma a partire da {@code firstLevel}, unendo ogni volta i due cluster più vicini del
+     * livello precedente (tutti specificati come parametro).
+     *
+     * @param firstLevel il primo livello da creare, il precedente deve essere già presente
+     * @param data i dati
+     * @param distanceCalculator l'oggetto per calcolare la distanza
+     * @param monitor il monitor che segue l'avanzamento e può annullare il mining
+     * @throws InvalidSizeException quando ci sono due esempi con lunghezze diverse
+     * @throws CancellationException quando il mining viene annullato tramite {@code monitor}
+     */
+    private void mineLevels(int firstLevel, Data data, ClusterDistance distanceCalculator, MiningMonitor monitor) throws InvalidSizeException {
+        for (int level = firstLevel; level < this.dendrogram.getDepth(); ++level) {
             ClusterSet newLevel = null;
             try {
-                newLevel = this.dendrogram.getClusterSet(level - 1).mergeClosestClusters(distanceCalculator, data);
+                newLevel = this.dendrogram.getClusterSet(level - 1).mergeClosestClusters(distanceCalculator, data, monitor);
             } catch (ClusterSetTooSmallException ignored) {
             }
 
             assert newLevel != null;
             this.dendrogram.setClusterSet(newLevel, level);
+            monitor.levelCompleted(level + 1, this);
         }
     }
 
     /**
-     * Carica un miner da un file con nome {@code fileName}, specificato come parametro.
+     * Carica un miner da un file con nome {@code fileName}, specificato come parametro. Il file può essere nel
+     * {@link DendrogramFormat formato binario}, nel qual caso viene mappato in memoria e i livelli vengono letti solo
+     * quando servono, o contenere un miner salvato con la serializzazione Java dalle versioni precedenti.
      *
      * @param fileName il nome del file da cui si vuole caricare il miner
      * @return l'istanza del miner letta dal file
-     * @throws IOException in caso di errori durante l'apertura/lettura/chiusura del file
+     * @throws FileNotFoundException se il file non esiste
+     * @throws IOException in caso di errori durante l'apertura/lettura/chiusura del file o se il file è danneggiato
      * @throws ClassNotFoundException in caso in cui nel file non sia salvata un'istanza del miner
      */
     public static HierarchicalClusterMiner load(String fileName) throws IOException, ClassNotFoundException {
+        var path = toPath(fileName);
+        try {
+            if (DendrogramFormat.isBinary(path)) {
+                var mapped = DendrogramFormat.map(path);
+                return new HierarchicalClusterMiner(new Dendrogram(mapped), mapped.getSignature());
+            }
+        } catch (NoSuchFileException exception) {
+            throw new FileNotFoundException(fileName);
+        }
+
         try (FileInputStream fileStream = new FileInputStream(fileName);
              ObjectInputStream objectStream = new ObjectInputStream(fileStream))
         {
@@ -86,16 +371,88 @@ public class HierarchicalClusterMiner implements Serializable {
     }
 
     /**
-     * Salva il miner sul file con percorso {@code fileName}, specificato come parametro.
+     * Controlla l'integrità del file con nome {@code fileName}, specificato come parametro, nel
+     * {@link DendrogramFormat formato binario} confrontandone il CRC-32C con il contenuto. A differenza di
+     * {@link HierarchicalClusterMiner#load(String)}, che richiede un tempo costante, il controllo legge il file per
+     * intero.
+     *
+     * @param fileName il nome del file da controllare
+     * @throws FileNotFoundException se il file non esiste
+     * @throws IOException in caso di errori durante la lettura del file o se il file è danneggiato
+     */
+    public static void verify(String fileName) throws IOException {
+        try {
+            DendrogramFormat.verify(toPath(fileName));
+        } catch (NoSuchFileException exception) {
+            throw new FileNotFoundException(fileName);
+        }
+    }
+
+    /**
+     * Salva il miner sul file con percorso {@code fileName}, specificato come parametro, nel
+     * {@link DendrogramFormat formato binario}.
      *
      * @param fileName il percorso del file dove si vuole salvare il miner
      * @throws IOException in caso di errori durante il salvataggio sul file
      */
     public void salva(String fileName) throws IOException {
-        try (FileOutputStream fileStream = new FileOutputStream(fileName);
-             ObjectOutputStream objectStream = new ObjectOutputStream(fileStream))
-        {
-            objectStream.writeObject(this);
+        this.salva(fileName, false);
+    }
+
+    /**
+     * Salva il miner sul file con percorso {@code fileName} nel {@link DendrogramFormat formato binario}, forzando la
+     * scrittura sul disco se {@code sync} è {@code true} (entrambi specificati come parametro).
+     *
+     * @param fileName il percorso del file dove si vuole salvare il miner
+     * @param sync indica se forzare la scrittura sul disco prima di ritornare
+     * @throws IOException in caso di errori durante il salvataggio sul file
+     */
+    public void salva(String fileName, boolean sync) throws IOException {
+        DendrogramFormat.write(this.dendrogram, this.signature, toPath(fileName), sync);
+    }
+
+    /**
+     * Esporta il dendrogramma nel formato {@code format} scrivendolo man mano su {@code out} (entrambi specificati come
+     * parametro), senza chiudere lo stream. Il risultato e la memoria usata sono lineari nel numero di esempi.
+     *
+     * @param format il formato in cui esportare il dendrogramma
+     * @param out lo stream su cui scrivere il dendrogramma
+     * @throws IOException in caso di errori durante la scrittura o se il dendrogramma non può essere esportato nel
+     *                     formato {@code format}, ad esempio perché le distanze delle unioni non sono note
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void export(ExportFormat format, OutputStream out) throws IOException {
+        DendrogramExporter.write(this.dendrogram, format, out);
+    }
+
+    /**
+     * Esporta il dendrogramma nel formato {@code format} nel file con percorso {@code fileName}, forzando la scrittura
+     * sul disco se {@code sync} è {@code true} (tutti specificati come parametro). Il file esportato non può essere
+     * caricato con {@link HierarchicalClusterMiner#load(String)}.
+     *
+     * @param fileName il percorso del file dove si vuole esportare il dendrogramma
+     * @param format il formato in cui esportare il dendrogramma
+     * @param sync indica se forzare la scrittura sul disco prima di ritornare
+     * @throws IOException in caso di errori durante la scrittura o se il dendrogramma non può essere esportato nel
+     *                     formato {@code format}
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void export(String fileName, ExportFormat format, boolean sync) throws IOException {
+        DendrogramExporter.write(this.dendrogram, format, toPath(fileName), sync);
+    }
+
+    /**
+     * Converte il nome di file {@code fileName}, specificato come parametro, in un percorso.
+     *
+     * @param fileName il nome del file
+     * @return il percorso del file
+     * @throws IOException se {@code fileName} non è un percorso valido
+     */
+    private static Path toPath(String fileName) throws IOException {
+        try {
+            return Path.of(fileName);
+        } catch (InvalidPathException exception) {
+            throw new IOException(exception.getMessage(), exception);
         }
     }
 
@@ -117,8 +474,85 @@ public class HierarchicalClusterMiner implements Serializable {
      *
      * @param data i dati che contengono gli esempi
      * @return una rappresentazione testuale del miner
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
      */
     public String toString(Data data) {
         return this.dendrogram.toString(data);
     }
+
+    /**
+     * Scrive su {@code out} la rappresentazione testuale del miner, la stessa di
+     * {@link HierarchicalClusterMiner#toString(Data)}, usando {@code data} per ricevere i valori degli esempi (entrambi
+     * specificati come parametro). La rappresentazione viene scritta man mano attraverso un buffer di dimensione
+     * costante, senza costruirla per intero.
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @throws IOException in caso di errori durante la scrittura
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void writeTo(Appendable out, Data data) throws IOException {
+        this.dendrogram.writeTo(out, data);
+    }
+
+    /**
+     * Scrive su {@code out} una pagina della rappresentazione testuale del miner: i livelli compresi fra
+     * {@code fromLevel} (incluso) e {@code toLevel} (escluso) e, di ognuno, i soli cluster con indice compreso fra
+     * {@code fromCluster} (incluso) e {@code toCluster} (escluso), usando {@code data} per ricevere i valori degli
+     * esempi (tutti specificati come parametro). Livelli e cluster mantengono gli indici che hanno nella
+     * rappresentazione completa.
+     *
+     * @param out la destinazione della rappresentazione testuale
+     * @param data i dati che contengono gli esempi
+     * @param fromLevel il primo livello da scrivere
+     * @param toLevel il livello successivo all'ultimo da scrivere
+     * @param fromCluster l'indice del primo cluster da scrivere per ogni livello
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster da scrivere per ogni livello
+     * @throws IOException in caso di errori durante la scrittura
+     * @throws IndexOutOfBoundsException se l'intervallo dei livelli non è contenuto nel dendrogramma o quello dei cluster
+     *                                   non è valido
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void writeTo(Appendable out, Data data, int fromLevel, int toLevel, int fromCluster, int toCluster) throws IOException {
+        this.dendrogram.writeTo(out, data, fromLevel, toLevel, fromCluster, toCluster);
+    }
+
+    /**
+     * Genera la rappresentazione testuale del miner, la stessa di {@link HierarchicalClusterMiner#toString(Data)},
+     * consegnandola a {@code sink} un pezzo alla volta man mano che viene generata: in questo modo non è necessario
+     * tenerla in memoria per intero. Ogni pezzo contiene al più un livello e, se un livello supera {@code chunkSize}
+     * caratteri, viene spezzato fra un cluster e l'altro (tutti specificati come parametro).
+     *
+     * @param data i dati che contengono gli esempi
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void render(Data data, int chunkSize, ChunkSink sink) throws IOException {
+        this.dendrogram.render(data, chunkSize, sink);
+    }
+
+    /**
+     * Genera una pagina della rappresentazione testuale del miner, la stessa di
+     * {@link HierarchicalClusterMiner#writeTo(Appendable, Data, int, int, int, int)}, consegnandola a {@code sink} in
+     * pezzi di almeno {@code chunkSize} caratteri (tutti specificati come parametro) man mano che viene generata.
+     *
+     * @param data i dati che contengono gli esempi
+     * @param fromLevel il primo livello da scrivere
+     * @param toLevel il livello successivo all'ultimo da scrivere
+     * @param fromCluster l'indice del primo cluster da scrivere per ogni livello
+     * @param toCluster l'indice successivo a quello dell'ultimo cluster da scrivere per ogni livello
+     * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+     * @param sink la destinazione dei pezzi della rappresentazione testuale
+     * @throws IOException in caso di errori durante la consegna di un pezzo
+     * @throws IndexOutOfBoundsException se l'intervallo dei livelli non è contenuto nel dendrogramma o quello dei cluster
+     *                                   non è valido
+     * @throws UncheckedIOException se il dendrogramma è stato caricato da un file danneggiato
+     */
+    public void render(Data data, int fromLevel, int toLevel, int fromCluster, int toCluster, int chunkSize, ChunkSink sink) throws IOException {
+        var out = new ChunkAppendable(sink, chunkSize);
+        this.dendrogram.writeTo(out, data, fromLevel, toLevel, fromCluster, toCluster);
+        out.flush();
+    }
 }
@@ -0,0 +1,114 @@
+package com.davidecarella.hclus.server.clustering;
+
+/**
+ * Classe immutabile che riassume un livello del dendrogramma: il numero di cluster, la dimensione del più piccolo e
+ * del più grande, il numero di cluster con un solo esempio e l'altezza dell'unione che porta al livello.
+ *
+ * @see HierarchicalClusterMiner#summarizeLevel(int)
+ */
+public final class LevelSummary {
+    /**
+     * Il livello del dendrogramma.
+     */
+    private final int level;
+
+    /**
+     * Il numero di cluster del livello.
+     */
+    private final int numberOfClusters;
+
+    /**
+     * Il numero di esempi del cluster più piccolo.
+     */
+    private final int smallestClusterSize;
+
+    /**
+     * Il numero di esempi del cluster più grande.
+     */
+    private final int largestClusterSize;
+
+    /**
+     * Il numero di cluster con un solo esempio.
+     */
+    private final int singletons;
+
+    /**
+     * L'altezza dell'unione che porta al livello, {@code 0} per il primo livello.
+     */
+    private final double height;
+
+    /**
+     * Costruisce il riassunto del livello {@code level}, che ha {@code numberOfClusters} cluster di dimensione compresa
+     * fra {@code smallestClusterSize} e {@code largestClusterSize}, di cui {@code singletons} con un solo esempio, e a
+     * cui porta un'unione di altezza {@code height} (tutti specificati come parametro).
+     *
+     * @param level il livello del dendrogramma
+     * @param numberOfClusters il numero di cluster del livello
+     * @param smallestClusterSize il numero di esempi del cluster più piccolo
+     * @param largestClusterSize il numero di esempi del cluster più grande
+     * @param singletons il numero di cluster con un solo esempio
+     * @param height l'altezza dell'unione che porta al livello
+     */
+    LevelSummary(int level, int numberOfClusters, int smallestClusterSize, int largestClusterSize, int singletons, double height) {
+        this.level = level;
+        this.numberOfClusters = numberOfClusters;
+        this.smallestClusterSize = smallestClusterSize;
+        this.largestClusterSize = largestClusterSize;
+        this.singletons = singletons;
+        this.height = height;
+    }
+
+    /**
+     * Restituisce il livello del dendrogramma.
+     *
+     * @return il livello del dendrogramma
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Restituisce il numero di cluster del livello.
+     *
+     * @return il numero di cluster
+     */
+    public int getNumberOfClusters() {
+        return this.numberOfClusters;
+    }
+
+    /**
+     * Restituisce il numero di esempi del cluster più piccolo del livello.
+     *
+     * @return il numero di esempi del cluster più piccolo
+     */
+    public int getSmallestClusterSize() {
+        return this.smallestClusterSize;
+    }
+
+    /**
+     * Restituisce il numero di esempi del cluster più grande del livello.
+     *
+     * @return il numero di esempi del cluster più grande
+     */
+    public int getLargestClusterSize() {
+        return this.largestClusterSize;
+    }
+
+    /**
+     * Restituisce il numero di cluster del livello che contengono un solo esempio.
+     *
+     * @return il numero di cluster con un solo esempio
+     */
+    public int getSingletons() {
+        return this.singletons;
+    }
+
+    /**
+     * Restituisce l'altezza dell'unione che porta al livello, ovvero la distanza fra gli ultimi due cluster uniti.
+     *
+     * @return l'altezza dell'ultima unione, {@code 0} per il primo livello e {@link Double#NaN} se non è nota
+     */
+    public double getHeight() {
+        return this.height;
+    }
+}
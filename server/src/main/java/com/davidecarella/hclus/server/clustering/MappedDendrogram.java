@@ -0,0 +1,143 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * <p>Classe che permette di leggere i livelli di un dendrogramma salvato nel {@link DendrogramFormat formato binario}
+ * direttamente dal file, mappato in memoria, senza leggerlo per intero.
+ *
+ * <p>Poiché le unioni hanno tutte la stessa dimensione, la posizione nel file dell'unione che porta a un livello si
+ * calcola dal numero del livello: l'apertura richiede quindi un tempo costante, indipendente dalla dimensione del file,
+ * e la lettura di un livello richiede solo le unioni che lo precedono. Il file viene mappato in più segmenti di al più
+ * \(2^{26}\) unioni ciascuno, perché un singolo {@link MappedByteBuffer} non può superare i 2 GB.
+ *
+ * <p>Il checksum del file non viene controllato, perché richiederebbe di leggerlo tutto: le posizioni di ogni unione
+ * vengono però controllate quando viene letta e, se non sono valide, viene lanciata una {@link UncheckedIOException}
+ * che contiene una {@link StreamCorruptedException}. Il file non deve essere modificato finché è mappato.
+ */
+final class MappedDendrogram {
+    /**
+     * Il logaritmo in base 2 del numero massimo di unioni in un singolo segmento.
+     */
+    static final int SEGMENT_SHIFT = 26;
+
+    /**
+     * Il numero di esempi.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * La profondità del dendrogramma.
+     */
+    private final int depth;
+
+    /**
+     * La firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota.
+     */
+    private final DataSignature signature;
+
+    /**
+     * I segmenti del file che contengono le unioni, in ordine.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Costruisce il dendrogramma di profondità {@code depth} su {@code numberOfExamples} esempi, creato dai dati con
+     * firma {@code signature}, le cui unioni sono contenute in {@code segments} (tutti specificati come parametro).
+     *
+     * @param numberOfExamples il numero di esempi
+     * @param depth la profondità del dendrogramma
+     * @param signature la firma dei dati da cui è stato creato il dendrogramma, {@code null} se non è nota
+     * @param segments i segmenti del file che contengono le unioni, ognuno di \(2^{26}\) unioni tranne l'ultimo
+     */
+    MappedDendrogram(int numberOfExamples, int depth, DataSignature signature, MappedByteBuffer[] segments) {
+        this.numberOfExamples = numberOfExamples;
+        this.depth = depth;
+        this.signature = signature;
+        this.segments = segments;
+    }
+
+    /**
+     * Restituisce il numero di esempi.
+     *
+     * @return il numero di esempi
+     */
+    int getNumberOfExamples() {
+        return this.numberOfExamples;
+    }
+
+    /**
+     * Restituisce la profondità del dendrogramma.
+     *
+     * @return la profondità del dendrogramma
+     */
+    int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Restituisce la firma dei dati da cui è stato creato il dendrogramma.
+     *
+     * @return la firma dei dati, {@code null} se non è nota
+     */
+    DataSignature getSignature() {
+        return this.signature;
+    }
+
+    /**
+     * Restituisce l'unione che porta al livello {@code level}, specificato come parametro, dal precedente.
+     *
+     * @param level il livello, compreso fra {@code 1} e la profondità del dendrogramma esclusa
+     * @return l'unione che porta al livello {@code level}
+     * @throws UncheckedIOException se le posizioni dell'unione non sono valide
+     */
+    Merge getMerge(int level) {
+        long index = level - 1;
+        var segment = this.segments[(int) (index >>> SEGMENT_SHIFT)];
+        int offset = ((int) index & ((1 << SEGMENT_SHIFT) - 1)) * DendrogramFormat.MERGE_BYTES;
+
+        int first = segment.getInt(offset);
+        int second = segment.getInt(offset + Integer.BYTES);
+        double height = segment.getDouble(offset + 2 * Integer.BYTES);
+
+        // Il livello precedente contiene numberOfExamples - (level - 1) cluster
+        if (first < 0 || first >= second || second > this.numberOfExamples - level) {
+            throw new UncheckedIOException(new StreamCorruptedException(String.format("Il file del dendrogramma è danneggiato: unione non valida al livello %d", level)));
+        }
+
+        return new Merge(first, second, height);
+    }
+
+    /**
+     * Restituisce, per ogni esempio, la posizione del cluster che lo contiene nel livello {@code level}, specificato
+     * come parametro, senza costruire i livelli precedenti: le unioni che lo precedono vengono applicate con una
+     * {@link MergeReplay}.
+     *
+     * @param level il livello
+     * @return per ogni esempio, la posizione del cluster che lo contiene
+     * @throws UncheckedIOException se una delle unioni lette non è valida
+     */
+    int[] getMembership(int level) {
+        var replay = new MergeReplay(this.numberOfExamples);
+        for (int l = 1; l <= level; ++l) {
+            replay.apply(this.getMerge(l));
+        }
+
+        return replay.getMembership();
+    }
+
+    /**
+     * Restituisce il {@link ClusterSet cluster set} del livello {@code level}, specificato come parametro, costruito
+     * con {@link MappedDendrogram#getMembership(int)}.
+     *
+     * @param level il livello
+     * @return il cluster set del livello {@code level}
+     * @throws UncheckedIOException se una delle unioni lette non è valida
+     */
+    ClusterSet getClusterSet(int level) {
+        var merge = level > 0 ? this.getMerge(level) : null;
+        return ClusterSet.fromMembership(this.getMembership(level), this.numberOfExamples - level, merge);
+    }
+}
@@ -0,0 +1,74 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.Serializable;
+
+/**
+ * <p>Classe immutabile che rappresenta l'unione che porta da un livello del dendrogramma al successivo: i due
+ * {@link Cluster cluster} uniti, indicati con la loro posizione nel {@link ClusterSet cluster set} del livello
+ * precedente, e la loro distanza (l'altezza dell'unione).
+ *
+ * <p>Il cluster unito prende la posizione del primo, mentre il secondo viene rimosso e i cluster che lo seguono
+ * scalano di una posizione: conoscendo il primo livello, le unioni bastano quindi per ricostruire tutto il dendrogramma.
+ */
+final class Merge implements Serializable {
+    /**
+     * L'identificativo di versione per la serializzazione.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * La posizione del primo cluster unito nel livello precedente.
+     */
+    private final int first;
+
+    /**
+     * La posizione del secondo cluster unito nel livello precedente, maggiore di {@link Merge#first}.
+     */
+    private final int second;
+
+    /**
+     * La distanza fra i due cluster uniti, {@link Double#NaN} se non è nota.
+     */
+    private final double height;
+
+    /**
+     * Costruisce l'unione dei cluster in posizione {@code first} e {@code second} che hanno distanza {@code height},
+     * tutti specificati come parametro.
+     *
+     * @param first la posizione del primo cluster unito nel livello precedente
+     * @param second la posizione del secondo cluster unito nel livello precedente, maggiore di {@code first}
+     * @param height la distanza fra i due cluster uniti, {@link Double#NaN} se non è nota
+     */
+    Merge(int first, int second, double height) {
+        this.first = first;
+        this.second = second;
+        this.height = height;
+    }
+
+    /**
+     * Restituisce la posizione del primo cluster unito nel livello precedente.
+     *
+     * @return la posizione del primo cluster unito
+     */
+    int getFirst() {
+        return this.first;
+    }
+
+    /**
+     * Restituisce la posizione del secondo cluster unito nel livello precedente.
+     *
+     * @return la posizione del secondo cluster unito
+     */
+    int getSecond() {
+        return this.second;
+    }
+
+    /**
+     * Restituisce la distanza fra i due cluster uniti.
+     *
+     * @return la distanza fra i due cluster uniti, {@link Double#NaN} se non è nota
+     */
+    double getHeight() {
+        return this.height;
+    }
+}
@@ -0,0 +1,165 @@
+package com.davidecarella.hclus.server.clustering;
+
+/**
+ * <p>Classe che applica le {@link Merge unioni} di un dendrogramma una alla volta, a partire dal livello che contiene un
+ * cluster per ogni esempio, senza costruire i {@link ClusterSet cluster set} intermedi.
+ *
+ * <p>Poiché il cluster unito prende la posizione del primo dei due, i cluster di ogni livello sono ordinati per
+ * esempio con indice minimo: le unioni vengono quindi applicate a una union-find i cui rappresentanti sono proprio
+ * questi esempi, mantenuti in un albero di Fenwick per trovare in tempo logaritmico quello in una data posizione. Per
+ * ogni rappresentante viene mantenuta anche la dimensione del suo cluster.
+ */
+final class MergeReplay {
+    /**
+     * Il numero di esempi.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * Per ogni esempio, il padre nella union-find.
+     */
+    private final int[] parent;
+
+    /**
+     * Per ogni rappresentante, la dimensione del suo cluster.
+     */
+    private final int[] sizes;
+
+    /**
+     * L'albero di Fenwick che indica quali esempi sono rappresentanti.
+     */
+    private final int[] fenwick;
+
+    /**
+     * Il numero di unioni applicate.
+     */
+    private int level = 0;
+
+    /**
+     * Costruisce la riproduzione delle unioni a partire dal livello con un cluster per ognuno dei
+     * {@code numberOfExamples} esempi, specificato come parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     */
+    MergeReplay(int numberOfExamples) {
+        this.numberOfExamples = numberOfExamples;
+        this.parent = new int[numberOfExamples];
+        this.sizes = new int[numberOfExamples];
+        this.fenwick = new int[numberOfExamples + 1];
+        for (int i = 0; i < numberOfExamples; ++i) {
+            this.parent[i] = i;
+            this.sizes[i] = 1;
+            // Inizialmente ogni esempio è un rappresentante: ogni nodo contiene la lunghezza dell'intervallo che copre
+            this.fenwick[i + 1] = (i + 1) & -(i + 1);
+        }
+    }
+
+    /**
+     * Restituisce il numero di unioni applicate, ovvero il livello raggiunto.
+     *
+     * @return il livello raggiunto
+     */
+    int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Restituisce la dimensione del cluster che si otterrebbe applicando l'unione {@code merge}, specificata come
+     * parametro, senza applicarla.
+     *
+     * @param merge l'unione, con posizioni valide per il livello raggiunto
+     * @return la dimensione del cluster unito
+     */
+    int mergedSize(Merge merge) {
+        return this.sizes[this.findRepresentative(merge.getFirst())] + this.sizes[this.findRepresentative(merge.getSecond())];
+    }
+
+    /**
+     * Applica l'unione {@code merge}, specificata come parametro, passando al livello successivo.
+     *
+     * @param merge l'unione, con posizioni valide per il livello raggiunto
+     */
+    void apply(Merge merge) {
+        int first = this.findRepresentative(merge.getFirst());
+        int second = this.findRepresentative(merge.getSecond());
+
+        this.parent[second] = first;
+        this.sizes[first] += this.sizes[second];
+        for (int i = second + 1; i <= this.numberOfExamples; i += i & -i) {
+            --this.fenwick[i];
+        }
+
+        ++this.level;
+    }
+
+    /**
+     * Indica se l'esempio {@code example}, specificato come parametro, è il rappresentante del suo cluster nel livello
+     * raggiunto, ovvero se è l'esempio con indice minimo del cluster.
+     *
+     * @param example l'indice dell'esempio
+     * @return {@code true} se l'esempio è un rappresentante, {@code false} altrimenti
+     */
+    boolean isRepresentative(int example) {
+        return this.parent[example] == example;
+    }
+
+    /**
+     * Restituisce, per ogni esempio, la posizione del cluster che lo contiene nel livello raggiunto.
+     *
+     * @return per ogni esempio, la posizione del cluster che lo contiene
+     */
+    int[] getMembership() {
+        // La posizione di un cluster è il numero di rappresentanti con indice minore del suo
+        var position = new int[this.numberOfExamples];
+        var membership = new int[this.numberOfExamples];
+        int clusters = 0;
+        for (int i = 0; i < this.numberOfExamples; ++i) {
+            int root = this.find(i);
+            if (root == i) {
+                position[i] = clusters++;
+            }
+
+            membership[i] = position[root];
+        }
+
+        return membership;
+    }
+
+    /**
+     * Restituisce il rappresentante del cluster che contiene l'esempio {@code example}, specificato come parametro,
+     * comprimendo il cammino percorso.
+     *
+     * @param example l'indice dell'esempio
+     * @return l'indice del rappresentante
+     */
+    private int find(int example) {
+        int root = example;
+        while (this.parent[root] != root) {
+            this.parent[root] = this.parent[this.parent[root]];
+            root = this.parent[root];
+        }
+
+        return root;
+    }
+
+    /**
+     * Restituisce l'indice del rappresentante in posizione {@code position}, specificata come parametro, ovvero il
+     * più piccolo indice la cui somma prefissa nell'albero di Fenwick supera {@code position}.
+     *
+     * @param position la posizione del rappresentante
+     * @return l'indice del rappresentante
+     */
+    int findRepresentative(int position) {
+        int index = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(this.fenwick.length - 1); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next < this.fenwick.length && this.fenwick[next] < remaining) {
+                index = next;
+                remaining -= this.fenwick[next];
+            }
+        }
+
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+package com.davidecarella.hclus.server.clustering;
+
+/**
+ * <p>Interfaccia che permette di seguire l'avanzamento del mining e di annullarlo.
+ *
+ * <p>Il miner controlla {@link MiningMonitor#isCancelled()} durante la ricerca dei cluster più vicini e, se il mining è
+ * stato annullato, lancia una {@link java.util.concurrent.CancellationException}. Al termine di ogni livello viene
+ * chiamato {@link MiningMonitor#levelCompleted(int)} o, per i livelli ottenuti unendo due cluster,
+ * {@link MiningMonitor#levelCompleted(int, HierarchicalClusterMiner)}, che permette anche di leggere i livelli già
+ * creati.
+ *
+ * @see HierarchicalClusterMiner#mine(com.davidecarella.hclus.server.data.Data,
+ *      com.davidecarella.hclus.server.distance.ClusterDistance, MiningMonitor)
+ */
+public interface MiningMonitor {
+    /**
+     * Il monitor che non segue l'avanzamento e non annulla mai il mining.
+     */
+    MiningMonitor NONE = new MiningMonitor() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void levelCompleted(int levels) {}
+    };
+
+    /**
+     * Restituisce {@code true} se il mining è stato annullato, {@code false} altrimenti.
+     *
+     * @return {@code true} se il mining è stato annullato, {@code false} altrimenti
+     */
+    boolean isCancelled();
+
+    /**
+     * Notifica che sono stati completati i primi {@code levels}, specificato come parametro, livelli del dendrogramma.
+     *
+     * @param levels il numero di livelli completati
+     */
+    void levelCompleted(int levels);
+
+    /**
+     * Notifica che sono stati completati i primi {@code levels} livelli del dendrogramma di {@code miner}, entrambi
+     * specificati come parametro. Il dendrogramma ha già la profondità finale ma solo i primi {@code levels} livelli
+     * possono essere letti, ad esempio {@link HierarchicalClusterMiner#truncate(int) troncandolo}; non deve essere
+     * modificato. L'implementazione di default chiama {@link MiningMonitor#levelCompleted(int)}.
+     *
+     * @param levels il numero di livelli completati
+     * @param miner il miner che sta creando il dendrogramma
+     */
+    default void levelCompleted(int levels, HierarchicalClusterMiner miner) {
+        this.levelCompleted(levels);
+    }
+}
@@ -0,0 +1,90 @@
+package com.davidecarella.hclus.server.clustering;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>Classe che accumula la rappresentazione testuale di un dendrogramma, o di una sua parte, in un
+ * {@link StringBuilder} riutilizzato e la scrive su un {@link Appendable} ogni volta che supera
+ * {@value FLUSH_THRESHOLD} caratteri: in questo modo i valori degli esempi vengono formattati direttamente nel buffer,
+ * senza stringhe intermedie, e la memoria usata non dipende dalla dimensione della rappresentazione.
+ *
+ * <p>Se la destinazione è essa stessa uno {@link StringBuilder} viene usata direttamente come buffer, mentre su un
+ * {@link Writer} i caratteri vengono copiati in un array riutilizzato invece di creare una stringa per ogni scrittura.
+ */
+final class RenderBuffer {
+    /**
+     * Il numero di caratteri oltre il quale il contenuto del buffer viene scritto sulla destinazione.
+     */
+    private static final int FLUSH_THRESHOLD = 8 * 1024;
+
+    /**
+     * La destinazione della rappresentazione testuale.
+     */
+    private final Appendable out;
+
+    /**
+     * Il buffer in cui viene costruita la rappresentazione testuale.
+     */
+    private final StringBuilder builder;
+
+    /**
+     * L'array usato per copiare il buffer su un {@link Writer}, {@code null} finché non serve.
+     */
+    private char[] chars = null;
+
+    /**
+     * Costruisce il buffer che scrive la rappresentazione testuale su {@code out}, specificato come parametro.
+     *
+     * @param out la destinazione della rappresentazione testuale
+     */
+    RenderBuffer(Appendable out) {
+        this.out = out;
+        this.builder = out instanceof StringBuilder stringBuilder ? stringBuilder : new StringBuilder(2 * FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Restituisce il buffer in cui costruire la rappresentazione testuale.
+     *
+     * @return il buffer
+     */
+    StringBuilder getBuilder() {
+        return this.builder;
+    }
+
+    /**
+     * Scrive il contenuto del buffer sulla destinazione se supera {@value FLUSH_THRESHOLD} caratteri.
+     *
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    void flushIfFull() throws IOException {
+        if (this.builder.length() >= FLUSH_THRESHOLD) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Scrive tutto il contenuto del buffer sulla destinazione e svuota il buffer.
+     *
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    void flush() throws IOException {
+        if (this.builder == this.out || this.builder.isEmpty()) {
+            return;
+        }
+
+        if (this.out instanceof Writer writer) {
+            int length = this.builder.length();
+            if (this.chars == null || this.chars.length < length) {
+                this.chars = new char[length];
+            }
+
+            this.builder.getChars(0, length, this.chars, 0);
+            writer.write(this.chars, 0, length);
+        } else {
+            this.out.append(this.builder);
+        }
+
+        this.builder.setLength(0);
+    }
+}
@@ -0,0 +1,598 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Implementazione di {@link DataSource} che legge gli esempi da un file CSV locale.
+ *
+ * <p>Ogni riga del file è un esempio e i valori sono separati da un carattere separatore (di default {@code ,}). Se la
+ * prima riga non contiene solo numeri viene considerata come l'intestazione con i nomi degli attributi.
+ *
+ * <p>Il file viene diviso in blocchi che terminano sempre alla fine di una riga e ogni blocco viene mappato in memoria
+ * e analizzato in parallelo. I numeri vengono letti direttamente dai byte del file, senza creare stringhe intermedie,
+ * e i valori vengono scritti direttamente nelle colonne dei dati.
+ */
+public class CsvDataSource implements DataSource {
+    /**
+     * La dimensione massima in byte di un blocco analizzato da un singolo thread.
+     */
+    private static final int MAX_CHUNK_SIZE = 64 << 20;
+
+    /**
+     * Le potenze di dieci che possono essere rappresentate esattamente da un {@code double}.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Il percorso del file da cui si leggono gli esempi.
+     */
+    private final String fileName;
+
+    /**
+     * Il carattere che separa i valori in una riga.
+     */
+    private final byte separator;
+
+    /**
+     * Costruisce la sorgente a partire dal percorso del file, {@code fileName}, specificato come parametro, usando la
+     * virgola come separatore.
+     *
+     * @param fileName il percorso del file CSV
+     */
+    public CsvDataSource(String fileName) {
+        this(fileName, ',');
+    }
+
+    /**
+     * Costruisce la sorgente a partire dal percorso del file, {@code fileName}, e dal carattere separatore,
+     * {@code separator}, entrambi specificati come parametro.
+     *
+     * @param fileName il percorso del file CSV
+     * @param separator il carattere che separa i valori in una riga (deve essere un carattere ASCII)
+     * @throws IllegalArgumentException se il separatore non è un carattere ASCII
+     */
+    public CsvDataSource(String fileName, char separator) {
+        if (separator > 0x7F) {
+            throw new IllegalArgumentException("Il separatore deve essere un carattere ASCII");
+        }
+
+        this.fileName = fileName;
+        this.separator = (byte) separator;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.fileName;
+    }
+
+    @Override
+    public Data load() throws NoDataException {
+        try (var channel = FileChannel.open(Path.of(this.fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            var firstLine = readFirstLine(channel);
+            long start = 0;
+            List<String> attributeNames = null;
+            if (firstLine != null && !isNumericLine(firstLine)) {
+                attributeNames = parseHeader(firstLine);
+                start = Math.min(size, firstLine.length + 1L);
+            }
+
+            var boundaries = findChunkBoundaries(channel, start, size);
+            var buffers = new ArrayList<MappedByteBuffer>(boundaries.length - 1);
+            for (int i = 0; i + 1 < boundaries.length; ++i) {
+                buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]));
+            }
+
+            // Prima passata: si contano le righe di ogni blocco, in modo da sapere in che posizione delle colonne
+            // scriverà ogni blocco
+            var rowCounts = new long[buffers.size()];
+            int numberOfAttributes = -1;
+            long numberOfExamples = 0;
+            var counts = this.runInParallel(buffers.size(), i -> this.countRows(buffers.get(i)));
+            for (int i = 0; i < counts.size(); ++i) {
+                rowCounts[i] = counts.get(i)[0];
+                numberOfExamples += rowCounts[i];
+                if (numberOfAttributes == -1 && rowCounts[i] > 0) {
+                    numberOfAttributes = (int) counts.get(i)[1];
+                }
+            }
+
+            if (numberOfExamples == 0) {
+                throw new NoDataException("Il file non contiene degli esempi!");
+            }
+            if (attributeNames != null && attributeNames.size() != numberOfAttributes) {
+                throw new NoDataException("L'intestazione del file non corrisponde al numero di valori delle righe!");
+            }
+            if (numberOfExamples * numberOfAttributes > Integer.MAX_VALUE - 8) {
+                throw new NoDataException("Il file contiene troppi valori!");
+            }
+
+            // Seconda passata: ogni blocco scrive i propri valori direttamente nelle colonne
+            int n = (int) numberOfExamples;
+            int d = numberOfAttributes;
+            var columns = new double[n * d];
+            var firstRows = new int[buffers.size()];
+            for (int i = 1; i < firstRows.length; ++i) {
+                firstRows[i] = firstRows[i - 1] + (int) rowCounts[i - 1];
+            }
+            this.runInParallel(buffers.size(), i -> {
+                this.parseChunk(buffers.get(i), boundaries[i], columns, n, d, firstRows[i]);
+                return null;
+            });
+
+            if (attributeNames == null) {
+                attributeNames = DataSource.defaultAttributeNames(numberOfAttributes);
+            }
+
+            return new Data(attributeNames, n, columns);
+        } catch (IOException exception) {
+            throw new NoDataException("Errore durante il caricamento degli esempi!", exception);
+        }
+    }
+
+    /**
+     * Legge la prima riga (senza il carattere di fine riga) del file aperto in {@code channel}, specificato come
+     * parametro.
+     *
+     * @param channel il canale del file
+     * @return i byte della prima riga, {@code null} se il file è vuoto
+     * @throws IOException in caso di errori durante la lettura
+     */
+    private static byte[] readFirstLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return null;
+        }
+
+        long newLine = findNewLine(channel, 0, size);
+        long length = (newLine == -1 ? size : newLine);
+        if (length > MAX_CHUNK_SIZE) {
+            throw new IOException("La prima riga del file è troppo lunga!");
+        }
+
+        var buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Restituisce la posizione del primo carattere {@code '\n'} a partire dalla posizione {@code from} nel file aperto in
+     * {@code channel}, tutti specificati come parametro.
+     *
+     * @param channel il canale del file
+     * @param from la posizione da cui iniziare la ricerca
+     * @param size la dimensione del file
+     * @return la posizione del carattere, {@code -1} se non viene trovato
+     * @throws IOException in caso di errori durante la lettura
+     */
+    private static long findNewLine(FileChannel channel, long from, long size) throws IOException {
+        var buffer = ByteBuffer.allocate(8192);
+
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; ++i) {
+                if (buffer.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Divide la porzione di file fra {@code start} e {@code size} in blocchi di dimensione simile che terminano
+     * sempre alla fine di una riga.
+     *
+     * @param channel il canale del file
+     * @param start la posizione da cui iniziano gli esempi
+     * @param size la dimensione del file
+     * @return le posizioni di inizio di ogni blocco seguite dalla dimensione del file
+     * @throws IOException in caso di errori durante la lettura
+     */
+    private static long[] findChunkBoundaries(FileChannel channel, long start, long size) throws IOException {
+        long length = size - start;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long chunkCount = Math.max(Math.min(parallelism, length / (1 << 16)), (length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        chunkCount = Math.max(chunkCount, 1);
+
+        var boundaries = new ArrayList<Long>();
+        boundaries.add(start);
+        for (long i = 1; i < chunkCount; ++i) {
+            long guess = start + length * i / chunkCount;
+            long previous = boundaries.get(boundaries.size() - 1);
+            if (guess <= previous) {
+                continue;
+            }
+
+            long newLine = findNewLine(channel, guess, size);
+            if (newLine == -1) {
+                break;
+            }
+            if (newLine + 1 > previous && newLine + 1 < size) {
+                boundaries.add(newLine + 1);
+            }
+        }
+        boundaries.add(size);
+
+        for (int i = 1; i < boundaries.size(); ++i) {
+            if (boundaries.get(i) - boundaries.get(i - 1) > Integer.MAX_VALUE) {
+                throw new IOException("Il file contiene righe troppo lunghe!");
+            }
+        }
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Esegue in parallelo {@code task} su ogni indice fra {@code 0} e {@code count}, entrambi specificati come
+     * parametro.
+     *
+     * @param count il numero di indici
+     * @param task l'operazione da eseguire su ogni indice
+     * @param <T> il tipo del risultato dell'operazione
+     * @return i risultati dell'operazione, nello stesso ordine degli indici
+     * @throws NoDataException se l'operazione fallisce per almeno un indice
+     */
+    private <T> List<T> runInParallel(int count, ChunkTask<T> task) throws NoDataException {
+        var executor = Executors.newFixedThreadPool(Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors())));
+
+        try {
+            var futures = new ArrayList<Future<T>>(count);
+            for (int i = 0; i < count; ++i) {
+                int index = i;
+                futures.add(executor.submit(() -> task.run(index)));
+            }
+
+            var results = new ArrayList<T>(count);
+            for (var future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new NoDataException("Caricamento degli esempi interrotto!", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof NoDataException noDataException) {
+                throw noDataException;
+            }
+
+            throw new NoDataException("Errore durante il caricamento degli esempi!", exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Conta le righe non vuote contenute nel blocco {@code buffer}, specificato come parametro.
+     *
+     * @param buffer il contenuto del blocco
+     * @return un array che contiene il numero di righe non vuote e il numero di valori della prima di esse
+     */
+    private long[] countRows(ByteBuffer buffer) {
+        long rows = 0;
+        long firstRowValues = 0;
+        boolean blank = true;
+        int separators = 0;
+
+        int limit = buffer.limit();
+        for (int i = 0; i <= limit; ++i) {
+            byte current = i < limit ? buffer.get(i) : (byte) '\n';
+            if (current == '\n') {
+                if (!blank) {
+                    if (rows == 0) {
+                        firstRowValues = separators + 1;
+                    }
+                    ++rows;
+                }
+
+                blank = true;
+                separators = 0;
+            } else if (current == this.separator) {
+                blank = false;
+                ++separators;
+            } else if (!isBlank(current)) {
+                blank = false;
+            }
+        }
+
+        return new long[] { rows, firstRowValues };
+    }
+
+    /**
+     * Analizza un blocco del file, {@code buffer}, che inizia alla posizione {@code offset} del file e scrive i valori
+     * nelle colonne {@code columns} a partire dalla riga {@code firstRow}, tutti specificati come parametro.
+     *
+     * @param buffer il contenuto del blocco
+     * @param offset la posizione nel file da cui inizia il blocco (usata solo per i messaggi d'errore)
+     * @param columns le colonne in cui scrivere i valori, {@code null} se si vuole solo verificare il blocco
+     * @param numberOfExamples il numero totale di esempi (ovvero la lunghezza di ogni colonna)
+     * @param numberOfAttributes il numero di valori che deve avere ogni riga, {@code -1} se non è noto
+     * @param firstRow l'indice dell'esempio corrispondente alla prima riga del blocco
+     * @throws NoDataException se il blocco contiene dei valori non validi o righe con un numero diverso di valori
+     */
+    private void parseChunk(ByteBuffer buffer, long offset, double[] columns, int numberOfExamples, int numberOfAttributes, int firstRow) throws NoDataException {
+        int limit = buffer.limit();
+        int position = 0;
+        int row = firstRow;
+        int valuesInRow = 0;
+
+        while (position < limit) {
+            int end = position;
+            byte current = 0;
+            while (end < limit && (current = buffer.get(end)) != this.separator && current != '\n') {
+                ++end;
+            }
+
+            boolean endOfRow = end == limit || current == '\n';
+            int valueEnd = end;
+            while (valueEnd > position && isBlank(buffer.get(valueEnd - 1))) {
+                --valueEnd;
+            }
+            int valueStart = position;
+            while (valueStart < valueEnd && isBlank(buffer.get(valueStart))) {
+                ++valueStart;
+            }
+
+            if (valueStart == valueEnd) {
+                if (!endOfRow || valuesInRow != 0) {
+                    throw new NoDataException(String.format("Valore mancante alla posizione %d del file!", offset + position));
+                }
+            } else {
+                if (numberOfAttributes != -1 && valuesInRow >= numberOfAttributes) {
+                    throw new NoDataException(String.format("La riga alla posizione %d del file ha troppi valori!", offset + position));
+                }
+
+                double value = parseDouble(buffer, valueStart, valueEnd, offset);
+                if (columns != null) {
+                    columns[valuesInRow * numberOfExamples + row] = value;
+                }
+                ++valuesInRow;
+            }
+
+            if (endOfRow && valuesInRow != 0) {
+                if (numberOfAttributes != -1 && valuesInRow != numberOfAttributes) {
+                    throw new NoDataException(String.format("La riga alla posizione %d del file ha troppi pochi valori!", offset + position));
+                }
+
+                ++row;
+                valuesInRow = 0;
+            }
+
+            position = end + 1;
+        }
+    }
+
+    /**
+     * <p>Legge il numero reale contenuto in {@code buffer} fra le posizioni {@code start} (inclusa) e {@code end}
+     * (esclusa), tutti specificati come parametro.
+     *
+     * <p>Sono accettati solo numeri decimali, con segno, parte frazionaria ed esponente opzionali: valori come
+     * {@code NaN}, {@code Infinity}, i numeri esadecimali o con i suffissi {@code d} e {@code f} vengono rifiutati, così
+     * come i numeri troppo grandi per essere rappresentati, perché renderebbero prive di senso tutte le distanze.
+     *
+     * <p>Quando la mantissa ha al più 15 cifre significative e l'esponente è al più 22 in valore assoluto il risultato
+     * viene calcolato direttamente (ed è arrotondato correttamente); negli altri casi, molto rari nei dataset reali, si
+     * ricorre a {@link Double#parseDouble(String)}.
+     *
+     * @param buffer il buffer che contiene il numero
+     * @param start la posizione del primo carattere del numero
+     * @param end la posizione successiva all'ultimo carattere del numero
+     * @param offset la posizione nel file da cui inizia il buffer (usata solo per i messaggi d'errore)
+     * @return il numero letto
+     * @throws NoDataException se i caratteri non rappresentano un numero valido
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end, long offset) throws NoDataException {
+        int position = start;
+        boolean negative = false;
+        if (buffer.get(position) == '-' || buffer.get(position) == '+') {
+            negative = buffer.get(position) == '-';
+            ++position;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        while (position < end && isDigit(buffer.get(position))) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buffer.get(position) - '0');
+                if (mantissa != 0) {
+                    ++digits;
+                }
+            } else {
+                ++exponent;
+                ++digits;
+            }
+            anyDigit = true;
+            ++position;
+        }
+
+        if (position < end && buffer.get(position) == '.') {
+            ++position;
+            while (position < end && isDigit(buffer.get(position))) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buffer.get(position) - '0');
+                    if (mantissa != 0) {
+                        ++digits;
+                    }
+                    --exponent;
+                }
+                anyDigit = true;
+                ++position;
+            }
+        }
+
+        if (anyDigit && position < end && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            ++position;
+            boolean negativeExponent = false;
+            if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negativeExponent = buffer.get(position) == '-';
+                ++position;
+            }
+
+            int explicitExponent = 0;
+            boolean anyExponentDigit = false;
+            while (position < end && isDigit(buffer.get(position))) {
+                explicitExponent = Math.min(explicitExponent * 10 + (buffer.get(position) - '0'), 100_000);
+                anyExponentDigit = true;
+                ++position;
+            }
+
+            if (!anyExponentDigit) {
+                anyDigit = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (!anyDigit || position != end) {
+            throw notNumeric(start, offset);
+        }
+
+        double value;
+        if (digits <= 15 && Math.abs(exponent) <= 22) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            // Il testo è già stato riconosciuto come un numero decimale, perciò viene sempre letto correttamente
+            var bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            value = Math.abs(Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII)));
+            if (Double.isInfinite(value)) {
+                throw notNumeric(start, offset);
+            }
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Restituisce l'eccezione che indica che il valore che inizia alla posizione {@code start} del buffer, che a sua
+     * volta inizia alla posizione {@code offset} del file (entrambi specificati come parametro), non rappresenta un
+     * numero valido. Il messaggio, che viene inviato al client, indica solo la posizione del valore e non il suo
+     * contenuto.
+     *
+     * @param start la posizione del primo carattere del valore nel buffer
+     * @param offset la posizione nel file da cui inizia il buffer
+     * @return l'eccezione da lanciare
+     */
+    private static NoDataException notNumeric(int start, long offset) {
+        return new NoDataException(String.format("Valore non numerico alla posizione %d del file!", offset + start));
+    }
+
+    /**
+     * Restituisce {@code true} se la riga {@code line}, specificata come parametro, contiene solo numeri, {@code false}
+     * altrimenti. Una riga i cui valori sono numeri per Java ma non vengono accettati come dati (ad esempio
+     * {@code NaN}) è comunque considerata numerica: in questo modo non viene scambiata per l'intestazione e la lettura
+     * del file la rifiuta.
+     *
+     * @param line i byte della riga
+     * @return {@code true} se la riga contiene solo numeri, {@code false} altrimenti
+     */
+    private boolean isNumericLine(byte[] line) {
+        try {
+            this.parseChunk(ByteBuffer.wrap(line), 0, null, 0, -1, 0);
+            return true;
+        } catch (NoDataException exception) {
+            try {
+                for (var value : this.parseHeader(line)) {
+                    Double.parseDouble(value);
+                }
+
+                return true;
+            } catch (NumberFormatException notNumeric) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Restituisce i nomi degli attributi contenuti nella riga di intestazione {@code line}, specificata come
+     * parametro, rimuovendo eventuali spazi e virgolette.
+     *
+     * @param line i byte della riga di intestazione
+     * @return la lista dei nomi degli attributi
+     */
+    private List<String> parseHeader(byte[] line) {
+        var text = new String(line, StandardCharsets.UTF_8).strip();
+        var names = new ArrayList<String>();
+        for (var name : text.split(Pattern.quote(String.valueOf((char) this.separator)), -1)) {
+            name = name.strip();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            names.add(name);
+        }
+
+        return names;
+    }
+
+    /**
+     * Restituisce {@code true} se {@code value}, specificato come parametro, è una cifra decimale.
+     *
+     * @param value il carattere
+     * @return {@code true} se {@code value} è una cifra decimale, {@code false} altrimenti
+     */
+    private static boolean isDigit(byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+    /**
+     * Restituisce {@code true} se {@code value}, specificato come parametro, è uno spazio, una tabulazione o un
+     * ritorno a capo.
+     *
+     * @param value il carattere
+     * @return {@code true} se {@code value} è uno spazio, una tabulazione o un ritorno a capo, {@code false} altrimenti
+     */
+    private static boolean isBlank(byte value) {
+        return value == ' ' || value == '\t' || value == '\r';
+    }
+
+    /**
+     * Interfaccia funzionale per un'operazione eseguita su un blocco del file.
+     *
+     * @param <T> il tipo del risultato dell'operazione
+     */
+    @FunctionalInterface
+    private interface ChunkTask<T> {
+        /**
+         * Esegue l'operazione sul blocco con indice {@code index}, specificato come parametro.
+         *
+         * @param index l'indice del blocco
+         * @return il risultato dell'operazione
+         * @throws NoDataException se il blocco contiene dei valori non validi
+         */
+        T run(int index) throws NoDataException;
+    }
+}
@@ -1,21 +1,62 @@
 package com.davidecarella.hclus.server.data;
 
-import com.davidecarella.hclus.server.database.DbAccess;
-import com.davidecarella.hclus.server.database.TableData;
+import com.davidecarella.hclus.server.database.DatabaseDataSource;
 import com.davidecarella.hclus.server.exceptions.*;
 
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 
 /**
- * Classe che rappresenta dei dati, ovvero una lista di esempi.
+ * <p>Classe che rappresenta dei dati, ovvero una lista di esempi.
+ *
+ * <p>Internamente gli esempi non vengono memorizzati come istanze di {@link Example} ma per colonne: i valori
+ * dell'attributo \(k\) di tutti gli esempi sono contigui e iniziano all'indice \(k \cdot s\), dove \(s\) è il passo
+ * fra due colonne. Le colonne possono essere memorizzate in un array sullo heap oppure essere una vista (a precisione
+ * doppia o singola) su un {@link DataSnapshot file mappato in memoria}. Una volta costruiti i dati sono immutabili.
+ *
+ * <p>Con {@link Data#withDistances(DistanceMatrix)} si ottiene una vista degli stessi dati che, invece di calcolare
+ * ogni volta la distanza fra due esempi, la legge da una {@link DistanceMatrix matrice delle distanze} già calcolata.
  */
 public class Data {
     /**
-     * La lista degli esempi.
+     * I nomi degli attributi di ogni esempio.
      */
-    private List<Example> data = new ArrayList<>();
+    private final List<String> attributeNames;
+
+    /**
+     * Il numero di esempi contenuti.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * Il numero di valori fra l'inizio di una colonna e l'inizio della successiva.
+     */
+    private final int columnStride;
+
+    /**
+     * Le colonne memorizzate a precisione doppia, {@code null} se le colonne sono memorizzate a precisione singola.
+     */
+    private final DoubleBuffer doubleColumns;
+
+    /**
+     * Le colonne memorizzate a precisione singola, {@code null} se le colonne sono memorizzate a precisione doppia.
+     */
+    private final FloatBuffer floatColumns;
+
+    /**
+     * L'impronta dei dati, calcolata alla prima richiesta.
+     */
+    private volatile String fingerprint = null;
+
+    /**
+     * La matrice delle distanze fra gli esempi, {@code null} se le distanze vengono calcolate ogni volta.
+     */
+    private final DistanceMatrix distances;
 
     /**
      * Costruisce i dati usando le righe di una tabella (con nome {@code tableName} specificato come parametro) dal
@@ -23,16 +64,150 @@ public class Data {
      *
      * @param tableName la tabella le cui righe si vogliono usare come esempi
      * @throws NoDataException se ci dovesse essere un error durante il caricamento della tabella
+     * @see DatabaseDataSource
      */
     public Data(String tableName) throws NoDataException {
-        var db = new DbAccess();
-        var tableData = new TableData(db);
+        this(new DatabaseDataSource(tableName));
+    }
 
-        try {
-            this.data.addAll(tableData.getDistinctTransazioni(tableName));
-        } catch (DatabaseConnectionException | SQLException | EmptySetException | MissingNumberException exception) {
-            throw new NoDataException("Errore durante il caricamento degli esempi!", exception);
+    /**
+     * Costruisce i dati usando gli esempi forniti dalla sorgente {@code source}, specificata come parametro.
+     *
+     * @param source la sorgente da cui si vogliono caricare gli esempi
+     * @throws NoDataException se ci dovesse essere un errore durante il caricamento degli esempi o se la sorgente non
+     *                         contiene esempi
+     */
+    public Data(DataSource source) throws NoDataException {
+        this(source.load());
+    }
+
+    /**
+     * Costruisce i dati a partire dai nomi degli attributi, {@code attributeNames}, e dalla lista di esempi,
+     * {@code examples}, entrambi specificati come parametro.
+     *
+     * @param attributeNames i nomi degli attributi di ogni esempio
+     * @param examples la lista degli esempi
+     * @throws NoDataException se la lista degli esempi è vuota o se gli esempi non hanno tutti lo stesso numero di
+     *                         attributi
+     */
+    public Data(List<String> attributeNames, List<Example> examples) throws NoDataException {
+        this(attributeNames, examples.size(), toColumns(attributeNames.size(), examples));
+    }
+
+    /**
+     * Costruisce i dati a partire dai nomi degli attributi, {@code attributeNames}, dal numero di esempi,
+     * {@code numberOfExamples}, e dai valori memorizzati per colonne, {@code columns}, tutti specificati come
+     * parametro. L'array non viene copiato e non deve essere più modificato.
+     *
+     * @param attributeNames i nomi degli attributi di ogni esempio
+     * @param numberOfExamples il numero di esempi
+     * @param columns i valori degli esempi memorizzati per colonne
+     * @throws NoDataException se non ci sono esempi o se la dimensione di {@code columns} non è coerente con il numero
+     *                         di esempi e di attributi
+     */
+    public Data(List<String> attributeNames, int numberOfExamples, double[] columns) throws NoDataException {
+        this(attributeNames, numberOfExamples, numberOfExamples, DoubleBuffer.wrap(columns), null);
+    }
+
+    /**
+     * Costruisce i dati a partire dalle colonne già memorizzate in un buffer (a precisione doppia,
+     * {@code doubleColumns}, o singola, {@code floatColumns}), tutti specificati come parametro.
+     *
+     * @param attributeNames i nomi degli attributi di ogni esempio
+     * @param numberOfExamples il numero di esempi
+     * @param columnStride il numero di valori fra l'inizio di una colonna e l'inizio della successiva
+     * @param doubleColumns le colonne a precisione doppia, {@code null} se si usano {@code floatColumns}
+     * @param floatColumns le colonne a precisione singola, {@code null} se si usano {@code doubleColumns}
+     * @throws NoDataException se non ci sono esempi o se la dimensione del buffer non è coerente con il numero di
+     *                         esempi e di attributi
+     */
+    Data(List<String> attributeNames, int numberOfExamples, int columnStride, DoubleBuffer doubleColumns, FloatBuffer floatColumns) throws NoDataException {
+        if (numberOfExamples <= 0 || attributeNames.isEmpty()) {
+            throw new NoDataException("Errore durante il caricamento degli esempi!", new EmptySetException("La sorgente è vuota!"));
+        }
+
+        long requiredCapacity = (long) (attributeNames.size() - 1) * columnStride + numberOfExamples;
+        long capacity = doubleColumns != null ? doubleColumns.capacity() : floatColumns.capacity();
+        if (columnStride < numberOfExamples || capacity < requiredCapacity) {
+            throw new NoDataException("Le colonne non sono coerenti con il numero di esempi e di attributi!");
+        }
+
+        this.attributeNames = List.copyOf(attributeNames);
+        this.numberOfExamples = numberOfExamples;
+        this.columnStride = columnStride;
+        this.doubleColumns = doubleColumns;
+        this.floatColumns = floatColumns;
+        this.distances = null;
+    }
+
+    /**
+     * Costruisce i dati condividendo le colonne di {@code other}, specificato come parametro, senza copiarle.
+     *
+     * @param other i dati di cui si vogliono condividere le colonne
+     */
+    private Data(Data other) {
+        this(other, other.distances);
+    }
+
+    /**
+     * Costruisce i dati condividendo le colonne di {@code other} e leggendo le distanze fra gli esempi da
+     * {@code distances}, entrambi specificati come parametro.
+     *
+     * @param other i dati di cui si vogliono condividere le colonne
+     * @param distances la matrice delle distanze fra gli esempi, o {@code null}
+     */
+    private Data(Data other, DistanceMatrix distances) {
+        this.attributeNames = other.attributeNames;
+        this.numberOfExamples = other.numberOfExamples;
+        this.columnStride = other.columnStride;
+        this.doubleColumns = other.doubleColumns;
+        this.floatColumns = other.floatColumns;
+        this.fingerprint = other.fingerprint;
+        this.distances = distances;
+    }
+
+    /**
+     * Restituisce una vista di questi dati, che ne condivide le colonne, in cui le distanze fra gli esempi vengono
+     * lette dalla matrice {@code distances}, specificata come parametro, invece di essere calcolate ogni volta. La
+     * matrice deve essere stata calcolata da dati con la stessa {@link Data#getFingerprint() impronta}.
+     *
+     * @param distances la matrice delle distanze fra gli esempi
+     * @return la vista dei dati con la matrice delle distanze
+     * @throws IllegalArgumentException se la matrice non ha lo stesso numero di esempi dei dati
+     */
+    public Data withDistances(DistanceMatrix distances) {
+        if (distances.getNumberOfExamples() != this.numberOfExamples) {
+            throw new IllegalArgumentException("La matrice delle distanze non corrisponde ai dati!");
+        }
+
+        return new Data(this, distances);
+    }
+
+    /**
+     * Converte la lista di esempi {@code examples} in un array di colonne con {@code numberOfAttributes} colonne,
+     * entrambi specificati come parametro.
+     *
+     * @param numberOfAttributes il numero di attributi che deve avere ogni esempio
+     * @param examples la lista degli esempi
+     * @return i valori degli esempi memorizzati per colonne
+     * @throws NoDataException se gli esempi non hanno tutti {@code numberOfAttributes} attributi
+     */
+    private static double[] toColumns(int numberOfAttributes, List<Example> examples) throws NoDataException {
+        int numberOfExamples = examples.size();
+        var columns = new double[numberOfAttributes * numberOfExamples];
+
+        for (int i = 0; i < numberOfExamples; ++i) {
+            var example = examples.get(i);
+            if (example.getSize() != numberOfAttributes) {
+                throw new NoDataException("Errore durante il caricamento degli esempi!", new InvalidSizeException("Gli esempi hanno lunghezze diverse"));
+            }
+
+            for (int k = 0; k < numberOfAttributes; ++k) {
+                columns[k * numberOfExamples + i] = example.get(k);
+            }
         }
+
+        return columns;
     }
 
     /**
@@ -41,17 +216,179 @@ public class Data {
      * @return il numero di esempi contenuti
      */
     public int getNumberOfExamples() {
-        return this.data.size();
+        return this.numberOfExamples;
+    }
+
+    /**
+     * Restituisce il numero di attributi di ogni esempio.
+     *
+     * @return il numero di attributi di ogni esempio
+     */
+    public int getNumberOfAttributes() {
+        return this.attributeNames.size();
+    }
+
+    /**
+     * Restituisce i nomi degli attributi di ogni esempio.
+     *
+     * @return i nomi degli attributi di ogni esempio
+     */
+    public List<String> getAttributeNames() {
+        return this.attributeNames;
+    }
+
+    /**
+     * Restituisce {@code true} se le colonne sono memorizzate a precisione singola, {@code false} altrimenti.
+     *
+     * @return {@code true} se le colonne sono memorizzate a precisione singola, {@code false} altrimenti
+     */
+    public boolean isSinglePrecision() {
+        return this.floatColumns != null;
+    }
+
+    /**
+     * Restituisce la memoria occupata dai valori degli esempi, in byte.
+     *
+     * @return la memoria occupata dai valori degli esempi, in byte
+     */
+    public long getSizeInBytes() {
+        return this.doubleColumns != null
+            ? (long) this.doubleColumns.capacity() * Double.BYTES
+            : (long) this.floatColumns.capacity() * Float.BYTES;
+    }
+
+    /**
+     * <p>Restituisce l'impronta dei dati, ovvero l'hash SHA-256 (in esadecimale) del numero di esempi, del numero di
+     * attributi e dei valori di tutti gli esempi, letti come in {@link Data#getValue(int, int)}. Dati con gli stessi
+     * valori hanno la stessa impronta, indipendentemente dalla sorgente da cui sono stati caricati.
+     *
+     * <p>L'impronta viene calcolata alla prima chiamata, leggendo tutti i valori, e poi riutilizzata.
+     *
+     * @return l'impronta dei dati
+     */
+    public String getFingerprint() {
+        var result = this.fingerprint;
+        if (result == null) {
+            result = this.computeFingerprint();
+            this.fingerprint = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Calcola l'impronta dei dati.
+     *
+     * @return l'impronta dei dati
+     * @see Data#getFingerprint()
+     */
+    private String computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            // Ogni implementazione della piattaforma Java deve supportare SHA-256
+            throw new IllegalStateException(exception);
+        }
+
+        var buffer = ByteBuffer.allocate(8192);
+        buffer.putInt(this.numberOfExamples).putInt(this.getNumberOfAttributes());
+        for (int k = 0; k < this.getNumberOfAttributes(); ++k) {
+            for (int i = 0; i < this.numberOfExamples; ++i) {
+                if (buffer.remaining() < Double.BYTES) {
+                    digest.update(buffer.flip());
+                    buffer.clear();
+                }
+
+                buffer.putDouble(this.getValue(i, k));
+            }
+        }
+
+        digest.update(buffer.flip());
+        return HexFormat.of().formatHex(digest.digest());
     }
 
     /**
-     * Restituisce l'esempio con indice {@code index}, specificato come parametro.
+     * Restituisce il valore dell'attributo {@code attribute} dell'esempio con indice {@code index}, entrambi
+     * specificati come parametro.
+     *
+     * @param index l'indice dell'esempio
+     * @param attribute l'indice dell'attributo
+     * @return il valore dell'attributo {@code attribute} dell'esempio con indice {@code index}
+     */
+    public double getValue(int index, int attribute) {
+        int position = attribute * this.columnStride + index;
+        return this.doubleColumns != null ? this.doubleColumns.get(position) : this.floatColumns.get(position);
+    }
+
+    /**
+     * Restituisce una copia dell'esempio con indice {@code index}, specificato come parametro.
      *
      * @param index l'indice dell'esempio che si vuole ottenere
      * @return l'esempio con indice {@code index}
      */
     public Example getExample(int index) {
-        return this.data.get(index);
+        var example = new Example();
+        for (int k = 0; k < this.getNumberOfAttributes(); ++k) {
+            example.add(this.getValue(index, k));
+        }
+
+        return example;
+    }
+
+    /**
+     * Aggiunge a {@code builder} la rappresentazione testuale dell'esempio con indice {@code index} (entrambi
+     * specificati come parametro), la stessa di {@link Example#toString()}, leggendo direttamente le colonne senza
+     * creare istanze di {@link Example} né stringhe intermedie.
+     *
+     * @param index l'indice dell'esempio
+     * @param builder il buffer a cui aggiungere la rappresentazione testuale
+     */
+    public void appendExample(int index, StringBuilder builder) {
+        builder.append('[');
+        for (int k = 0; k < this.getNumberOfAttributes(); ++k) {
+            if (k > 0) {
+                builder.append(',');
+            }
+
+            builder.append(this.getValue(index, k));
+        }
+        builder.append(']');
+    }
+
+    /**
+     * Calcola la distanza euclidea tra gli esempi con indici {@code first} e {@code second}, specificati come
+     * parametro, leggendo direttamente le colonne senza creare istanze di {@link Example}, oppure leggendola dalla
+     * matrice delle distanze se i dati ne hanno una.
+     *
+     * @param first l'indice del primo esempio
+     * @param second l'indice del secondo esempio
+     * @return la distanza euclidea tra i due esempi
+     * @see Example#distance(Example)
+     */
+    public double distance(int first, int second) {
+        if (this.distances != null) {
+            return this.distances.get(first, second);
+        }
+
+        double result = 0.0;
+        int numberOfAttributes = this.getNumberOfAttributes();
+
+        if (this.doubleColumns != null) {
+            var columns = this.doubleColumns;
+            for (int k = 0, i = first, j = second; k < numberOfAttributes; ++k, i += this.columnStride, j += this.columnStride) {
+                double delta = columns.get(i) - columns.get(j);
+                result += delta * delta;
+            }
+        } else {
+            var columns = this.floatColumns;
+            for (int k = 0, i = first, j = second; k < numberOfAttributes; ++k, i += this.columnStride, j += this.columnStride) {
+                double delta = columns.get(i) - columns.get(j);
+                result += delta * delta;
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -61,11 +398,11 @@ public class Data {
      * @throws InvalidSizeException se degli esempi hanno lunghezza diversa
      */
     public double[][] distance() throws InvalidSizeException {
-        double[][] distance = new double[this.data.size()][this.data.size()];
+        double[][] distance = new double[this.numberOfExamples][this.numberOfExamples];
 
-        for (int i = 0; i < this.data.size(); ++i) {
-            for (int j = 0; j < this.data.size(); ++j) {
-                distance[i][j] = j <= i ? 0 : this.data.get(i).distance(this.data.get(j));
+        for (int i = 0; i < this.numberOfExamples; ++i) {
+            for (int j = i + 1; j < this.numberOfExamples; ++j) {
+                distance[i][j] = this.distance(i, j);
             }
         }
 
@@ -81,12 +418,10 @@ public class Data {
     public String toString() {
         var stringBuilder = new StringBuilder();
 
-        int index = 0;
-        var iterator = this.data.iterator();
-        while (iterator.hasNext()) {
-            stringBuilder.append(index);
+        for (int i = 0; i < this.numberOfExamples; ++i) {
+            stringBuilder.append(i);
             stringBuilder.append(':');
-            stringBuilder.append(iterator.next());
+            this.appendExample(i, stringBuilder);
             stringBuilder.append('\n');
         }
 
@@ -0,0 +1,355 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>Classe di utilità per scrivere e aprire gli snapshot binari di un'istanza di {@link Data}.
+ *
+ * <p>Uno snapshot è un file (in little-endian) composto da:
+ * <ul>
+ *     <li>un'intestazione di {@value HEADER_SIZE} byte che contiene il numero magico {@code HCLS}, la versione del
+ *     formato, la dimensione in byte di ogni valore (8 per {@code double}, 4 per {@code float}), il numero di esempi,
+ *     il numero di attributi, il passo fra due colonne, il checksum CRC32C di tutto ciò che segue l'intestazione e la
+ *     posizione e la lunghezza delle colonne nel file;</li>
+ *     <li>la {@link DataSource#getVersion() versione} della sorgente da cui sono stati letti i dati, codificata in UTF-8
+ *     e preceduta dalla sua lunghezza ({@code 0} se non è nota; solo dalla versione 2 del formato);</li>
+ *     <li>lo schema, ovvero il nome di ogni attributo codificato in UTF-8 e preceduto dalla sua lunghezza;</li>
+ *     <li>le colonne, ognuna delle quali inizia a un indirizzo allineato a {@value ALIGNMENT} byte.</li>
+ * </ul>
+ *
+ * <p>Aprendo uno snapshot il file viene mappato in memoria con {@link FileChannel#map} e i dati restituiti leggono i
+ * valori direttamente dalla mappatura, senza doverli copiare sullo heap. Gli snapshot della versione 1, senza la
+ * versione della sorgente, possono ancora essere aperti.
+ *
+ * <p><b>NOTA</b>: {@link FileChannel#map} restituisce buffer di al più {@link Integer#MAX_VALUE} byte e i {@link Data
+ * dati} leggono tutte le colonne da un unico buffer, perciò uno snapshot non può superare {@link #MAX_SIZE} byte (circa
+ * 2 GB): {@link #write} rifiuta i dati che lo supererebbero, che vanno letti ogni volta dalla sorgente originale.
+ */
+public final class DataSnapshot {
+    /**
+     * Il numero magico che si trova all'inizio di ogni snapshot.
+     */
+    static final int MAGIC = 0x48434C53;
+
+    /**
+     * La versione del formato scritta da questa classe.
+     */
+    private static final short VERSION = 2;
+
+    /**
+     * La dimensione in byte dell'intestazione.
+     */
+    private static final int HEADER_SIZE = 48;
+
+    /**
+     * L'allineamento in byte dell'inizio di ogni colonna.
+     */
+    private static final int ALIGNMENT = 64;
+
+    /**
+     * La dimensione del buffer usato per la scrittura delle colonne.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * La dimensione massima in byte di uno snapshot, ovvero di un buffer mappato in memoria.
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * La precisione con cui vengono memorizzati i valori delle colonne.
+     */
+    public enum Precision {
+        /**
+         * Valori {@code double} a 64 bit.
+         */
+        DOUBLE(Double.BYTES),
+
+        /**
+         * Valori {@code float} a 32 bit: dimezza la dimensione del file a scapito della precisione.
+         */
+        SINGLE(Float.BYTES);
+
+        /**
+         * La dimensione in byte di un valore.
+         */
+        private final int bytes;
+
+        /**
+         * Costruisce la precisione con dimensione di un valore pari a {@code bytes}, specificato come parametro.
+         *
+         * @param bytes la dimensione in byte di un valore
+         */
+        Precision(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * NOTA: Viene aggiunto solo per evitare il warning durante la generazione del JavaDoc.
+     */
+    private DataSnapshot() {}
+
+    /**
+     * Scrive lo snapshot di {@code data}, letti dalla sorgente con versione {@code sourceVersion}, nel file con
+     * percorso {@code path} usando la precisione {@code precision}, tutti specificati come parametro. Il file viene
+     * prima scritto in un file temporaneo con un nome univoco e poi rinominato, in modo che non sia mai possibile aprire
+     * uno snapshot scritto a metà e che più scritture contemporanee dello stesso snapshot non si sovrappongano; se la
+     * scrittura fallisce il file temporaneo viene rimosso.
+     *
+     * @param data i dati di cui si vuole scrivere lo snapshot
+     * @param path il percorso del file dove si vuole scrivere lo snapshot
+     * @param precision la precisione con cui si vogliono memorizzare i valori
+     * @param sourceVersion la versione della sorgente da cui sono stati letti i dati, {@code null} se non è nota
+     * @throws IOException in caso di errori durante la scrittura sul file o se lo snapshot supererebbe
+     *                     {@link #MAX_SIZE} byte
+     */
+    public static void write(Data data, Path path, Precision precision, String sourceVersion) throws IOException {
+        int numberOfExamples = data.getNumberOfExamples();
+        int numberOfAttributes = data.getNumberOfAttributes();
+        int columnStride = align(numberOfExamples, ALIGNMENT / precision.bytes);
+
+        var versionBytes = (sourceVersion == null ? "" : sourceVersion).getBytes(StandardCharsets.UTF_8);
+        var schema = new ArrayList<byte[]>(numberOfAttributes);
+        int schemaSize = Short.BYTES + versionBytes.length;
+        for (var attributeName : data.getAttributeNames()) {
+            var bytes = attributeName.getBytes(StandardCharsets.UTF_8);
+            schema.add(bytes);
+            schemaSize += Short.BYTES + bytes.length;
+        }
+
+        long dataOffset = align(HEADER_SIZE + schemaSize, ALIGNMENT);
+        long dataLength = (long) columnStride * numberOfAttributes * precision.bytes;
+        if (dataOffset + dataLength > MAX_SIZE) {
+            throw new IOException(String.format("Lo snapshot occuperebbe %d byte, oltre il limite di %d byte che possono essere mappati in memoria!", dataOffset + dataLength, MAX_SIZE));
+        }
+
+        var schemaBuffer = ByteBuffer.allocate((int) (dataOffset - HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        schemaBuffer.putShort((short) versionBytes.length).put(versionBytes);
+        for (var bytes : schema) {
+            schemaBuffer.putShort((short) bytes.length).put(bytes);
+        }
+        schemaBuffer.position(0);
+
+        var checksum = new CRC32C();
+        var temporaryPath = path.resolveSibling(String.format("%s.%s.tmp", path.getFileName(), UUID.randomUUID()));
+        try {
+            try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+                channel.position(HEADER_SIZE);
+                checksum.update(schemaBuffer.duplicate());
+                writeFully(channel, schemaBuffer);
+
+                var buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                for (int k = 0; k < numberOfAttributes; ++k) {
+                    for (int i = 0; i < columnStride; ++i) {
+                        if (buffer.remaining() < precision.bytes) {
+                            flush(channel, buffer, checksum);
+                        }
+
+                        double value = i < numberOfExamples ? data.getValue(i, k) : 0.0;
+                        if (precision == Precision.DOUBLE) {
+                            buffer.putDouble(value);
+                        } else {
+                            buffer.putFloat((float) value);
+                        }
+                    }
+                }
+                flush(channel, buffer, checksum);
+
+                var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC);
+                header.putShort(VERSION);
+                header.put((byte) precision.bytes);
+                header.put((byte) 0);
+                header.putInt(numberOfExamples);
+                header.putInt(numberOfAttributes);
+                header.putInt(columnStride);
+                header.putInt(0);
+                header.putLong(checksum.getValue());
+                header.putLong(dataOffset);
+                header.putLong(dataLength);
+                header.flip();
+
+                channel.position(0);
+                writeFully(channel, header);
+            }
+
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Apre lo snapshot contenuto nel file con percorso {@code path}, specificato come parametro, mappandolo in memoria.
+     * Se {@code verifyChecksum}, specificato come parametro, è {@code true} viene anche verificato il checksum del
+     * contenuto, altrimenti il costo dell'apertura non dipende dalla dimensione del file. La versione della sorgente
+     * registrata nello snapshot non viene controllata.
+     *
+     * @param path il percorso dello snapshot
+     * @param verifyChecksum indica se verificare il checksum del contenuto
+     * @return i dati contenuti nello snapshot, che leggono i valori direttamente dalla mappatura
+     * @throws NoDataException se il file non può essere letto o non è uno snapshot valido
+     */
+    public static Data open(Path path, boolean verifyChecksum) throws NoDataException {
+        return open(path, null, verifyChecksum);
+    }
+
+    /**
+     * Apre lo snapshot contenuto nel file con percorso {@code path}, mappandolo in memoria, controllando che sia stato
+     * scritto dalla sorgente con versione {@code sourceVersion} e, se {@code verifyChecksum} è {@code true}, anche il
+     * checksum del contenuto (tutti specificati come parametro). Uno snapshot senza versione, o della versione 1 del
+     * formato, non corrisponde a nessuna versione della sorgente.
+     *
+     * @param path il percorso dello snapshot
+     * @param sourceVersion la versione attuale della sorgente, {@code null} per non controllarla
+     * @param verifyChecksum indica se verificare il checksum del contenuto
+     * @return i dati contenuti nello snapshot, che leggono i valori direttamente dalla mappatura
+     * @throws NoDataException se il file non può essere letto, non è uno snapshot valido o è stato scritto da un'altra
+     *                         versione della sorgente
+     */
+    public static Data open(Path path, String sourceVersion, boolean verifyChecksum) throws NoDataException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_SIZE) {
+                throw new NoDataException("Lo snapshot supera la dimensione massima che può essere mappata in memoria!");
+            }
+
+            if (size < HEADER_SIZE) {
+                throw new NoDataException("Il file non è uno snapshot valido!");
+            }
+
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            short version = mapped.getShort(4);
+            if (mapped.getInt(0) != MAGIC || (version != 1 && version != VERSION)) {
+                throw new NoDataException("Il file non è uno snapshot valido!");
+            }
+
+            int valueSize = mapped.get(6);
+            int numberOfExamples = mapped.getInt(8);
+            int numberOfAttributes = mapped.getInt(12);
+            int columnStride = mapped.getInt(16);
+            long expectedChecksum = mapped.getLong(24);
+            long dataOffset = mapped.getLong(32);
+            long dataLength = mapped.getLong(40);
+
+            if ((valueSize != Double.BYTES && valueSize != Float.BYTES) || numberOfAttributes <= 0
+                || dataOffset < HEADER_SIZE || dataOffset % ALIGNMENT != 0 || dataOffset + dataLength != size
+                || dataLength != (long) columnStride * numberOfAttributes * valueSize)
+            {
+                throw new NoDataException("Il file non è uno snapshot valido!");
+            }
+
+            if (verifyChecksum) {
+                var checksum = new CRC32C();
+                checksum.update(mapped.slice(HEADER_SIZE, (int) (size - HEADER_SIZE)));
+                if (checksum.getValue() != expectedChecksum) {
+                    throw new NoDataException("Il checksum dello snapshot non è valido!");
+                }
+            }
+
+            var schema = mapped.slice(HEADER_SIZE, (int) dataOffset - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            String storedVersion = "";
+            if (version >= 2) {
+                var bytes = new byte[Short.toUnsignedInt(schema.getShort())];
+                schema.get(bytes);
+                storedVersion = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            if (sourceVersion != null && !sourceVersion.equals(storedVersion)) {
+                throw new NoDataException("Lo snapshot non corrisponde alla versione attuale della sorgente!");
+            }
+
+            var attributeNames = new ArrayList<String>(numberOfAttributes);
+            for (int k = 0; k < numberOfAttributes; ++k) {
+                var bytes = new byte[Short.toUnsignedInt(schema.getShort())];
+                schema.get(bytes);
+                attributeNames.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            var columns = mapped.slice((int) dataOffset, (int) dataLength).order(ByteOrder.LITTLE_ENDIAN);
+            if (valueSize == Double.BYTES) {
+                return new Data(attributeNames, numberOfExamples, columnStride, columns.asDoubleBuffer(), null);
+            } else {
+                return new Data(attributeNames, numberOfExamples, columnStride, null, columns.asFloatBuffer());
+            }
+        } catch (IOException | RuntimeException exception) {
+            throw new NoDataException("Errore durante l'apertura dello snapshot!", exception);
+        }
+    }
+
+    /**
+     * Restituisce {@code true} se il file con percorso {@code path}, specificato come parametro, inizia con il numero
+     * magico degli snapshot, {@code false} altrimenti.
+     *
+     * @param path il percorso del file
+     * @return {@code true} se il file sembra essere uno snapshot, {@code false} altrimenti
+     */
+    public static boolean isSnapshot(Path path) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+
+            return buffer.getInt(0) == MAGIC;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Arrotonda {@code value} al multiplo di {@code alignment} successivo, entrambi specificati come parametro.
+     *
+     * @param value il valore da arrotondare
+     * @param alignment l'allineamento
+     * @return il più piccolo multiplo di {@code alignment} maggiore o uguale a {@code value}
+     */
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * Aggiorna {@code checksum} con il contenuto di {@code buffer} e lo scrive su {@code channel}, tutti specificati
+     * come parametro, svuotando il buffer.
+     *
+     * @param channel il canale su cui scrivere
+     * @param buffer il buffer da scrivere
+     * @param checksum il checksum da aggiornare
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Scrive tutto il contenuto di {@code buffer} su {@code channel}, entrambi specificati come parametro.
+     *
+     * @param channel il canale su cui scrivere
+     * @param buffer il buffer da scrivere
+     * @throws IOException in caso di errori durante la scrittura
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
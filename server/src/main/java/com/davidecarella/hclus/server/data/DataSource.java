@@ -0,0 +1,65 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Interfaccia che rappresenta una sorgente da cui vengono caricati gli esempi di un'istanza di {@link Data}.
+ *
+ * <p>Le sorgenti fornite dal progetto sono
+ * <ul>
+ *     <li>{@link com.davidecarella.hclus.server.database.DatabaseDataSource}: legge gli esempi da una tabella del
+ *     database</li>
+ *     <li>{@link SyntheticDataSource}: genera in memoria degli esempi sintetici</li>
+ *     <li>{@link FileDataSource}: legge gli esempi da un file binario locale</li>
+ *     <li>{@link SnapshotDataSource}: usa uno {@link DataSnapshot snapshot} locale di un'altra sorgente</li>
+ * </ul>
+ */
+public interface DataSource {
+    /**
+     * Restituisce una descrizione della sorgente (ad esempio il nome della tabella o il percorso del file).
+     *
+     * @return la descrizione della sorgente
+     */
+    String getDescription();
+
+    /**
+     * Carica e restituisce i dati contenuti nella sorgente.
+     *
+     * @return i dati contenuti nella sorgente
+     * @throws NoDataException se ci dovesse essere un errore durante il caricamento o se la sorgente non contiene
+     *                         esempi
+     */
+    Data load() throws NoDataException;
+
+    /**
+     * Restituisce la versione del contenuto della sorgente, ovvero una stringa che cambia quando cambiano gli esempi
+     * contenuti, senza doverli caricare: chi memorizza i dati caricati (ad esempio la cache dei dati o uno
+     * {@link DataSnapshot snapshot}) la usa per capire se sono ancora attuali. Le sorgenti che non sanno calcolarla
+     * restituiscono {@code null}.
+     *
+     * @return la versione del contenuto della sorgente, {@code null} se non è nota
+     * @throws NoDataException se ci dovesse essere un errore durante la lettura della versione
+     */
+    default String getVersion() throws NoDataException {
+        return null;
+    }
+
+    /**
+     * Restituisce i nomi {@code X1}, {@code X2}, ... da usare per gli attributi quando la sorgente non ne fornisce
+     * di propri.
+     *
+     * @param numberOfAttributes il numero di attributi
+     * @return la lista dei nomi degli attributi
+     */
+    static List<String> defaultAttributeNames(int numberOfAttributes) {
+        var attributeNames = new ArrayList<String>(numberOfAttributes);
+        for (int i = 1; i <= numberOfAttributes; ++i) {
+            attributeNames.add("X" + i);
+        }
+
+        return attributeNames;
+    }
+}
@@ -0,0 +1,119 @@
+package com.davidecarella.hclus.server.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * <p>Classe che rappresenta la matrice delle distanze fra tutte le coppie di esempi dei {@link Data dati}, calcolate una
+ * sola volta con {@link Data#distance(int, int)}.
+ *
+ * <p>Poiché la matrice è simmetrica e ha la diagonale nulla, viene memorizzata solo la parte strettamente triangolare
+ * superiore, riga per riga: la distanza fra gli esempi \(i &lt; j\) si trova all'indice
+ * \(i \cdot n - \frac{i (i + 1)}{2} + j - i - 1\), dove \(n\) è il numero di esempi. I valori sono memorizzati fuori
+ * dallo heap, in buffer diretti di al più \(2^{27}\) valori ciascuno, così che matrici grandi non pesino sul garbage
+ * collector né sul limite di memoria dei job di mining. Una volta costruita la matrice è immutabile.
+ */
+public final class DistanceMatrix {
+    /**
+     * Il logaritmo in base 2 del numero massimo di valori in un singolo buffer.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+
+    /**
+     * Il numero massimo di valori in un singolo buffer.
+     */
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /**
+     * Il numero di esempi.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * I buffer che contengono le distanze, in ordine.
+     */
+    private final DoubleBuffer[] segments;
+
+    /**
+     * Costruisce la matrice calcolando le distanze fra tutte le coppie di esempi di {@code data}, specificato come
+     * parametro.
+     *
+     * @param data i dati di cui calcolare le distanze
+     * @throws OutOfMemoryError se non c'è abbastanza memoria fuori dallo heap per la matrice
+     */
+    public DistanceMatrix(Data data) {
+        this.numberOfExamples = data.getNumberOfExamples();
+
+        long size = numberOfValues(this.numberOfExamples);
+        this.segments = new DoubleBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int s = 0; s < this.segments.length; ++s) {
+            int segmentSize = (int) Math.min(SEGMENT_SIZE, size - (long) s * SEGMENT_SIZE);
+            this.segments[s] = ByteBuffer.allocateDirect(segmentSize * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+
+        long index = 0;
+        for (int i = 0; i < this.numberOfExamples; ++i) {
+            for (int j = i + 1; j < this.numberOfExamples; ++j, ++index) {
+                this.segments[(int) (index >>> SEGMENT_SHIFT)].put((int) index & (SEGMENT_SIZE - 1), data.distance(i, j));
+            }
+        }
+    }
+
+    /**
+     * Restituisce la memoria occupata dalla matrice delle distanze di {@code numberOfExamples} esempi, specificato come
+     * parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @return la memoria occupata dalla matrice, in byte
+     */
+    public static long sizeInBytes(int numberOfExamples) {
+        return numberOfValues(numberOfExamples) * Double.BYTES;
+    }
+
+    /**
+     * Restituisce il numero di distanze memorizzate per {@code numberOfExamples} esempi, specificato come parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @return il numero di distanze memorizzate
+     */
+    private static long numberOfValues(int numberOfExamples) {
+        return (long) numberOfExamples * (numberOfExamples - 1) / 2;
+    }
+
+    /**
+     * Restituisce il numero di esempi.
+     *
+     * @return il numero di esempi
+     */
+    public int getNumberOfExamples() {
+        return this.numberOfExamples;
+    }
+
+    /**
+     * Restituisce la memoria occupata dalla matrice, in byte.
+     *
+     * @return la memoria occupata dalla matrice, in byte
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes(this.numberOfExamples);
+    }
+
+    /**
+     * Restituisce la distanza fra gli esempi con indici {@code first} e {@code second}, specificati come parametro.
+     *
+     * @param first l'indice del primo esempio
+     * @param second l'indice del secondo esempio
+     * @return la distanza fra i due esempi
+     */
+    public double get(int first, int second) {
+        if (first == second) {
+            return 0.0;
+        }
+
+        long i = Math.min(first, second);
+        long j = Math.max(first, second);
+        long index = ((i * ((this.numberOfExamples << 1) - i - 1)) >> 1) + j - i - 1;
+        return this.segments[(int) (index >>> SEGMENT_SHIFT)].get((int) index & (SEGMENT_SIZE - 1));
+    }
+}
@@ -2,24 +2,30 @@ package com.davidecarella.hclus.server.data;
 
 import com.davidecarella.hclus.server.exceptions.InvalidSizeException;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 /**
  * Classe che rappresenta un esempio, ovvero una lista di numeri reali.
  */
 public class Example implements Iterable<Double> {
     /**
-     * La lista di valori memorizzati nell'esempio.
+     * I valori memorizzati nell'esempio (solo i primi {@link Example#size} sono validi).
      */
-    private List<Double> example;
+    private double[] example;
+
+    /**
+     * Il numero di valori memorizzati nell'esempio.
+     */
+    private int size = 0;
 
     /**
      * Costruttore che inizializza un esempio vuoto.
      */
     public Example() {
-        this.example = new LinkedList<>();
+        this.example = new double[4];
     }
 
     /**
@@ -28,7 +34,20 @@ public class Example implements Iterable<Double> {
      * @param value il valore che si vuole aggiungere
      */
     public void add(double value) {
-        this.example.add(value);
+        if (this.size == this.example.length) {
+            this.example = Arrays.copyOf(this.example, this.example.length * 2);
+        }
+
+        this.example[this.size++] = value;
+    }
+
+    /**
+     * Restituisce il numero di valori memorizzati nell'esempio.
+     *
+     * @return il numero di valori memorizzati nell'esempio
+     */
+    public int getSize() {
+        return this.size;
     }
 
     /**
@@ -36,9 +55,10 @@ public class Example implements Iterable<Double> {
      *
      * @param index l'indice del valore che si vuole ottenere
      * @return il valore in posizione {@code index}
+     * @throws IndexOutOfBoundsException se {@code index} non è un indice valido
      */
     public double get(int index) {
-        return this.example.get(index);
+        return this.example[Objects.checkIndex(index, this.size)];
     }
 
     /**
@@ -49,16 +69,13 @@ public class Example implements Iterable<Double> {
      * @throws InvalidSizeException quando questo esempio e {@code other} hanno lunghezza diversa
      */
     public double distance(Example other) throws InvalidSizeException {
-        if (this.example.size() != other.example.size()) {
+        if (this.size != other.size) {
             throw new InvalidSizeException("Si può calcolare la distanza solo fra esempi con stessa lunghezza");
         }
 
         double result = 0.0;
-        var firstValueIterator = this.iterator();
-        var secondValueIterator = other.iterator();
-
-        while (firstValueIterator.hasNext() && secondValueIterator.hasNext()) {
-            double delta = firstValueIterator.next() - secondValueIterator.next();
+        for (int i = 0; i < this.size; ++i) {
+            double delta = this.example[i] - other.example[i];
             result += delta * delta;
         }
 
@@ -72,17 +89,16 @@ public class Example implements Iterable<Double> {
      */
     @Override
     public String toString() {
-        if (this.example.isEmpty()) {
+        if (this.size == 0) {
             return "[]";
         }
 
         var stringBuilder = new StringBuilder();
 
         stringBuilder.append('[');
-        var iterator = this.iterator();
-        stringBuilder.append(iterator.next());
-        while (iterator.hasNext()) {
-            stringBuilder.append(',').append(iterator.next());
+        stringBuilder.append(this.example[0]);
+        for (int i = 1; i < this.size; ++i) {
+            stringBuilder.append(',').append(this.example[i]);
         }
         stringBuilder.append(']');
 
@@ -96,6 +112,25 @@ public class Example implements Iterable<Double> {
      */
     @Override
     public Iterator<Double> iterator() {
-        return this.example.iterator();
+        return new Iterator<>() {
+            /**
+             * L'indice del prossimo valore da restituire.
+             */
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < Example.this.size;
+            }
+
+            @Override
+            public Double next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return Example.this.example[this.index++];
+            }
+        };
     }
 }
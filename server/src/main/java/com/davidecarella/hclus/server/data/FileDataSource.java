@@ -0,0 +1,95 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.io.*;
+import java.nio.file.Path;
+
+/**
+ * <p>Implementazione di {@link DataSource} che legge gli esempi da un file binario locale.
+ *
+ * <p>Se il file è uno {@link DataSnapshot snapshot} viene mappato in memoria, altrimenti deve essere composto da:
+ * <ul>
+ *     <li>il numero magico {@code HCLB} (4 byte);</li>
+ *     <li>il numero di esempi \(n\) ({@code int});</li>
+ *     <li>il numero di attributi \(d\) ({@code int});</li>
+ *     <li>\(n \cdot d\) valori {@code double} memorizzati esempio per esempio.</li>
+ * </ul>
+ * Tutti i valori sono memorizzati in big-endian, come previsto da {@link DataOutputStream}.
+ */
+public class FileDataSource implements DataSource {
+    /**
+     * Il numero magico che si trova all'inizio del file.
+     */
+    private static final int MAGIC = 0x48434C42;
+
+    /**
+     * Il percorso del file da cui si leggono gli esempi.
+     */
+    private final String fileName;
+
+    /**
+     * Costruisce la sorgente a partire dal percorso del file, {@code fileName}, specificato come parametro.
+     *
+     * @param fileName il percorso del file da cui si vogliono leggere gli esempi
+     */
+    public FileDataSource(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.fileName;
+    }
+
+    @Override
+    public Data load() throws NoDataException {
+        if (DataSnapshot.isSnapshot(Path.of(this.fileName))) {
+            return DataSnapshot.open(Path.of(this.fileName), true);
+        }
+
+        try (var inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.fileName)))) {
+            if (inputStream.readInt() != MAGIC) {
+                throw new NoDataException("Il file non contiene degli esempi!");
+            }
+
+            int numberOfExamples = inputStream.readInt();
+            int numberOfAttributes = inputStream.readInt();
+            if (numberOfExamples <= 0 || numberOfAttributes <= 0) {
+                throw new NoDataException("Il file non contiene degli esempi!");
+            }
+
+            var columns = new double[numberOfAttributes * numberOfExamples];
+            for (int i = 0; i < numberOfExamples; ++i) {
+                for (int j = 0; j < numberOfAttributes; ++j) {
+                    columns[j * numberOfExamples + i] = inputStream.readDouble();
+                }
+            }
+
+            return new Data(DataSource.defaultAttributeNames(numberOfAttributes), numberOfExamples, columns);
+        } catch (IOException exception) {
+            throw new NoDataException("Errore durante il caricamento degli esempi!", exception);
+        }
+    }
+
+    /**
+     * Salva gli esempi contenuti in {@code data} nel file con percorso {@code fileName}, entrambi specificati come
+     * parametro, in modo che possano essere riletti da questa sorgente.
+     *
+     * @param data i dati da salvare
+     * @param fileName il percorso del file dove si vogliono salvare i dati
+     * @throws IOException in caso di errori durante il salvataggio sul file
+     */
+    public static void write(Data data, String fileName) throws IOException {
+        try (var outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(data.getNumberOfExamples());
+            outputStream.writeInt(data.getNumberOfAttributes());
+            for (int i = 0; i < data.getNumberOfExamples(); ++i) {
+                for (int j = 0; j < data.getNumberOfAttributes(); ++j) {
+                    outputStream.writeDouble(data.getValue(i, j));
+                }
+            }
+        }
+    }
+}
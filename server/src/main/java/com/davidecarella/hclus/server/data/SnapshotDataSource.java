@@ -0,0 +1,106 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>Implementazione di {@link DataSource} che mantiene uno {@link DataSnapshot snapshot} locale di un'altra sorgente.
+ *
+ * <p>Se lo snapshot esiste ed è stato scritto dalla {@link DataSource#getVersion() versione} attuale della sorgente
+ * originale viene aperto mappandolo in memoria, senza caricare i dati dalla sorgente. Altrimenti (o se lo snapshot non
+ * è valido) i dati vengono caricati dalla sorgente originale e subito dopo viene scritto lo snapshot, in modo che i
+ * caricamenti successivi siano immediati. Il checksum dello snapshot viene verificato una volta sola, subito dopo
+ * averlo scritto; alle aperture successive viene verificato solo se richiesto alla costruzione, perché richiede di
+ * leggere tutto il file.
+ *
+ * <p>Se lo snapshot non può essere scritto, ad esempio perché supererebbe la {@link DataSnapshot#MAX_SIZE dimensione
+ * massima} che può essere mappata in memoria, il motivo viene registrato nel log e i dati continuano a essere caricati
+ * dalla sorgente originale.
+ *
+ * <p><b>NOTA</b>: se la sorgente originale non è in grado di indicare la propria versione non è possibile sapere se lo
+ * snapshot è ancora valido, perciò i dati vengono caricati dalla sorgente originale senza usare lo snapshot.
+ */
+public class SnapshotDataSource implements DataSource {
+    /**
+     * La sorgente originale dei dati.
+     */
+    private final DataSource source;
+
+    /**
+     * Il percorso dello snapshot.
+     */
+    private final Path snapshotPath;
+
+    /**
+     * La precisione con cui vengono memorizzati i valori nello snapshot.
+     */
+    private final DataSnapshot.Precision precision;
+
+    /**
+     * Indica se verificare il checksum dello snapshot a ogni apertura.
+     */
+    private final boolean verifyChecksum;
+
+    /**
+     * Costruisce la sorgente a partire dalla sorgente originale, {@code source}, dal percorso dello snapshot,
+     * {@code snapshotPath}, dalla precisione con cui scriverlo, {@code precision}, e dall'indicazione se verificarne il
+     * checksum a ogni apertura, {@code verifyChecksum}, tutti specificati come parametro.
+     *
+     * @param source la sorgente originale dei dati
+     * @param snapshotPath il percorso dello snapshot
+     * @param precision la precisione con cui vengono memorizzati i valori nello snapshot
+     * @param verifyChecksum indica se verificare il checksum dello snapshot a ogni apertura
+     */
+    public SnapshotDataSource(DataSource source, Path snapshotPath, DataSnapshot.Precision precision, boolean verifyChecksum) {
+        this.source = source;
+        this.snapshotPath = snapshotPath;
+        this.precision = precision;
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.source.getDescription();
+    }
+
+    @Override
+    public String getVersion() throws NoDataException {
+        return this.source.getVersion();
+    }
+
+    @Override
+    public Data load() throws NoDataException {
+        var version = this.source.getVersion();
+        if (version == null) {
+            return this.source.load();
+        }
+
+        if (Files.exists(this.snapshotPath)) {
+            try {
+                return DataSnapshot.open(this.snapshotPath, version, this.verifyChecksum);
+            } catch (NoDataException ignored) {
+                // Lo snapshot non è valido o è di un'altra versione: viene ricreato a partire dalla sorgente originale
+            }
+        }
+
+        var data = this.source.load();
+
+        try {
+            DataSnapshot.write(data, this.snapshotPath, this.precision, version);
+            DataSnapshot.open(this.snapshotPath, version, true);
+        } catch (IOException | NoDataException exception) {
+            // Non riuscire a scrivere lo snapshot non impedisce di usare i dati appena caricati
+            System.out.printf("Impossibile usare lo snapshot %s, i dati verranno letti da %s: %s%n", this.snapshotPath, this.source.getDescription(), exception.getMessage());
+            try {
+                Files.deleteIfExists(this.snapshotPath);
+            } catch (IOException ignored) {
+                // Lo snapshot verrà ricreato al prossimo caricamento
+            }
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,88 @@
+package com.davidecarella.hclus.server.data;
+
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.util.Random;
+
+/**
+ * <p>Implementazione di {@link DataSource} che genera in memoria degli esempi sintetici.
+ *
+ * <p>Gli esempi vengono generati attorno a un certo numero di centri scelti casualmente, aggiungendo a ognuno di essi
+ * un rumore gaussiano. A parità di parametri (compreso il seme) vengono generati sempre gli stessi esempi, per questo
+ * motivo la sorgente è adatta a misurare le prestazioni del mining senza dover accedere al database.
+ */
+public class SyntheticDataSource implements DataSource {
+    /**
+     * Il numero di esempi da generare.
+     */
+    private final int numberOfExamples;
+
+    /**
+     * Il numero di attributi di ogni esempio.
+     */
+    private final int numberOfAttributes;
+
+    /**
+     * Il numero di centri attorno a cui vengono generati gli esempi.
+     */
+    private final int numberOfCenters;
+
+    /**
+     * Il seme del generatore di numeri casuali.
+     */
+    private final long seed;
+
+    /**
+     * Costruisce la sorgente che genererà {@code numberOfExamples} esempi con {@code numberOfAttributes} attributi
+     * attorno a {@code numberOfCenters} centri usando il seme {@code seed}, tutti specificati come parametro.
+     *
+     * @param numberOfExamples il numero di esempi da generare
+     * @param numberOfAttributes il numero di attributi di ogni esempio
+     * @param numberOfCenters il numero di centri attorno a cui generare gli esempi
+     * @param seed il seme del generatore di numeri casuali
+     * @throws IllegalArgumentException se uno tra {@code numberOfExamples}, {@code numberOfAttributes} e
+     *                                  {@code numberOfCenters} non è positivo
+     */
+    public SyntheticDataSource(int numberOfExamples, int numberOfAttributes, int numberOfCenters, long seed) {
+        if (numberOfExamples <= 0 || numberOfAttributes <= 0 || numberOfCenters <= 0) {
+            throw new IllegalArgumentException("Il numero di esempi, attributi e centri deve essere positivo");
+        }
+
+        this.numberOfExamples = numberOfExamples;
+        this.numberOfAttributes = numberOfAttributes;
+        this.numberOfCenters = numberOfCenters;
+        this.seed = seed;
+    }
+
+    @Override
+    public String getDescription() {
+        return String.format("synthetic(%d, %d, %d, %d)",
+            this.numberOfExamples,
+            this.numberOfAttributes,
+            this.numberOfCenters,
+            this.seed
+        );
+    }
+
+    @Override
+    public Data load() throws NoDataException {
+        var random = new Random(this.seed);
+
+        var centers = new double[this.numberOfCenters][this.numberOfAttributes];
+        for (var center : centers) {
+            for (int i = 0; i < this.numberOfAttributes; ++i) {
+                center[i] = random.nextDouble() * 100.0;
+            }
+        }
+
+        var columns = new double[this.numberOfAttributes * this.numberOfExamples];
+        for (int i = 0; i < this.numberOfExamples; ++i) {
+            var center = centers[random.nextInt(this.numberOfCenters)];
+            for (int j = 0; j < this.numberOfAttributes; ++j) {
+                columns[j * this.numberOfExamples + i] = center[j] + random.nextGaussian() * 5.0;
+            }
+        }
+
+        return new Data(DataSource.defaultAttributeNames(this.numberOfAttributes), this.numberOfExamples, columns);
+    }
+}
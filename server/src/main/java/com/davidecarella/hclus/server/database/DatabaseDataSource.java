@@ -0,0 +1,76 @@
+package com.davidecarella.hclus.server.database;
+
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.data.DataSource;
+import com.davidecarella.hclus.server.exceptions.DatabaseConnectionException;
+import com.davidecarella.hclus.server.exceptions.EmptySetException;
+import com.davidecarella.hclus.server.exceptions.MissingNumberException;
+import com.davidecarella.hclus.server.exceptions.NoDataException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Implementazione di {@link DataSource} che legge gli esempi dalle righe di una tabella del database.
+ *
+ * @see TableData
+ */
+public class DatabaseDataSource implements DataSource {
+    /**
+     * Il nome della tabella da cui si leggono gli esempi.
+     */
+    private final String tableName;
+
+    /**
+     * Costruisce la sorgente a partire dal nome della tabella, {@code tableName}, specificato come parametro.
+     *
+     * @param tableName il nome della tabella le cui righe si vogliono usare come esempi
+     */
+    public DatabaseDataSource(String tableName) {
+        this.tableName = tableName;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.tableName;
+    }
+
+    @Override
+    public Data load() throws NoDataException {
+        var db = new DbAccess();
+        var tableData = new TableData(db);
+
+        try {
+            var tableSchema = new TableSchema(db, this.tableName);
+            var attributeNames = new ArrayList<String>(tableSchema.getNumberOfAttributes());
+            for (int i = 0; i < tableSchema.getNumberOfAttributes(); ++i) {
+                attributeNames.add(tableSchema.getColumn(i).getColumnName());
+            }
+
+            return new Data(attributeNames, tableData.getDistinctTransazioni(this.tableName));
+        } catch (DatabaseConnectionException | SQLException | EmptySetException | MissingNumberException exception) {
+            throw new NoDataException("Errore durante il caricamento degli esempi!", exception);
+        } finally {
+            try {
+                db.closeConnection();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public String getVersion() throws NoDataException {
+        var db = new DbAccess();
+
+        try {
+            return new TableData(db).getVersion(this.tableName);
+        } catch (DatabaseConnectionException | SQLException exception) {
+            throw new NoDataException("Errore durante la lettura della versione della tabella!", exception);
+        } finally {
+            try {
+                db.closeConnection();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
@@ -98,11 +98,14 @@ public class DbAccess {
     }
 
     /**
-     * Chiude la connessione al database.
+     * Chiude la connessione al database, se è stata aperta.
      *
      * @throws SQLException se si verifica un errore durante la chiusura della connessione
      */
     public void closeConnection() throws SQLException {
-        this.conn.close();
+        if (this.conn != null) {
+            this.conn.close();
+            this.conn = null;
+        }
     }
 }
@@ -65,4 +65,29 @@ public class TableData {
 
         return result;
     }
+
+    /**
+     * Restituisce la versione del contenuto della tabella con nome {@code tableName}, specificato come parametro,
+     * ovvero il checksum calcolato dal DBMS con {@code CHECKSUM TABLE}. Il checksum dipende dal contenuto di tutte le
+     * righe, perciò cambia anche con le modifiche che non cambiano il numero di righe, a differenza dell'ora
+     * dell'ultima modifica registrata in {@code information_schema}, che MySQL può non conoscere o restituire in ritardo.
+     *
+     * @param tableName il nome della tabella
+     * @return la versione del contenuto della tabella, {@code null} se il DBMS non è in grado di calcolarla
+     *
+     * @throws DatabaseConnectionException se ci dovessero essere errori durante la connessione al database
+     * @throws SQLException se ci dovessero essere errori durante le interrogazioni al database
+     */
+    public String getVersion(String tableName) throws DatabaseConnectionException, SQLException {
+        try (var statement = db.getConnection().createStatement();
+             var resultSet = statement.executeQuery("CHECKSUM TABLE " + tableName))
+        {
+            if (!resultSet.next()) {
+                return null;
+            }
+
+            long checksum = resultSet.getLong(2);
+            return resultSet.wasNull() ? null : Long.toHexString(checksum);
+        }
+    }
 }
@@ -31,15 +31,9 @@ public class AverageLinkDistance implements ClusterDistance {
     public double distance(Cluster c1, Cluster c2, Data data) throws InvalidSizeException {
         double sum = 0.0;
 
-        var firstIterator = c1.iterator();
-        while (firstIterator.hasNext()) {
-            var firstExample = data.getExample(firstIterator.next());
-
-            var secondIterator = c2.iterator();
-            while (secondIterator.hasNext()) {
-                var secondExample = data.getExample(secondIterator.next());
-
-                sum +=firstExample.distance(secondExample);
+        for (int firstExample : c1) {
+            for (int secondExample : c2) {
+                sum += data.distance(firstExample, secondExample);
             }
         }
 
@@ -0,0 +1,18 @@
+package com.davidecarella.hclus.server.exceptions;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+
+/**
+ * Eccezione lanciata quando il dendrogramma di un {@link HierarchicalClusterMiner miner} non è stato creato dai dati
+ * con cui lo si vuole usare.
+ */
+public class IncompatibleDataException extends Exception {
+    /**
+     * Costruisce l'eccezione con messaggio {@code message}, specificato come parametro.
+     *
+     * @param message il messaggio dell'eccezione
+     */
+    public IncompatibleDataException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.davidecarella.hclus.server.exceptions;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+
+/**
+ * Eccezione lanciata quando non si può tagliare il dendrogramma di un {@link HierarchicalClusterMiner miner} con il
+ * criterio richiesto.
+ */
+public class InvalidCutException extends Exception {
+    /**
+     * Costruisce l'eccezione con messaggio {@code message}, specificato come parametro.
+     *
+     * @param message il messaggio dell'eccezione
+     */
+    public InvalidCutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.davidecarella.hclus.server.exceptions;
+
+/**
+ * Eccezione lanciata quando una richiesta di un client non può essere soddisfatta. Il messaggio dell'eccezione è
+ * quello che viene inviato al client.
+ */
+public class RequestException extends Exception {
+    /**
+     * Costruisce l'eccezione con messaggio {@code message}, specificato come parametro.
+     *
+     * @param message il messaggio dell'eccezione
+     */
+    public RequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,96 @@
+package com.davidecarella.hclus.server.jobs;
+
+import com.davidecarella.hclus.server.ServerConfiguration;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+
+/**
+ * <p>Classe che decide se un {@link MiningJob job di mining} può essere accettato ed eseguito in base alla memoria che
+ * richiede, così che i job in esecuzione contemporaneamente non superino
+ * {@link ServerConfiguration#getMiningMemoryBudget()} e un singolo mining troppo grande non esaurisca lo heap di tutto
+ * il server.
+ *
+ * <p>Un job la cui {@link MiningCost stima} supera da sola il limite viene rifiutato subito, suggerendo la profondità
+ * massima ammessa; gli altri vengono accettati e la loro memoria viene riservata solo quando vengono eseguiti. Non è
+ * thread-safe: viene usata da {@link JobManager} sotto il proprio lock.
+ */
+class AdmissionController {
+    /**
+     * La memoria a disposizione dei job in esecuzione, in byte.
+     */
+    private final long budgetBytes;
+
+    /**
+     * La memoria riservata dai job in esecuzione, in byte.
+     */
+    private long reservedBytes = 0;
+
+    /**
+     * Costruisce il controllore con un limite di memoria di {@code budgetBytes} byte, specificato come parametro.
+     *
+     * @param budgetBytes la memoria a disposizione dei job in esecuzione, in byte
+     */
+    AdmissionController(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Controlla che il job con costo {@code cost}, che crea un dendrogramma da {@code numberOfExamples} esempi con
+     * {@code numberOfAttributes} attributi usando la distanza {@code distance} (tutti specificati come parametro),
+     * possa essere eseguito.
+     *
+     * @param cost il costo stimato del job
+     * @param numberOfExamples il numero di esempi
+     * @param numberOfAttributes il numero di attributi di ogni esempio
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @throws RequestException se il job richiede più memoria di quella a disposizione
+     */
+    void check(MiningCost cost, int numberOfExamples, int numberOfAttributes, ClusterDistance distance) throws RequestException {
+        if (cost.getBytes() <= this.budgetBytes) {
+            return;
+        }
+
+        int maxDepth = MiningCost.maxDepth(numberOfExamples, numberOfAttributes, distance, this.budgetBytes);
+        throw new RequestException(String.format(
+            "Il mining richiesto occupa circa %s di memoria, oltre il limite di %s del server: la profondità massima ammessa per questi dati è %d!",
+            MiningCost.formatBytes(cost.getBytes()),
+            MiningCost.formatBytes(this.budgetBytes),
+            maxDepth
+        ));
+    }
+
+    /**
+     * Restituisce {@code true} se la memoria per il job con costo {@code cost}, specificato come parametro, è
+     * disponibile, senza riservarla.
+     *
+     * @param cost il costo stimato del job
+     * @return {@code true} se la memoria è disponibile, {@code false} altrimenti
+     */
+    boolean fits(MiningCost cost) {
+        return this.reservedBytes + cost.getBytes() <= this.budgetBytes;
+    }
+
+    /**
+     * Riserva la memoria per il job con costo {@code cost}, specificato come parametro, se è disponibile.
+     *
+     * @param cost il costo stimato del job
+     * @return {@code true} se la memoria è stata riservata, {@code false} se il job deve attendere
+     */
+    boolean tryReserve(MiningCost cost) {
+        if (!this.fits(cost)) {
+            return false;
+        }
+
+        this.reservedBytes += cost.getBytes();
+        return true;
+    }
+
+    /**
+     * Libera la memoria riservata per il job con costo {@code cost}, specificato come parametro.
+     *
+     * @param cost il costo stimato del job
+     */
+    void release(MiningCost cost) {
+        this.reservedBytes -= cost.getBytes();
+    }
+}
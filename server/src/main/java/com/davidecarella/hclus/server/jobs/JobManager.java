@@ -0,0 +1,571 @@
+package com.davidecarella.hclus.server.jobs;
+
+import com.davidecarella.hclus.server.ServerConfiguration;
+import com.davidecarella.hclus.server.cache.DistanceCache;
+import com.davidecarella.hclus.server.cache.ResultCache;
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+import com.davidecarella.hclus.server.store.CheckpointStore;
+import com.davidecarella.hclus.server.store.DendrogramStore;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Classe che gestisce i {@link MiningJob job di mining} di tutto il server.
+ *
+ * <p>I job vengono eseguiti da un pool di esattamente {@link ServerConfiguration#getComputeThreads()} thread, perciò al
+ * più altrettanti job vengono eseguiti contemporaneamente; quelli in attesa
+ * di essere eseguiti sono al più {@link ServerConfiguration#getMaxQueuedJobs()}, oltre i quali le nuove richieste
+ * vengono rifiutate. Ogni job appartiene a chi lo ha inviato, che è l'unico a poterlo consultare o annullare e che deve
+ * {@link JobManager#release(Object) rilasciare} i propri job quando non gli servono più.
+ *
+ * <p>Prima di essere accettato, ogni job passa dall'{@link AdmissionController}: i job che richiedono da soli più
+ * memoria di {@link ServerConfiguration#getMiningMemoryBudget()} vengono rifiutati, gli altri vengono messi in coda e
+ * avviati solo quando la loro memoria può essere riservata.
+ *
+ * <p>I job in coda sono divisi per client (tenant), ognuno con una {@link TenantQueue coda} per i job brevi (quelli
+ * con al più {@link ServerConfiguration#getShortJobOperations()} operazioni stimate) e una per i job lunghi. Quando un
+ * thread si libera viene scelto, nell'ordine:
+ * <ol>
+ *     <li>il primo job breve del client che ha ricevuto meno tempo di calcolo in proporzione al suo peso;</li>
+ *     <li>il primo job lungo sospeso, che ha già la sua memoria riservata;</li>
+ *     <li>il primo job lungo del client che ha ricevuto meno tempo di calcolo in proporzione al suo peso.</li>
+ * </ol>
+ * Se tutti i thread sono occupati e c'è un job breve in attesa, un job lungo viene sospeso alla fine del livello che
+ * sta calcolando e ripreso appena possibile: in questo modo le richieste interattive su tabelle piccole non attendono
+ * il termine dei mining più lunghi. Un job sospeso non occupa alcun thread: conserva i livelli già creati, libera il
+ * suo thread e torna fra i job sospesi, da cui viene ripreso dall'ultimo livello creato. I job brevi non vengono mai
+ * sospesi e un job lungo viene avviato solo se non ce ne sono di sospesi.
+ *
+ * <p>I dendrogrammi creati vengono memorizzati in una {@link ResultCache}. Se la cache contiene già un dendrogramma
+ * almeno profondo quanto quello richiesto, creato dagli stessi dati con la stessa distanza, il job viene completato
+ * subito senza passare dalla coda; se ne contiene uno meno profondo, il job riprende il mining dal suo ultimo livello e
+ * la sua stima del costo considera solo i livelli mancanti. Allo stesso modo un job può estendere un dendrogramma
+ * fornito da chi lo invia, ad esempio caricato da un file: in tal caso il dendrogramma creato non viene memorizzato
+ * nella cache, perché non si può garantire che quello di partenza sia stato creato dagli stessi dati. Se la cache non
+ * contiene un dendrogramma abbastanza profondo, viene cercato anche nel {@link DendrogramStore archivio} del server,
+ * se presente, e fra i {@link CheckpointStore checkpoint} lasciati dai job interrotti, ad esempio da un riavvio del
+ * server. Il checkpoint di un job viene rimosso quando il job termina con successo.
+ *
+ * <p>I job che eseguono il mining leggono le distanze fra gli esempi da una matrice della {@link DistanceCache},
+ * condivisa da tutti i job sugli stessi dati indipendentemente dalla distanza fra cluster usata.
+ */
+public class JobManager {
+    /**
+     * Il pool di thread su cui vengono eseguiti i job.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Il numero massimo di job eseguiti contemporaneamente.
+     */
+    private final int threads;
+
+    /**
+     * Il numero massimo di job in coda.
+     */
+    private final int maxQueuedJobs;
+
+    /**
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Il controllore che decide quali job possono essere accettati ed eseguiti.
+     */
+    private final AdmissionController admission;
+
+    /**
+     * La cache dei dendrogrammi creati.
+     */
+    private final ResultCache resultCache;
+
+    /**
+     * La cache delle matrici delle distanze.
+     */
+    private final DistanceCache distanceCache;
+
+    /**
+     * L'archivio dei dendrogrammi, {@code null} se non viene usato.
+     */
+    private final DendrogramStore dendrogramStore;
+
+    /**
+     * La gestione dei checkpoint dei job, {@code null} se i checkpoint non vengono salvati.
+     */
+    private final CheckpointStore checkpoints;
+
+    /**
+     * Le code dei client che hanno dei job, indicizzate per client.
+     */
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+
+    /**
+     * I job lunghi sospesi, in ordine di sospensione.
+     */
+    private final Queue<MiningJob> suspended = new ArrayDeque<>();
+
+    /**
+     * L'istante (come restituito da {@link System#nanoTime()}) a partire dal quale il tempo di calcolo dei job in
+     * esecuzione non è ancora stato addebitato ai loro client.
+     */
+    private final Map<MiningJob, Long> chargedUntil = new HashMap<>();
+
+    /**
+     * Il numero di job in coda.
+     */
+    private int queued = 0;
+
+    /**
+     * Il numero di job in esecuzione, ovvero di thread del pool occupati o assegnati.
+     */
+    private int running = 0;
+
+    /**
+     * I job non ancora rilasciati, indicizzati per identificativo.
+     */
+    private final Map<Long, MiningJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * L'identificativo dell'ultimo job creato.
+     */
+    private final AtomicLong lastJobId = new AtomicLong();
+
+    /**
+     * Costruisce il gestore dei job con la configurazione {@code configuration}, la cache dei dendrogrammi
+     * {@code resultCache}, quella delle matrici delle distanze {@code distanceCache}, l'archivio dei dendrogrammi
+     * {@code dendrogramStore} e la gestione dei checkpoint {@code checkpoints}, tutti specificati come parametro.
+     *
+     * @param configuration la configurazione del server
+     * @param resultCache la cache dei dendrogrammi creati
+     * @param distanceCache la cache delle matrici delle distanze
+     * @param dendrogramStore l'archivio dei dendrogrammi, {@code null} se non viene usato
+     * @param checkpoints la gestione dei checkpoint dei job, {@code null} se i checkpoint non vengono salvati
+     */
+    public JobManager(ServerConfiguration configuration, ResultCache resultCache, DistanceCache distanceCache, DendrogramStore dendrogramStore, CheckpointStore checkpoints) {
+        var counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            var thread = new Thread(runnable, String.format("HCLUS-Mining-%d", counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.threads = configuration.getComputeThreads();
+        this.maxQueuedJobs = configuration.getMaxQueuedJobs();
+        this.configuration = configuration;
+        this.admission = new AdmissionController(configuration.getMiningMemoryBudget());
+        this.resultCache = resultCache;
+        this.distanceCache = distanceCache;
+        this.dendrogramStore = dendrogramStore;
+        this.checkpoints = checkpoints;
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * Invia un job, appartenente a {@code owner} e addebitato al client {@code tenant}, che crea un dendrogramma di
+     * profondità {@code depth} dai dati {@code data} usando la distanza {@code distance} (tutti specificati come
+     * parametro).
+     *
+     * @param owner il proprietario del job
+     * @param tenant il client a cui viene addebitato il tempo di calcolo del job
+     * @param data i dati da cui creare il dendrogramma
+     * @param depth la profondità del dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return il job inviato
+     * @throws RequestException se il job richiede più memoria di quella a disposizione o se ci sono già troppi job in
+     *                          attesa
+     */
+    public MiningJob submit(Object owner, String tenant, Data data, int depth, ClusterDistance distance) throws RequestException {
+        return this.submit(owner, tenant, data, depth, distance, null);
+    }
+
+    /**
+     * Invia un job, appartenente a {@code owner} e addebitato al client {@code tenant}, che crea un dendrogramma di
+     * profondità {@code depth} dai dati {@code data} usando la distanza {@code distance}, riprendendo il mining
+     * dall'ultimo livello del dendrogramma di {@code base} (tutti specificati come parametro). Se la cache, l'archivio o
+     * i checkpoint contengono un dendrogramma più profondo di quello di {@code base}, il mining riprende da quello.
+     *
+     * @param owner il proprietario del job
+     * @param tenant il client a cui viene addebitato il tempo di calcolo del job
+     * @param data i dati da cui creare il dendrogramma
+     * @param depth la profondità del dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param base il miner, creato dai dati {@code data} con la distanza {@code distance}, da cui riprendere il mining,
+     *             o {@code null} per partire dal primo livello
+     * @return il job inviato
+     * @throws RequestException se il job richiede più memoria di quella a disposizione o se ci sono già troppi job in
+     *                          attesa
+     */
+    public MiningJob submit(Object owner, String tenant, Data data, int depth, ClusterDistance distance, HierarchicalClusterMiner base) throws RequestException {
+        var prefix = this.resultCache.lookup(data, distance);
+        if (this.dendrogramStore != null && (prefix == null || prefix.getDendrogramDepth() < depth)) {
+            var stored = this.dendrogramStore.lookup(data, distance, depth);
+            if (stored != null && (prefix == null || stored.getDendrogramDepth() > prefix.getDendrogramDepth())) {
+                prefix = stored;
+            }
+        }
+        if (this.checkpoints != null && (prefix == null || prefix.getDendrogramDepth() < depth)) {
+            var checkpoint = this.checkpoints.lookup(data, distance);
+            if (checkpoint != null && (prefix == null || checkpoint.getDendrogramDepth() > prefix.getDendrogramDepth())) {
+                prefix = checkpoint;
+            }
+        }
+
+        boolean cacheable = true;
+        if (base != null && (prefix == null || base.getDendrogramDepth() > prefix.getDendrogramDepth())) {
+            prefix = base;
+            cacheable = false;
+        }
+
+        int prefixDepth = prefix == null ? 0 : prefix.getDendrogramDepth();
+        var cost = MiningCost.estimate(data, Math.min(prefixDepth, depth), depth, distance);
+        boolean shortJob = cost.getOperations() <= this.configuration.getShortJobOperations();
+
+        if (prefixDepth >= depth) {
+            // Basta troncare il dendrogramma già creato: non serve un thread di mining
+            var job = new MiningJob(this.lastJobId.incrementAndGet(), owner, tenant, data, depth, distance, cost, true, prefix, cacheable);
+            this.jobs.put(job.getId(), job);
+            job.run(() -> false, this.distanceCache, null);
+            return job;
+        }
+
+        synchronized (this) {
+            this.admission.check(cost, data.getNumberOfExamples(), data.getNumberOfAttributes(), distance);
+            if (this.queued >= this.maxQueuedJobs) {
+                throw new RequestException("Il server è occupato, troppi job in attesa: riprovare più tardi!");
+            }
+
+            var job = new MiningJob(this.lastJobId.incrementAndGet(), owner, tenant, data, depth, distance, cost, shortJob, prefix, cacheable);
+            this.jobs.put(job.getId(), job);
+            this.tenantQueue(tenant).lane(shortJob).add(job);
+            ++this.queued;
+            this.dispatch();
+            return job;
+        }
+    }
+
+    /**
+     * Restituisce il job con identificativo {@code id} appartenente a {@code owner}, entrambi specificati come
+     * parametro.
+     *
+     * @param owner il proprietario del job
+     * @param id l'identificativo del job
+     * @return il job con identificativo {@code id}
+     * @throws RequestException se il job non esiste o non appartiene a {@code owner}
+     */
+    public MiningJob getJob(Object owner, long id) throws RequestException {
+        var job = this.jobs.get(id);
+        if (job == null || job.getOwner() != owner) {
+            throw new RequestException(String.format("Il job %d non esiste!", id));
+        }
+
+        return job;
+    }
+
+    /**
+     * Annulla il job {@code job}, specificato come parametro. Se il job è ancora in attesa viene anche tolto dalla
+     * coda, liberando subito il suo posto; se è sospeso viene tolto dai job sospesi, liberandone la memoria riservata.
+     *
+     * @param job il job da annullare
+     */
+    public void cancel(MiningJob job) {
+        job.cancel();
+
+        synchronized (this) {
+            var tenantQueue = this.tenants.get(job.getTenant());
+            if (tenantQueue != null && tenantQueue.lane(job.isShort()).remove(job)) {
+                --this.queued;
+                this.removeIfIdle(tenantQueue);
+                // Il job annullato poteva essere il primo della sua coda e bloccare quelli successivi
+                this.dispatch();
+            } else if (this.suspended.remove(job)) {
+                this.released(job);
+            }
+        }
+    }
+
+    /**
+     * Dimentica il job {@code job}, specificato come parametro, che non potrà più essere consultato.
+     *
+     * @param job il job da dimenticare
+     */
+    public void forget(MiningJob job) {
+        this.jobs.remove(job.getId(), job);
+    }
+
+    /**
+     * Annulla e dimentica tutti i job appartenenti a {@code owner}, specificato come parametro.
+     *
+     * @param owner il proprietario dei job
+     */
+    public void release(Object owner) {
+        var iterator = this.jobs.values().iterator();
+        while (iterator.hasNext()) {
+            var job = iterator.next();
+            if (job.getOwner() == owner) {
+                this.cancel(job);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Restituisce la coda del client {@code tenant}, specificato come parametro, creandola se non esiste. Un client
+     * nuovo parte dal tempo virtuale minore fra quelli dei client attivi, così da non poter accumulare credito mentre
+     * non ha job. Deve essere chiamato tenendo il lock del gestore.
+     *
+     * @param tenant l'identificativo del client
+     * @return la coda del client
+     */
+    private TenantQueue tenantQueue(String tenant) {
+        var tenantQueue = this.tenants.get(tenant);
+        if (tenantQueue == null) {
+            long virtualNanos = this.tenants.values().stream()
+                .mapToLong(TenantQueue::getVirtualNanos)
+                .min()
+                .orElse(0);
+            tenantQueue = new TenantQueue(tenant, this.configuration.getTenantWeight(tenant), virtualNanos);
+            this.tenants.put(tenant, tenantQueue);
+        }
+
+        return tenantQueue;
+    }
+
+    /**
+     * Rimuove la coda {@code tenantQueue}, specificata come parametro, se il suo client non ha più job. Deve essere
+     * chiamato tenendo il lock del gestore.
+     *
+     * @param tenantQueue la coda del client
+     */
+    private void removeIfIdle(TenantQueue tenantQueue) {
+        if (tenantQueue.isIdle()) {
+            this.tenants.remove(tenantQueue.getTenant());
+        }
+    }
+
+    /**
+     * Restituisce il primo job della coda dei job brevi ({@code shortLane} vero) o lunghi, specificata come parametro,
+     * del client con il tempo virtuale minore fra quelli che hanno job in quella coda. Deve essere chiamato tenendo il
+     * lock del gestore.
+     *
+     * @param shortLane {@code true} per i job brevi, {@code false} per quelli lunghi
+     * @return il job scelto, {@code null} se non ci sono job in coda
+     */
+    private MiningJob peekFairest(boolean shortLane) {
+        TenantQueue fairest = null;
+        for (var tenantQueue : this.tenants.values()) {
+            if (!tenantQueue.lane(shortLane).isEmpty()
+                && (fairest == null || tenantQueue.getVirtualNanos() < fairest.getVirtualNanos()))
+            {
+                fairest = tenantQueue;
+            }
+        }
+
+        return fairest == null ? null : fairest.lane(shortLane).peek();
+    }
+
+    /**
+     * Avvia o riprende i job finché ci sono thread liberi, scegliendoli come descritto nella documentazione della
+     * classe. Deve essere chiamato tenendo il lock del gestore.
+     */
+    private void dispatch() {
+        while (this.running < this.threads) {
+            var shortJob = this.peekFairest(true);
+            if (shortJob != null && this.admission.tryReserve(shortJob.getCost())) {
+                this.start(shortJob);
+                continue;
+            }
+
+            if (!this.suspended.isEmpty()) {
+                this.execute(this.suspended.remove());
+                continue;
+            }
+
+            // Un job breve che attende memoria non deve essere scavalcato da uno lungo che la occuperebbe
+            if (shortJob != null) {
+                break;
+            }
+
+            var longJob = this.peekFairest(false);
+            if (longJob == null || !this.admission.tryReserve(longJob.getCost())) {
+                break;
+            }
+
+            this.start(longJob);
+        }
+    }
+
+    /**
+     * Toglie dalla coda e avvia il job {@code job}, specificato come parametro, la cui memoria è già stata riservata.
+     * Deve essere chiamato tenendo il lock del gestore.
+     *
+     * @param job il job da avviare
+     */
+    private void start(MiningJob job) {
+        var tenantQueue = this.tenants.get(job.getTenant());
+        tenantQueue.lane(job.isShort()).remove();
+        tenantQueue.jobStarted();
+        --this.queued;
+
+        this.execute(job);
+    }
+
+    /**
+     * Assegna un thread del pool al job {@code job}, specificato come parametro, che viene avviato o, se era sospeso,
+     * ripreso. Quando il job termina o viene sospeso il thread torna libero. Deve essere chiamato tenendo il lock del
+     * gestore.
+     *
+     * @param job il job da eseguire
+     */
+    private void execute(MiningJob job) {
+        this.acquireSlot(job);
+        this.executor.execute(() -> {
+            boolean suspended = false;
+            try {
+                suspended = !job.run(() -> this.shouldSuspend(job), this.distanceCache, this.checkpoints);
+                if (!suspended) {
+                    this.remember(job);
+                }
+            } finally {
+                if (suspended) {
+                    this.suspended(job);
+                } else {
+                    this.finished(job);
+                }
+            }
+        });
+    }
+
+    /**
+     * Assegna un thread al job {@code job}, specificato come parametro. Deve essere chiamato tenendo il lock del
+     * gestore.
+     *
+     * @param job il job a cui assegnare il thread
+     */
+    private void acquireSlot(MiningJob job) {
+        ++this.running;
+        this.chargedUntil.put(job, System.nanoTime());
+    }
+
+    /**
+     * Addebita al client del job {@code job}, specificato come parametro, il tempo di calcolo non ancora addebitato.
+     * Deve essere chiamato tenendo il lock del gestore.
+     *
+     * @param job il job in esecuzione
+     */
+    private void charge(MiningJob job) {
+        long now = System.nanoTime();
+        Long since = this.chargedUntil.put(job, now);
+        var tenantQueue = this.tenants.get(job.getTenant());
+        if (since != null && tenantQueue != null) {
+            tenantQueue.charge(now - since);
+        }
+    }
+
+    /**
+     * Toglie il thread al job {@code job}, specificato come parametro, addebitandone il tempo di calcolo al client.
+     * Deve essere chiamato tenendo il lock del gestore.
+     *
+     * @param job il job a cui togliere il thread
+     */
+    private void releaseSlot(MiningJob job) {
+        this.charge(job);
+        this.chargedUntil.remove(job);
+        --this.running;
+    }
+
+    /**
+     * Chiamato dal job {@code job}, specificato come parametro, alla fine di ogni livello: addebita il tempo di calcolo
+     * al suo client e restituisce {@code true} se il job deve essere sospeso, ovvero se è lungo, tutti i thread sono
+     * occupati e c'è un job breve che può essere avviato.
+     *
+     * @param job il job in esecuzione
+     * @return {@code true} se il job deve essere sospeso, {@code false} altrimenti
+     */
+    private synchronized boolean shouldSuspend(MiningJob job) {
+        this.charge(job);
+        if (job.isShort() || this.running < this.threads) {
+            return false;
+        }
+
+        var shortJob = this.peekFairest(true);
+        return shortJob != null && this.admission.fits(shortJob.getCost());
+    }
+
+    /**
+     * Registra la sospensione del job {@code job}, specificato come parametro, liberandone il thread, che viene
+     * assegnato ai job in coda. Il job mantiene la memoria riservata e verrà ripreso appena possibile.
+     *
+     * @param job il job sospeso
+     */
+    private synchronized void suspended(MiningJob job) {
+        this.releaseSlot(job);
+        this.suspended.add(job);
+        this.dispatch();
+    }
+
+    /**
+     * Memorizza nella cache il dendrogramma creato dal job {@code job}, specificato come parametro, se è terminato con
+     * successo e può essere memorizzato, rimuovendone il checkpoint che non serve più.
+     *
+     * @param job il job terminato
+     */
+    private void remember(MiningJob job) {
+        var result = job.getResult();
+        if (result != null && job.isCacheable()) {
+            long bytes = MiningCost.estimate(job.getData(), result.getDendrogramDepth(), job.getDistance()).getBytes();
+            this.resultCache.put(job.getData(), job.getDistance(), result, bytes);
+            if (this.checkpoints != null) {
+                this.checkpoints.discard(job.getData(), job.getDistance(), result.getDendrogramDepth());
+            }
+        }
+    }
+
+    /**
+     * Registra la fine dell'esecuzione del job {@code job}, specificato come parametro, liberandone la memoria
+     * riservata e avviando i job in coda che possono ora essere eseguiti.
+     *
+     * @param job il job terminato
+     */
+    private synchronized void finished(MiningJob job) {
+        this.releaseSlot(job);
+        this.released(job);
+    }
+
+    /**
+     * Libera la memoria riservata dal job {@code job}, specificato come parametro, che non è più in esecuzione né
+     * sospeso, e avvia i job in coda che possono ora essere eseguiti. Deve essere chiamato tenendo il lock del gestore.
+     *
+     * @param job il job terminato
+     */
+    private void released(MiningJob job) {
+        this.admission.release(job.getCost());
+
+        var tenantQueue = this.tenants.get(job.getTenant());
+        tenantQueue.jobFinished();
+        this.removeIfIdle(tenantQueue);
+
+        this.dispatch();
+    }
+
+    /**
+     * Interrompe l'esecuzione di tutti i job e termina i thread del gestore.
+     */
+    public void shutdown() {
+        this.jobs.values().forEach(this::cancel);
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+package com.davidecarella.hclus.server.jobs;
+
+/**
+ * Classe immutabile che rappresenta lo stato di avanzamento di un {@link MiningJob job di mining} in un certo istante.
+ */
+public final class JobProgress {
+    /**
+     * L'identificativo del job.
+     */
+    private final long jobId;
+
+    /**
+     * Lo stato del job.
+     */
+    private final JobState state;
+
+    /**
+     * Il numero di livelli del dendrogramma completati.
+     */
+    private final int levelsDone;
+
+    /**
+     * Il numero totale di livelli del dendrogramma.
+     */
+    private final int totalLevels;
+
+    /**
+     * Il tempo trascorso dall'inizio dell'esecuzione, in millisecondi.
+     */
+    private final long elapsedMillis;
+
+    /**
+     * Il tempo stimato per il completamento, in millisecondi, {@code -1} se non è ancora possibile stimarlo.
+     */
+    private final long etaMillis;
+
+    /**
+     * Il messaggio d'errore se il job è fallito, altrimenti la stringa vuota.
+     */
+    private final String message;
+
+    /**
+     * Il numero di aggiornamenti del job al momento della creazione di questo stato, usato per attendere il successivo.
+     */
+    private final long version;
+
+    /**
+     * Costruisce lo stato di avanzamento a partire dai valori specificati come parametro.
+     *
+     * @param jobId l'identificativo del job
+     * @param state lo stato del job
+     * @param levelsDone il numero di livelli completati
+     * @param totalLevels il numero totale di livelli
+     * @param elapsedMillis il tempo trascorso dall'inizio dell'esecuzione, in millisecondi
+     * @param etaMillis il tempo stimato per il completamento, in millisecondi, {@code -1} se non è stimabile
+     * @param message il messaggio d'errore o la stringa vuota
+     * @param version il numero di aggiornamenti del job
+     */
+    JobProgress(long jobId, JobState state, int levelsDone, int totalLevels, long elapsedMillis, long etaMillis, String message, long version) {
+        this.jobId = jobId;
+        this.state = state;
+        this.levelsDone = levelsDone;
+        this.totalLevels = totalLevels;
+        this.elapsedMillis = elapsedMillis;
+        this.etaMillis = etaMillis;
+        this.message = message;
+        this.version = version;
+    }
+
+    /**
+     * Restituisce l'identificativo del job.
+     *
+     * @return l'identificativo del job
+     */
+    public long getJobId() {
+        return this.jobId;
+    }
+
+    /**
+     * Restituisce lo stato del job.
+     *
+     * @return lo stato del job
+     */
+    public JobState getState() {
+        return this.state;
+    }
+
+    /**
+     * Restituisce il numero di livelli del dendrogramma completati.
+     *
+     * @return il numero di livelli completati
+     */
+    public int getLevelsDone() {
+        return this.levelsDone;
+    }
+
+    /**
+     * Restituisce il numero totale di livelli del dendrogramma.
+     *
+     * @return il numero totale di livelli
+     */
+    public int getTotalLevels() {
+        return this.totalLevels;
+    }
+
+    /**
+     * Restituisce il tempo trascorso dall'inizio dell'esecuzione.
+     *
+     * @return il tempo trascorso, in millisecondi
+     */
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * Restituisce il tempo stimato per il completamento.
+     *
+     * @return il tempo stimato, in millisecondi, {@code -1} se non è ancora possibile stimarlo
+     */
+    public long getEtaMillis() {
+        return this.etaMillis;
+    }
+
+    /**
+     * Restituisce il messaggio d'errore del job.
+     *
+     * @return il messaggio d'errore se il job è fallito, altrimenti la stringa vuota
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Restituisce il numero di aggiornamenti del job al momento della creazione di questo stato.
+     *
+     * @return il numero di aggiornamenti del job
+     */
+    long getVersion() {
+        return this.version;
+    }
+}
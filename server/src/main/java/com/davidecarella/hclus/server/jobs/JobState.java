@@ -0,0 +1,63 @@
+package com.davidecarella.hclus.server.jobs;
+
+/**
+ * Enumerazione degli stati di un {@link MiningJob job di mining}.
+ */
+public enum JobState {
+    /**
+     * Il job è in attesa di un thread libero.
+     */
+    QUEUED(0),
+
+    /**
+     * Il job è in esecuzione.
+     */
+    RUNNING(1),
+
+    /**
+     * Il job è terminato con successo.
+     */
+    COMPLETED(2),
+
+    /**
+     * Il job è terminato con un errore.
+     */
+    FAILED(3),
+
+    /**
+     * Il job è stato annullato.
+     */
+    CANCELLED(4);
+
+    /**
+     * Il codice dello stato, usato sulla connessione.
+     */
+    private final int code;
+
+    /**
+     * Costruisce lo stato con codice {@code code}, specificato come parametro.
+     *
+     * @param code il codice dello stato
+     */
+    JobState(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Restituisce il codice dello stato.
+     *
+     * @return il codice dello stato
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Restituisce {@code true} se lo stato è finale, ovvero il job non cambierà più stato, {@code false} altrimenti.
+     *
+     * @return {@code true} se lo stato è finale, {@code false} altrimenti
+     */
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+}
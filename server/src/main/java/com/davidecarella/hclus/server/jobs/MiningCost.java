@@ -0,0 +1,229 @@
+package com.davidecarella.hclus.server.jobs;
+
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.distance.SingleLinkDistance;
+
+/**
+ * <p>Classe immutabile che rappresenta la stima del costo di un {@link MiningJob job di mining}, calcolata a partire
+ * dal numero di esempi \(n\), dal numero di attributi \(d\), dalla profondità \(p\) e dalla distanza usata.
+ *
+ * <p>La memoria è quella occupata dal dendrogramma: il livello \(l\) contiene un array di \(n - l\) riferimenti ai
+ * cluster, i cluster non uniti sono condivisi fra un livello e il successivo, mentre ogni unione crea un nuovo cluster
+ * con tutti gli esempi dei due cluster uniti. Con la distanza average-link i cluster crescono in modo bilanciato e un
+ * cluster del livello \(l\) contiene in media \(n / (n - l)\) esempi; con la distanza single-link, invece, possono
+ * formarsi catene che crescono un esempio alla volta, perciò viene stimato il caso peggiore, in cui il cluster creato al
+ * livello \(l\) contiene \(l + 1\) esempi e il totale cresce come \(p^2 / 2\) (ed è comunque al più \(p n\)). I pesi
+ * sono stati ricavati misurando lo heap occupato su dati sintetici.
+ *
+ * <p>Il lavoro è il numero di calcoli della distanza fra due esempi, ciascuno dei quali richiede \(d\) operazioni: ogni
+ * unione confronta tutte le coppie di esempi appartenenti a cluster diversi, che sono al più \(n (n - 1) / 2\).
+ */
+public final class MiningCost {
+    /**
+     * La dimensione in byte dell'intestazione di un array.
+     */
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * La dimensione in byte di un riferimento, che dipende dalla possibilità per la JVM di usare i riferimenti
+     * compressi (possibile solo con heap inferiori a 32 GB).
+     */
+    private static final long REFERENCE_BYTES = Runtime.getRuntime().maxMemory() < (32L << 30) ? 4 : 8;
+
+    /**
+     * La dimensione in byte di un cluster con un solo esempio (il cluster, il suo insieme ordinato e l'unico elemento).
+     */
+    private static final long SINGLETON_CLUSTER_BYTES = 136;
+
+    /**
+     * La dimensione in byte di ogni esempio aggiunto all'insieme ordinato di un cluster.
+     */
+    private static final long CLUSTER_ENTRY_BYTES = 56;
+
+    /**
+     * Il fattore di crescita dei cluster uniti con la distanza average-link.
+     */
+    private static final double BALANCED_GROWTH = 2.0;
+
+    /**
+     * La memoria stimata, in byte.
+     */
+    private final long bytes;
+
+    /**
+     * Il numero stimato di calcoli della distanza fra due esempi.
+     */
+    private final long distanceEvaluations;
+
+    /**
+     * Il numero di attributi di ogni esempio.
+     */
+    private final int numberOfAttributes;
+
+    /**
+     * Costruisce la stima a partire dai valori specificati come parametro.
+     *
+     * @param bytes la memoria stimata, in byte
+     * @param distanceEvaluations il numero stimato di calcoli della distanza fra due esempi
+     * @param numberOfAttributes il numero di attributi di ogni esempio
+     */
+    private MiningCost(long bytes, long distanceEvaluations, int numberOfAttributes) {
+        this.bytes = bytes;
+        this.distanceEvaluations = distanceEvaluations;
+        this.numberOfAttributes = numberOfAttributes;
+    }
+
+    /**
+     * Stima il costo della creazione di un dendrogramma di profondità {@code depth} dai dati {@code data} usando la
+     * distanza {@code distance}, tutti specificati come parametro.
+     *
+     * @param data i dati da cui creare il dendrogramma
+     * @param depth la profondità del dendrogramma, compresa fra {@code 1} e il numero di esempi
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return la stima del costo
+     */
+    public static MiningCost estimate(Data data, int depth, ClusterDistance distance) {
+        return estimate(data.getNumberOfExamples(), data.getNumberOfAttributes(), depth, distance);
+    }
+
+    /**
+     * Stima il costo dell'estensione di un dendrogramma già creato dai dati {@code data} con la distanza
+     * {@code distance}, dalla profondità {@code fromDepth} alla profondità {@code depth} (tutti specificati come
+     * parametro). Vengono considerati solo i livelli mancanti, poiché quelli già presenti vengono condivisi.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param fromDepth la profondità del dendrogramma già creato, {@code 0} se non ce n'è uno
+     * @param depth la profondità del dendrogramma esteso, compresa fra {@code fromDepth} e il numero di esempi
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return la stima del costo
+     * @see com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner#extend
+     */
+    public static MiningCost estimate(Data data, int fromDepth, int depth, ClusterDistance distance) {
+        var full = estimate(data, depth, distance);
+        if (fromDepth <= 0) {
+            return full;
+        }
+
+        var existing = estimate(data, fromDepth, distance);
+        return new MiningCost(
+            full.bytes - existing.bytes,
+            full.distanceEvaluations - existing.distanceEvaluations,
+            full.numberOfAttributes
+        );
+    }
+
+    /**
+     * Stima il costo della creazione di un dendrogramma di profondità {@code depth} da {@code numberOfExamples} esempi
+     * con {@code numberOfAttributes} attributi usando la distanza {@code distance}, tutti specificati come parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @param numberOfAttributes il numero di attributi di ogni esempio
+     * @param depth la profondità del dendrogramma, compresa fra {@code 1} e {@code numberOfExamples}
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return la stima del costo
+     */
+    static MiningCost estimate(int numberOfExamples, int numberOfAttributes, int depth, ClusterDistance distance) {
+        // I conti vengono fatti in virgola mobile perché con molti esempi i prodotti supererebbero il massimo di un
+        // long: la conversione finale satura a Long.MAX_VALUE
+        double n = numberOfExamples;
+        double p = depth;
+
+        // Somma di (n - l) per l da 0 a p - 1
+        double references = p * n - p * (p - 1) / 2;
+        double levelBytes = p * ARRAY_HEADER_BYTES + references * REFERENCE_BYTES;
+
+        double mergedEntries;
+        if (distance instanceof SingleLinkDistance) {
+            // Caso peggiore di una catena: somma di (l + 1) per l da 1 a p - 1
+            mergedEntries = Math.min((p - 1) * (p + 2) / 2, p * n);
+        } else {
+            // Somma di n / (n - l) per l da 1 a p - 1, approssimata con il logaritmo
+            mergedEntries = BALANCED_GROWTH * n * Math.log(n / (n - p + 1));
+        }
+        double clusterBytes = n * SINGLETON_CLUSTER_BYTES + mergedEntries * CLUSTER_ENTRY_BYTES;
+
+        double evaluations = (p - 1) * (n * (n - 1) / 2);
+
+        return new MiningCost((long) (levelBytes + clusterBytes), (long) evaluations, numberOfAttributes);
+    }
+
+    /**
+     * Restituisce la profondità massima di un dendrogramma creato da {@code numberOfExamples} esempi con
+     * {@code numberOfAttributes} attributi usando la distanza {@code distance} la cui memoria stimata non supera
+     * {@code maxBytes}, tutti specificati come parametro.
+     *
+     * @param numberOfExamples il numero di esempi
+     * @param numberOfAttributes il numero di attributi di ogni esempio
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param maxBytes la memoria massima, in byte
+     * @return la profondità massima, {@code 0} se nemmeno un dendrogramma con un solo livello rientra nel limite
+     */
+    static int maxDepth(int numberOfExamples, int numberOfAttributes, ClusterDistance distance, long maxBytes) {
+        // La memoria cresce con la profondità, perciò si può usare la ricerca binaria
+        int low = 0;
+        int high = numberOfExamples;
+        while (low < high) {
+            int middle = low + (high - low + 1) / 2;
+            if (estimate(numberOfExamples, numberOfAttributes, middle, distance).getBytes() <= maxBytes) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Restituisce la memoria stimata, in byte.
+     *
+     * @return la memoria stimata, in byte
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Restituisce il numero stimato di calcoli della distanza fra due esempi.
+     *
+     * @return il numero stimato di calcoli della distanza fra due esempi
+     */
+    public long getDistanceEvaluations() {
+        return this.distanceEvaluations;
+    }
+
+    /**
+     * Restituisce il numero stimato di operazioni elementari, ovvero il numero di calcoli della distanza fra due
+     * esempi per il numero di attributi.
+     *
+     * @return il numero stimato di operazioni elementari
+     */
+    public long getOperations() {
+        return (long) ((double) this.distanceEvaluations * this.numberOfAttributes);
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale della stima.
+     *
+     * @return la rappresentazione testuale della stima
+     */
+    @Override
+    public String toString() {
+        return String.format("memoria stimata %s, %.2e operazioni", formatBytes(this.bytes), (double) this.getOperations());
+    }
+
+    /**
+     * Restituisce la dimensione {@code bytes}, specificata come parametro, in una forma leggibile.
+     *
+     * @param bytes la dimensione in byte
+     * @return la dimensione in una forma leggibile
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%d KB", (bytes + 1023) / 1024);
+        }
+
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
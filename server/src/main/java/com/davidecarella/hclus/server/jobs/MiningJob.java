@@ -0,0 +1,546 @@
+package com.davidecarella.hclus.server.jobs;
+
+import com.davidecarella.hclus.server.cache.DistanceCache;
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.clustering.MiningMonitor;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.exceptions.InvalidDepthException;
+import com.davidecarella.hclus.server.exceptions.InvalidSizeException;
+import com.davidecarella.hclus.server.store.CheckpointStore;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>Classe che rappresenta un job di mining, ovvero la creazione di un dendrogramma eseguita in background da
+ * {@link JobManager}.
+ *
+ * <p>Lo stato del job può essere letto in ogni momento con {@link MiningJob#getProgress()}, oppure si può attendere che
+ * cambi con {@link MiningJob#awaitChange(JobProgress, long)}. L'annullamento è cooperativo: il miner controlla la
+ * richiesta di annullamento durante la ricerca dei cluster più vicini, perciò un job in esecuzione termina poco dopo
+ * la chiamata a {@link MiningJob#cancel()}.
+ *
+ * <p>Il tempo stimato per il completamento viene calcolato supponendo che ogni livello richieda lo stesso tempo: con le
+ * distanze single-link e average-link ogni unione confronta, in totale, tutte le coppie di esempi appartenenti a
+ * cluster diversi, il cui numero varia di poco da un livello all'altro.
+ *
+ * <p>Il dendrogramma viene allocato solo quando il job inizia l'esecuzione e, se il job non termina con successo, non
+ * viene conservato: la memoria stimata in {@link MiningJob#getCost()} è perciò occupata solo mentre il job è in
+ * esecuzione o dopo che è stato completato.
+ *
+ * <p>Un job può essere sospeso alla fine di un livello: i livelli già creati vengono conservati come continuazione,
+ * il thread che lo eseguiva viene liberato e una chiamata successiva a {@link MiningJob#run} riprende il mining
+ * dall'ultimo livello creato con {@link HierarchicalClusterMiner#extend}. Per chi consulta il job, un job sospeso
+ * risulta ancora in esecuzione.
+ *
+ * <p>Se il dendrogramma creato può essere memorizzato nella cache, durante il mining i livelli già creati vengono
+ * salvati periodicamente in un {@link CheckpointStore checkpoint}, da cui un job successivo sugli stessi dati con la
+ * stessa distanza può riprendere se questo viene interrotto.
+ */
+public class MiningJob {
+    /**
+     * L'identificativo del job.
+     */
+    private final long id;
+
+    /**
+     * Il proprietario del job, l'unico che può accedervi.
+     */
+    private final Object owner;
+
+    /**
+     * Il client (tenant) a cui viene addebitato il tempo di calcolo del job.
+     */
+    private final String tenant;
+
+    /**
+     * I dati da cui creare il dendrogramma.
+     */
+    private final Data data;
+
+    /**
+     * L'oggetto per calcolare la distanza fra cluster.
+     */
+    private final ClusterDistance distance;
+
+    /**
+     * La stima del costo del job.
+     */
+    private final MiningCost cost;
+
+    /**
+     * Indica se il job è breve, ovvero se ha la precedenza sui job lunghi e non viene mai sospeso.
+     */
+    private final boolean shortJob;
+
+    /**
+     * Il miner da cui riprendere il mining, con i primi livelli del dendrogramma già creati (ad esempio da una
+     * richiesta precedente), {@code null} se il mining parte dal primo livello.
+     */
+    private final HierarchicalClusterMiner prefix;
+
+    /**
+     * Il numero di livelli del dendrogramma già presenti all'avvio del job.
+     */
+    private final int cachedLevels;
+
+    /**
+     * Indica se il dendrogramma creato può essere memorizzato nella cache dei risultati, ovvero se quello di partenza
+     * è stato sicuramente creato dagli stessi dati con la stessa distanza.
+     */
+    private final boolean cacheable;
+
+    /**
+     * Il miner con i livelli già creati da cui riprendere il mining se il job è sospeso, {@code null} altrimenti.
+     */
+    private HierarchicalClusterMiner continuation = null;
+
+    /**
+     * Il miner che contiene il dendrogramma creato, {@code null} finché il job non è stato completato.
+     */
+    private HierarchicalClusterMiner result = null;
+
+    /**
+     * Il numero totale di livelli del dendrogramma.
+     */
+    private final int depth;
+
+    /**
+     * Indica se è stato richiesto l'annullamento del job.
+     */
+    private volatile boolean cancelRequested = false;
+
+    /**
+     * Lo stato del job.
+     */
+    private JobState state = JobState.QUEUED;
+
+    /**
+     * Il numero di livelli completati.
+     */
+    private int levelsDone = 0;
+
+    /**
+     * L'istante di inizio dell'esecuzione (come restituito da {@link System#nanoTime()}).
+     */
+    private long startNanos = 0;
+
+    /**
+     * L'istante di fine dell'esecuzione (come restituito da {@link System#nanoTime()}).
+     */
+    private long endNanos = 0;
+
+    /**
+     * Il messaggio d'errore se il job è fallito, altrimenti la stringa vuota.
+     */
+    private String message = "";
+
+    /**
+     * Il numero di aggiornamenti dello stato del job.
+     */
+    private long version = 0;
+
+    /**
+     * Costruisce il job con identificativo {@code id}, proprietario {@code owner} e client {@code tenant} che crea un
+     * dendrogramma di profondità {@code depth} dai dati {@code data} usando la distanza {@code distance}, con costo
+     * stimato {@code cost}, tutti specificati come parametro; se {@code shortJob} è vero il job è breve. Se
+     * {@code prefix} non è {@code null} il dendrogramma viene ottenuto da quello di {@code prefix}, troncandolo o
+     * estendendolo, invece di partire dal primo livello; se {@code cacheable} è vero il dendrogramma creato può essere
+     * memorizzato nella cache dei risultati.
+     *
+     * @param id l'identificativo del job
+     * @param owner il proprietario del job
+     * @param tenant il client a cui viene addebitato il tempo di calcolo del job
+     * @param data i dati da cui creare il dendrogramma
+     * @param depth la profondità del dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param cost la stima del costo del job
+     * @param shortJob {@code true} se il job è breve, {@code false} altrimenti
+     * @param prefix il miner creato dagli stessi dati con la stessa distanza da cui riprendere il mining, o
+     *               {@code null}
+     * @param cacheable {@code true} se il dendrogramma creato può essere memorizzato nella cache, {@code false}
+     *                  altrimenti
+     */
+    MiningJob(long id, Object owner, String tenant, Data data, int depth, ClusterDistance distance, MiningCost cost, boolean shortJob, HierarchicalClusterMiner prefix, boolean cacheable) {
+        this.id = id;
+        this.owner = owner;
+        this.tenant = tenant;
+        this.data = data;
+        this.depth = depth;
+        this.distance = distance;
+        this.cost = cost;
+        this.shortJob = shortJob;
+        this.prefix = prefix;
+        this.cachedLevels = prefix == null ? 0 : Math.min(prefix.getDendrogramDepth(), depth);
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Restituisce l'identificativo del job.
+     *
+     * @return l'identificativo del job
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Restituisce il proprietario del job.
+     *
+     * @return il proprietario del job
+     */
+    public Object getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Restituisce il client a cui viene addebitato il tempo di calcolo del job.
+     *
+     * @return il client del job
+     */
+    public String getTenant() {
+        return this.tenant;
+    }
+
+    /**
+     * Restituisce {@code true} se il job è breve, ovvero se ha la precedenza sui job lunghi e non viene mai sospeso,
+     * {@code false} altrimenti.
+     *
+     * @return {@code true} se il job è breve, {@code false} altrimenti
+     */
+    public boolean isShort() {
+        return this.shortJob;
+    }
+
+    /**
+     * Restituisce il numero di livelli del dendrogramma già presenti all'avvio del job, che non devono essere
+     * calcolati.
+     *
+     * @return il numero di livelli già presenti
+     */
+    public int getCachedLevels() {
+        return this.cachedLevels;
+    }
+
+    /**
+     * Restituisce {@code true} se il dendrogramma creato può essere memorizzato nella cache dei risultati,
+     * {@code false} altrimenti.
+     *
+     * @return {@code true} se il dendrogramma creato può essere memorizzato nella cache, {@code false} altrimenti
+     */
+    public boolean isCacheable() {
+        return this.cacheable;
+    }
+
+    /**
+     * Restituisce l'oggetto per calcolare la distanza fra cluster usato dal job.
+     *
+     * @return l'oggetto per calcolare la distanza fra cluster
+     */
+    public ClusterDistance getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Restituisce i dati da cui viene creato il dendrogramma.
+     *
+     * @return i dati da cui viene creato il dendrogramma
+     */
+    public Data getData() {
+        return this.data;
+    }
+
+    /**
+     * Restituisce la stima del costo del job.
+     *
+     * @return la stima del costo del job
+     */
+    public MiningCost getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Restituisce il miner che contiene il dendrogramma creato.
+     *
+     * @return il miner se il job è terminato con successo, {@code null} altrimenti
+     */
+    public synchronized HierarchicalClusterMiner getResult() {
+        return this.result;
+    }
+
+    /**
+     * Restituisce lo stato di avanzamento attuale del job.
+     *
+     * @return lo stato di avanzamento attuale
+     */
+    public synchronized JobProgress getProgress() {
+        long elapsedNanos = 0;
+        if (this.state == JobState.RUNNING) {
+            elapsedNanos = System.nanoTime() - this.startNanos;
+        } else if (this.state.isTerminal() && this.startNanos != 0) {
+            elapsedNanos = this.endNanos - this.startNanos;
+        }
+
+        // Il primo livello non richiede alcuna unione e quelli già presenti non vengono calcolati, perciò non vengono
+        // considerati nella stima
+        long etaNanos = -1;
+        int firstMergedLevel = Math.max(this.cachedLevels, 1);
+        int mergesDone = this.levelsDone - firstMergedLevel;
+        int totalMerges = this.depth - firstMergedLevel;
+        if (this.state.isTerminal()) {
+            etaNanos = 0;
+        } else if (this.state == JobState.RUNNING && mergesDone > 0) {
+            etaNanos = elapsedNanos / mergesDone * (totalMerges - mergesDone);
+        }
+
+        return new JobProgress(
+            this.id,
+            this.state,
+            this.levelsDone,
+            this.depth,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            etaNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(etaNanos),
+            this.message,
+            this.version
+        );
+    }
+
+    /**
+     * Attende che lo stato del job cambi rispetto a {@code previous}, al più per {@code timeoutMillis} millisecondi
+     * (entrambi specificati come parametro). Se il job è già in uno stato finale il metodo termina subito.
+     *
+     * @param previous l'ultimo stato di avanzamento noto, {@code null} per non attendere
+     * @param timeoutMillis il tempo massimo di attesa, in millisecondi
+     * @return lo stato di avanzamento attuale
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public synchronized JobProgress awaitChange(JobProgress previous, long timeoutMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        while (previous != null && this.version == previous.getVersion() && !this.state.isTerminal()) {
+            long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (remaining <= 0) {
+                break;
+            }
+
+            this.wait(remaining);
+        }
+
+        return this.getProgress();
+    }
+
+    /**
+     * Attende che il job termini.
+     *
+     * @return lo stato di avanzamento finale
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public synchronized JobProgress awaitCompletion() throws InterruptedException {
+        while (!this.state.isTerminal()) {
+            this.wait();
+        }
+
+        return this.getProgress();
+    }
+
+    /**
+     * Richiede l'annullamento del job. Un job in attesa o sospeso viene annullato subito, uno in esecuzione appena il
+     * miner se ne accorge; un job già terminato non viene modificato.
+     */
+    public void cancel() {
+        this.cancelRequested = true;
+
+        synchronized (this) {
+            if (this.state == JobState.QUEUED || this.isSuspended()) {
+                this.continuation = null;
+                this.finish(JobState.CANCELLED, "Il job è stato annullato!");
+            }
+        }
+    }
+
+    /**
+     * Restituisce {@code true} se il job è stato sospeso e non è ancora stato ripreso, {@code false} altrimenti.
+     *
+     * @return {@code true} se il job è sospeso, {@code false} altrimenti
+     */
+    synchronized boolean isSuspended() {
+        return this.state == JobState.RUNNING && this.continuation != null;
+    }
+
+    /**
+     * Esegue o, se è sospeso, riprende il job, chiedendo a {@code suspend}, specificato come parametro, dopo ogni
+     * livello completato se il job deve essere sospeso: è l'unico punto in cui {@link JobManager} può sospendere il job
+     * per cedere il thread a un altro. Se deve creare dei livelli, il job legge le distanze fra gli esempi dalla
+     * matrice ottenuta da {@code distanceCache} e, se il dendrogramma può essere memorizzato nella cache, salva i
+     * livelli già creati in {@code checkpoints} (entrambi specificati come parametro) al più una volta ogni
+     * {@link CheckpointStore#getIntervalNanos()}. Viene chiamato dal thread di {@link JobManager} a cui è stato
+     * assegnato il job.
+     *
+     * @param suspend la condizione, valutata fra un livello e il successivo, che indica se sospendere il job
+     * @param distanceCache la cache delle matrici delle distanze
+     * @param checkpoints la gestione dei checkpoint, {@code null} se i checkpoint non vengono salvati
+     * @return {@code false} se il job è stato sospeso e deve essere ripreso, {@code true} se è terminato o non doveva
+     *         essere eseguito
+     */
+    boolean run(BooleanSupplier suspend, DistanceCache distanceCache, CheckpointStore checkpoints) {
+        HierarchicalClusterMiner resumeFrom;
+        synchronized (this) {
+            if (this.state == JobState.QUEUED) {
+                resumeFrom = this.prefix;
+                this.state = JobState.RUNNING;
+                this.startNanos = System.nanoTime();
+                this.update();
+            } else if (this.isSuspended()) {
+                resumeFrom = this.continuation;
+                this.continuation = null;
+            } else {
+                return true;
+            }
+        }
+
+        var monitor = new MiningMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return MiningJob.this.cancelRequested || Thread.currentThread().isInterrupted();
+            }
+
+            @Override
+            public void levelCompleted(int levels) {
+                synchronized (MiningJob.this) {
+                    MiningJob.this.levelsDone = levels;
+                    MiningJob.this.update();
+                }
+            }
+
+            /**
+             * L'istante (come restituito da {@link System#nanoTime()}) dell'ultimo checkpoint o dell'avvio del job.
+             */
+            private long lastCheckpointNanos = MiningJob.this.startNanos;
+
+            @Override
+            public void levelCompleted(int levels, HierarchicalClusterMiner miner) {
+                // Il checkpoint viene scritto prima che il job possa essere sospeso, così da non perdere i livelli
+                // creati se il server viene fermato mentre il job attende
+                long now = System.nanoTime();
+                if (checkpoints != null && MiningJob.this.cacheable && levels < MiningJob.this.depth
+                    && now - this.lastCheckpointNanos >= checkpoints.getIntervalNanos())
+                {
+                    MiningJob.this.saveCheckpoint(checkpoints, miner, levels);
+                    this.lastCheckpointNanos = System.nanoTime();
+                }
+
+                this.levelCompleted(levels);
+
+                // Dopo l'ultimo livello non c'è più niente da sospendere
+                if (levels < MiningJob.this.depth && !this.isCancelled() && suspend.getAsBoolean()) {
+                    try {
+                        throw new SuspendedException(miner.truncate(levels));
+                    } catch (InvalidDepthException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+            }
+        };
+
+        try {
+            HierarchicalClusterMiner miner;
+            if (resumeFrom != null && resumeFrom.getDendrogramDepth() >= this.depth) {
+                miner = resumeFrom.truncate(this.depth);
+                monitor.levelCompleted(this.depth);
+            } else {
+                try (var distances = distanceCache.acquire(this.data)) {
+                    if (resumeFrom == null) {
+                        miner = new HierarchicalClusterMiner(this.depth);
+                        miner.mine(distances.getData(), this.distance, monitor);
+                    } else {
+                        miner = resumeFrom.extend(this.depth, distances.getData(), this.distance, monitor);
+                    }
+                }
+            }
+
+            synchronized (this) {
+                this.result = miner;
+                this.finish(JobState.COMPLETED, "");
+            }
+        } catch (SuspendedException suspension) {
+            synchronized (this) {
+                if (this.state == JobState.RUNNING) {
+                    this.continuation = suspension.continuation;
+                    return false;
+                }
+            }
+        } catch (OutOfMemoryError error) {
+            // La stima del costo può sbagliare per difetto: in tal caso fallisce solo questo job, il cui dendrogramma
+            // parziale diventa subito recuperabile dal garbage collector
+            this.finish(JobState.FAILED, "Memoria insufficiente per completare il mining!");
+        } catch (CancellationException exception) {
+            this.finish(JobState.CANCELLED, "Il job è stato annullato!");
+        } catch (InvalidDepthException | InvalidSizeException exception) {
+            this.finish(JobState.FAILED, exception.getMessage());
+        } catch (RuntimeException exception) {
+            this.finish(JobState.FAILED, String.format("Errore durante il mining: %s!", exception.getMessage()));
+        }
+
+        return true;
+    }
+
+    /**
+     * Salva in {@code checkpoints} i primi {@code levels} livelli del dendrogramma di {@code miner} (tutti specificati
+     * come parametro). Un errore durante la scrittura non interrompe il mining.
+     *
+     * @param checkpoints la gestione dei checkpoint
+     * @param miner il miner che sta creando il dendrogramma
+     * @param levels il numero di livelli completati
+     */
+    private void saveCheckpoint(CheckpointStore checkpoints, HierarchicalClusterMiner miner, int levels) {
+        try {
+            checkpoints.write(this.data, this.distance, miner.truncate(levels));
+        } catch (IOException | InvalidDepthException exception) {
+            System.out.printf("Impossibile salvare il checkpoint del job %d: %s%n", this.id, exception.getMessage());
+        }
+    }
+
+    /**
+     * Porta il job nello stato finale {@code state} con messaggio {@code message}, entrambi specificati come
+     * parametro.
+     *
+     * @param state lo stato finale
+     * @param message il messaggio d'errore o la stringa vuota
+     */
+    private synchronized void finish(JobState state, String message) {
+        this.state = state;
+        this.message = message;
+        this.endNanos = System.nanoTime();
+        this.update();
+    }
+
+    /**
+     * Registra un aggiornamento dello stato del job e risveglia chi lo sta attendendo.
+     */
+    private synchronized void update() {
+        ++this.version;
+        this.notifyAll();
+    }
+
+    /**
+     * Eccezione usata per interrompere il mining quando il job viene sospeso, che porta con sé i livelli già creati.
+     */
+    private static final class SuspendedException extends RuntimeException {
+        /**
+         * Il miner con i livelli già creati da cui riprendere il mining.
+         */
+        private final transient HierarchicalClusterMiner continuation;
+
+        /**
+         * Costruisce l'eccezione con i livelli già creati, {@code continuation}, specificati come parametro.
+         *
+         * @param continuation il miner con i livelli già creati da cui riprendere il mining
+         */
+        private SuspendedException(HierarchicalClusterMiner continuation) {
+            super(null, null, false, false);
+            this.continuation = continuation;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.davidecarella.hclus.server.jobs;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * <p>Classe che contiene i {@link MiningJob job di mining} in coda di un client (tenant) e il tempo di calcolo che ha
+ * ricevuto, usato da {@link JobManager} per ripartire equamente i thread di mining fra i client.
+ *
+ * <p>Il tempo virtuale è il tempo di calcolo ricevuto diviso per il peso del client: a ogni scelta viene servito il
+ * client con il tempo virtuale minore, perciò un client con peso doppio riceve, a parità di richieste, il doppio del
+ * tempo di calcolo. Non è thread-safe: viene usata da {@link JobManager} sotto il proprio lock.
+ */
+class TenantQueue {
+    /**
+     * L'identificativo del client.
+     */
+    private final String tenant;
+
+    /**
+     * Il peso del client.
+     */
+    private final int weight;
+
+    /**
+     * I job brevi in coda, in ordine di arrivo.
+     */
+    private final Queue<MiningJob> shortJobs = new ArrayDeque<>();
+
+    /**
+     * I job lunghi in coda, in ordine di arrivo.
+     */
+    private final Queue<MiningJob> longJobs = new ArrayDeque<>();
+
+    /**
+     * Il tempo virtuale del client, in nanosecondi.
+     */
+    private long virtualNanos;
+
+    /**
+     * Il numero di job del client in esecuzione o sospesi.
+     */
+    private int started = 0;
+
+    /**
+     * Costruisce la coda del client {@code tenant} con peso {@code weight} e tempo virtuale iniziale
+     * {@code virtualNanos}, tutti specificati come parametro.
+     *
+     * @param tenant l'identificativo del client
+     * @param weight il peso del client
+     * @param virtualNanos il tempo virtuale iniziale, in nanosecondi
+     */
+    TenantQueue(String tenant, int weight, long virtualNanos) {
+        this.tenant = tenant;
+        this.weight = weight;
+        this.virtualNanos = virtualNanos;
+    }
+
+    /**
+     * Restituisce l'identificativo del client.
+     *
+     * @return l'identificativo del client
+     */
+    String getTenant() {
+        return this.tenant;
+    }
+
+    /**
+     * Restituisce il tempo virtuale del client.
+     *
+     * @return il tempo virtuale del client, in nanosecondi
+     */
+    long getVirtualNanos() {
+        return this.virtualNanos;
+    }
+
+    /**
+     * Aggiunge al tempo virtuale del client il tempo di calcolo {@code nanos}, specificato come parametro, diviso per il
+     * suo peso.
+     *
+     * @param nanos il tempo di calcolo ricevuto, in nanosecondi
+     */
+    void charge(long nanos) {
+        this.virtualNanos += nanos / this.weight;
+    }
+
+    /**
+     * Restituisce la coda dei job brevi ({@code shortLane} vero) o di quelli lunghi, specificata come parametro.
+     *
+     * @param shortLane {@code true} per la coda dei job brevi, {@code false} per quella dei job lunghi
+     * @return la coda richiesta
+     */
+    Queue<MiningJob> lane(boolean shortLane) {
+        return shortLane ? this.shortJobs : this.longJobs;
+    }
+
+    /**
+     * Registra l'avvio di un job del client.
+     */
+    void jobStarted() {
+        ++this.started;
+    }
+
+    /**
+     * Registra la fine di un job del client.
+     */
+    void jobFinished() {
+        --this.started;
+    }
+
+    /**
+     * Restituisce {@code true} se il client non ha job in coda, in esecuzione o sospesi, {@code false} altrimenti.
+     *
+     * @return {@code true} se il client non ha job, {@code false} altrimenti
+     */
+    boolean isIdle() {
+        return this.started == 0 && this.shortJobs.isEmpty() && this.longJobs.isEmpty();
+    }
+}
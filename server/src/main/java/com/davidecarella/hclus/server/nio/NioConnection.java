@@ -0,0 +1,461 @@
+package com.davidecarella.hclus.server.nio;
+
+import com.davidecarella.hclus.server.protocol.Frame;
+import com.davidecarella.hclus.server.protocol.FrameCodec;
+import com.davidecarella.hclus.server.protocol.FrameHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Classe che rappresenta una connessione gestita dal {@link NioServer}.
+ *
+ * <p>La lettura e la scrittura sul canale vengono eseguite esclusivamente dal thread del {@link SelectorLoop ciclo di
+ * selezione} a cui appartiene la connessione. Le richieste decodificate vengono accodate e gestite, una alla volta e
+ * nell'ordine di arrivo, su {@code requestExecutor}; le risposte vengono accodate e scritte dal ciclo di selezione
+ * quando il canale è pronto.
+ *
+ * <p>Entrambe le code sono limitate in byte. Quando le richieste in attesa superano
+ * {@link #MAX_PENDING_REQUEST_BYTES} il ciclo smette di leggere dal canale, così che un client che invia richieste più
+ * velocemente di quanto vengano gestite venga rallentato dal controllo di flusso di TCP, e riprende quando scendono
+ * sotto {@link #RESUME_REQUEST_BYTES}. Quando le risposte in attesa superano {@link #MAX_PENDING_RESPONSE_BYTES}
+ * l'attività che gestisce le richieste si blocca prima di accodarne altre, così che un client che non legge le risposte
+ * non faccia crescere la coda senza limiti, e riprende quando la scrittura le fa scendere sotto
+ * {@link #RESUME_RESPONSE_BYTES}.
+ *
+ * <p>Il buffer di lettura ha inizialmente dimensione {@link #INITIAL_READ_BUFFER_SIZE}. Se un frame non vi entra, il
+ * buffer viene sostituito da uno della dimensione esatta del frame solo dopo averne controllato l'intestazione e aver
+ * riservato la memoria sul {@link NioServer}; quando il frame è stato letto il buffer torna alla dimensione iniziale e
+ * la memoria viene liberata.
+ *
+ * <p>Se una richiesta non è valida, perché il frame è malformato o il suo payload è troncato, al client viene inviato un
+ * frame {@link Frame#error(String) di errore} dopo le risposte alle richieste precedenti e la connessione viene chiusa
+ * quando è stato scritto.
+ */
+class NioConnection {
+    /**
+     * La dimensione iniziale del buffer di lettura.
+     */
+    private static final int INITIAL_READ_BUFFER_SIZE = 4096;
+
+    /**
+     * Il numero di byte delle richieste in attesa oltre il quale il ciclo smette di leggere dal canale.
+     */
+    private static final long MAX_PENDING_REQUEST_BYTES = 1 << 20;
+
+    /**
+     * Il numero di byte delle richieste in attesa sotto il quale il ciclo riprende a leggere dal canale.
+     */
+    private static final long RESUME_REQUEST_BYTES = MAX_PENDING_REQUEST_BYTES / 4;
+
+    /**
+     * Il numero di byte delle risposte in attesa oltre il quale l'attività che gestisce le richieste si blocca.
+     */
+    private static final long MAX_PENDING_RESPONSE_BYTES = 4 << 20;
+
+    /**
+     * Il numero di byte delle risposte in attesa sotto il quale l'attività che gestisce le richieste riprende.
+     */
+    private static final long RESUME_RESPONSE_BYTES = MAX_PENDING_RESPONSE_BYTES / 4;
+
+    /**
+     * Il canale della connessione.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Il ciclo di selezione a cui appartiene la connessione.
+     */
+    private final SelectorLoop loop;
+
+    /**
+     * Il server a cui appartiene la connessione.
+     */
+    private final NioServer server;
+
+    /**
+     * Il gestore delle richieste della connessione.
+     */
+    private final FrameHandler handler;
+
+    /**
+     * L'esecutore su cui vengono gestite le richieste.
+     */
+    private final ExecutorService requestExecutor;
+
+    /**
+     * Le richieste ricevute e non ancora gestite.
+     */
+    private final Queue<Frame> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Il numero di byte delle richieste ricevute e non ancora gestite.
+     */
+    private final AtomicLong pendingRequestBytes = new AtomicLong();
+
+    /**
+     * Indica se il ciclo ha smesso di leggere dal canale perché ci sono troppe richieste in attesa.
+     */
+    private final AtomicBoolean readingPaused = new AtomicBoolean(false);
+
+    /**
+     * Indica se c'è un'attività in esecuzione che sta gestendo le richieste in coda.
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * Le risposte codificate e non ancora scritte sul canale.
+     */
+    private final Queue<ByteBuffer> pendingResponses = new ConcurrentLinkedQueue<>();
+
+    /**
+     * L'oggetto su cui si attende che le risposte in attesa scendano sotto {@link #RESUME_RESPONSE_BYTES}, che protegge
+     * anche {@link #pendingResponseBytes}.
+     */
+    private final Object responseLock = new Object();
+
+    /**
+     * Il numero di byte delle risposte codificate e non ancora scritte sul canale.
+     */
+    private long pendingResponseBytes = 0;
+
+    /**
+     * Il buffer in cui vengono accumulati i byte letti (pronto per la scrittura).
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+    /**
+     * Il numero di byte riservati sul server per il buffer di lettura oltre la dimensione iniziale.
+     */
+    private long reservedBufferBytes = 0;
+
+    /**
+     * L'errore nella lettura di una richiesta non valida, da segnalare al client dopo aver gestito le richieste
+     * precedenti, {@code null} se non ce ne sono.
+     */
+    private final AtomicReference<ProtocolException> invalidRequest = new AtomicReference<>();
+
+    /**
+     * Indica se la connessione deve essere chiusa dopo aver scritto le risposte in attesa.
+     */
+    private volatile boolean closeAfterFlush = false;
+
+    /**
+     * Indica se la connessione è stata chiusa.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * La chiave di registrazione del canale nel selettore del ciclo.
+     */
+    private SelectionKey key;
+
+    /**
+     * Costruisce la connessione sul canale {@code channel}, appartenente al server {@code server} e al ciclo
+     * {@code loop}, che gestisce le richieste con {@code handler} sull'esecutore {@code requestExecutor}, tutti
+     * specificati come parametro.
+     *
+     * @param channel il canale della connessione
+     * @param server il server a cui appartiene la connessione
+     * @param loop il ciclo di selezione a cui appartiene la connessione
+     * @param handler il gestore delle richieste
+     * @param requestExecutor l'esecutore su cui vengono gestite le richieste
+     */
+    NioConnection(SocketChannel channel, NioServer server, SelectorLoop loop, FrameHandler handler, ExecutorService requestExecutor) {
+        this.channel = channel;
+        this.server = server;
+        this.loop = loop;
+        this.handler = handler;
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Registra il canale nel selettore del ciclo. Va chiamato dal thread del ciclo.
+     */
+    void register() {
+        try {
+            this.key = this.channel.register(this.loop.getSelector(), SelectionKey.OP_READ, this);
+            this.handler.getSession().log("Connesso");
+        } catch (ClosedChannelException exception) {
+            this.close();
+        }
+    }
+
+    /**
+     * Legge i byte disponibili sul canale e accoda le richieste complete. Va chiamato dal thread del ciclo.
+     */
+    void read() {
+        try {
+            int read = this.channel.read(this.readBuffer);
+            if (read < 0) {
+                this.close();
+                return;
+            }
+
+            this.readBuffer.flip();
+            Frame frame;
+            while ((frame = FrameCodec.decode(this.readBuffer)) != null) {
+                this.pendingRequestBytes.addAndGet(size(frame));
+                this.pendingRequests.add(frame);
+            }
+            this.resizeReadBuffer();
+            if (!this.channel.isOpen()) {
+                return;
+            }
+
+            if (this.pendingRequestBytes.get() > MAX_PENDING_REQUEST_BYTES && this.readingPaused.compareAndSet(false, true)) {
+                this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+                if (this.pendingRequestBytes.get() <= RESUME_REQUEST_BYTES) {
+                    this.resumeReading();
+                }
+            }
+
+            this.scheduleDrain();
+        } catch (ProtocolException exception) {
+            // L'errore viene inviato dopo le risposte alle richieste già accodate, smettendo di leggere dal canale
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            this.invalidRequest.set(exception);
+            this.scheduleDrain();
+        } catch (IOException exception) {
+            this.handler.getSession().log(String.format("Errore durante la lettura della richiesta: %s!", exception.getMessage()));
+            this.close();
+        }
+    }
+
+    /**
+     * Adatta il buffer di lettura, che contiene l'inizio del frame successivo ed è pronto per essere letto, e lo rende
+     * pronto per la scrittura. Se il frame non entra nel buffer, ne controlla l'intestazione e lo sostituisce con uno
+     * della dimensione del frame, chiudendo la connessione se il server non ha abbastanza memoria; se il buffer è più
+     * grande della dimensione iniziale e il frame successivo vi entra, torna alla dimensione iniziale.
+     *
+     * @throws ProtocolException se l'intestazione del frame non è valida
+     */
+    private void resizeReadBuffer() throws ProtocolException {
+        int frameSize = FrameCodec.peekFrameSize(this.readBuffer);
+        int capacity = this.readBuffer.capacity();
+
+        int size;
+        if (frameSize > capacity) {
+            size = frameSize;
+        } else if (capacity > INITIAL_READ_BUFFER_SIZE && this.readBuffer.remaining() <= INITIAL_READ_BUFFER_SIZE && frameSize <= INITIAL_READ_BUFFER_SIZE) {
+            size = INITIAL_READ_BUFFER_SIZE;
+        } else {
+            this.readBuffer.compact();
+            return;
+        }
+
+        long reserved = size - INITIAL_READ_BUFFER_SIZE;
+        if (reserved > this.reservedBufferBytes && !this.server.reserveBuffer(reserved - this.reservedBufferBytes)) {
+            this.handler.getSession().log("Memoria insufficiente per ricevere la richiesta, connessione chiusa!");
+            this.close();
+            return;
+        }
+        if (reserved < this.reservedBufferBytes) {
+            this.server.releaseBuffer(this.reservedBufferBytes - reserved);
+        }
+        this.reservedBufferBytes = reserved;
+
+        var resized = ByteBuffer.allocate(size);
+        resized.put(this.readBuffer);
+        this.readBuffer = resized;
+    }
+
+    /**
+     * Scrive sul canale le risposte accodate finché il canale lo permette, registrando l'interesse per la scrittura se
+     * ne rimangono. Va chiamato dal thread del ciclo.
+     */
+    void flush() {
+        if (this.key == null || !this.key.isValid()) {
+            return;
+        }
+
+        try {
+            ByteBuffer buffer;
+            while ((buffer = this.pendingResponses.peek()) != null) {
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+
+                this.pendingResponses.poll();
+                synchronized (this.responseLock) {
+                    this.pendingResponseBytes -= buffer.limit();
+                    if (this.pendingResponseBytes <= RESUME_RESPONSE_BYTES) {
+                        this.responseLock.notifyAll();
+                    }
+                }
+            }
+
+            if (this.closeAfterFlush) {
+                this.close();
+                return;
+            }
+
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException exception) {
+            this.handler.getSession().log(String.format("Errore durante la scrittura della risposta: %s!", exception.getMessage()));
+            this.close();
+        }
+    }
+
+    /**
+     * Riprende la lettura dal canale, se era stata sospesa perché c'erano troppe richieste in attesa. Va chiamato dal
+     * thread del ciclo.
+     */
+    void resumeReading() {
+        if (this.key == null || !this.key.isValid()) {
+            return;
+        }
+
+        if (this.invalidRequest.get() == null && !this.closeAfterFlush && this.readingPaused.compareAndSet(true, false)) {
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Accoda la risposta {@code frame}, specificata come parametro, per la scrittura sul canale. Se le risposte in
+     * attesa superano {@link #MAX_PENDING_RESPONSE_BYTES} il thread chiamante si blocca finché la scrittura non le fa
+     * scendere sotto {@link #RESUME_RESPONSE_BYTES}.
+     *
+     * @param frame la risposta da accodare
+     * @throws IOException se la connessione viene chiusa o il thread viene interrotto durante l'attesa
+     */
+    private void enqueueResponse(Frame frame) throws IOException {
+        var buffer = FrameCodec.encode(frame);
+        synchronized (this.responseLock) {
+            try {
+                if (this.pendingResponseBytes > MAX_PENDING_RESPONSE_BYTES) {
+                    while (this.pendingResponseBytes > RESUME_RESPONSE_BYTES && this.channel.isOpen()) {
+                        this.responseLock.wait();
+                    }
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Attesa della scrittura delle risposte interrotta");
+            }
+
+            if (!this.channel.isOpen()) {
+                throw new ClosedChannelException();
+            }
+
+            this.pendingResponseBytes += buffer.limit();
+            this.pendingResponses.add(buffer);
+        }
+
+        this.loop.requestFlush(this);
+    }
+
+    /**
+     * Avvia, se non è già in esecuzione, l'attività che gestisce le richieste accodate.
+     */
+    private void scheduleDrain() {
+        if ((!this.pendingRequests.isEmpty() || this.invalidRequest.get() != null) && this.draining.compareAndSet(false, true)) {
+            this.requestExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Gestisce una alla volta le richieste accodate, accodando le risposte per la scrittura. Se una richiesta non è
+     * valida invia al client un frame di errore e chiude la connessione.
+     */
+    private void drain() {
+        try {
+            Frame request;
+            while (!this.closeAfterFlush && (request = this.pendingRequests.poll()) != null) {
+                if (this.pendingRequestBytes.addAndGet(-size(request)) <= RESUME_REQUEST_BYTES && this.readingPaused.get()) {
+                    this.loop.requestResumeReading(this);
+                }
+
+                if (!this.channel.isOpen()) {
+                    return;
+                }
+
+                try {
+                    this.handler.handle(request, this::enqueueResponse);
+                } catch (ProtocolException exception) {
+                    this.reject(exception);
+                    return;
+                }
+            }
+
+            var exception = this.invalidRequest.getAndSet(null);
+            if (exception != null && !this.closeAfterFlush) {
+                this.reject(exception);
+            }
+        } catch (IOException exception) {
+            this.handler.getSession().log(String.format("Errore durante la gestione della richiesta: %s!", exception.getMessage()));
+            this.loop.requestClose(this);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.draining.set(false);
+            this.scheduleDrain();
+        }
+    }
+
+    /**
+     * Invia al client un frame di errore per la richiesta non valida che ha causato {@code exception}, specificata come
+     * parametro, e chiede al ciclo di chiudere la connessione dopo averlo scritto.
+     *
+     * @param exception l'errore nella lettura della richiesta
+     * @throws IOException se la connessione viene chiusa o il thread viene interrotto durante l'attesa
+     */
+    private void reject(ProtocolException exception) throws IOException {
+        this.handler.getSession().log(String.format("Richiesta non valida: %s", exception.getMessage()));
+        this.enqueueResponse(Frame.error(exception.getMessage()));
+        this.closeAfterFlush = true;
+        this.loop.requestFlush(this);
+    }
+
+    /**
+     * Chiude la connessione.
+     */
+    void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.server.releaseBuffer(this.reservedBufferBytes);
+        this.reservedBufferBytes = 0;
+        this.server.connectionClosed();
+
+        if (this.key != null) {
+            this.key.cancel();
+        }
+
+        this.handler.close();
+        this.handler.getSession().close();
+        try {
+            this.channel.close();
+            synchronized (this.responseLock) {
+                this.responseLock.notifyAll();
+            }
+            this.handler.getSession().log("Connessione chiusa");
+        } catch (IOException exception) {
+            this.handler.getSession().log("Errore durante la chiusura del socket!");
+        }
+    }
+
+    /**
+     * Restituisce il numero di byte occupati dalla richiesta {@code frame}, specificata come parametro, nella coda delle
+     * richieste in attesa.
+     *
+     * @param frame la richiesta
+     * @return il numero di byte occupati dalla richiesta
+     */
+    private static long size(Frame frame) {
+        return FrameCodec.HEADER_SIZE + frame.getPayload().length;
+    }
+}
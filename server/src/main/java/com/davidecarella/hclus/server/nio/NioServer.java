@@ -0,0 +1,208 @@
+package com.davidecarella.hclus.server.nio;
+
+import com.davidecarella.hclus.server.ClientSession;
+import com.davidecarella.hclus.server.ServerConfiguration;
+import com.davidecarella.hclus.server.ServerContext;
+import com.davidecarella.hclus.server.protocol.FrameHandler;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Server non bloccante che gestisce molte connessioni (anche inattive) con pochi thread.
+ *
+ * <p>Le connessioni vengono distribuite fra un numero fisso di {@link SelectorLoop cicli di selezione}, ognuno con il
+ * proprio {@link java.nio.channels.Selector selettore} e il proprio thread di I/O. I cicli di selezione leggono i byte
+ * ricevuti, li decodificano in {@link com.davidecarella.hclus.server.protocol.Frame frame} e li accodano alla
+ * {@link NioConnection connessione}; le richieste accodate vengono poi gestite su thread virtuali (una richiesta alla
+ * volta per connessione) e le risposte vengono scritte in modo asincrono dal ciclo di selezione.
+ *
+ * <p>Le connessioni accettate occupano i permessi per le sessioni del {@link ServerContext}, condivisi con il server
+ * bloccante: se i client gestiti sono già {@link ServerConfiguration#getMaxSessions()} le nuove connessioni vengono
+ * chiuse subito, perché il ciclo di selezione non può attendere. Ogni connessione legge con un piccolo buffer, che
+ * viene ingrandito solo per ricevere un frame più grande la cui intestazione è valida; la memoria occupata dai buffer
+ * ingranditi di tutte le connessioni è limitata da {@link ServerConfiguration#getNioBufferMemory()}.
+ *
+ * <p>Il server parla esclusivamente il protocollo binario definito nel package
+ * {@link com.davidecarella.hclus.server.protocol}.
+ */
+public class NioServer {
+    /**
+     * La porta su cui il server si mette in ascolto.
+     */
+    private final int port;
+
+    /**
+     * La configurazione del server.
+     */
+    private final ServerConfiguration configuration;
+
+    /**
+     * Le risorse del server, condivise con il server bloccante.
+     */
+    private final ServerContext context;
+
+    /**
+     * L'esecutore su cui vengono gestite le richieste.
+     */
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * I cicli di selezione fra cui vengono distribuite le connessioni.
+     */
+    private SelectorLoop[] loops;
+
+    /**
+     * Il canale su cui il server è in ascolto, {@code null} se non è ancora stato avviato.
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * La memoria occupata dai buffer di lettura ingranditi di tutte le connessioni, in byte.
+     */
+    private final AtomicLong bufferBytes = new AtomicLong();
+
+    /**
+     * Il numero di connessioni accettate fino ad ora, usato per distribuirle fra i cicli di selezione.
+     */
+    private final AtomicInteger acceptedConnections = new AtomicInteger();
+
+    /**
+     * Costruisce il server che si metterà in ascolto sulla porta {@code port} usando le risorse del server
+     * {@code context}, entrambi specificati come parametro.
+     *
+     * @param port la porta su cui si mette in ascolto il server
+     * @param context le risorse del server
+     */
+    public NioServer(int port, ServerContext context) {
+        this.port = port;
+        this.configuration = context.getConfiguration();
+        this.context = context;
+    }
+
+    /**
+     * Mette in ascolto il server e avvia i thread di I/O. Il metodo termina subito, le connessioni vengono gestite in
+     * background.
+     *
+     * @throws IOException se non è possibile creare i selettori o mettersi in ascolto sulla porta
+     */
+    public void start() throws IOException {
+        this.loops = new SelectorLoop[this.configuration.getIoThreads()];
+        for (int i = 0; i < this.loops.length; ++i) {
+            this.loops[i] = new SelectorLoop(this, i);
+        }
+
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(this.port));
+        this.serverChannel.configureBlocking(false);
+
+        this.loops[0].registerServerChannel(this.serverChannel);
+        for (var loop : this.loops) {
+            var thread = new Thread(loop, String.format("HCLUS-NIO-%d", loop.getIndex()));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        System.out.printf("In ascolto (NIO) sulla porta %d%n", this.port);
+    }
+
+    /**
+     * Affida la connessione appena accettata, {@code channel} specificato come parametro, a uno dei cicli di
+     * selezione.
+     *
+     * @param channel il canale della connessione accettata
+     */
+    void dispatch(SocketChannel channel) {
+        if (!this.context.getSessionPermits().tryAcquire()) {
+            System.out.println("Numero massimo di client raggiunto, connessione rifiutata!");
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                System.out.println("Errore durante la chiusura del socket!");
+            }
+
+            return;
+        }
+
+        var loop = this.loops[Math.floorMod(this.acceptedConnections.getAndIncrement(), this.loops.length)];
+
+        String name;
+        String tenant;
+        try {
+            var address = (InetSocketAddress) channel.getRemoteAddress();
+            tenant = address.getAddress().getHostAddress();
+            name = String.format("HCLUS-NIO-Client(%s, %d)", tenant, address.getPort());
+        } catch (IOException exception) {
+            tenant = "?";
+            name = "HCLUS-NIO-Client(?)";
+        }
+
+        var session = new ClientSession(name, tenant, this.context);
+        loop.registerConnection(new NioConnection(channel, this, loop, new FrameHandler(session, this.configuration), this.requestExecutor));
+    }
+
+    /**
+     * Registra la chiusura di una connessione, liberandone il permesso per la sessione.
+     */
+    void connectionClosed() {
+        this.context.getSessionPermits().release();
+    }
+
+    /**
+     * Prova a riservare {@code bytes} byte, specificati come parametro, per ingrandire il buffer di lettura di una
+     * connessione.
+     *
+     * @param bytes il numero di byte da riservare
+     * @return {@code true} se i byte sono stati riservati, {@code false} se supererebbero il limite
+     */
+    boolean reserveBuffer(long bytes) {
+        long maxBytes = this.configuration.getNioBufferMemory();
+        long used;
+        do {
+            used = this.bufferBytes.get();
+            if (used + bytes > maxBytes) {
+                return false;
+            }
+        } while (!this.bufferBytes.compareAndSet(used, used + bytes));
+
+        return true;
+    }
+
+    /**
+     * Libera {@code bytes} byte, specificati come parametro, riservati in precedenza per il buffer di lettura di una
+     * connessione.
+     *
+     * @param bytes il numero di byte da liberare
+     */
+    void releaseBuffer(long bytes) {
+        this.bufferBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Chiude il server: smette di accettare connessioni, chiude quelle aperte e i selettori e interrompe le richieste
+     * in corso di gestione.
+     */
+    public void close() {
+        if (this.serverChannel != null) {
+            try {
+                this.serverChannel.close();
+            } catch (IOException exception) {
+                System.out.println("Errore durante la chiusura del socket del server non bloccante!");
+            }
+        }
+
+        if (this.loops != null) {
+            for (var loop : this.loops) {
+                loop.close();
+            }
+        }
+
+        this.requestExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,226 @@
+package com.davidecarella.hclus.server.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>Ciclo di selezione eseguito da un thread di I/O del {@link NioServer}.
+ *
+ * <p>Il ciclo attende con un {@link Selector} che le connessioni registrate siano pronte per la lettura o la scrittura.
+ * Le operazioni richieste da altri thread (registrazione di nuove connessioni, scrittura di risposte e ripresa della
+ * lettura) vengono accodate ed eseguite dal thread del ciclo, che viene risvegliato con {@link Selector#wakeup()}.
+ */
+class SelectorLoop implements Runnable {
+    /**
+     * Il server a cui appartiene il ciclo.
+     */
+    private final NioServer server;
+
+    /**
+     * L'indice del ciclo fra quelli del server.
+     */
+    private final int index;
+
+    /**
+     * Il selettore del ciclo.
+     */
+    private final Selector selector;
+
+    /**
+     * Le operazioni accodate da altri thread che devono essere eseguite dal thread del ciclo.
+     */
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Indica se è stata richiesta la chiusura del ciclo.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Costruisce il ciclo con indice {@code index} per il server {@code server}, entrambi specificati come parametro.
+     *
+     * @param server il server a cui appartiene il ciclo
+     * @param index l'indice del ciclo
+     * @throws IOException se non è possibile creare il selettore
+     */
+    SelectorLoop(NioServer server, int index) throws IOException {
+        this.server = server;
+        this.index = index;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Restituisce l'indice del ciclo.
+     *
+     * @return l'indice del ciclo
+     */
+    int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Registra il canale in ascolto del server, {@code serverChannel} specificato come parametro, in modo che il ciclo
+     * accetti le nuove connessioni.
+     *
+     * @param serverChannel il canale in ascolto del server
+     */
+    void registerServerChannel(ServerSocketChannel serverChannel) {
+        this.execute(() -> {
+            try {
+                serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException exception) {
+                System.out.println("Errore durante la registrazione del socket del server!");
+            }
+        });
+    }
+
+    /**
+     * Registra la connessione {@code connection}, specificata come parametro, in modo che il ciclo ne gestisca l'I/O.
+     *
+     * @param connection la connessione da registrare
+     */
+    void registerConnection(NioConnection connection) {
+        this.execute(connection::register);
+    }
+
+    /**
+     * Chiede al ciclo di scrivere le risposte accodate della connessione {@code connection}, specificata come
+     * parametro.
+     *
+     * @param connection la connessione con delle risposte da scrivere
+     */
+    void requestFlush(NioConnection connection) {
+        this.execute(connection::flush);
+    }
+
+    /**
+     * Chiede al ciclo di riprendere la lettura dalla connessione {@code connection}, specificata come parametro, sospesa
+     * perché c'erano troppe richieste in attesa.
+     *
+     * @param connection la connessione da cui riprendere la lettura
+     */
+    void requestResumeReading(NioConnection connection) {
+        this.execute(connection::resumeReading);
+    }
+
+    /**
+     * Chiede al ciclo di chiudere la connessione {@code connection}, specificata come parametro.
+     *
+     * @param connection la connessione da chiudere
+     */
+    void requestClose(NioConnection connection) {
+        this.execute(connection::close);
+    }
+
+    /**
+     * Chiede al ciclo di terminare: il thread del ciclo chiude tutte le connessioni registrate e il selettore.
+     */
+    void close() {
+        this.closed = true;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Restituisce il selettore del ciclo.
+     *
+     * @return il selettore del ciclo
+     */
+    Selector getSelector() {
+        return this.selector;
+    }
+
+    /**
+     * Accoda l'operazione {@code task}, specificata come parametro, e risveglia il thread del ciclo perché la esegua.
+     *
+     * @param task l'operazione da eseguire sul thread del ciclo
+     */
+    private void execute(Runnable task) {
+        this.pendingTasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Metodo eseguito dal thread di I/O: attende gli eventi delle connessioni e li gestisce finché il ciclo non viene
+     * chiuso, poi chiude le connessioni registrate e il selettore.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select();
+
+                Runnable task;
+                while ((task = this.pendingTasks.poll()) != null) {
+                    task.run();
+                }
+
+                var iterator = this.selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    var key = iterator.next();
+                    iterator.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        this.accept((ServerSocketChannel) key.channel());
+                        continue;
+                    }
+
+                    var connection = (NioConnection) key.attachment();
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException exception) {
+            System.out.printf("Errore nel ciclo di selezione %d: %s!%n", this.index, exception.getMessage());
+        } finally {
+            this.closeAll();
+        }
+    }
+
+    /**
+     * Chiude tutte le connessioni registrate nel selettore e il selettore stesso. Va chiamato dal thread del ciclo.
+     */
+    private void closeAll() {
+        try {
+            for (var key : this.selector.keys()) {
+                if (key.attachment() instanceof NioConnection connection) {
+                    connection.close();
+                }
+            }
+
+            this.selector.close();
+        } catch (IOException | ClosedSelectorException exception) {
+            System.out.printf("Errore durante la chiusura del ciclo di selezione %d!%n", this.index);
+        }
+    }
+
+    /**
+     * Accetta le connessioni in attesa sul canale in ascolto {@code serverChannel}, specificato come parametro.
+     *
+     * @param serverChannel il canale in ascolto del server
+     */
+    private void accept(ServerSocketChannel serverChannel) {
+        try {
+            var channel = serverChannel.accept();
+            while (channel != null) {
+                channel.configureBlocking(false);
+                this.server.dispatch(channel);
+                channel = serverChannel.accept();
+            }
+        } catch (IOException exception) {
+            System.out.println("Errore durante l'attesa per una connessione di un client!");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.davidecarella.hclus.server.protocol;
+
+/**
+ * <p>Classe che contiene le funzionalità opzionali del protocollo, negoziate con un frame {@link FrameType#HELLO}.
+ *
+ * <p>Ogni funzionalità è un bit: un insieme di funzionalità si rappresenta con l'OR dei bit corrispondenti. Una
+ * connessione su cui non è stato scambiato alcun {@link FrameType#HELLO} non usa alcuna funzionalità opzionale.
+ */
+public final class Features {
+    /**
+     * I dendrogrammi vengono inviati in più frame {@link FrameType#DENDROGRAM_CHUNK}, terminati da un frame
+     * {@link FrameType#DENDROGRAM_END}, invece che in un unico frame {@link FrameType#DENDROGRAM}.
+     */
+    public static final int STREAMING = 1;
+
+    /**
+     * I frame di risposta che contengono un dendrogramma vengono compressi con deflate se superano una certa
+     * dimensione (vedere {@link FrameCompression}).
+     */
+    public static final int DEFLATE = 2;
+
+    /**
+     * Le richieste {@link FrameType#SAVE_DENDROGRAM} ricevono subito una risposta {@link FrameType#SAVE_SUBMITTED},
+     * senza attendere la scrittura del file, e l'esito del salvataggio si ottiene con {@link FrameType#AWAIT_SAVE}.
+     */
+    public static final int ASYNC_SAVE = 4;
+
+    /**
+     * L'insieme delle funzionalità supportate.
+     */
+    public static final int SUPPORTED = STREAMING | DEFLATE | ASYNC_SAVE;
+
+    /**
+     * NOTA: Viene aggiunto solo per evitare il warning durante la generazione del JavaDoc.
+     */
+    private Features() {}
+}
@@ -0,0 +1,270 @@
+package com.davidecarella.hclus.server.protocol;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <p>Classe che rappresenta un frame, ovvero un messaggio scambiato fra client e server.
+ *
+ * <p>Un frame è composto da un {@link FrameType tipo} e da un payload binario. Il payload è una sequenza di campi
+ * codificati in big-endian: gli interi occupano 4 byte ({@code int}) o 8 byte ({@code long}), le stringhe sono
+ * codificate in UTF-8 e precedute dalla loro lunghezza in byte (come intero). Il payload si costruisce con
+ * {@link Frame.Builder} e si legge con {@link Frame#reader()}.
+ *
+ * @see FrameCodec
+ */
+public final class Frame {
+    /**
+     * Il tipo del frame.
+     */
+    private final FrameType type;
+
+    /**
+     * Il payload del frame.
+     */
+    private final byte[] payload;
+
+    /**
+     * Costruisce il frame con tipo {@code type} e payload {@code payload}, entrambi specificati come parametro.
+     *
+     * @param type il tipo del frame
+     * @param payload il payload del frame
+     */
+    public Frame(FrameType type, byte[] payload) {
+        this.type = type;
+        this.payload = payload;
+    }
+
+    /**
+     * Restituisce il tipo del frame.
+     *
+     * @return il tipo del frame
+     */
+    public FrameType getType() {
+        return this.type;
+    }
+
+    /**
+     * Restituisce il payload del frame.
+     *
+     * @return il payload del frame
+     */
+    public byte[] getPayload() {
+        return this.payload;
+    }
+
+    /**
+     * Restituisce un lettore per i campi del payload.
+     *
+     * @return un lettore per i campi del payload
+     */
+    public Reader reader() {
+        return new Reader(ByteBuffer.wrap(this.payload));
+    }
+
+    /**
+     * Crea un costruttore per un frame di tipo {@code type}, specificato come parametro.
+     *
+     * @param type il tipo del frame
+     * @return il costruttore del frame
+     */
+    public static Builder builder(FrameType type) {
+        return new Builder(type);
+    }
+
+    /**
+     * Crea un frame di tipo {@link FrameType#OK}.
+     *
+     * @return il frame creato
+     */
+    public static Frame ok() {
+        return new Frame(FrameType.OK, new byte[0]);
+    }
+
+    /**
+     * Crea un frame di tipo {@link FrameType#ERROR} con messaggio {@code message}, specificato come parametro.
+     *
+     * @param message il messaggio d'errore
+     * @return il frame creato
+     */
+    public static Frame error(String message) {
+        return builder(FrameType.ERROR).putString(message).build();
+    }
+
+    /**
+     * Classe per costruire il payload di un frame campo per campo.
+     */
+    public static final class Builder {
+        /**
+         * Il tipo del frame da costruire.
+         */
+        private final FrameType type;
+
+        /**
+         * Il payload scritto fino ad ora (solo i primi {@link Builder#size} byte sono validi).
+         */
+        private byte[] payload = new byte[64];
+
+        /**
+         * Il numero di byte del payload scritti fino ad ora.
+         */
+        private int size = 0;
+
+        /**
+         * Costruisce il costruttore per un frame di tipo {@code type}, specificato come parametro.
+         *
+         * @param type il tipo del frame
+         */
+        private Builder(FrameType type) {
+            this.type = type;
+        }
+
+        /**
+         * Aggiunge al payload l'intero {@code value}, specificato come parametro.
+         *
+         * @param value l'intero da aggiungere
+         * @return il costruttore stesso
+         */
+        public Builder putInt(int value) {
+            this.ensureCapacity(Integer.BYTES);
+            ByteBuffer.wrap(this.payload, this.size, Integer.BYTES).putInt(value);
+            this.size += Integer.BYTES;
+            return this;
+        }
+
+        /**
+         * Aggiunge al payload l'intero lungo {@code value}, specificato come parametro.
+         *
+         * @param value l'intero lungo da aggiungere
+         * @return il costruttore stesso
+         */
+        public Builder putLong(long value) {
+            this.ensureCapacity(Long.BYTES);
+            ByteBuffer.wrap(this.payload, this.size, Long.BYTES).putLong(value);
+            this.size += Long.BYTES;
+            return this;
+        }
+
+        /**
+         * Aggiunge al payload il numero in virgola mobile {@code value}, specificato come parametro.
+         *
+         * @param value il numero da aggiungere
+         * @return il costruttore stesso
+         */
+        public Builder putDouble(double value) {
+            return this.putLong(Double.doubleToLongBits(value));
+        }
+
+        /**
+         * Aggiunge al payload la stringa {@code value}, specificata come parametro.
+         *
+         * @param value la stringa da aggiungere
+         * @return il costruttore stesso
+         */
+        public Builder putString(String value) {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.putInt(bytes.length);
+            this.ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, this.payload, this.size, bytes.length);
+            this.size += bytes.length;
+            return this;
+        }
+
+        /**
+         * Costruisce il frame.
+         *
+         * @return il frame costruito
+         */
+        public Frame build() {
+            return new Frame(this.type, Arrays.copyOf(this.payload, this.size));
+        }
+
+        /**
+         * Si assicura che nel payload ci sia spazio per altri {@code bytes} byte, specificati come parametro.
+         *
+         * @param bytes il numero di byte che si vogliono scrivere
+         */
+        private void ensureCapacity(int bytes) {
+            if (this.size + bytes > this.payload.length) {
+                this.payload = Arrays.copyOf(this.payload, Math.max(this.payload.length * 2, this.size + bytes));
+            }
+        }
+    }
+
+    /**
+     * Classe per leggere i campi del payload di un frame.
+     */
+    public static final class Reader {
+        /**
+         * Il buffer da cui si leggono i campi.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Costruisce il lettore del payload contenuto in {@code buffer}, specificato come parametro.
+         *
+         * @param buffer il buffer che contiene il payload
+         */
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Legge un intero dal payload.
+         *
+         * @return l'intero letto
+         * @throws ProtocolException se il payload non contiene un intero
+         */
+        public int getInt() throws ProtocolException {
+            try {
+                return this.buffer.getInt();
+            } catch (BufferUnderflowException exception) {
+                throw new ProtocolException("Il frame è troncato!");
+            }
+        }
+
+        /**
+         * Legge un intero lungo dal payload.
+         *
+         * @return l'intero lungo letto
+         * @throws ProtocolException se il payload non contiene un intero lungo
+         */
+        public long getLong() throws ProtocolException {
+            try {
+                return this.buffer.getLong();
+            } catch (BufferUnderflowException exception) {
+                throw new ProtocolException("Il frame è troncato!");
+            }
+        }
+
+        /**
+         * Legge un numero in virgola mobile dal payload.
+         *
+         * @return il numero letto
+         * @throws ProtocolException se il payload non contiene un numero in virgola mobile
+         */
+        public double getDouble() throws ProtocolException {
+            return Double.longBitsToDouble(this.getLong());
+        }
+
+        /**
+         * Legge una stringa dal payload.
+         *
+         * @return la stringa letta
+         * @throws ProtocolException se il payload non contiene una stringa
+         */
+        public String getString() throws ProtocolException {
+            int length = this.getInt();
+            if (length < 0 || length > this.buffer.remaining()) {
+                throw new ProtocolException("Il frame è troncato!");
+            }
+
+            var value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8);
+            this.buffer.position(this.buffer.position() + length);
+            return value;
+        }
+    }
+}
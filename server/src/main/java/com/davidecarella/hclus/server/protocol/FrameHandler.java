@@ -0,0 +1,395 @@
+package com.davidecarella.hclus.server.protocol;
+
+import com.davidecarella.hclus.server.ClientSession;
+import com.davidecarella.hclus.server.ServerConfiguration;
+import com.davidecarella.hclus.server.clustering.ChunkSink;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+import com.davidecarella.hclus.server.jobs.JobProgress;
+import com.davidecarella.hclus.server.jobs.MiningJob;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Classe che gestisce i {@link Frame frame} di richiesta di un client eseguendo le operazioni corrispondenti sulla
+ * sua {@link ClientSession sessione}.
+ *
+ * <p>Ogni richiesta riceve come risposta i frame indicati di seguito oppure, se non può essere eseguita, un frame
+ * {@link FrameType#ERROR} con il messaggio d'errore:
+ * <ul>
+ *     <li>{@link FrameType#LOAD_DATA}: {@code OK};</li>
+ *     <li>{@link FrameType#MINE}: {@code OK} seguito da {@link FrameType#DENDROGRAM};</li>
+ *     <li>{@link FrameType#SAVE_DENDROGRAM}: {@code OK} quando il file è stato scritto o, se è stata negoziata
+ *     {@link Features#ASYNC_SAVE}, subito {@link FrameType#SAVE_SUBMITTED};</li>
+ *     <li>{@link FrameType#LOAD_DENDROGRAM}: {@code OK} seguito da {@link FrameType#DENDROGRAM};</li>
+ *     <li>{@link FrameType#HELLO}: {@code HELLO} con le {@link Features funzionalità} accettate;</li>
+ *     <li>{@link FrameType#SUBMIT_JOB}: {@link FrameType#JOB_SUBMITTED};</li>
+ *     <li>{@link FrameType#JOB_STATUS}: {@link FrameType#JOB_PROGRESS};</li>
+ *     <li>{@link FrameType#SUBSCRIBE_JOB}: un {@link FrameType#JOB_PROGRESS} con lo stato attuale e poi, mentre
+ *     vengono gestite le richieste successive, uno per ogni aggiornamento (al più uno ogni
+ *     {@value SUBSCRIPTION_INTERVAL_MILLIS} millisecondi) fino al termine del job;</li>
+ *     <li>{@link FrameType#CANCEL_JOB}: {@code OK};</li>
+ *     <li>{@link FrameType#FETCH_JOB_RESULT}: {@code OK} seguito da {@link FrameType#DENDROGRAM};</li>
+ *     <li>{@link FrameType#EXTEND_JOB}: {@link FrameType#JOB_SUBMITTED};</li>
+ *     <li>{@link FrameType#AWAIT_SAVE}: {@link FrameType#SAVE_COMPLETED} al termine del salvataggio;</li>
+ *     <li>{@link FrameType#CUT_DENDROGRAM}: direttamente {@link FrameType#DENDROGRAM}, senza {@code OK};</li>
+ *     <li>{@link FrameType#FETCH_LEVELS}: direttamente {@link FrameType#DENDROGRAM}, senza {@code OK};</li>
+ *     <li>{@link FrameType#FETCH_CLUSTER}: {@link FrameType#CLUSTER};</li>
+ *     <li>{@link FrameType#FETCH_CLUSTER_MEMBERS}: {@link FrameType#CLUSTER_MEMBERS};</li>
+ *     <li>{@link FrameType#FETCH_LEVEL_SUMMARIES}: {@link FrameType#LEVEL_SUMMARIES}.</li>
+ * </ul>
+ *
+ * <p>Se è stata negoziata {@link Features#STREAMING}, al posto di {@link FrameType#DENDROGRAM} vengono inviati più
+ * frame {@link FrameType#DENDROGRAM_CHUNK}, generati man mano che il testo viene prodotto, seguiti da
+ * {@link FrameType#DENDROGRAM_END}; altrimenti un testo che non sta in un unico frame viene rifiutato con
+ * {@link FrameType#ERROR}. Se è stata negoziata {@link Features#DEFLATE}, i frame {@link FrameType#DENDROGRAM},
+ * {@link FrameType#DENDROGRAM_CHUNK}, {@link FrameType#CLUSTER_MEMBERS} e {@link FrameType#LEVEL_SUMMARIES} che
+ * superano {@link ServerConfiguration#getCompressionThreshold()} byte vengono inviati compressi. Al termine dell'invio
+ * di ognuna di queste risposte vengono registrate nel log le relative {@link ResponseMetrics metriche}.
+ *
+ * <p>Gli aggiornamenti dei job a cui il client si è iscritto vengono inviati da un thread virtuale per ogni iscrizione,
+ * così che la connessione possa continuare a gestire le richieste, ad esempio {@link FrameType#CANCEL_JOB}: per questo
+ * il {@link FrameSink} passato a {@link #handle(Frame, FrameSink)} può essere usato da più thread contemporaneamente.
+ * Le iscrizioni ancora attive vengono interrotte da {@link #close()}.
+ */
+public class FrameHandler {
+    /**
+     * Il numero di caratteri oltre il quale viene inviato un frame {@link FrameType#DENDROGRAM_CHUNK}.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * L'intervallo minimo, in millisecondi, fra due frame {@link FrameType#JOB_PROGRESS} inviati a un iscritto.
+     */
+    private static final long SUBSCRIPTION_INTERVAL_MILLIS = 250;
+
+    /**
+     * La sessione del client.
+     */
+    private final ClientSession session;
+
+    /**
+     * La dimensione minima in byte del payload dei frame da comprimere.
+     */
+    private final int compressionThreshold;
+
+    /**
+     * Le {@link Features funzionalità} negoziate con il client.
+     */
+    private int features = 0;
+
+    /**
+     * I thread che inviano gli aggiornamenti dei job a cui il client si è iscritto.
+     */
+    private final Set<Thread> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Costruisce il gestore dei frame per la sessione {@code session} con la configurazione del server
+     * {@code configuration}, entrambe specificate come parametro.
+     *
+     * @param session la sessione del client
+     * @param configuration la configurazione del server
+     */
+    public FrameHandler(ClientSession session, ServerConfiguration configuration) {
+        this.session = session;
+        this.compressionThreshold = configuration.getCompressionThreshold();
+    }
+
+    /**
+     * Restituisce la sessione del client.
+     *
+     * @return la sessione del client
+     */
+    public ClientSession getSession() {
+        return this.session;
+    }
+
+    /**
+     * Gestisce la richiesta {@code request} inviando le risposte a {@code sink}, entrambi specificati come parametro.
+     *
+     * @param request il frame di richiesta
+     * @param sink la destinazione dei frame di risposta, che deve poter essere usata da più thread contemporaneamente
+     * @throws IOException in caso di errori durante l'invio delle risposte o se la richiesta è malformata
+     * @throws InterruptedException se il thread viene interrotto durante la gestione della richiesta
+     */
+    public void handle(Frame request, FrameSink sink) throws IOException, InterruptedException {
+        var reader = request.reader();
+
+        try {
+            switch (request.getType()) {
+                case LOAD_DATA -> {
+                    this.session.loadData(reader.getString());
+                    sink.send(Frame.ok());
+                }
+                case MINE -> {
+                    int depth = reader.getInt();
+                    int distanceType = reader.getInt();
+                    this.session.mine(depth, distanceType);
+                    sink.send(Frame.ok());
+                    this.sendDendrogram(request.getType(), this.session::renderDendrogram, sink);
+                }
+                case SAVE_DENDROGRAM -> {
+                    var task = this.session.saveDendrogram(reader.getString());
+                    if ((this.features & Features.ASYNC_SAVE) != 0) {
+                        sink.send(Frame.builder(FrameType.SAVE_SUBMITTED).putLong(task.getId()).putString(task.getLocation()).build());
+                    } else {
+                        // I client che non conoscono i salvataggi in background attendono l'esito nella risposta
+                        var error = task.awaitCompletion();
+                        this.session.forgetSave(task);
+                        sink.send(error == null ? Frame.ok() : Frame.error(error));
+                    }
+                }
+                case LOAD_DENDROGRAM -> {
+                    this.session.loadDendrogram(reader.getString());
+                    sink.send(Frame.ok());
+                    this.sendDendrogram(request.getType(), this.session::renderDendrogram, sink);
+                }
+                case HELLO -> {
+                    this.features = reader.getInt() & Features.SUPPORTED;
+                    sink.send(Frame.builder(FrameType.HELLO).putInt(this.features).build());
+                }
+                case SUBMIT_JOB -> {
+                    int depth = reader.getInt();
+                    int distanceType = reader.getInt();
+                    var job = this.session.submitMining(depth, distanceType);
+                    sink.send(Frame.builder(FrameType.JOB_SUBMITTED).putLong(job.getId()).build());
+                }
+                case JOB_STATUS -> sink.send(progressFrame(this.session.getJob(reader.getLong()).getProgress()));
+                case SUBSCRIBE_JOB -> {
+                    var job = this.session.getJob(reader.getLong());
+                    var progress = job.getProgress();
+                    sink.send(progressFrame(progress));
+                    if (!progress.getState().isTerminal()) {
+                        this.subscribe(job, progress, sink);
+                    }
+                }
+                case CANCEL_JOB -> {
+                    this.session.cancelJob(reader.getLong());
+                    sink.send(Frame.ok());
+                }
+                case FETCH_JOB_RESULT -> {
+                    this.session.fetchJobResult(this.session.getJob(reader.getLong()));
+                    sink.send(Frame.ok());
+                    this.sendDendrogram(request.getType(), this.session::renderDendrogram, sink);
+                }
+                case EXTEND_JOB -> {
+                    int depth = reader.getInt();
+                    int distanceType = reader.getInt();
+                    var job = this.session.submitExtension(depth, distanceType);
+                    sink.send(Frame.builder(FrameType.JOB_SUBMITTED).putLong(job.getId()).build());
+                }
+                case AWAIT_SAVE -> {
+                    var task = this.session.getSave(reader.getLong());
+                    var error = task.awaitCompletion();
+                    this.session.forgetSave(task);
+                    sink.send(Frame.builder(FrameType.SAVE_COMPLETED).putLong(task.getId()).putString(error == null ? "" : error).build());
+                }
+                case CUT_DENDROGRAM -> {
+                    int criterion = reader.getInt();
+                    double value = reader.getDouble();
+                    this.sendDendrogram(request.getType(), (chunkSize, chunkSink) -> this.session.cutDendrogram(criterion, value, chunkSize, chunkSink), sink);
+                }
+                case FETCH_LEVELS -> {
+                    int fromLevel = reader.getInt();
+                    int toLevel = reader.getInt();
+                    int fromCluster = reader.getInt();
+                    int toCluster = reader.getInt();
+                    this.sendDendrogram(request.getType(), (chunkSize, chunkSink) -> this.session.fetchLevels(fromLevel, toLevel, fromCluster, toCluster, chunkSize, chunkSink), sink);
+                }
+                case FETCH_CLUSTER -> {
+                    var cluster = this.session.fetchCluster(reader.getInt(), reader.getInt());
+                    sink.send(Frame.builder(FrameType.CLUSTER).putInt(cluster.getSize()).putString(this.session.describeCentroid(cluster)).build());
+                }
+                case FETCH_CLUSTER_MEMBERS -> {
+                    var cluster = this.session.fetchCluster(reader.getInt(), reader.getInt());
+                    int offset = reader.getInt();
+                    var members = this.session.fetchClusterMembers(cluster, offset, reader.getInt());
+                    var frame = Frame.builder(FrameType.CLUSTER_MEMBERS).putInt(cluster.getSize()).putInt(offset).putString(members).build();
+                    this.sendCompressible(request.getType(), resultSink -> resultSink.send(frame), sink);
+                }
+                case FETCH_LEVEL_SUMMARIES -> {
+                    int fromLevel = reader.getInt();
+                    var summaries = this.session.fetchLevelSummaries(fromLevel, reader.getInt());
+                    var builder = Frame.builder(FrameType.LEVEL_SUMMARIES).putInt(summaries.size());
+                    for (var summary : summaries) {
+                        builder.putInt(summary.getLevel())
+                            .putInt(summary.getNumberOfClusters())
+                            .putInt(summary.getSmallestClusterSize())
+                            .putInt(summary.getLargestClusterSize())
+                            .putInt(summary.getSingletons())
+                            .putDouble(summary.getHeight());
+                    }
+                    var frame = builder.build();
+                    this.sendCompressible(request.getType(), resultSink -> resultSink.send(frame), sink);
+                }
+                default -> sink.send(Frame.error("Richiesta sconosciuta!"));
+            }
+        } catch (RequestException exception) {
+            sink.send(Frame.error(exception.getMessage()));
+        }
+    }
+
+    /**
+     * Interrompe l'invio degli aggiornamenti dei job a cui il client si è iscritto. Va chiamato quando la connessione
+     * viene chiusa.
+     */
+    public void close() {
+        for (var subscription : this.subscriptions) {
+            subscription.interrupt();
+        }
+    }
+
+    /**
+     * Avvia un thread virtuale che invia a {@code sink} un frame {@link FrameType#JOB_PROGRESS} per ogni aggiornamento
+     * di {@code job} successivo a {@code progress} (tutti specificati come parametro), fino al termine del job, alla
+     * chiusura del gestore o a un errore di invio.
+     *
+     * @param job il job a cui il client si è iscritto
+     * @param progress l'ultimo stato di avanzamento inviato al client
+     * @param sink la destinazione dei frame di risposta
+     */
+    private void subscribe(MiningJob job, JobProgress progress, FrameSink sink) {
+        var subscription = Thread.ofVirtual().name(String.format("HCLUS-Subscription(%d)", job.getId())).unstarted(() -> {
+            try {
+                var last = progress;
+                while (!last.getState().isTerminal()) {
+                    // Gli aggiornamenti arrivati nel frattempo vengono accorpati nel frame successivo
+                    Thread.sleep(SUBSCRIPTION_INTERVAL_MILLIS);
+                    last = job.awaitChange(last, Long.MAX_VALUE);
+                    sink.send(progressFrame(last));
+                }
+            } catch (IOException exception) {
+                this.session.log(String.format("Errore durante l'invio dello stato del job %d: %s!", job.getId(), exception.getMessage()));
+            } catch (InterruptedException ignored) {
+                // Il gestore è stato chiuso
+            } finally {
+                this.subscriptions.remove(Thread.currentThread());
+            }
+        });
+
+        this.subscriptions.add(subscription);
+        subscription.start();
+    }
+
+    /**
+     * Invia a {@code sink} la rappresentazione testuale generata da {@code renderer}, in un unico frame o in più pezzi
+     * e compressa o meno a seconda delle funzionalità negoziate, in risposta a una richiesta di tipo
+     * {@code requestType} (tutti specificati come parametro).
+     *
+     * @param requestType il tipo della richiesta, usato nel log delle metriche
+     * @param renderer il generatore della rappresentazione testuale da inviare
+     * @param sink la destinazione dei frame di risposta
+     * @throws IOException in caso di errori durante l'invio delle risposte
+     * @throws RequestException se la rappresentazione testuale non può essere generata o, senza
+     *                          {@link Features#STREAMING}, supera la dimensione massima di un frame
+     */
+    private void sendDendrogram(FrameType requestType, TextRenderer renderer, FrameSink sink) throws IOException, RequestException {
+        this.sendCompressible(requestType, resultSink -> {
+            if ((this.features & Features.STREAMING) == 0) {
+                var text = new StringBuilder();
+                renderer.render(Integer.MAX_VALUE, text::append);
+                var frame = Frame.builder(FrameType.DENDROGRAM).putString(text.toString()).build();
+                if (frame.getPayload().length > FrameCodec.MAX_FRAME_LENGTH - (FrameCodec.HEADER_SIZE - Integer.BYTES)) {
+                    // Il client rifiuterebbe il frame chiudendo la connessione: riceve invece un errore
+                    throw new RequestException("La risposta è troppo grande per essere inviata in un unico frame!");
+                }
+
+                resultSink.send(frame);
+            } else {
+                renderer.render(CHUNK_SIZE, chunk -> resultSink.send(Frame.builder(FrameType.DENDROGRAM_CHUNK).putString(chunk).build()));
+                resultSink.send(new Frame(FrameType.DENDROGRAM_END, new byte[0]));
+            }
+        }, sink);
+    }
+
+    /**
+     * Invia a {@code sink} i frame prodotti da {@code response} in risposta a una richiesta di tipo
+     * {@code requestType} (tutti specificati come parametro), comprimendoli se necessario, e al termine registra nel
+     * log le {@link ResponseMetrics metriche} della risposta. Tutte le risposte che possono essere compresse vengono
+     * inviate da questo metodo.
+     *
+     * @param requestType il tipo della richiesta, usato nel log delle metriche
+     * @param response la risposta da inviare
+     * @param sink la destinazione dei frame di risposta
+     * @throws IOException in caso di errori durante l'invio delle risposte
+     * @throws RequestException se la risposta non può essere generata
+     */
+    private void sendCompressible(FrameType requestType, CompressibleResponse response, FrameSink sink) throws IOException, RequestException {
+        var metrics = new ResponseMetrics();
+        response.send(frame -> {
+            var sent = this.maybeCompress(frame);
+            metrics.record(frame, sent);
+            sink.send(sent);
+        });
+
+        this.session.log(String.format("Risposta a %s: %s", requestType, metrics));
+    }
+
+    /**
+     * Comprime il frame {@code frame}, specificato come parametro, se è stata negoziata {@link Features#DEFLATE} e il
+     * suo payload raggiunge la soglia di compressione.
+     *
+     * @param frame il frame da inviare
+     * @return il frame da inviare effettivamente
+     */
+    private Frame maybeCompress(Frame frame) {
+        if ((this.features & Features.DEFLATE) == 0 || frame.getPayload().length < this.compressionThreshold) {
+            return frame;
+        }
+
+        return FrameCompression.compress(frame);
+    }
+
+    /**
+     * Crea il frame {@link FrameType#JOB_PROGRESS} che contiene lo stato di avanzamento {@code progress}, specificato
+     * come parametro.
+     *
+     * @param progress lo stato di avanzamento del job
+     * @return il frame creato
+     */
+    private static Frame progressFrame(JobProgress progress) {
+        return Frame.builder(FrameType.JOB_PROGRESS)
+            .putLong(progress.getJobId())
+            .putInt(progress.getState().getCode())
+            .putInt(progress.getLevelsDone())
+            .putInt(progress.getTotalLevels())
+            .putLong(progress.getElapsedMillis())
+            .putLong(progress.getEtaMillis())
+            .putString(progress.getMessage())
+            .build();
+    }
+
+    /**
+     * Interfaccia che rappresenta una risposta i cui frame possono essere compressi.
+     */
+    @FunctionalInterface
+    private interface CompressibleResponse {
+        /**
+         * Genera i frame della risposta e li invia a {@code sink}, specificato come parametro, che li comprime se
+         * necessario.
+         *
+         * @param sink la destinazione dei frame della risposta
+         * @throws RequestException se la risposta non può essere generata
+         * @throws IOException in caso di errori durante l'invio dei frame
+         */
+        void send(FrameSink sink) throws RequestException, IOException;
+    }
+
+    /**
+     * Interfaccia che genera una rappresentazione testuale consegnandola un pezzo alla volta.
+     */
+    @FunctionalInterface
+    private interface TextRenderer {
+        /**
+         * Genera la rappresentazione testuale e la consegna a {@code sink} in pezzi di circa {@code chunkSize}
+         * caratteri, entrambi specificati come parametro.
+         *
+         * @param chunkSize il numero di caratteri oltre il quale un pezzo viene consegnato
+         * @param sink la destinazione dei pezzi della rappresentazione testuale
+         * @throws RequestException se la rappresentazione testuale non può essere generata
+         * @throws IOException in caso di errori durante la consegna di un pezzo
+         */
+        void render(int chunkSize, ChunkSink sink) throws RequestException, IOException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.davidecarella.hclus.server.protocol;
+
+import java.io.IOException;
+
+/**
+ * Interfaccia funzionale che rappresenta la destinazione dei {@link Frame frame} di risposta inviati al client. Il
+ * {@link FrameHandler} può inviare frame da più thread contemporaneamente, perciò le implementazioni devono scrivere
+ * ogni frame per intero senza mescolarlo con gli altri.
+ */
+@FunctionalInterface
+public interface FrameSink {
+    /**
+     * Invia il frame {@code frame}, specificato come parametro, al client.
+     *
+     * @param frame il frame da inviare
+     * @throws IOException in caso di errori durante l'invio
+     */
+    void send(Frame frame) throws IOException;
+}
@@ -0,0 +1,75 @@
+package com.davidecarella.hclus.server.protocol;
+
+/**
+ * Classe che raccoglie le metriche di trasferimento della risposta a una richiesta: il numero di frame inviati e i
+ * byte che avrebbero occupato senza compressione e quelli effettivamente inviati.
+ */
+public class ResponseMetrics {
+    /**
+     * Il numero di frame inviati.
+     */
+    private int frames = 0;
+
+    /**
+     * I byte che i frame avrebbero occupato senza compressione.
+     */
+    private long uncompressedBytes = 0;
+
+    /**
+     * I byte effettivamente inviati.
+     */
+    private long sentBytes = 0;
+
+    /**
+     * Registra l'invio del frame {@code sent} al posto del frame {@code original}, entrambi specificati come
+     * parametro.
+     *
+     * @param original il frame prima della compressione
+     * @param sent il frame inviato (compresso o {@code original} stesso)
+     */
+    public void record(Frame original, Frame sent) {
+        ++this.frames;
+        this.uncompressedBytes += FrameCodec.HEADER_SIZE + original.getPayload().length;
+        this.sentBytes += FrameCodec.HEADER_SIZE + sent.getPayload().length;
+    }
+
+    /**
+     * Restituisce il numero di frame inviati.
+     *
+     * @return il numero di frame inviati
+     */
+    public int getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Restituisce i byte che i frame avrebbero occupato senza compressione.
+     *
+     * @return i byte prima della compressione
+     */
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes;
+    }
+
+    /**
+     * Restituisce i byte effettivamente inviati.
+     *
+     * @return i byte inviati
+     */
+    public long getSentBytes() {
+        return this.sentBytes;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale delle metriche.
+     *
+     * @return la rappresentazione testuale delle metriche
+     */
+    @Override
+    public String toString() {
+        double ratio = this.uncompressedBytes == 0 ? 1.0 : (double) this.sentBytes / this.uncompressedBytes;
+        return String.format("%d frame, %d byte prima della compressione, %d byte inviati (%.1f%%)",
+            this.frames, this.uncompressedBytes, this.sentBytes, ratio * 100.0
+        );
+    }
+}
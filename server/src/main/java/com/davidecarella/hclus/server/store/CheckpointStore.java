@@ -0,0 +1,192 @@
+package com.davidecarella.hclus.server.store;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.exceptions.IncompatibleDataException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Classe che gestisce i checkpoint dei job di mining: una cartella in cui i job lunghi salvano periodicamente, nel
+ * formato binario, i livelli del dendrogramma già creati, così che un mining interrotto da un riavvio del server possa
+ * riprendere dall'ultimo checkpoint invece che dal primo livello.
+ *
+ * <p>Poiché ogni livello dipende solo dal precedente, i livelli già creati sono l'unico stato del mining da salvare:
+ * l'ultimo livello contiene i cluster attivi, mentre la matrice delle distanze fra gli esempi viene ricalcolata dai dati.
+ * Per lo stesso motivo i livelli creati da job diversi sugli stessi dati con la stessa distanza sono identici, perciò
+ * ogni coppia di dati e distanza ha un unico checkpoint, il cui file ha come nome l'hash SHA-256 dell'
+ * {@link Data#getFingerprint() impronta dei dati} e del nome della distanza, e che viene sostituito solo da checkpoint
+ * più profondi.
+ *
+ * <p>Ogni checkpoint viene scritto in un file temporaneo che poi sostituisce il precedente e viene forzato sul disco,
+ * perciò dopo un arresto improvviso la cartella contiene sempre checkpoint completi; prima di riprendere un checkpoint
+ * ne viene comunque controllato il checksum, così che un file danneggiato sul disco venga scartato. Il checkpoint viene rimosso quando
+ * un job sugli stessi dati con la stessa distanza termina con successo; quelli dei job annullati o interrotti restano
+ * nella cartella finché non vengono ripresi.
+ */
+public class CheckpointStore {
+    /**
+     * L'estensione dei file dei checkpoint.
+     */
+    private static final String FILE_EXTENSION = ".ckpt";
+
+    /**
+     * La cartella dei checkpoint.
+     */
+    private final Path directory;
+
+    /**
+     * Il tempo minimo fra due checkpoint dello stesso job, in nanosecondi.
+     */
+    private final long intervalNanos;
+
+    /**
+     * La profondità dei checkpoint scritti dall'apertura della cartella, indicizzati per nome del file.
+     */
+    private final Map<String, Integer> depths = new HashMap<>();
+
+    /**
+     * Costruisce la gestione dei checkpoint nella cartella {@code directory} con un tempo minimo di
+     * {@code intervalSeconds} secondi fra due checkpoint dello stesso job, entrambi specificati come parametro.
+     *
+     * @param directory la cartella dei checkpoint
+     * @param intervalSeconds il tempo minimo fra due checkpoint dello stesso job, in secondi
+     */
+    private CheckpointStore(Path directory, int intervalSeconds) {
+        this.directory = directory;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+    }
+
+    /**
+     * Apre la cartella dei checkpoint {@code directory}, creandola se non esiste, con un tempo minimo di
+     * {@code intervalSeconds} secondi fra due checkpoint dello stesso job (entrambi specificati come parametro). I file
+     * temporanei lasciati da checkpoint interrotti vengono rimossi.
+     *
+     * @param directory la cartella dei checkpoint
+     * @param intervalSeconds il tempo minimo fra due checkpoint dello stesso job, in secondi
+     * @return la gestione dei checkpoint
+     * @throws IOException in caso di errori durante la creazione o la lettura della cartella
+     */
+    public static CheckpointStore open(Path directory, int intervalSeconds) throws IOException {
+        Files.createDirectories(directory);
+
+        try (var files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION + ".*.tmp")) {
+            for (var file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        return new CheckpointStore(directory, intervalSeconds);
+    }
+
+    /**
+     * Restituisce il tempo minimo fra due checkpoint dello stesso job, in nanosecondi.
+     *
+     * @return il tempo minimo fra due checkpoint, in nanosecondi
+     */
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    /**
+     * Salva come checkpoint il dendrogramma di {@code miner}, creato dai dati {@code data} con la distanza
+     * {@code distance} (tutti specificati come parametro), se è più profondo dell'ultimo checkpoint scritto per gli
+     * stessi dati e la stessa distanza.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param miner il miner con i livelli già creati
+     * @throws IOException in caso di errori durante la scrittura del checkpoint
+     */
+    public synchronized void write(Data data, ClusterDistance distance, HierarchicalClusterMiner miner) throws IOException {
+        var name = name(data, distance);
+        var written = this.depths.get(name);
+        if (written != null && written >= miner.getDendrogramDepth()) {
+            return;
+        }
+
+        miner.salva(this.directory.resolve(name).toString(), true);
+        this.depths.put(name, miner.getDendrogramDepth());
+    }
+
+    /**
+     * Restituisce il miner con il checkpoint creato dai dati {@code data} con la distanza {@code distance}, entrambi
+     * specificati come parametro. Un checkpoint che non può essere letto, il cui checksum non corrisponde o che non è
+     * stato creato dai dati {@code data} viene rimosso.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return il miner con il checkpoint, {@code null} se non ce n'è nessuno o non può essere usato
+     */
+    public synchronized HierarchicalClusterMiner lookup(Data data, ClusterDistance distance) {
+        var name = name(data, distance);
+        var path = this.directory.resolve(name);
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            HierarchicalClusterMiner.verify(path.toString());
+            var miner = HierarchicalClusterMiner.load(path.toString());
+            miner.checkCompatibility(data);
+            if (miner.getDataFingerprint() == null) {
+                throw new IOException("checkpoint senza impronta dei dati");
+            }
+
+            return miner;
+        } catch (IOException | ClassNotFoundException | IncompatibleDataException exception) {
+            System.out.printf("Checkpoint %s non valido, verrà rimosso: %s%n", path, exception.getMessage());
+            this.delete(name);
+            return null;
+        }
+    }
+
+    /**
+     * Rimuove il checkpoint creato dai dati {@code data} con la distanza {@code distance} perché un job ha creato un
+     * dendrogramma di profondità {@code depth} (tutti specificati come parametro). Un checkpoint più profondo,
+     * scritto da un altro job ancora in esecuzione, viene mantenuto.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param depth la profondità del dendrogramma creato
+     */
+    public synchronized void discard(Data data, ClusterDistance distance, int depth) {
+        var name = name(data, distance);
+        var written = this.depths.get(name);
+        if (written == null || written <= depth) {
+            this.delete(name);
+        }
+    }
+
+    /**
+     * Rimuove il file del checkpoint con nome {@code name}, specificato come parametro.
+     *
+     * @param name il nome del file del checkpoint
+     */
+    private void delete(String name) {
+        this.depths.remove(name);
+        try {
+            Files.deleteIfExists(this.directory.resolve(name));
+        } catch (IOException exception) {
+            System.out.printf("Impossibile rimuovere il checkpoint %s: %s%n", name, exception.getMessage());
+        }
+    }
+
+    /**
+     * Restituisce il nome del file del checkpoint creato dai dati {@code data} con la distanza {@code distance},
+     * entrambi specificati come parametro.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return il nome del file del checkpoint
+     */
+    private static String name(Data data, ClusterDistance distance) {
+        return DendrogramStore.sha256(data.getFingerprint() + '/' + DendrogramStore.linkage(distance)) + FILE_EXTENSION;
+    }
+}
@@ -0,0 +1,650 @@
+package com.davidecarella.hclus.server.store;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.ClusterDistance;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * <p>Classe che gestisce l'archivio dei dendrogrammi del server: una cartella in cui i dendrogrammi vengono salvati nel
+ * formato binario con un nome ricavato da ciò che contengono, invece che in un percorso scelto dal client.
+ *
+ * <p>Un dendrogramma è determinato dai dati da cui è stato creato, dalla distanza fra cluster e dalla profondità: la
+ * sua chiave è l'hash SHA-256 (in esadecimale) dell'{@link Data#getFingerprint() impronta dei dati}, del nome della
+ * distanza e della profondità. Salvare un dendrogramma già presente non scrive niente, perciò ogni risultato occupa
+ * spazio una sola volta, indipendentemente da quante volte e da quanti client viene salvato.
+ *
+ * <p>Il catalogo dell'archivio (chiave, impronta dei dati, distanza, profondità e dimensione di ogni dendrogramma) è
+ * mantenuto in memoria, indicizzato per chiave e per dati e distanza, e salvato nel file {@value CATALOG_FILE_NAME}
+ * della cartella, dal dendrogramma usato meno di recente a quello usato più di recente. Quando lo spazio occupato
+ * supera la quota vengono rimossi, dal meno usato di recente, i dendrogrammi in eccesso.
+ *
+ * <p>I dendrogrammi vengono scritti in background dal {@link DendrogramWriter} ed entrano nel catalogo solo dopo essere
+ * stati scritti per intero; poiché il gestore dei salvataggi usa un unico thread, le scritture e le rimozioni dei file
+ * dell'archivio non si sovrappongono mai. All'apertura vengono rimossi i file dell'archivio che non compaiono nel
+ * catalogo, ad esempio perché il server è stato fermato mentre li scriveva.
+ */
+public class DendrogramStore {
+    /**
+     * Il prefisso che indica che il nome di file inviato dal client è in realtà la chiave di un dendrogramma
+     * nell'archivio.
+     */
+    public static final String PREFIX = "store:";
+
+    /**
+     * Il nome usato al posto della distanza per i dendrogrammi di cui non è nota, come quelli caricati da un file: non
+     * è il nome di nessuna distanza, perciò questi dendrogrammi non vengono mai riusati per il mining.
+     */
+    public static final String UNKNOWN_LINKAGE = "-";
+
+    /**
+     * Il nome del file che contiene il catalogo.
+     */
+    private static final String CATALOG_FILE_NAME = "catalog";
+
+    /**
+     * La prima riga del file del catalogo, che ne indica la versione.
+     */
+    private static final String CATALOG_HEADER = "HCLUS-STORE 1";
+
+    /**
+     * L'estensione dei file dei dendrogrammi nell'archivio.
+     */
+    private static final String FILE_EXTENSION = ".hcl";
+
+    /**
+     * La lunghezza minima di un prefisso di chiave accettato al posto della chiave intera.
+     */
+    private static final int MIN_KEY_PREFIX_LENGTH = 8;
+
+    /**
+     * La cartella dell'archivio.
+     */
+    private final Path directory;
+
+    /**
+     * Lo spazio massimo occupato dai dendrogrammi, in byte.
+     */
+    private final long maxBytes;
+
+    /**
+     * Il gestore dei salvataggi che scrive i dendrogrammi.
+     */
+    private final DendrogramWriter writer;
+
+    /**
+     * I dendrogrammi nell'archivio, indicizzati per chiave e ordinati dal meno al più usato di recente.
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * I dendrogrammi nell'archivio, indicizzati per impronta dei dati e distanza e poi per profondità.
+     */
+    private final Map<String, TreeMap<Integer, Entry>> origins = new HashMap<>();
+
+    /**
+     * Lo spazio occupato dai dendrogrammi, in byte.
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Indica se l'ordine d'uso dei dendrogrammi è cambiato dall'ultima scrittura del catalogo.
+     */
+    private boolean dirty = false;
+
+    /**
+     * Costruisce l'archivio vuoto nella cartella {@code directory}, con uno spazio massimo di {@code maxBytes} byte,
+     * che scrive i dendrogrammi con {@code writer} (tutti specificati come parametro).
+     *
+     * @param directory la cartella dell'archivio
+     * @param maxBytes lo spazio massimo occupato dai dendrogrammi, in byte
+     * @param writer il gestore dei salvataggi
+     */
+    private DendrogramStore(Path directory, long maxBytes, DendrogramWriter writer) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.writer = writer;
+    }
+
+    /**
+     * Apre l'archivio nella cartella {@code directory}, creandola se non esiste, con uno spazio massimo di
+     * {@code maxBytes} byte e che scrive i dendrogrammi con {@code writer}, inviando i messaggi di log a {@code log}
+     * (tutti specificati come parametro). Le righe del catalogo non valide o che si riferiscono a file mancanti vengono
+     * ignorate.
+     *
+     * @param directory la cartella dell'archivio
+     * @param maxBytes lo spazio massimo occupato dai dendrogrammi, in byte
+     * @param writer il gestore dei salvataggi
+     * @param log la destinazione dei messaggi di log
+     * @return l'archivio aperto
+     * @throws IOException in caso di errori durante la creazione della cartella o la lettura del catalogo
+     */
+    public static DendrogramStore open(Path directory, long maxBytes, DendrogramWriter writer, Consumer<String> log) throws IOException {
+        Files.createDirectories(directory);
+
+        var store = new DendrogramStore(directory, maxBytes, writer);
+        synchronized (store) {
+            store.readCatalog();
+            store.removeOrphans();
+            store.evict(log);
+            store.writeCatalog();
+        }
+
+        return store;
+    }
+
+    /**
+     * Restituisce il nome della distanza {@code distance}, specificata come parametro, usato nelle chiavi e nel
+     * catalogo.
+     *
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @return il nome della distanza
+     */
+    public static String linkage(ClusterDistance distance) {
+        return distance.getClass().getName();
+    }
+
+    /**
+     * Restituisce la chiave del dendrogramma di profondità {@code depth} creato dai dati con impronta
+     * {@code fingerprint} con la distanza di nome {@code linkage} (tutti specificati come parametro).
+     *
+     * @param fingerprint l'impronta dei dati
+     * @param linkage il nome della distanza
+     * @param depth la profondità del dendrogramma
+     * @return la chiave del dendrogramma
+     */
+    public static String key(String fingerprint, String linkage, int depth) {
+        return sha256(String.format("%s/%s/%d", fingerprint, linkage, depth));
+    }
+
+    /**
+     * Restituisce l'hash SHA-256, in esadecimale, della stringa {@code text}, specificata come parametro, codificata in
+     * UTF-8.
+     *
+     * @param text la stringa di cui calcolare l'hash
+     * @return l'hash della stringa, in esadecimale
+     */
+    static String sha256(String text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            // Ogni implementazione della piattaforma Java deve supportare SHA-256
+            throw new IllegalStateException(exception);
+        }
+
+        return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Richiede il salvataggio nell'archivio, appartenente a {@code owner}, del dendrogramma di {@code miner}, creato dai
+     * dati con impronta {@code fingerprint} con la distanza di nome {@code linkage}, inviando i messaggi di log a
+     * {@code log} (tutti specificati come parametro). Se l'archivio contiene già il dendrogramma, il salvataggio
+     * restituito è già terminato e non viene scritto niente.
+     *
+     * @param owner il proprietario del salvataggio
+     * @param miner il miner che contiene il dendrogramma da salvare
+     * @param fingerprint l'impronta dei dati da cui è stato creato il dendrogramma
+     * @param linkage il nome della distanza con cui è stato creato il dendrogramma
+     * @param log la destinazione dei messaggi di log
+     * @return il salvataggio richiesto
+     * @throws RequestException se il dendrogramma supera la quota dell'archivio, ci sono già troppi salvataggi in
+     *                          attesa o il gestore dei salvataggi è stato fermato
+     */
+    public SaveTask save(Object owner, HierarchicalClusterMiner miner, String fingerprint, String linkage, Consumer<String> log) throws RequestException {
+        long bytes = miner.getFileSize();
+        if (bytes > this.maxBytes) {
+            throw new RequestException("Il dendrogramma è troppo grande per l'archivio dei dendrogrammi!");
+        }
+
+        int depth = miner.getDendrogramDepth();
+        var entry = new Entry(key(fingerprint, linkage, depth), fingerprint, linkage, depth, bytes);
+        var path = this.path(entry.key);
+
+        synchronized (this) {
+            if (this.entries.get(entry.key) != null) {
+                this.dirty = true;
+                var task = this.writer.completed(owner, path, entry.getLocation());
+                log.accept(String.format("Salvataggio %d completato: dendrogramma già presente nell'archivio come %s", task.getId(), entry.getLocation()));
+                return task;
+            }
+        }
+
+        var task = this.writer.submit(owner, miner, path, entry.getLocation(), log, () -> this.add(entry, log));
+        log.accept(String.format("Salvataggio %d in %s richiesto", task.getId(), task.getLocation()));
+        return task;
+    }
+
+    /**
+     * Restituisce il dendrogramma con chiave {@code key}, specificata come parametro, segnandolo come usato. Al posto
+     * della chiave intera si può indicare un suo prefisso di almeno {@value MIN_KEY_PREFIX_LENGTH} caratteri, purché
+     * nessun altro dendrogramma abbia una chiave con lo stesso prefisso.
+     *
+     * @param key la chiave del dendrogramma o un suo prefisso
+     * @return il dendrogramma con chiave {@code key}, {@code null} se non è nell'archivio
+     */
+    public synchronized Entry find(String key) {
+        var entry = this.entries.get(key);
+        if (entry != null || key.length() < MIN_KEY_PREFIX_LENGTH) {
+            this.dirty |= entry != null;
+            return entry;
+        }
+
+        String match = null;
+        for (var candidate : this.entries.keySet()) {
+            if (candidate.startsWith(key)) {
+                if (match != null) {
+                    return null;
+                }
+
+                match = candidate;
+            }
+        }
+
+        return match == null ? null : this.find(match);
+    }
+
+    /**
+     * Restituisce il dendrogramma creato dai dati con impronta {@code fingerprint} con la distanza di nome
+     * {@code linkage} più adatto per ottenerne uno di profondità {@code depth} (tutti specificati come parametro),
+     * segnandolo come usato: il meno profondo fra quelli di profondità almeno pari a {@code depth} o, se non ce ne
+     * sono, il più profondo.
+     *
+     * @param fingerprint l'impronta dei dati
+     * @param linkage il nome della distanza
+     * @param depth la profondità del dendrogramma richiesto
+     * @return il dendrogramma più adatto, {@code null} se l'archivio non contiene dendrogrammi creati dagli stessi dati
+     *         con la stessa distanza
+     */
+    public synchronized Entry find(String fingerprint, String linkage, int depth) {
+        var byDepth = this.origins.get(origin(fingerprint, linkage));
+        if (byDepth == null) {
+            return null;
+        }
+
+        var match = byDepth.ceilingEntry(depth);
+        var entry = match != null ? match.getValue() : byDepth.lastEntry().getValue();
+        this.entries.get(entry.key);
+        this.dirty = true;
+        return entry;
+    }
+
+    /**
+     * Apre il dendrogramma {@code entry}, specificato come parametro, mappandone il file in memoria. La prima volta che
+     * un dendrogramma letto dal catalogo viene aperto ne viene controllato il checksum, mentre quelli scritti dal
+     * server sono già considerati integri. Se il file non può essere aperto o è danneggiato il dendrogramma viene
+     * rimosso dal catalogo.
+     *
+     * @param entry il dendrogramma nell'archivio
+     * @return il miner che contiene il dendrogramma
+     * @throws IOException se il file non esiste più o non è valido
+     */
+    public HierarchicalClusterMiner open(Entry entry) throws IOException {
+        var fileName = this.path(entry.key).toString();
+        try {
+            if (!entry.verified) {
+                HierarchicalClusterMiner.verify(fileName);
+                entry.verified = true;
+            }
+
+            return HierarchicalClusterMiner.load(fileName);
+        } catch (IOException | ClassNotFoundException exception) {
+            synchronized (this) {
+                if (this.entries.remove(entry.key, entry)) {
+                    this.unindex(entry);
+                    this.dirty = true;
+                }
+            }
+
+            throw exception instanceof IOException ioException ? ioException : new IOException(exception);
+        }
+    }
+
+    /**
+     * Restituisce il miner con il dendrogramma dell'archivio, creato dai dati {@code data} con la distanza
+     * {@code distance}, più adatto per ottenerne uno di profondità {@code depth} (tutti specificati come parametro),
+     * come descritto in {@link DendrogramStore#find(String, String, int)}.
+     *
+     * @param data i dati da cui è stato creato il dendrogramma
+     * @param distance l'oggetto per calcolare la distanza fra cluster
+     * @param depth la profondità del dendrogramma richiesto
+     * @return il miner con il dendrogramma più adatto, {@code null} se non ce n'è nessuno o non può essere aperto
+     */
+    public HierarchicalClusterMiner lookup(Data data, ClusterDistance distance, int depth) {
+        var entry = this.find(data.getFingerprint(), linkage(distance), depth);
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            return this.open(entry);
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Restituisce lo spazio occupato dai dendrogrammi nell'archivio, in byte.
+     *
+     * @return lo spazio occupato dai dendrogrammi, in byte
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Chiude l'archivio, salvando il catalogo se l'ordine d'uso dei dendrogrammi è cambiato. Deve essere chiamato dopo
+     * aver fermato il gestore dei salvataggi.
+     *
+     * @throws IOException in caso di errori durante la scrittura del catalogo
+     */
+    public synchronized void close() throws IOException {
+        if (this.dirty) {
+            this.writeCatalog();
+        }
+    }
+
+    /**
+     * Aggiunge al catalogo il dendrogramma {@code entry}, appena scritto, rimuovendo i dendrogrammi in eccesso e
+     * inviando i messaggi di log a {@code log} (entrambi specificati come parametro). Viene eseguito dal thread del
+     * gestore dei salvataggi.
+     *
+     * @param entry il dendrogramma scritto
+     * @param log la destinazione dei messaggi di log
+     */
+    private synchronized void add(Entry entry, Consumer<String> log) {
+        entry.verified = true;
+        var previous = this.entries.put(entry.key, entry);
+        if (previous != null) {
+            this.unindex(previous);
+        }
+
+        this.index(entry);
+        this.evict(log);
+
+        try {
+            this.writeCatalog();
+        } catch (IOException exception) {
+            log.accept(String.format("Errore durante la scrittura del catalogo dell'archivio: %s!", exception.getMessage()));
+        }
+    }
+
+    /**
+     * Rimuove, dal meno usato di recente, i dendrogrammi che eccedono la quota, inviando i messaggi di log a
+     * {@code log}, specificato come parametro. Deve essere chiamato tenendo il lock dell'archivio.
+     *
+     * @param log la destinazione dei messaggi di log
+     */
+    private void evict(Consumer<String> log) {
+        var iterator = this.entries.values().iterator();
+        while (this.usedBytes > this.maxBytes && iterator.hasNext()) {
+            var entry = iterator.next();
+            iterator.remove();
+            this.unindex(entry);
+
+            try {
+                Files.deleteIfExists(this.path(entry.key));
+                log.accept(String.format("Dendrogramma %s rimosso dall'archivio per liberare spazio", entry.getLocation()));
+            } catch (IOException exception) {
+                log.accept(String.format("Errore durante la rimozione del dendrogramma %s dall'archivio: %s!", entry.getLocation(), exception.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Aggiunge il dendrogramma {@code entry}, specificato come parametro, all'indice per dati e distanza e allo spazio
+     * occupato. Deve essere chiamato tenendo il lock dell'archivio.
+     *
+     * @param entry il dendrogramma
+     */
+    private void index(Entry entry) {
+        this.origins.computeIfAbsent(origin(entry.fingerprint, entry.linkage), origin -> new TreeMap<>()).put(entry.depth, entry);
+        this.usedBytes += entry.bytes;
+    }
+
+    /**
+     * Rimuove il dendrogramma {@code entry}, specificato come parametro, dall'indice per dati e distanza e dallo spazio
+     * occupato. Deve essere chiamato tenendo il lock dell'archivio.
+     *
+     * @param entry il dendrogramma
+     */
+    private void unindex(Entry entry) {
+        var origin = origin(entry.fingerprint, entry.linkage);
+        var byDepth = this.origins.get(origin);
+        if (byDepth != null && byDepth.remove(entry.depth, entry) && byDepth.isEmpty()) {
+            this.origins.remove(origin);
+        }
+
+        this.usedBytes -= entry.bytes;
+    }
+
+    /**
+     * Legge il catalogo dal file, ignorando le righe non valide e quelle dei dendrogrammi il cui file non esiste o ha
+     * una dimensione diversa. Deve essere chiamato tenendo il lock dell'archivio.
+     *
+     * @throws IOException in caso di errori durante la lettura del catalogo
+     */
+    private void readCatalog() throws IOException {
+        var catalogPath = this.directory.resolve(CATALOG_FILE_NAME);
+        if (!Files.exists(catalogPath)) {
+            return;
+        }
+
+        var lines = Files.readAllLines(catalogPath, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.getFirst().equals(CATALOG_HEADER)) {
+            return;
+        }
+
+        for (var line : lines.subList(1, lines.size())) {
+            var fields = line.split(" ");
+            if (fields.length != 5) {
+                continue;
+            }
+
+            Entry entry;
+            try {
+                entry = new Entry(fields[0], fields[1], fields[2], Integer.parseInt(fields[3]), Long.parseLong(fields[4]));
+            } catch (NumberFormatException exception) {
+                continue;
+            }
+
+            if (!entry.key.equals(key(entry.fingerprint, entry.linkage, entry.depth))) {
+                continue;
+            }
+
+            try {
+                if (Files.size(this.path(entry.key)) != entry.bytes) {
+                    continue;
+                }
+            } catch (NoSuchFileException exception) {
+                continue;
+            }
+
+            if (this.entries.put(entry.key, entry) == null) {
+                this.index(entry);
+            }
+        }
+    }
+
+    /**
+     * Scrive il catalogo nel file, sostituendo atomicamente quello precedente. Deve essere chiamato tenendo il lock
+     * dell'archivio.
+     *
+     * @throws IOException in caso di errori durante la scrittura del catalogo
+     */
+    private void writeCatalog() throws IOException {
+        var lines = new ArrayList<String>(this.entries.size() + 1);
+        lines.add(CATALOG_HEADER);
+        for (var entry : this.entries.values()) {
+            lines.add(String.format("%s %s %s %d %d", entry.key, entry.fingerprint, entry.linkage, entry.depth, entry.bytes));
+        }
+
+        var catalogPath = this.directory.resolve(CATALOG_FILE_NAME);
+        var temporaryPath = this.directory.resolve(CATALOG_FILE_NAME + ".tmp");
+        try {
+            Files.write(temporaryPath, lines, StandardCharsets.UTF_8);
+            Files.move(temporaryPath, catalogPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Rimuove i file dei dendrogrammi che non compaiono nel catalogo e i file temporanei rimasti da scritture
+     * interrotte. Deve essere chiamato tenendo il lock dell'archivio.
+     *
+     * @throws IOException in caso di errori durante la lettura della cartella
+     */
+    private void removeOrphans() throws IOException {
+        try (var files = Files.newDirectoryStream(this.directory)) {
+            for (var file : files) {
+                var name = file.getFileName().toString();
+                boolean orphan = name.matches("[0-9a-f]{64}\\" + FILE_EXTENSION)
+                    && !this.entries.containsKey(name.substring(0, name.length() - FILE_EXTENSION.length()));
+                if (orphan || name.matches("[0-9a-f]{64}\\" + FILE_EXTENSION + "\\..*\\.tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce il percorso del file del dendrogramma con chiave {@code key}, specificata come parametro.
+     *
+     * @param key la chiave del dendrogramma
+     * @return il percorso del file del dendrogramma
+     */
+    private Path path(String key) {
+        return this.directory.resolve(key + FILE_EXTENSION);
+    }
+
+    /**
+     * Restituisce la chiave con cui sono indicizzati i dendrogrammi creati dai dati con impronta {@code fingerprint}
+     * con la distanza di nome {@code linkage}, entrambi specificati come parametro.
+     *
+     * @param fingerprint l'impronta dei dati
+     * @param linkage il nome della distanza
+     * @return la chiave dei dendrogrammi creati dagli stessi dati con la stessa distanza
+     */
+    private static String origin(String fingerprint, String linkage) {
+        return fingerprint + '/' + linkage;
+    }
+
+    /**
+     * Classe immutabile che rappresenta un dendrogramma nel catalogo dell'archivio.
+     */
+    public static final class Entry {
+        /**
+         * La chiave del dendrogramma.
+         */
+        private final String key;
+
+        /**
+         * L'impronta dei dati da cui è stato creato il dendrogramma.
+         */
+        private final String fingerprint;
+
+        /**
+         * Il nome della distanza con cui è stato creato il dendrogramma.
+         */
+        private final String linkage;
+
+        /**
+         * La profondità del dendrogramma.
+         */
+        private final int depth;
+
+        /**
+         * La dimensione del file del dendrogramma, in byte.
+         */
+        private final long bytes;
+
+        /**
+         * Indica se il checksum del file è già stato controllato o se il file è stato scritto dal server.
+         */
+        private volatile boolean verified = false;
+
+        /**
+         * Costruisce il dendrogramma nel catalogo con chiave {@code key}, creato dai dati con impronta
+         * {@code fingerprint} con la distanza di nome {@code linkage}, di profondità {@code depth} e il cui file occupa
+         * {@code bytes} byte (tutti specificati come parametro).
+         *
+         * @param key la chiave del dendrogramma
+         * @param fingerprint l'impronta dei dati
+         * @param linkage il nome della distanza
+         * @param depth la profondità del dendrogramma
+         * @param bytes la dimensione del file del dendrogramma, in byte
+         */
+        private Entry(String key, String fingerprint, String linkage, int depth, long bytes) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.linkage = linkage;
+            this.depth = depth;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Restituisce la chiave del dendrogramma.
+         *
+         * @return la chiave del dendrogramma
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        /**
+         * Restituisce l'impronta dei dati da cui è stato creato il dendrogramma.
+         *
+         * @return l'impronta dei dati
+         */
+        public String getFingerprint() {
+            return this.fingerprint;
+        }
+
+        /**
+         * Restituisce il nome della distanza con cui è stato creato il dendrogramma.
+         *
+         * @return il nome della distanza
+         */
+        public String getLinkage() {
+            return this.linkage;
+        }
+
+        /**
+         * Restituisce la profondità del dendrogramma.
+         *
+         * @return la profondità del dendrogramma
+         */
+        public int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * Restituisce il nome con cui il client può caricare il dendrogramma, ovvero la chiave preceduta da
+         * {@value DendrogramStore#PREFIX}.
+         *
+         * @return il nome con cui caricare il dendrogramma
+         */
+        public String getLocation() {
+            return PREFIX + this.key;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.davidecarella.hclus.server.store;
+
+import com.davidecarella.hclus.server.ServerConfiguration;
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.exceptions.RequestException;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <p>Classe che salva i dendrogrammi su file in background, così che le richieste di salvataggio non attendano il
+ * disco.
+ *
+ * <p>I {@link SaveTask salvataggi} vengono eseguiti uno alla volta, nell'ordine in cui sono stati richiesti, da un
+ * unico thread: quelli in attesa sono al più {@link ServerConfiguration#getMaxQueuedSaves()}, oltre i quali le nuove
+ * richieste vengono rifiutate. Ogni dendrogramma viene scritto in un file temporaneo che poi sostituisce il file
+ * richiesto, perciò chi legge il file vede sempre il dendrogramma precedente o quello nuovo per intero; se
+ * {@link ServerConfiguration#isSyncSavesEnabled()} il file viene anche forzato sul disco prima di considerare il
+ * salvataggio terminato.
+ *
+ * <p>Come per i job di mining, ogni salvataggio appartiene a chi lo ha richiesto, che è l'unico a poterlo consultare e
+ * che deve {@link DendrogramWriter#release(Object) rilasciare} i propri salvataggi quando non gli servono più. I
+ * salvataggi rilasciati vengono comunque completati.
+ */
+public class DendrogramWriter {
+    /**
+     * Il salvataggio che indica al thread di terminare.
+     */
+    private static final SaveTask STOP = new SaveTask(0, null, null, null, null, null, null);
+
+    /**
+     * I salvataggi in attesa, in ordine di richiesta.
+     */
+    private final BlockingQueue<SaveTask> queue;
+
+    /**
+     * Indica se forzare la scrittura dei file sul disco.
+     */
+    private final boolean sync;
+
+    /**
+     * Il thread che esegue i salvataggi.
+     */
+    private final Thread thread;
+
+    /**
+     * I salvataggi non ancora rilasciati, indicizzati per identificativo.
+     */
+    private final Map<Long, SaveTask> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * L'identificativo dell'ultimo salvataggio creato.
+     */
+    private final AtomicLong lastTaskId = new AtomicLong();
+
+    /**
+     * Indica se il thread è stato fermato e non vengono più accettati salvataggi.
+     */
+    private boolean stopped = false;
+
+    /**
+     * Costruisce il gestore dei salvataggi con la configurazione {@code configuration}, specificata come parametro, e
+     * ne avvia il thread.
+     *
+     * @param configuration la configurazione del server
+     */
+    public DendrogramWriter(ServerConfiguration configuration) {
+        this.queue = new ArrayBlockingQueue<>(configuration.getMaxQueuedSaves());
+        this.sync = configuration.isSyncSavesEnabled();
+        this.thread = new Thread(this::run, "HCLUS-Writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Richiede il salvataggio, appartenente a {@code owner}, del dendrogramma di {@code miner} nel file con percorso
+     * {@code fileName}, inviando i messaggi di log sul salvataggio a {@code log} (tutti specificati come parametro).
+     *
+     * @param owner il proprietario del salvataggio
+     * @param miner il miner che contiene il dendrogramma da salvare
+     * @param fileName il percorso del file
+     * @param log la destinazione dei messaggi di log
+     * @return il salvataggio richiesto
+     * @throws RequestException se il percorso non è valido, ci sono già troppi salvataggi in attesa o il gestore è
+     *                          stato fermato
+     */
+    public SaveTask submit(Object owner, HierarchicalClusterMiner miner, String fileName, Consumer<String> log) throws RequestException {
+        Path path;
+        try {
+            path = Path.of(fileName);
+        } catch (InvalidPathException exception) {
+            throw new RequestException("Percorso del file non valido!");
+        }
+
+        return this.submit(owner, miner, path, path.toString(), log, null);
+    }
+
+    /**
+     * Richiede il salvataggio, appartenente a {@code owner}, del dendrogramma di {@code miner} nel file con percorso
+     * {@code path}, che potrà essere caricato con il nome {@code location}, inviando i messaggi di log sul salvataggio
+     * a {@code log} ed eseguendo {@code onSaved} dopo aver scritto il file (tutti specificati come parametro).
+     *
+     * @param owner il proprietario del salvataggio
+     * @param miner il miner che contiene il dendrogramma da salvare
+     * @param path il percorso del file
+     * @param location il nome con cui il dendrogramma salvato può essere caricato
+     * @param log la destinazione dei messaggi di log
+     * @param onSaved l'azione da eseguire dopo aver scritto il file, {@code null} se non ce n'è nessuna
+     * @return il salvataggio richiesto
+     * @throws RequestException se ci sono già troppi salvataggi in attesa o il gestore è stato fermato
+     */
+    SaveTask submit(Object owner, HierarchicalClusterMiner miner, Path path, String location, Consumer<String> log, Runnable onSaved) throws RequestException {
+        var task = new SaveTask(this.lastTaskId.incrementAndGet(), owner, miner, path, location, log, onSaved);
+        synchronized (this) {
+            if (this.stopped) {
+                throw new RequestException("Il server è in fase di arresto, impossibile salvare il dendrogramma!");
+            }
+            if (!this.queue.offer(task)) {
+                throw new RequestException("Il server è occupato, troppi salvataggi in attesa: riprovare più tardi!");
+            }
+        }
+
+        this.tasks.put(task.getId(), task);
+        return task;
+    }
+
+    /**
+     * Registra un salvataggio, appartenente a {@code owner}, già terminato con successo senza scrivere niente perché il
+     * file con percorso {@code path}, che può essere caricato con il nome {@code location}, contiene già il dendrogramma
+     * (tutti specificati come parametro).
+     *
+     * @param owner il proprietario del salvataggio
+     * @param path il percorso del file
+     * @param location il nome con cui il dendrogramma salvato può essere caricato
+     * @return il salvataggio registrato
+     */
+    SaveTask completed(Object owner, Path path, String location) {
+        var task = new SaveTask(this.lastTaskId.incrementAndGet(), owner, null, path, location, null, null);
+        this.tasks.put(task.getId(), task);
+        return task;
+    }
+
+    /**
+     * Restituisce il salvataggio con identificativo {@code id} appartenente a {@code owner}, entrambi specificati come
+     * parametro.
+     *
+     * @param owner il proprietario del salvataggio
+     * @param id l'identificativo del salvataggio
+     * @return il salvataggio con identificativo {@code id}
+     * @throws RequestException se il salvataggio non esiste o non appartiene a {@code owner}
+     */
+    public SaveTask getTask(Object owner, long id) throws RequestException {
+        var task = this.tasks.get(id);
+        if (task == null || task.getOwner() != owner) {
+            throw new RequestException(String.format("Il salvataggio %d non esiste!", id));
+        }
+
+        return task;
+    }
+
+    /**
+     * Dimentica il salvataggio {@code task}, specificato come parametro, che non potrà più essere consultato.
+     *
+     * @param task il salvataggio da dimenticare
+     */
+    public void forget(SaveTask task) {
+        this.tasks.remove(task.getId(), task);
+    }
+
+    /**
+     * Dimentica tutti i salvataggi appartenenti a {@code owner}, specificato come parametro. Quelli non ancora
+     * terminati vengono comunque completati.
+     *
+     * @param owner il proprietario dei salvataggi
+     */
+    public void release(Object owner) {
+        this.tasks.values().removeIf(task -> task.getOwner() == owner);
+    }
+
+    /**
+     * Esegue i salvataggi in attesa, uno alla volta, finché il gestore non viene fermato. Un salvataggio fallito per
+     * un errore inatteso non ferma il thread, così che quelli successivi vengano comunque eseguiti.
+     */
+    private void run() {
+        while (true) {
+            SaveTask task;
+            try {
+                task = this.queue.take();
+            } catch (InterruptedException exception) {
+                return;
+            }
+
+            if (task == STOP) {
+                return;
+            }
+
+            try {
+                task.write(this.sync);
+            } catch (RuntimeException | Error exception) {
+                // Il salvataggio è già stato segnato come fallito: si passa al successivo senza fermare il thread
+            }
+        }
+    }
+
+    /**
+     * Ferma il gestore: le nuove richieste vengono rifiutate, mentre quelle già accettate vengono completate prima che
+     * il metodo ritorni.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (this.stopped) {
+                return;
+            }
+
+            this.stopped = true;
+        }
+
+        try {
+            this.queue.put(STOP);
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
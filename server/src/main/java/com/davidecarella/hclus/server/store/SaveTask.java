@@ -0,0 +1,212 @@
+package com.davidecarella.hclus.server.store;
+
+import com.davidecarella.hclus.server.clustering.ExportFormat;
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Classe che rappresenta il salvataggio di un dendrogramma su file, eseguito in background da un
+ * {@link DendrogramWriter}.
+ */
+public final class SaveTask {
+    /**
+     * L'identificativo del salvataggio.
+     */
+    private final long id;
+
+    /**
+     * Il proprietario del salvataggio, l'unico che può consultarlo.
+     */
+    private final Object owner;
+
+    /**
+     * Il percorso del file su cui salvare il dendrogramma.
+     */
+    private final Path path;
+
+    /**
+     * Il nome con cui il dendrogramma salvato può essere caricato dal client.
+     */
+    private final String location;
+
+    /**
+     * La destinazione dei messaggi di log sul salvataggio.
+     */
+    private final Consumer<String> log;
+
+    /**
+     * L'azione eseguita dopo che il dendrogramma è stato scritto con successo, {@code null} se non ce n'è nessuna.
+     */
+    private final Runnable onSaved;
+
+    /**
+     * Il miner che contiene il dendrogramma da salvare, {@code null} dopo il salvataggio per non tenerlo in memoria.
+     */
+    private HierarchicalClusterMiner miner;
+
+    /**
+     * Indica se il salvataggio è terminato, con successo o meno.
+     */
+    private boolean done;
+
+    /**
+     * Il messaggio d'errore se il salvataggio è fallito, {@code null} altrimenti.
+     */
+    private String error = null;
+
+    /**
+     * Costruisce il salvataggio con identificativo {@code id}, appartenente a {@code owner}, del dendrogramma di
+     * {@code miner} nel file con percorso {@code path}, che può essere caricato con il nome {@code location}, invia i
+     * messaggi di log a {@code log} ed esegue {@code onSaved} dopo aver scritto il file (tutti specificati come
+     * parametro). Se {@code miner} è {@code null} il salvataggio è già terminato con successo.
+     *
+     * @param id l'identificativo del salvataggio
+     * @param owner il proprietario del salvataggio
+     * @param miner il miner che contiene il dendrogramma da salvare, {@code null} se non c'è niente da scrivere
+     * @param path il percorso del file
+     * @param location il nome con cui il dendrogramma salvato può essere caricato
+     * @param log la destinazione dei messaggi di log
+     * @param onSaved l'azione da eseguire dopo aver scritto il file, {@code null} se non ce n'è nessuna
+     */
+    SaveTask(long id, Object owner, HierarchicalClusterMiner miner, Path path, String location, Consumer<String> log, Runnable onSaved) {
+        this.id = id;
+        this.owner = owner;
+        this.miner = miner;
+        this.path = path;
+        this.location = location;
+        this.log = log;
+        this.onSaved = onSaved;
+        this.done = miner == null;
+    }
+
+    /**
+     * Restituisce l'identificativo del salvataggio.
+     *
+     * @return l'identificativo del salvataggio
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Restituisce il proprietario del salvataggio.
+     *
+     * @return il proprietario del salvataggio
+     */
+    Object getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Restituisce il percorso del file su cui salvare il dendrogramma.
+     *
+     * @return il percorso del file
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Restituisce il nome con cui il dendrogramma salvato può essere caricato dal client: il percorso del file o, per
+     * i dendrogrammi salvati nell'{@link DendrogramStore archivio}, la loro chiave preceduta da
+     * {@value DendrogramStore#PREFIX}.
+     *
+     * @return il nome con cui caricare il dendrogramma salvato
+     */
+    public String getLocation() {
+        return this.location;
+    }
+
+    /**
+     * Restituisce {@code true} se il salvataggio è terminato, con successo o meno, {@code false} altrimenti.
+     *
+     * @return {@code true} se il salvataggio è terminato, {@code false} altrimenti
+     */
+    public synchronized boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Restituisce il messaggio d'errore del salvataggio.
+     *
+     * @return il messaggio d'errore, {@code null} se il salvataggio non è terminato o è terminato con successo
+     */
+    public synchronized String getError() {
+        return this.error;
+    }
+
+    /**
+     * Attende che il salvataggio termini.
+     *
+     * @return il messaggio d'errore, {@code null} se il salvataggio è terminato con successo
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public synchronized String awaitCompletion() throws InterruptedException {
+        while (!this.done) {
+            this.wait();
+        }
+
+        return this.error;
+    }
+
+    /**
+     * Salva il dendrogramma, forzando la scrittura sul disco se {@code sync}, specificato come parametro, è
+     * {@code true}, e notifica il termine a chi lo sta attendendo. Se l'estensione del file è quella di un
+     * {@link ExportFormat formato standard} il dendrogramma viene esportato in quel formato invece che nel formato
+     * binario. Il salvataggio viene considerato terminato qualunque cosa accada, anche se la scrittura o l'azione
+     * eseguita dopo di essa lanciano un'eccezione inattesa, così che chi lo attende non resti bloccato.
+     *
+     * @param sync indica se forzare la scrittura sul disco prima di considerare il salvataggio terminato
+     */
+    void write(boolean sync) {
+        HierarchicalClusterMiner miner;
+        synchronized (this) {
+            miner = this.miner;
+            this.miner = null;
+        }
+
+        long start = System.nanoTime();
+        String error = null;
+        boolean completed = false;
+        try {
+            var format = ExportFormat.forFileName(this.path.toString());
+            if (format != null) {
+                miner.export(this.path.toString(), format, sync);
+            } else {
+                miner.salva(this.path.toString(), sync);
+            }
+
+            if (this.onSaved != null) {
+                this.onSaved.run();
+            }
+
+            completed = true;
+            this.log.accept(String.format("Salvataggio %d completato: dendrogramma salvato in %s (%d ms)", this.id, this.location, (System.nanoTime() - start) / 1_000_000));
+        } catch (IOException exception) {
+            error = String.format("Errore durante il salvataggio del dendrogramma: %s!", exception.getMessage());
+        } catch (UncheckedIOException exception) {
+            error = String.format("Errore durante il salvataggio del dendrogramma: %s!", exception.getCause().getMessage());
+        } catch (RuntimeException exception) {
+            error = String.format("Errore inatteso durante il salvataggio del dendrogramma: %s!", exception);
+        } finally {
+            if (error == null && !completed) {
+                // È stato lanciato un Error, che viene lasciato propagare dopo aver segnato il salvataggio come fallito
+                error = "Errore inatteso durante il salvataggio del dendrogramma!";
+            }
+
+            synchronized (this) {
+                this.error = error;
+                this.done = true;
+                this.notifyAll();
+            }
+
+            if (error != null) {
+                this.log.accept(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.davidecarella.hclus.server.jobs;
+
+import com.davidecarella.hclus.server.clustering.HierarchicalClusterMiner;
+import com.davidecarella.hclus.server.data.Data;
+import com.davidecarella.hclus.server.distance.SingleLinkDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test della stima della memoria di {@link MiningCost}.
+ */
+class MiningCostTest {
+    /**
+     * Il numero di esempi dei dati di prova.
+     */
+    private static final int NUMBER_OF_EXAMPLES = 600;
+
+    /**
+     * Controlla che con la distanza single-link la stima non sia inferiore allo heap effettivamente occupato dal
+     * dendrogramma nel caso peggiore, ovvero con esempi disposti a catena (\(x_i = i (i + 1) / 2\)) in modo che ogni
+     * unione aggiunga un solo esempio allo stesso cluster.
+     *
+     * @throws Exception in caso di errori durante il mining
+     */
+    @Test
+    void singleLinkEstimateCoversChains() throws Exception {
+        var columns = new double[NUMBER_OF_EXAMPLES];
+        for (int i = 0; i < NUMBER_OF_EXAMPLES; ++i) {
+            columns[i] = i * (i + 1) / 2.0;
+        }
+
+        var data = new Data(List.of("x"), NUMBER_OF_EXAMPLES, columns);
+        var distance = new SingleLinkDistance();
+
+        long before = usedHeap();
+        var miner = new HierarchicalClusterMiner(NUMBER_OF_EXAMPLES);
+        miner.mine(data, distance);
+        long measured = usedHeap() - before;
+
+        var estimate = MiningCost.estimate(data, NUMBER_OF_EXAMPLES, distance);
+        assertEquals(NUMBER_OF_EXAMPLES, miner.getDendrogramDepth());
+        assertTrue(estimate.getBytes() >= measured, String.format("stima %d byte, misurati %d byte", estimate.getBytes(), measured));
+    }
+
+    /**
+     * Restituisce lo heap occupato dopo aver chiesto alla JVM di liberare la memoria non più raggiungibile.
+     *
+     * @return lo heap occupato, in byte
+     */
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; ++i) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}